@@ -14,7 +14,8 @@
 package org.testeditor.fixture.core;
 
 import java.io.File;
-import java.io.FileOutputStream;
+import java.io.IOException;
+import java.net.URL;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
@@ -27,6 +28,16 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.testeditor.fixture.core.TestRunReporter.SemanticUnit;
 import org.testeditor.fixture.core.TestRunReporter.Status;
+import org.testeditor.fixture.core.calltree.CallTreeSerializer;
+import org.testeditor.fixture.core.calltree.CallTreeSerializerFactory;
+import org.testeditor.fixture.core.calltree.DurableCallTreeSerializer;
+import org.testeditor.fixture.core.calltree.DurableCallTreeSerializer.Durability;
+import org.testeditor.fixture.core.calltree.FilteringCallTreeSerializer;
+import org.testeditor.fixture.core.calltree.GroupCommit;
+import org.testeditor.fixture.core.calltree.IndexingCallTreeSerializer;
+import org.testeditor.fixture.core.calltree.RecordingPolicy;
+import org.testeditor.fixture.core.calltree.SharedCallTreeFile;
+import org.testeditor.fixture.core.calltree.YamlCallTreeSerializer;
 
 /**
  * Class from which all generated unit tests are (transitively) derived
@@ -83,13 +94,34 @@ public class AbstractTestCase {
                 reporter.addListener(listener);
             });
         }
+        if (reporter instanceof DefaultTestRunReporter && System.getenv("TE_TESTRUNID") != null) {
+            ((DefaultTestRunReporter) reporter).setTestRunId(testRunId(System.getenv("TE_TESTRUNID"), testName));
+        }
         runningNumber = 0;
         runningNumberMap = new HashMap<String, Long>();
 
         initializeCallTreeListener(testName);
+        initializeTraceListener();
+        initializeSpanListener(testName);
 
     }
 
+    /**
+     * @return test run id, extended by the parameter index (or name) of
+     *         parameterized tests
+     */
+    private static String testRunId(String testRunId, String testName) {
+        if (testName != null && testName.length() > 0) {
+            var matcher = TEST_NAME_PATTERN.matcher(testName.trim());
+            if (matcher.matches()) {
+                return testRunId + PARAMETER_INDEX_DELIMITER + matcher.group(1);
+            } else {
+                return testRunId + PARAMETER_INDEX_DELIMITER + testName.trim();
+            }
+        }
+        return testRunId;
+    }
+
     protected void initializeCallTreeListener(String testName) {
         try {
             String yamlFileName = getEnvVar("TE_CALL_TREE_YAML_FILE");
@@ -97,19 +129,23 @@ public class AbstractTestCase {
                 File yamlFile = new File(yamlFileName);
 
                 String testCaseName = getEnvVar("TE_TESTCASENAME");
-                String testRunId = getEnvVar("TE_TESTRUNID");
-                if (testName != null && testName.length() > 0) {
-                    var matcher = TEST_NAME_PATTERN.matcher(testName.trim());
-                    if (matcher.matches()) {
-                        testRunId = testRunId + PARAMETER_INDEX_DELIMITER + matcher.group(1);
-                    } else {
-                        testRunId = testRunId + PARAMETER_INDEX_DELIMITER + testName.trim();
-                    }
-                }
+                String testRunId = testRunId(getEnvVar("TE_TESTRUNID"), testName);
                 String testCommitId = getEnvVar("TE_TESTRUNCOMMITID");
                 
-                reporter.addListener(new DefaultYamlCallTreeListener(new FileOutputStream(yamlFile, true), 
-                        testCaseName, testRunId, testCommitId));
+                CallTreeSerializer serializer = createCallTreeSerializer(yamlFile);
+                DefaultYamlCallTreeListener callTreeListener = new DefaultYamlCallTreeListener(serializer, testCaseName,
+                        testRunId, testCommitId, Boolean.parseBoolean(System.getenv("TE_CALL_TREE_STREAMING")));
+                if (Boolean.parseBoolean(System.getenv("TE_CALL_TREE_TIMINGS"))) {
+                    callTreeListener.enableTimings(slowestNodesListed());
+                }
+                if (Boolean.parseBoolean(System.getenv("TE_CALL_TREE_VARIABLE_DELTAS"))) {
+                    callTreeListener.enableVariableDeltas();
+                }
+                if (Boolean.parseBoolean(System.getenv("TE_CALL_TREE_ASYNC"))) {
+                    reporter.addListener(new AsyncYamlCallTreeListener(callTreeListener));
+                } else {
+                    reporter.addListener(callTreeListener);
+                }
                 logger.info("Added yaml call tree listener to test excecution writing to file = \"" 
                         + yamlFileName + "\".");
             }
@@ -118,6 +154,42 @@ public class AbstractTestCase {
         }
     }
 
+    protected void initializeTraceListener() {
+        String traceFileName = System.getenv("TE_TRACE_EVENT_FILE");
+        if (traceFileName != null && !traceFileName.trim().isEmpty()) {
+            try {
+                reporter.addListener(new ChromeTraceListener(new File(traceFileName)));
+                logger.info("Added trace event listener to test execution writing to file = \"" + traceFileName
+                        + "\".");
+            } catch (Exception e) {
+                logger.warn("Failed to add trace event listener.", e);
+            }
+        }
+    }
+
+    protected void initializeSpanListener(String testName) {
+        String endpoint = System.getenv("TE_OTLP_ENDPOINT");
+        String fileName = System.getenv("TE_OTLP_FILE");
+        try {
+            OtlpSpanExporter exporter;
+            if (endpoint != null && !endpoint.trim().isEmpty()) {
+                exporter = OtlpSpanExporter.forEndpoint(new URL(endpoint.trim()));
+            } else if (fileName != null && !fileName.trim().isEmpty()) {
+                exporter = OtlpSpanExporter.forFile(new File(fileName));
+            } else {
+                return;
+            }
+            String testRunId = System.getenv("TE_TESTRUNID");
+            OtlpSpanListener spanListener = new OtlpSpanListener(exporter,
+                    testRunId != null ? testRunId(testRunId, testName) : null);
+            reporter.addListener(spanListener);
+            logger.info("Added OTLP span listener to test execution exporting trace id = \""
+                    + spanListener.getTraceId() + "\".");
+        } catch (Exception e) {
+            logger.warn("Failed to add OTLP span listener.", e);
+        }
+    }
+
     /**
      * please use nextSubId instead!
      * @return next unique id, generated during runtime of the test
@@ -132,10 +204,11 @@ public class AbstractTestCase {
     
     /**
      * return next sub id of the passed id, generated during runtime of the test
+     * (also by branches running concurrently, see {@link TestRunReporter#fork})
      * @param id  parent id
      * @return next unique sub id
      */
-    protected String nextSubId(String id) {
+    protected synchronized String nextSubId(String id) {
         if (runningNumberMap.containsKey(id)) {
             Long counter = runningNumberMap.get(id);
             counter++;
@@ -170,7 +243,79 @@ public class AbstractTestCase {
     // may be overridden to provide alternate implementations of the test run
     // reporter
     protected TestRunReporter createTestRunReporter() {
-        return new DefaultTestRunReporter();
+        DefaultTestRunReporter testRunReporter;
+        if (Boolean.parseBoolean(System.getenv("TE_REPORTER_ASYNC"))) {
+            testRunReporter = new DefaultTestRunReporter(new DefaultLoggingListener(),
+                    DefaultTestRunReporter.DEFAULT_RING_BUFFER_CAPACITY, backpressurePolicy(), blockTimeoutMillis());
+        } else {
+            testRunReporter = new DefaultTestRunReporter();
+        }
+        long listenerBudget = listenerBudgetMillis();
+        if (listenerBudget > 0) {
+            testRunReporter.enableListenerBudget(listenerBudget, slowListenerPolicy());
+        }
+        int fanOutThreads = fanOutThreads();
+        if (fanOutThreads > 0) {
+            testRunReporter.enableFanOut(fanOutThreads);
+        }
+        return testRunReporter;
+    }
+
+    private int fanOutThreads() {
+        String threads = System.getenv("TE_REPORTER_FAN_OUT");
+        if (threads != null) {
+            try {
+                return Integer.parseInt(threads.trim());
+            } catch (NumberFormatException e) {
+                logger.warn("environment variable TE_REPORTER_FAN_OUT = \"" + threads + "\" is no number.");
+            }
+        }
+        return 0;
+    }
+
+    private long listenerBudgetMillis() {
+        String budget = System.getenv("TE_REPORTER_LISTENER_BUDGET");
+        if (budget != null) {
+            try {
+                return Long.parseLong(budget.trim());
+            } catch (NumberFormatException e) {
+                logger.warn("environment variable TE_REPORTER_LISTENER_BUDGET = \"" + budget + "\" is no number.");
+            }
+        }
+        return 0;
+    }
+
+    private SlowListenerPolicy slowListenerPolicy() {
+        String policy = System.getenv("TE_REPORTER_SLOW_LISTENERS");
+        try {
+            return SlowListenerPolicy.parse(policy);
+        } catch (IllegalArgumentException e) {
+            logger.warn(
+                    "environment variable TE_REPORTER_SLOW_LISTENERS = \"" + policy + "\" is unknown, using demote.");
+            return SlowListenerPolicy.DEMOTE;
+        }
+    }
+
+    private BackpressurePolicy backpressurePolicy() {
+        String policy = System.getenv("TE_REPORTER_BACKPRESSURE");
+        try {
+            return BackpressurePolicy.parse(policy);
+        } catch (IllegalArgumentException e) {
+            logger.warn("environment variable TE_REPORTER_BACKPRESSURE = \"" + policy + "\" is unknown, using block.");
+            return BackpressurePolicy.BLOCK;
+        }
+    }
+
+    private long blockTimeoutMillis() {
+        String timeout = System.getenv("TE_REPORTER_BLOCK_TIMEOUT");
+        if (timeout != null) {
+            try {
+                return Long.parseLong(timeout.trim());
+            } catch (NumberFormatException e) {
+                logger.warn("environment variable TE_REPORTER_BLOCK_TIMEOUT = \"" + timeout + "\" is no number.");
+            }
+        }
+        return DefaultTestRunReporter.DEFAULT_BLOCK_TIMEOUT_MILLIS;
     }
 
     // may be override to add aditional test run listeners to the reporter
@@ -179,22 +324,100 @@ public class AbstractTestCase {
     }
 
     /**
-     * utility builder function to pass varable-names and values as hashmap
+     * utility builder function to pass varable-names and values as map
      *
      * @param strings make sure there is an even number of parameters used, since
      *            only the first even numbered parameters are packed into the map
-     * @return
+     * @return immutable map backed by the passed array (see {@link Variables})
      */
     public static Map<String, String> variables(String... strings) {
-        HashMap<String, String> result = new HashMap<>();
+        return Variables.of(strings);
+    }
+    
+    private CallTreeSerializer createCallTreeSerializer(File yamlFile) throws IOException {
+        CallTreeSerializer serializer = createDurableSerializer(createOutputSerializer(yamlFile), yamlFile);
+        String recording = System.getenv("TE_CALL_TREE_RECORDING");
+        if (recording != null && !recording.trim().isEmpty()) {
+            try {
+                return new FilteringCallTreeSerializer(serializer, RecordingPolicy.parse(recording));
+            } catch (IllegalArgumentException e) {
+                logger.warn("environment variable TE_CALL_TREE_RECORDING = \"" + recording
+                        + "\" is invalid, recording all nodes.", e);
+            }
+        }
+        return serializer;
+    }
 
-        for (int i = 0; i < strings.length / 2; i++) {
-            result.put(strings[i * 2], strings[i * 2 + 1]);
+    private CallTreeSerializer createDurableSerializer(CallTreeSerializer serializer, File yamlFile)
+            throws IOException {
+        String durabilityName = System.getenv("TE_CALL_TREE_DURABILITY");
+        Durability durability;
+        try {
+            durability = Durability.parse(durabilityName);
+        } catch (IllegalArgumentException e) {
+            logger.warn("environment variable TE_CALL_TREE_DURABILITY = \"" + durabilityName
+                    + "\" is unknown, using flush.");
+            durability = Durability.FLUSH;
+        }
+        if (durability == Durability.FLUSH) {
+            return serializer;
+        }
+        GroupCommit groupCommit = null;
+        if (durability == Durability.FSYNC) {
+            groupCommit = GroupCommit.forFile(yamlFile, commitIntervalMillis());
         }
+        return new DurableCallTreeSerializer(serializer, durability, groupCommit);
+    }
 
-        return result;
+    private long commitIntervalMillis() {
+        String interval = System.getenv("TE_CALL_TREE_COMMIT_INTERVAL");
+        if (interval != null) {
+            try {
+                long result = Long.parseLong(interval.trim());
+                if (result > 0) {
+                    return result;
+                }
+            } catch (NumberFormatException e) {
+                // warned below
+            }
+            logger.warn("environment variable TE_CALL_TREE_COMMIT_INTERVAL = \"" + interval
+                    + "\" is no positive number.");
+        }
+        return GroupCommit.DEFAULT_INTERVAL_MILLIS;
     }
-    
+
+    private CallTreeSerializer createOutputSerializer(File yamlFile) throws IOException {
+        String format = System.getenv("TE_CALL_TREE_FORMAT");
+        boolean index = Boolean.parseBoolean(System.getenv("TE_CALL_TREE_INDEX"));
+        if (Boolean.parseBoolean(System.getenv("TE_CALL_TREE_SHARED"))) {
+            SharedCallTreeFile.checkFormat(format); // before the file is opened
+            if (index) {
+                logger.warn("Call tree index is not available for a shared call tree file, not writing an index.");
+            }
+            return SharedCallTreeFile.forFile(yamlFile).createSerializer(format);
+        }
+        CallTreeSerializer serializer = CallTreeSerializerFactory.createSerializer(format, yamlFile);
+        if (index) {
+            if (serializer instanceof YamlCallTreeSerializer) {
+                return IndexingCallTreeSerializer.appendingTo((YamlCallTreeSerializer) serializer, yamlFile);
+            }
+            logger.warn("Call tree index is available for yaml call trees only, not writing an index.");
+        }
+        return serializer;
+    }
+
+    private int slowestNodesListed() {
+        String slowestNodes = System.getenv("TE_CALL_TREE_SLOWEST");
+        if (slowestNodes != null) {
+            try {
+                return Integer.parseInt(slowestNodes.trim());
+            } catch (NumberFormatException e) {
+                logger.warn("environment variable TE_CALL_TREE_SLOWEST = \"" + slowestNodes + "\" is no number.");
+            }
+        }
+        return DefaultYamlCallTreeListener.DEFAULT_SLOWEST_NODES;
+    }
+
     private String getEnvVar(String key) {
         String result = System.getenv(key);
         logWarningIfNull(result, "expected environment variable = \"" + key + "\" is empty");
@@ -0,0 +1,334 @@
+/*******************************************************************************
+ * Copyright (c) 2012 - 2018 Signal Iduna Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ * Signal Iduna Corporation - initial API and implementation
+ * akquinet AG
+ * itemis AG
+ *******************************************************************************/
+
+package org.testeditor.fixture.core;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.testeditor.fixture.core.TestRunReporter.Action;
+import org.testeditor.fixture.core.TestRunReporter.SemanticUnit;
+import org.testeditor.fixture.core.TestRunReporter.Status;
+import org.testeditor.fixture.core.calltree.SharedCallTreeFile;
+
+/**
+ * Asynchronous, batching front end of a {@link DefaultYamlCallTreeListener}.
+ *
+ * Events are time stamped on the test thread and handed to a bounded queue. A
+ * background writer thread serializes them through the wrapped listener and
+ * flushes the output in batches, either when {@code batchSize} events were
+ * written or when {@code flushIntervalMillis} passed since the last flush.
+ *
+ * The queue is drained and flushed before any of the exit methods returns,
+ * when the test is left (the next test may append to the same file) and on JVM
+ * shutdown (closing the serializer then), so no tail of the call tree is lost.
+ * If the queue is full, the test thread blocks until the writer has caught up.
+ *
+ * Variable maps passed to {@link #reported} are written later on and must not
+ * be modified by the caller afterwards.
+ */
+public class AsyncYamlCallTreeListener implements IndependentTestRunListener {
+
+    public static final int DEFAULT_QUEUE_CAPACITY = 4096;
+    public static final int DEFAULT_BATCH_SIZE = 256;
+    public static final long DEFAULT_FLUSH_INTERVAL_MILLIS = 200;
+
+    // maximum time the test thread waits for the writer to drain the queue
+    private static final long DRAIN_TIMEOUT_SECONDS = 30;
+
+    protected static final Logger logger = LoggerFactory.getLogger(AsyncYamlCallTreeListener.class);
+
+    // listeners with a running writer thread, drained on jvm shutdown
+    private static final Set<AsyncYamlCallTreeListener> activeListeners = ConcurrentHashMap.newKeySet();
+
+    // drained by the hook committing shared call tree files, such that their segments are complete
+    static {
+        SharedCallTreeFile.drainOnShutdown(() -> activeListeners.forEach(listener -> {
+            listener.drain();
+            listener.callTreeListener.close();
+        }));
+    }
+
+    private enum EventType {
+        REPORTED, FORK, JOIN, FIXTURE_EXIT, EXCEPTION_EXIT, ASSERTION_EXIT, DRAIN
+    }
+
+    private static class Event {
+        final EventType type;
+        final long nanoTime;
+        // null for the main line of the test
+        String branch;
+        String parentBranch;
+        SemanticUnit unit;
+        Action action;
+        String message;
+        String id;
+        Status status;
+        Map<String, String> variables;
+        Throwable throwable;
+        CountDownLatch drained;
+
+        Event(EventType type, long nanoTime) {
+            this.type = type;
+            this.nanoTime = nanoTime;
+        }
+    }
+
+    private final DefaultYamlCallTreeListener callTreeListener;
+    private final BlockingQueue<Event> queue;
+    private final int batchSize;
+    private final long flushIntervalNanos;
+
+    // guarded by this
+    private Thread writerThread;
+
+    public AsyncYamlCallTreeListener(DefaultYamlCallTreeListener callTreeListener) {
+        this(callTreeListener, DEFAULT_QUEUE_CAPACITY, DEFAULT_BATCH_SIZE, DEFAULT_FLUSH_INTERVAL_MILLIS);
+    }
+
+    /**
+     * Ctor
+     *
+     * @param callTreeListener    listener that actually writes the call tree (on the writer thread)
+     * @param queueCapacity       maximum number of events waiting to be written
+     * @param batchSize           number of events written before the output is flushed
+     * @param flushIntervalMillis maximum time written events wait for a flush
+     */
+    public AsyncYamlCallTreeListener(DefaultYamlCallTreeListener callTreeListener, int queueCapacity, int batchSize,
+            long flushIntervalMillis) {
+        this.callTreeListener = callTreeListener;
+        this.callTreeListener.autoFlush = false;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.batchSize = Math.max(1, batchSize);
+        this.flushIntervalNanos = TimeUnit.MILLISECONDS.toNanos(flushIntervalMillis);
+    }
+
+    @Override
+    public void reported(SemanticUnit unit, Action action, String message, String id, Status status,
+            Map<String, String> variables) {
+        reported(unit, action, message, id, status, variables, System.nanoTime());
+    }
+
+    @Override
+    public void reported(SemanticUnit unit, Action action, String message, String id, Status status,
+            Map<String, String> variables, long nanoTime) {
+        Event event = new Event(EventType.REPORTED, nanoTime);
+        event.unit = unit;
+        event.action = action;
+        event.message = message;
+        event.id = id;
+        event.status = status;
+        event.variables = variables;
+        enqueue(event);
+        if (unit == SemanticUnit.TEST && action == Action.LEAVE) {
+            drain();
+        }
+    }
+
+    @Override
+    public void reportedFork(String branch, String parentBranch, String parentId) {
+        Event event = new Event(EventType.FORK, System.nanoTime());
+        event.branch = branch;
+        event.parentBranch = parentBranch;
+        event.id = parentId;
+        enqueue(event);
+    }
+
+    @Override
+    public void reportedInBranch(String branch, SemanticUnit unit, Action action, String message, String id,
+            Status status, Map<String, String> variables) {
+        reportedInBranch(branch, unit, action, message, id, status, variables, System.nanoTime());
+    }
+
+    @Override
+    public void reportedInBranch(String branch, SemanticUnit unit, Action action, String message, String id,
+            Status status, Map<String, String> variables, long nanoTime) {
+        Event event = new Event(EventType.REPORTED, nanoTime);
+        event.branch = branch;
+        event.unit = unit;
+        event.action = action;
+        event.message = message;
+        event.id = id;
+        event.status = status;
+        event.variables = variables;
+        enqueue(event);
+    }
+
+    @Override
+    public void reportedJoin(String branch) {
+        Event event = new Event(EventType.JOIN, System.nanoTime());
+        event.branch = branch;
+        enqueue(event);
+    }
+
+    @Override
+    public void reportFixtureExit(FixtureException fixtureException) {
+        enqueueAndDrain(EventType.FIXTURE_EXIT, fixtureException);
+    }
+
+    @Override
+    public void reportExceptionExit(Exception exception) {
+        enqueueAndDrain(EventType.EXCEPTION_EXIT, exception);
+    }
+
+    @Override
+    public void reportAssertionExit(AssertionError assertionError) {
+        enqueueAndDrain(EventType.ASSERTION_EXIT, assertionError);
+    }
+
+    /**
+     * write and flush all events reported so far, blocking until done
+     */
+    public void drain() {
+        enqueueAndDrain(EventType.DRAIN, null);
+    }
+
+    private void enqueueAndDrain(EventType type, Throwable throwable) {
+        Event event = new Event(type, System.nanoTime());
+        event.throwable = throwable;
+        event.drained = new CountDownLatch(1);
+        enqueue(event);
+        try {
+            if (!event.drained.await(DRAIN_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                logger.warn("yaml call tree writer did not drain within {} seconds", DRAIN_TIMEOUT_SECONDS);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            logger.warn("interrupted while waiting for the yaml call tree writer to drain");
+        }
+    }
+
+    private void enqueue(Event event) {
+        try {
+            queue.put(event);
+            startWriterIfNecessary();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            logger.error("interrupted while handing event to the yaml call tree writer, event is lost");
+        }
+    }
+
+    private synchronized void startWriterIfNecessary() {
+        if (writerThread == null) {
+            writerThread = new Thread(this::writeLoop, "yaml-call-tree-writer");
+            writerThread.setDaemon(true);
+            activeListeners.add(this);
+            writerThread.start();
+        }
+    }
+
+    /**
+     * writer thread terminates if idle for one flush interval and is restarted
+     * on demand, so that listeners of finished tests do not keep threads alive
+     */
+    private synchronized boolean stopWriterIfIdle() {
+        if (queue.isEmpty()) {
+            writerThread = null;
+            activeListeners.remove(this);
+            return true;
+        }
+        return false;
+    }
+
+    private void writeLoop() {
+        List<Event> batch = new ArrayList<>(batchSize);
+        int unflushedEvents = 0;
+        long lastFlush = System.nanoTime();
+        try {
+            while (true) {
+                Event first = queue.poll(flushIntervalNanos, TimeUnit.NANOSECONDS);
+                if (first == null) {
+                    if (unflushedEvents > 0) {
+                        callTreeListener.flush();
+                        unflushedEvents = 0;
+                        lastFlush = System.nanoTime();
+                    } else if (stopWriterIfIdle()) {
+                        return;
+                    }
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, batchSize - 1);
+                for (Event event : batch) {
+                    write(event);
+                    unflushedEvents++;
+                    if (event.drained != null) {
+                        callTreeListener.flush();
+                        unflushedEvents = 0;
+                        lastFlush = System.nanoTime();
+                        event.drained.countDown();
+                    }
+                }
+                batch.clear();
+                if (unflushedEvents >= batchSize || System.nanoTime() - lastFlush >= flushIntervalNanos) {
+                    callTreeListener.flush();
+                    unflushedEvents = 0;
+                    lastFlush = System.nanoTime();
+                }
+            }
+        } catch (InterruptedException e) {
+            logger.warn("yaml call tree writer interrupted, pending events may be lost");
+            callTreeListener.flush();
+            synchronized (this) {
+                writerThread = null;
+                activeListeners.remove(this);
+            }
+        }
+    }
+
+    private void write(Event event) {
+        try {
+            switch (event.type) {
+                case REPORTED:
+                    if (event.branch != null) {
+                        callTreeListener.reportedInBranch(event.branch, event.unit, event.action, event.message,
+                                event.id, event.status, event.variables, event.nanoTime);
+                    } else {
+                        callTreeListener.reported(event.unit, event.action, event.message, event.id, event.status,
+                                event.variables, event.nanoTime);
+                    }
+                    break;
+                case FORK:
+                    callTreeListener.reportedFork(event.branch, event.parentBranch, event.id);
+                    break;
+                case JOIN:
+                    callTreeListener.reportedJoin(event.branch, event.nanoTime);
+                    break;
+                case FIXTURE_EXIT:
+                    callTreeListener.reportFixtureExit((FixtureException) event.throwable, event.nanoTime);
+                    break;
+                case EXCEPTION_EXIT:
+                    callTreeListener.reportExceptionExit((Exception) event.throwable, event.nanoTime);
+                    break;
+                case ASSERTION_EXIT:
+                    callTreeListener.reportAssertionExit((AssertionError) event.throwable, event.nanoTime);
+                    break;
+                default:
+                    // drain only
+                    break;
+            }
+        } catch (Exception e) {
+            logger.error("writing yaml call tree entry failed", e);
+        }
+    }
+
+}
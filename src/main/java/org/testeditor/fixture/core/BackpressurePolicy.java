@@ -0,0 +1,56 @@
+/*******************************************************************************
+ * Copyright (c) 2012 - 2018 Signal Iduna Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ * Signal Iduna Corporation - initial API and implementation
+ * akquinet AG
+ * itemis AG
+ *******************************************************************************/
+
+package org.testeditor.fixture.core;
+
+import java.util.Locale;
+
+/**
+ * What {@link DefaultTestRunReporter} does if listeners informed
+ * asynchronously do not keep up and its event buffer fills up. Only enters are
+ * dropped, a leave is dropped together with its enter. The test thread waits
+ * for a free slot for the other leaves and the events of the TEST itself
+ * (logging a warning each block timeout).
+ */
+public enum BackpressurePolicy {
+
+    /** wait for a free slot, drop the enter once the block timeout passed */
+    BLOCK,
+
+    /**
+     * drop enters of low ranking units first while the buffer fills up:
+     * STEP and MACRO from 3/4, COMPONENT and MACRO_LIB from 7/8,
+     * SPECIFICATION_STEP, SETUP and CLEANUP when full; block otherwise
+     */
+    DROP_LOWEST_RANK,
+
+    /**
+     * store a leave together with its enter in one slot if that was not
+     * dispatched yet (a node without children); block otherwise
+     */
+    COALESCE;
+
+    /**
+     * @return policy of the given name ("block", "drop", "coalesce"), BLOCK if
+     *         null or empty
+     * @throws IllegalArgumentException if the name is unknown
+     */
+    public static BackpressurePolicy parse(String name) {
+        if (name == null || name.trim().isEmpty()) {
+            return BLOCK;
+        }
+        String normalized = name.trim().toUpperCase(Locale.ENGLISH);
+        return "DROP".equals(normalized) ? DROP_LOWEST_RANK : valueOf(normalized);
+    }
+
+}
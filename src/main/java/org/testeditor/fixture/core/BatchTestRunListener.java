@@ -0,0 +1,138 @@
+/*******************************************************************************
+ * Copyright (c) 2012 - 2018 Signal Iduna Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ * Signal Iduna Corporation - initial API and implementation
+ * akquinet AG
+ * itemis AG
+ *******************************************************************************/
+
+package org.testeditor.fixture.core;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import org.testeditor.fixture.core.TestRunReporter.Action;
+import org.testeditor.fixture.core.TestRunReporter.SemanticUnit;
+import org.testeditor.fixture.core.TestRunReporter.Status;
+
+/**
+ * Listener processing events in bulk, e.g. writing a batch with a single
+ * system call. A reporter dispatching asynchronously (see
+ * {@link DefaultTestRunReporter}) passes all events (the listener subscribed
+ * to) dispatched in one go as a batch, after passing them to the other
+ * listeners; reporters informing listeners synchronously pass batches of a
+ * single event via {@link #reported}.
+ */
+public interface BatchTestRunListener extends TestRunListener {
+
+    /**
+     * @param events in the order reported, the list must not be kept
+     */
+    void reportedBatch(List<ReportEvent> events);
+
+    @Override
+    default void reported(SemanticUnit unit, Action action, String message, String id, Status status,
+            Map<String, String> variables) {
+        reported(unit, action, message, id, status, variables, System.nanoTime());
+    }
+
+    @Override
+    default void reported(SemanticUnit unit, Action action, String message, String id, Status status,
+            Map<String, String> variables, long nanoTime) {
+        reportedBatch(Collections.singletonList(
+                new ReportEvent(unit, action, message, id, status, variables, nanoTime)));
+    }
+
+    @Override
+    default void reportedInBranch(String branch, SemanticUnit unit, Action action, String message, String id,
+            Status status, Map<String, String> variables) {
+        reportedInBranch(branch, unit, action, message, id, status, variables, System.nanoTime());
+    }
+
+    @Override
+    default void reportedInBranch(String branch, SemanticUnit unit, Action action, String message, String id,
+            Status status, Map<String, String> variables, long nanoTime) {
+        reportedBatch(Collections.singletonList(
+                new ReportEvent(branch, unit, action, message, id, status, variables, nanoTime)));
+    }
+
+    /**
+     * @return batch listener passing each event of a batch to the given
+     *         listener
+     */
+    static BatchTestRunListener adapt(TestRunListener listener) {
+        if (listener instanceof BatchTestRunListener) {
+            return (BatchTestRunListener) listener;
+        }
+        return new BatchTestRunListener() {
+
+            @Override
+            public void reportedBatch(List<ReportEvent> events) {
+                for (ReportEvent event : events) {
+                    event.reportTo(listener);
+                }
+            }
+
+            @Override
+            public void reported(SemanticUnit unit, Action action, String message, String id, Status status,
+                    Map<String, String> variables) {
+                listener.reported(unit, action, message, id, status, variables);
+            }
+
+            @Override
+            public void reported(SemanticUnit unit, Action action, String message, String id, Status status,
+                    Map<String, String> variables, long nanoTime) {
+                listener.reported(unit, action, message, id, status, variables, nanoTime);
+            }
+
+            @Override
+            public void reportedInBranch(String branch, SemanticUnit unit, Action action, String message,
+                    String id, Status status, Map<String, String> variables) {
+                listener.reportedInBranch(branch, unit, action, message, id, status, variables);
+            }
+
+            @Override
+            public void reportedInBranch(String branch, SemanticUnit unit, Action action, String message,
+                    String id, Status status, Map<String, String> variables, long nanoTime) {
+                listener.reportedInBranch(branch, unit, action, message, id, status, variables, nanoTime);
+            }
+
+            @Override
+            public void reportedFork(String branch, String parentBranch, String parentId) {
+                listener.reportedFork(branch, parentBranch, parentId);
+            }
+
+            @Override
+            public void reportedJoin(String branch) {
+                listener.reportedJoin(branch);
+            }
+
+            @Override
+            public void reportFixtureExit(FixtureException fixtureException) {
+                listener.reportFixtureExit(fixtureException);
+            }
+
+            @Override
+            public void reportExceptionExit(Exception exception) {
+                listener.reportExceptionExit(exception);
+            }
+
+            @Override
+            public void reportAssertionExit(AssertionError assertionError) {
+                listener.reportAssertionExit(assertionError);
+            }
+
+            @Override
+            public Subscription subscription() {
+                return listener.subscription();
+            }
+        };
+    }
+
+}
@@ -0,0 +1,356 @@
+/*******************************************************************************
+ * Copyright (c) 2012 - 2018 Signal Iduna Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ * Signal Iduna Corporation - initial API and implementation
+ * akquinet AG
+ * itemis AG
+ *******************************************************************************/
+
+package org.testeditor.fixture.core;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.testeditor.fixture.core.TestRunReporter.Action;
+import org.testeditor.fixture.core.TestRunReporter.SemanticUnit;
+import org.testeditor.fixture.core.calltree.YamlEmitter;
+
+// @formatter:off
+/**
+ * Writes the test run as timeline in the Chrome trace event format, to be
+ * opened in Perfetto (ui.perfetto.dev) or chrome://tracing:
+ *
+ * <pre>
+ * [
+ * {"name":"thread_name","ph":"M","pid":4711,"tid":1,"args":{"name":"SomeTest"}},
+ * {"ph":"B","name":"SomeTest","cat":"TEST","ts":1546300800000000.000,"pid":4711,"tid":1,"args":{"id":"IDROOT"}},
+ * {"ph":"B","name":"step","cat":"STEP","ts":1546300800000012.345,"pid":4711,"tid":1,"args":{"id":"ID1"}},
+ * {"ph":"E","name":"step","cat":"STEP","ts":1546300800000045.678,"pid":4711,"tid":1,"args":{"status":"OK"}},
+ * ...
+ * </pre>
+ *
+ * Each semantic unit entered is a begin event, each one left an end event.
+ * The process is the jvm, each test and each branch forked off it (see
+ * {@link TestRunReporter#fork(String)}) gets a track of its own, named by
+ * test and branch. Timestamps are microseconds since the epoch, taken when
+ * the event was reported (see {@link ReportEvent#getNanoTime()}).
+ *
+ * Events are streamed through a {@link YamlEmitter} (whose escaping is valid
+ * json), so writing an event does not allocate. The output is flushed at the
+ * end of each test. The closing bracket of the array is omitted (as allowed by
+ * the format), such that the traces of several tests may be appended to the
+ * same file. Listeners writing to the same file share one output (closed on
+ * jvm shutdown), writing whole batches of events holding its lock, such that
+ * tests running in parallel do not interleave within an event.
+ */
+// @formatter:on
+public class ChromeTraceListener implements BatchTestRunListener, IndependentTestRunListener {
+
+    protected static final Logger logger = LoggerFactory.getLogger(ChromeTraceListener.class);
+
+    // track ids are unique within the jvm, such that the traces of all tests can be appended to one file
+    private static final AtomicLong TRACKS = new AtomicLong();
+
+    // outputs shared by all tests of the jvm, per file
+    private static final Map<Path, Output> sharedOutputs = new ConcurrentHashMap<>();
+
+    static {
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            for (Output output : sharedOutputs.values()) {
+                output.close();
+            }
+        }, "chrome-trace-shutdown"));
+    }
+
+    private final Output output;
+    private final YamlEmitter emitter;
+    private final long processId = ProcessHandle.current().pid();
+    // origin to convert nano time to microseconds since the epoch
+    private final long originNanos = System.nanoTime();
+    private final long originMicros = System.currentTimeMillis() * 1000;
+
+    private Track testTrack;
+    private final Map<String, Track> branchTracks = new HashMap<>();
+
+    /**
+     * @param outputStream the trace is written to (starting a new array)
+     */
+    public ChromeTraceListener(OutputStream outputStream) {
+        this(new Output(outputStream, false));
+    }
+
+    /**
+     * @param traceFile the trace is appended to, through the output shared by
+     *            all listeners of the jvm writing to this file
+     */
+    public ChromeTraceListener(File traceFile) throws IOException {
+        this(sharedOutput(traceFile));
+    }
+
+    private ChromeTraceListener(Output output) {
+        this.output = output;
+        this.emitter = output.emitter;
+    }
+
+    private static Output sharedOutput(File traceFile) throws IOException {
+        Path path = traceFile.getAbsoluteFile().toPath().normalize();
+        try {
+            return sharedOutputs.computeIfAbsent(path, key -> {
+                try {
+                    return new Output(new FileOutputStream(traceFile, true), traceFile.length() > 0);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    @Override
+    public void reportedBatch(List<ReportEvent> events) {
+        synchronized (output) {
+            try {
+                for (ReportEvent event : events) {
+                    write(event);
+                }
+                if (testTrack == null) {
+                    emitter.flush(); // the test was left
+                }
+            } catch (IOException e) {
+                logger.error("writing trace events failed", e);
+            }
+        }
+    }
+
+    @Override
+    public void reportedFork(String branch, String parentBranch, String parentId) {
+        Track track = new Track();
+        branchTracks.put(branch, track);
+        synchronized (output) {
+            try {
+                writeTrackName(track, branch);
+            } catch (IOException e) {
+                logger.error("writing trace event failed", e);
+            }
+        }
+    }
+
+    @Override
+    public void reportedJoin(String branch) {
+        Track track = branchTracks.remove(branch);
+        if (track != null) {
+            synchronized (output) {
+                endOpenSpans(track, "UNKNOWN", System.nanoTime());
+            }
+        }
+    }
+
+    @Override
+    public void reportFixtureExit(FixtureException fixtureException) {
+        exit("fixtureException", fixtureException.getLocalizedMessage());
+    }
+
+    @Override
+    public void reportExceptionExit(Exception exception) {
+        exit("exception", exception.getLocalizedMessage());
+    }
+
+    @Override
+    public void reportAssertionExit(AssertionError assertionError) {
+        exit("assertionError", assertionError.getLocalizedMessage());
+    }
+
+    private void write(ReportEvent event) throws IOException {
+        if (event.getUnit() == SemanticUnit.TEST && event.getAction() == Action.ENTER) {
+            branchTracks.clear();
+            testTrack = new Track();
+            writeTrackName(testTrack, event.getMessage());
+        }
+        Track track = track(event.getBranch());
+        if (track == null) {
+            return; // nothing entered
+        }
+        if (event.getAction() == Action.ENTER) {
+            startEvent(event.getMessage(), event.getUnit().name(), "B", event.getNanoTime(), track);
+            emitter.raw(",\"args\":{\"id\":");
+            emitter.quoted(event.getId() != null ? event.getId() : "");
+            emitter.raw("}}");
+            track.openSpans++;
+        } else {
+            String status = event.getStatus() != null ? event.getStatus().name() : "UNKNOWN";
+            writeEnd(event.getMessage(), event.getUnit().name(), status, event.getNanoTime(), track);
+            if (track.openSpans > 0) {
+                track.openSpans--;
+            }
+            if (event.getUnit() == SemanticUnit.TEST) {
+                endOpenSpans(track, "UNKNOWN", event.getNanoTime());
+                testTrack = null;
+            }
+        }
+    }
+
+    private Track track(String branch) {
+        if (branch != null) {
+            Track track = branchTracks.get(branch);
+            if (track != null) {
+                return track;
+            }
+        }
+        return testTrack;
+    }
+
+    /**
+     * mark the exit as instant event and end all spans open
+     */
+    private void exit(String kind, String message) {
+        long nanoTime = System.nanoTime();
+        synchronized (output) {
+            try {
+                if (testTrack != null) {
+                    startEvent(kind, "EXIT", "i", nanoTime, testTrack);
+                    emitter.raw(",\"s\":\"t\",\"args\":{\"message\":");
+                    emitter.quoted(message != null ? message : "");
+                    emitter.raw("}}");
+                    for (Track track : branchTracks.values()) {
+                        endOpenSpans(track, "ERROR", nanoTime);
+                    }
+                    endOpenSpans(testTrack, "ERROR", nanoTime);
+                }
+                branchTracks.clear();
+                testTrack = null;
+                emitter.flush();
+            } catch (IOException e) {
+                logger.error("writing trace event failed", e);
+            }
+        }
+    }
+
+    private void endOpenSpans(Track track, String status, long nanoTime) {
+        try {
+            for (; track.openSpans > 0; track.openSpans--) {
+                writeEnd(null, null, status, nanoTime, track);
+            }
+        } catch (IOException e) {
+            logger.error("writing trace event failed", e);
+        }
+    }
+
+    private void writeEnd(String name, String category, String status, long nanoTime, Track track)
+            throws IOException {
+        startEvent(name, category, "E", nanoTime, track);
+        emitter.raw(",\"args\":{\"status\":");
+        emitter.quoted(status);
+        emitter.raw("}}");
+    }
+
+    private void writeTrackName(Track track, String name) throws IOException {
+        startRecord();
+        emitter.raw("{\"name\":\"thread_name\",\"ph\":\"M\",\"pid\":");
+        emitter.number(processId);
+        emitter.raw(",\"tid\":");
+        emitter.number(track.id);
+        emitter.raw(",\"args\":{\"name\":");
+        emitter.quoted(name != null ? name : "");
+        emitter.raw("}}");
+    }
+
+    /**
+     * write the common fields of an event, leaving the object open
+     */
+    private void startEvent(String name, String category, String phase, long nanoTime, Track track)
+            throws IOException {
+        startRecord();
+        emitter.raw("{\"ph\":\"");
+        emitter.raw(phase);
+        emitter.ascii('"');
+        if (name != null) {
+            emitter.raw(",\"name\":");
+            emitter.quoted(name);
+        }
+        if (category != null) {
+            emitter.raw(",\"cat\":\"");
+            emitter.raw(category);
+            emitter.ascii('"');
+        }
+        emitter.raw(",\"ts\":");
+        writeTimestamp(nanoTime);
+        emitter.raw(",\"pid\":");
+        emitter.number(processId);
+        emitter.raw(",\"tid\":");
+        emitter.number(track.id);
+    }
+
+    private void startRecord() throws IOException {
+        if (output.arrayStarted) {
+            emitter.ascii(',');
+        } else {
+            emitter.ascii('[');
+            output.arrayStarted = true;
+        }
+        emitter.newLine();
+    }
+
+    /**
+     * microseconds since the epoch with nanosecond fraction
+     */
+    private void writeTimestamp(long nanoTime) throws IOException {
+        long nanos = nanoTime - originNanos;
+        long micros = Math.floorDiv(nanos, 1000);
+        int fraction = Math.floorMod(nanos, 1000);
+        emitter.number(originMicros + micros);
+        emitter.ascii('.');
+        emitter.ascii((char) ('0' + fraction / 100));
+        emitter.ascii((char) ('0' + fraction / 10 % 10));
+        emitter.ascii((char) ('0' + fraction % 10));
+    }
+
+    /**
+     * stream the trace is written to, guarded by its lock if shared
+     */
+    private static final class Output {
+        private final OutputStream outputStream;
+        private final YamlEmitter emitter;
+        private boolean arrayStarted;
+
+        Output(OutputStream outputStream, boolean arrayStarted) {
+            this.outputStream = outputStream;
+            this.emitter = new YamlEmitter(outputStream);
+            this.arrayStarted = arrayStarted;
+        }
+
+        synchronized void close() {
+            try {
+                emitter.flush();
+                outputStream.close();
+            } catch (IOException e) {
+                logger.error("closing trace event file failed", e);
+            }
+        }
+    }
+
+    /**
+     * track of a test or branch with the number of spans begun and not ended
+     */
+    private static final class Track {
+        private final long id = TRACKS.incrementAndGet();
+        private int openSpans;
+    }
+
+}
@@ -34,6 +34,9 @@ import org.testeditor.fixture.core.TestRunReporter.Status;
 /**
  * Default implementation of a test run logger. Logs enter and leave of TEST.
  * Logs enter (only) for SPECIFICATION, COMPONENT and STEP
+ *
+ * Units of branches (see {@link TestRunReporter#fork}) are logged prefixed
+ * with the branch, indented from the node the branch was forked off.
  */
 public class DefaultLoggingListener implements TestRunListener {
 
@@ -49,6 +52,22 @@ public class DefaultLoggingListener implements TestRunListener {
     
     protected final Deque<String> openLeaveStack = new ArrayDeque<>();
 
+    // branches forked and not joined yet, by name
+    private final Map<String, Branch> branches = new HashMap<>();
+    // prefix of the lines logged for the current branch, empty for the main line
+    private String branchPrefix = "";
+
+    private static class Branch {
+        private final Deque<String> openLeaveStack = new ArrayDeque<>();
+        private final String prefix;
+        private int indent;
+
+        Branch(String name, int indent) {
+            this.prefix = "[" + name + "] ";
+            this.indent = indent;
+        }
+    }
+
     /** copy of StringEscapeUtils.ESCAPE_JAVA, except for the unicode translation */
     public static final CharSequenceTranslator ESCAPE_JAVA;
 
@@ -66,11 +85,52 @@ public class DefaultLoggingListener implements TestRunListener {
     @Override
     public void reported(SemanticUnit unit, Action action, String message, String id, Status status,
             Map<String, String> variables) {
+        log(unit, action, message, id, status, variables, openLeaveStack);
+    }
+
+    @Override
+    public void reportedFork(String branch, String parentBranch, String parentId) {
+        Branch parent = parentBranch != null ? branches.get(parentBranch) : null;
+        branches.put(branch, new Branch(branch, parent != null ? parent.indent : currentIndent));
+        logger.trace(indentPrefix() + "@FORK:" + branch);
+    }
+
+    @Override
+    public void reportedInBranch(String branch, SemanticUnit unit, Action action, String message, String id,
+            Status status, Map<String, String> variables) {
+        Branch state = branches.get(branch);
+        if (state == null) {
+            reported(unit, action, message, id, status, variables);
+            return;
+        }
+        int mainIndent = currentIndent;
+        currentIndent = state.indent;
+        branchPrefix = state.prefix;
+        try {
+            log(unit, action, message, id, status, variables, state.openLeaveStack);
+        } finally {
+            state.indent = currentIndent;
+            currentIndent = mainIndent;
+            branchPrefix = "";
+        }
+    }
+
+    @Override
+    public void reportedJoin(String branch) {
+        Branch state = branches.remove(branch);
+        if (state != null) {
+            logPendingTechnicalLeaveMessages(state.openLeaveStack);
+            logger.trace(indentPrefix() + "@JOIN:" + branch);
+        }
+    }
+
+    private void log(SemanticUnit unit, Action action, String message, String id, Status status,
+            Map<String, String> variables, Deque<String> leaveStack) {
         if (Action.ENTER.equals(action)) {
             logTechnicalReference(unit, action, message, id);
             // don't push test leave marker, since stack unrolling is done within a test, not exiting it!
             if (!SemanticUnit.TEST.equals(unit)) {
-                openLeaveStack.push(buildTechnicalReferenceString(unit, Action.LEAVE, message, id));
+                leaveStack.push(buildTechnicalReferenceString(unit, Action.LEAVE, message, id));
             }
         }
         switch (unit) {
@@ -120,7 +180,7 @@ public class DefaultLoggingListener implements TestRunListener {
         if (Action.LEAVE.equals(action)) {
             // don't (try to) pop test leave marker, since stack unrolling is done within a test, not exiting it!
             if (!SemanticUnit.TEST.equals(unit)) {
-                openLeaveStack.pop();
+                leaveStack.pop();
             }
             logTechnicalReference(unit, action, message, id);
         }
@@ -149,7 +209,7 @@ public class DefaultLoggingListener implements TestRunListener {
     }
 
     private String indentPrefix() {
-        return StringUtils.repeat(' ', currentIndent);
+        return StringUtils.repeat(' ', currentIndent) + branchPrefix;
     }
 
     private void logUnit(String unitText, Action action, String message, String id, Status status,
@@ -158,10 +218,8 @@ public class DefaultLoggingListener implements TestRunListener {
             case ENTER:
                 logger.trace(indentPrefix() + "->{}[{}] {} [Status={}]", unitText, id, escape(message), status);
                 logger.info(indentPrefix() + escape(message));
-                for (String variable: variables.keySet()) {
-                    logger.info(indentPrefix() + "  with " + escape(variable) + " = \""
-                                + escape(variables.get(variable)) + "\"");
-                }
+                variables.forEach((variable, value) -> logger.info(indentPrefix() + "  with " + escape(variable)
+                        + " = \"" + escape(value) + "\""));
                 break;
             case LEAVE:
                 logger.trace(indentPrefix() + "<-{}[{}] {} [Status={}]", unitText, id, escape(message), status);
@@ -240,9 +298,17 @@ public class DefaultLoggingListener implements TestRunListener {
     }
 
     private void logPendingTechnicalLeaveMessages() {
-        while (!openLeaveStack.isEmpty()) {
-            logger.trace(openLeaveStack.peek());
-            openLeaveStack.pop();
+        for (Branch branch : branches.values()) {
+            logPendingTechnicalLeaveMessages(branch.openLeaveStack);
+        }
+        branches.clear();
+        logPendingTechnicalLeaveMessages(openLeaveStack);
+    }
+
+    private void logPendingTechnicalLeaveMessages(Deque<String> leaveStack) {
+        while (!leaveStack.isEmpty()) {
+            logger.trace(leaveStack.peek());
+            leaveStack.pop();
         }
     }
 
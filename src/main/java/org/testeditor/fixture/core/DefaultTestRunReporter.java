@@ -14,8 +14,19 @@
 package org.testeditor.fixture.core;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -25,6 +36,51 @@ import org.slf4j.MDC;
  * Implementation that automatically executes leave when entering equal or
  * higher rank of SemanticUnit (see
  * TestDefaultTestRunReport.testSemanticUnitLeaveMultipleLevel)
+ *
+ * Listeners are informed synchronously on the test thread, unless a ring
+ * buffer capacity is passed: events are then published into a ring buffer and
+ * listeners are informed by a dispatcher thread in the same order (see
+ * {@link ReportEventRing}), so slow listeners do not delay the test. The exit
+ * methods and leaving the test wait until all events published before are
+ * dispatched. Listeners are added and removed without waiting, from any
+ * thread: a listener added is informed of the events published afterwards, a
+ * listener removed may still be informed of the event being dispatched.
+ * Variables passed are read later on and must not be modified afterwards
+ * (those built by {@link AbstractTestCase#variables(String...)} are
+ * immutable).
+ *
+ * A dispatcher thread passes the events it finds waiting to
+ * {@link BatchTestRunListener}s as a batch, after informing the other
+ * listeners of them.
+ *
+ * If listeners do not keep up, events are dropped or coalesced according to
+ * the {@link BackpressurePolicy}. Their numbers are reported with the leave of
+ * the test (variables "droppedEvents" and "coalescedEvents").
+ *
+ * The time spent in each listener is recorded per listener class, logged at
+ * the end of each test and accumulated in the platform MBean
+ * {@value ListenerLatencies#OBJECT_NAME} (see {@link ListenerLatencyMXBean}).
+ *
+ * With a listener budget enabled (see
+ * {@link #enableListenerBudget(long, SlowListenerPolicy)}), a listener taking
+ * longer than the budget {@value #LISTENER_BUDGET_STRIKES} times in a row is
+ * demoted to a thread of its own or detached. The decision is logged and
+ * reported with the leave of the test (variable "slowListeners").
+ *
+ * With fan-out enabled (see {@link #enableFanOut(int)}), the
+ * {@link IndependentTestRunListener}s of an event are informed concurrently on
+ * a small pool, such that an event takes as long as its slowest listener
+ * rather than the sum of all. The next event is reported once all listeners
+ * are done, so each listener is still passed the events in order.
+ *
+ * Branches forked off the test (see {@link #fork(String)}) report from their
+ * own threads. While branches are open, listeners are informed by the
+ * reporting threads one at a time rather than by the dispatcher, events of
+ * branches are passed to {@link TestRunListener#reportedInBranch}. An exit
+ * joins all open branches, later events of their threads are not reported.
+ *
+ * Entering and leaving keeps the {@link ReportingContext} of the reporting
+ * thread up to date, which fixtures pass on to the threads they hand work to.
  */
 public class DefaultTestRunReporter implements TestRunReporter {
 
@@ -40,22 +96,258 @@ public class DefaultTestRunReporter implements TestRunReporter {
     private final TestRunListener logListener;
 
     // per semantic unit only one may be active
-    private final List<TestRunListener> listeners = new ArrayList<TestRunListener>();
+    // copy on write: replaced as a whole (under registryLock) on add and remove, such that dispatching iterates a
+    // snapshot without locking, and listeners may be added and removed from any thread
+    private volatile Registry registry;
+    private final Object registryLock = new Object();
+    private final boolean[] logListenerSubscribed;
+
+    private static final SemanticUnit[] UNITS = SemanticUnit.values();
+    private static final Action[] ACTIONS = Action.values();
+
+    // passed instead of the time an event was reported at, if listeners are informed while it is reported
+    private static final long REPORTED_NOW = Long.MIN_VALUE;
+    // passed instead of the sequence of an event in the ring buffer, if it is not published into it
+    private static final long NOT_PUBLISHED = Long.MAX_VALUE;
+
+    // batch listeners waiting for the end of the current batch, used by the dispatcher thread only
+    private final Map<BatchTestRunListener, List<ReportEvent>> pendingBatches = new LinkedHashMap<>();
+
+    // time spent in the listeners during the current test
+    private final ListenerLatencies latencies = new ListenerLatencies();
+    private final LatencyHistogram logListenerLatency;
+
+    public static final int LISTENER_BUDGET_STRIKES = 3;
+    public static final String SLOW_LISTENERS = "slowListeners";
+
+    // 0 if listeners may take as long as they like
+    private volatile long listenerBudgetNanos = 0;
+    private volatile SlowListenerPolicy slowListenerPolicy = SlowListenerPolicy.DEMOTE;
+    // demoted or detached listeners not reported yet, guarded by registryLock
+    private final List<String> slowListeners = new ArrayList<>();
+
+    // passed on in the reporting context of the test
+    private volatile String testRunId;
+
+    // branches forked (see fork) and not joined yet; while there are any, listeners are informed by the reporting
+    // threads one after another (holding branchLock) rather than by the dispatcher
+    private final AtomicInteger openBranches = new AtomicInteger();
+    // the branches counted by openBranches, guarded by branchLock
+    private final List<Branch> branches = new ArrayList<>();
+    private final AtomicLong forkedBranches = new AtomicLong();
+    private final Object branchLock = new Object();
+
+    // informs independent listeners concurrently, null unless fan-out is enabled
+    private volatile ExecutorService fanOutPool;
+
+    /**
+     * a registered listener with what is kept per listener
+     */
+    private static final class Registered {
+        private final TestRunListener listener;
+        private final Subscription subscription;
+        private final LatencyHistogram latency;
+        // sequence of the first published event the listener is informed of
+        private final long since;
+        // calls in a row exceeding the listener budget, accessed by the informing thread only
+        private int strikes = 0;
+
+        Registered(TestRunListener listener, Subscription subscription, LatencyHistogram latency, long since) {
+            this.listener = listener;
+            this.subscription = subscription;
+            this.latency = latency;
+            this.since = since;
+        }
+
+        boolean isInformedOf(long sequence) {
+            return sequence >= since;
+        }
+
+        boolean isRegistrationOf(TestRunListener other) {
+            return listener.equals(other) || (listener instanceof DemotedTestRunListener
+                    && ((DemotedTestRunListener) listener).getListener().equals(other));
+        }
+    }
+
+    /**
+     * immutable snapshot of the registered listeners, with the listeners
+     * subscribed to each event (see {@link TestRunListener#subscription()})
+     * precomputed
+     */
+    private static final class Registry {
+        private final Registered[] listeners;
+        private final boolean batching;
+        private final boolean fanOut;
+        // indexed by eventIndex, listeners called per event one after another
+        private final Registered[][] subscribers = new Registered[UNITS.length * ACTIONS.length][];
+        // indexed by eventIndex, listeners called per event concurrently (if fanning out)
+        private final Registered[][] independentSubscribers = new Registered[UNITS.length * ACTIONS.length][];
+        // indexed by eventIndex, listeners passed batches of events (if batching)
+        private final Registered[][] batchSubscribers = new Registered[UNITS.length * ACTIONS.length][];
+
+        Registry(Registered[] listeners, boolean batching, boolean fanOut) {
+            this.listeners = listeners;
+            this.batching = batching;
+            this.fanOut = fanOut;
+            for (SemanticUnit unit : UNITS) {
+                for (Action action : ACTIONS) {
+                    Registered[] subscribed = new Registered[listeners.length];
+                    Registered[] independentSubscribed = new Registered[listeners.length];
+                    Registered[] batchSubscribed = new Registered[listeners.length];
+                    int count = 0;
+                    int independentCount = 0;
+                    int batchCount = 0;
+                    for (Registered registered : listeners) {
+                        if (!registered.subscription.includes(unit, action)) {
+                            continue;
+                        }
+                        if (batching && registered.listener instanceof BatchTestRunListener) {
+                            batchSubscribed[batchCount++] = registered;
+                        } else if (fanOut && registered.listener instanceof IndependentTestRunListener) {
+                            independentSubscribed[independentCount++] = registered;
+                        } else {
+                            subscribed[count++] = registered;
+                        }
+                    }
+                    subscribers[eventIndex(unit, action)] = Arrays.copyOf(subscribed, count);
+                    independentSubscribers[eventIndex(unit, action)] =
+                        Arrays.copyOf(independentSubscribed, independentCount);
+                    batchSubscribers[eventIndex(unit, action)] = Arrays.copyOf(batchSubscribed, batchCount);
+                }
+            }
+        }
+
+        boolean hasSubscribers(int eventIndex) {
+            return subscribers[eventIndex].length > 0 || independentSubscribers[eventIndex].length > 0
+                    || batchSubscribers[eventIndex].length > 0;
+        }
+    }
+
+    private static int eventIndex(SemanticUnit unit, Action action) {
+        return unit.ordinal() * ACTIONS.length + action.ordinal();
+    }
+
+    private static Subscription subscription(TestRunListener listener) {
+        Subscription subscription = listener.subscription();
+        return subscription != null ? subscription : Subscription.ALL;
+    }
+
+    public static final int DEFAULT_RING_BUFFER_CAPACITY = 1024;
+    public static final long DEFAULT_BLOCK_TIMEOUT_MILLIS = 10000;
+
+    // asynchronous dispatch, null if listeners are informed on the test thread
+    private final ReportEventRing eventRing;
 
     public DefaultTestRunReporter() {
         this(new DefaultLoggingListener());
     }
     
     public DefaultTestRunReporter(TestRunListener logListener) {
+        this(logListener, 0);
+    }
+
+    /**
+     * @param ringBufferCapacity number of events that may wait for dispatching,
+     *            0 to inform listeners synchronously
+     */
+    public DefaultTestRunReporter(TestRunListener logListener, int ringBufferCapacity) {
+        this(logListener, ringBufferCapacity, BackpressurePolicy.BLOCK, DEFAULT_BLOCK_TIMEOUT_MILLIS);
+    }
+
+    /**
+     * @param ringBufferCapacity number of events that may wait for dispatching,
+     *            0 to inform listeners synchronously
+     * @param policy what to do if the ring buffer fills up
+     * @param blockTimeoutMillis maximum time the test waits for a free slot
+     *            before the event is dropped
+     */
+    public DefaultTestRunReporter(TestRunListener logListener, int ringBufferCapacity, BackpressurePolicy policy,
+            long blockTimeoutMillis) {
         this.logListener = logListener;
+        this.logListenerLatency = latencies.histogram(logListener);
+        this.logListenerSubscribed = new boolean[UNITS.length * ACTIONS.length];
+        Subscription logSubscription = subscription(logListener);
+        for (SemanticUnit unit : UNITS) {
+            for (Action action : ACTIONS) {
+                logListenerSubscribed[eventIndex(unit, action)] = logSubscription.includes(unit, action);
+            }
+        }
+        if (ringBufferCapacity > 0) {
+            this.eventRing = new ReportEventRing(ringBufferCapacity, new ReportEventRing.Dispatcher() {
+
+                @Override
+                public void dispatch(ReportEventRing.Slot slot) {
+                    DefaultTestRunReporter.this.dispatch(slot);
+                }
+
+                @Override
+                public void endOfBatch() {
+                    informBatchListeners();
+                }
+            }, policy, blockTimeoutMillis);
+        } else {
+            this.eventRing = null;
+        }
+        this.registry = new Registry(new Registered[0], eventRing != null, false);
+    }
+
+    /**
+     * demote or detach listeners taking longer than the given budget
+     * {@value #LISTENER_BUDGET_STRIKES} times in a row (per call of
+     * {@link TestRunListener#reported} or of the exit methods, batches are not
+     * limited). A call that never returns cannot be interrupted; informing
+     * listeners asynchronously protects the test from those (see
+     * {@link BackpressurePolicy}).
+     *
+     * @param budgetMillis maximum time per call, 0 to disable
+     * @param policy what to do with listeners exceeding it
+     */
+    public void enableListenerBudget(long budgetMillis, SlowListenerPolicy policy) {
+        this.slowListenerPolicy = policy;
+        this.listenerBudgetNanos = TimeUnit.MILLISECONDS.toNanos(budgetMillis);
     }
     
+    /**
+     * inform {@link IndependentTestRunListener}s of each event concurrently
+     *
+     * @param threads maximum number of threads informing listeners in addition
+     *            to the thread reporting the event
+     */
+    public void enableFanOut(int threads) {
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(threads, threads, 1, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), runnable -> {
+                    Thread thread = new Thread(runnable, "test-run-listener-fan-out");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        pool.allowCoreThreadTimeOut(true); // idle threads terminate
+        awaitDispatched();
+        synchronized (registryLock) {
+            ExecutorService previous = fanOutPool;
+            fanOutPool = pool;
+            registry = new Registry(registry.listeners, registry.batching, true);
+            if (previous != null) {
+                previous.shutdown();
+            }
+        }
+    }
+
+    /**
+     * @param testRunId run id of the test, passed on in the
+     *            {@link ReportingContext}
+     */
+    public void setTestRunId(String testRunId) {
+        this.testRunId = testRunId;
+    }
+
     @Override
     public void enter(SemanticUnit unit, String msg, String id, Status status, Map<String, String> variables) {
         if (unit == SemanticUnit.TEST) {
-            MDC.put("TestName", "TE-Test: " + msg.replaceAll("^.*\\.", ""));
+            ReportingContext.enterTest(testName(msg), testRunId, id);
+        } else {
+            ReportingContext.enterNode(null, id);
         }
-        informAllListeners(unit, Action.ENTER, msg, id, status, variables);
+        report(unit, Action.ENTER, msg, id, status, variables);
     }
 
     /**
@@ -65,58 +357,505 @@ public class DefaultTestRunReporter implements TestRunReporter {
      */
     @Override
     public void leave(SemanticUnit unit, String msg, String id, Status status, Map<String, String> variables) {
-        informAllListeners(unit, Action.LEAVE, msg, id, status, variables);
+        report(unit, Action.LEAVE, msg, id, status, variables);
 
         if (unit == SemanticUnit.TEST) {
-            MDC.remove("TestName");
+            awaitDispatched(); // the test is complete once reported
+            reportLatencies();
+            ReportingContext.leaveTest();
+        } else {
+            ReportingContext.leaveNode(id);
+        }
+    }
+
+    private static String testName(String msg) {
+        return "TE-Test: " + msg.replaceAll("^.*\\.", "");
+    }
+
+    private void report(SemanticUnit unit, Action action, String msg, String id, Status status,
+            Map<String, String> variables) {
+        int eventIndex = eventIndex(unit, action);
+        if (unit != SemanticUnit.TEST && !logListenerSubscribed[eventIndex]
+                && !registry.hasSubscribers(eventIndex)) {
+            return; // nobody is interested
+        }
+        if (eventRing != null && openBranches.get() == 0) {
+            eventRing.publish(unit, action, msg, id, status, variables);
+        } else {
+            if (unit == SemanticUnit.TEST && action == Action.LEAVE) {
+                variables = withSlowListeners(variables);
+            }
+            synchronized (branchLock) {
+                informSerialized(null, unit, action, msg, id, status, variables);
+            }
+        }
+    }
+
+    /**
+     * inform listeners on the calling thread (holding branchLock), passing
+     * batches of a single event
+     */
+    private void informSerialized(String branch, SemanticUnit unit, Action action, String msg, String id,
+            Status status, Map<String, String> variables) {
+        informAllListeners(NOT_PUBLISHED, branch, unit, action, msg, id, status, variables, REPORTED_NOW);
+        if (eventRing != null) {
+            collectBatches(NOT_PUBLISHED, branch, unit, action, msg, id, status, variables, System.nanoTime());
+            informBatchListeners();
+        }
+    }
+
+    @Override
+    public TestRunReporter fork(String parentId) {
+        return fork(null, parentId);
+    }
+
+    private TestRunReporter fork(String parentBranch, String parentId) {
+        awaitDispatched(); // listeners are informed by the reporting threads while branches are open
+        Branch forked = new Branch(parentId + "/" + forkedBranches.incrementAndGet());
+        synchronized (branchLock) {
+            openBranches.incrementAndGet();
+            branches.add(forked);
+            informOfBranch(listener -> listener.reportedFork(forked.name, parentBranch, parentId),
+                    "fork of " + forked.name);
+        }
+        return forked;
+    }
+
+    @Override
+    public void join(TestRunReporter branch) {
+        if (!(branch instanceof Branch) || ((Branch) branch).reporter() != this) {
+            logger.warn(REPORTING_PROBLEM + CONTACT_ADMIN);
+            logger.debug("Cannot join a branch not forked by this reporter.");
+            return;
+        }
+        Branch joined = (Branch) branch;
+        synchronized (branchLock) {
+            if (joined.joined) {
+                return;
+            }
+            joined.joined = true;
+            branches.remove(joined);
+            openBranches.decrementAndGet();
+            informOfBranch(listener -> listener.reportedJoin(joined.name), "join of " + joined.name);
+        }
+    }
+
+    /**
+     * mark all open branches joined, as listeners join them on an exit, such
+     * that later events of their threads are not reported (holding branchLock)
+     */
+    private void joinOpenBranches() {
+        for (Branch branch : branches) {
+            branch.joined = true;
+        }
+        branches.clear();
+        openBranches.set(0);
+    }
+
+    /**
+     * inform the log listener and all registered listeners of a fork or join
+     */
+    private void informOfBranch(Consumer<TestRunListener> informing, String description) {
+        List<TestRunListener> listeners = new ArrayList<>();
+        listeners.add(logListener);
+        for (Registered registered : registry.listeners) {
+            listeners.add(registered.listener);
+        }
+        for (TestRunListener listener : listeners) {
+            try {
+                informing.accept(listener);
+            } catch (Exception e) {
+                logger.warn(REPORTING_PROBLEM + CONTACT_ADMIN);
+                logger.debug("Listener " + listener.getClass().getName() + " threw an exception processing the "
+                        + description + ".", e);
+            }
+        }
+    }
+
+    /**
+     * reporter of a branch forked off the test, sharing the listeners of the
+     * test
+     */
+    private final class Branch implements TestRunReporter {
+        private final String name;
+        // guarded by branchLock
+        private boolean joined = false;
+
+        Branch(String name) {
+            this.name = name;
+        }
+
+        DefaultTestRunReporter reporter() {
+            return DefaultTestRunReporter.this;
+        }
+
+        @Override
+        public void enter(SemanticUnit unit, String msg, String id, Status status, Map<String, String> variables) {
+            ReportingContext.enterNode(name, id);
+            reportInBranch(this, unit, Action.ENTER, msg, id, status, variables);
+        }
+
+        @Override
+        public void leave(SemanticUnit unit, String msg, String id, Status status, Map<String, String> variables) {
+            reportInBranch(this, unit, Action.LEAVE, msg, id, status, variables);
+            ReportingContext.leaveNode(id);
+        }
+
+        @Override
+        public TestRunReporter fork(String parentId) {
+            return DefaultTestRunReporter.this.fork(name, parentId);
+        }
+
+        @Override
+        public void join(TestRunReporter branch) {
+            DefaultTestRunReporter.this.join(branch);
+        }
+
+        @Override
+        public void fixtureExit(FixtureException fixtureException) {
+            DefaultTestRunReporter.this.fixtureExit(fixtureException);
+        }
+
+        @Override
+        public void exceptionExit(Exception exception) {
+            DefaultTestRunReporter.this.exceptionExit(exception);
+        }
+
+        @Override
+        public void assertionExit(AssertionError assertionError) {
+            DefaultTestRunReporter.this.assertionExit(assertionError);
+        }
+
+        @Override
+        public void addListener(TestRunListener listener) {
+            DefaultTestRunReporter.this.addListener(listener);
+        }
+
+        @Override
+        public void removeListener(TestRunListener listener) {
+            DefaultTestRunReporter.this.removeListener(listener);
+        }
+    }
+
+    private void reportInBranch(Branch branch, SemanticUnit unit, Action action, String msg, String id,
+            Status status, Map<String, String> variables) {
+        int eventIndex = eventIndex(unit, action);
+        if (!logListenerSubscribed[eventIndex] && !registry.hasSubscribers(eventIndex)) {
+            return; // nobody is interested
+        }
+        synchronized (branchLock) {
+            if (branch.joined) {
+                logger.warn(REPORTING_PROBLEM + CONTACT_ADMIN);
+                logger.debug("Branch " + branch.name + " was joined already, event of unit='" + unit + "', action='"
+                        + action + "', msg='" + msg + "' is not reported.");
+                return;
+            }
+            informSerialized(branch.name, unit, action, msg, id, status, variables);
+        }
+    }
+
+    /**
+     * inform listeners of a published event, on the dispatcher thread
+     */
+    private void dispatch(ReportEventRing.Slot event) {
+        if (event.unit == SemanticUnit.TEST && event.action == Action.ENTER) {
+            MDC.put(ReportingContext.TEST_NAME, testName(event.message));
+        }
+        Map<String, String> variables = event.variables;
+        if (event.unit == SemanticUnit.TEST && event.action == Action.LEAVE) {
+            variables = withSlowListeners(variables);
+        }
+        informAllListeners(event.sequence, null, event.unit, event.action, event.message, event.id, event.status,
+                variables, event.nanoTime);
+        collectBatches(event.sequence, null, event.unit, event.action, event.message, event.id, event.status,
+                variables, event.nanoTime);
+        if (event.coalesced) {
+            Map<String, String> leaveVariables = event.leaveVariables;
+            if (event.unit == SemanticUnit.TEST) {
+                leaveVariables = withSlowListeners(leaveVariables);
+            }
+            informAllListeners(event.sequence, null, event.unit, Action.LEAVE, event.message, event.id,
+                    event.leaveStatus, leaveVariables, event.leaveNanoTime);
+            collectBatches(event.sequence, null, event.unit, Action.LEAVE, event.message, event.id,
+                    event.leaveStatus, leaveVariables, event.leaveNanoTime);
+        }
+        if (event.unit == SemanticUnit.TEST && (event.action == Action.LEAVE || event.coalesced)) {
+            MDC.remove(ReportingContext.TEST_NAME);
+        }
+    }
+
+    private void collectBatches(long sequence, String branch, SemanticUnit unit, Action action, String msg,
+            String id, Status status, Map<String, String> variables, long nanoTime) {
+        Registered[] batchSubscribers = registry.batchSubscribers[eventIndex(unit, action)];
+        if (batchSubscribers.length == 0) {
+            return;
+        }
+        ReportEvent event = new ReportEvent(branch, unit, action, msg, id, status, variables, nanoTime);
+        for (Registered subscriber : batchSubscribers) {
+            if (subscriber.isInformedOf(sequence)) {
+                pendingBatches.computeIfAbsent((BatchTestRunListener) subscriber.listener,
+                        key -> new ArrayList<>()).add(event);
+            }
+        }
+    }
+
+    /**
+     * pass the events collected since the last batch, on the dispatcher thread
+     */
+    private void informBatchListeners() {
+        for (Map.Entry<BatchTestRunListener, List<ReportEvent>> batch : pendingBatches.entrySet()) {
+            long started = System.nanoTime();
+            try {
+                batch.getKey().reportedBatch(batch.getValue());
+            } catch (Exception e) {
+                logger.warn(REPORTING_PROBLEM + CONTACT_ADMIN);
+                logger.debug("Listener " + batch.getKey().getClass().getName()
+                             + " threw an exception processing a batch of " + batch.getValue().size() + " events.", e);
+            }
+            latencies.histogram(batch.getKey()).record(System.nanoTime() - started);
+        }
+        pendingBatches.clear();
+    }
+
+    /**
+     * @return variables with the listeners demoted or detached since the last
+     *         leave of a test added
+     */
+    private Map<String, String> withSlowListeners(Map<String, String> variables) {
+        synchronized (registryLock) {
+            if (slowListeners.isEmpty()) {
+                return variables;
+            }
+            Map<String, String> result = variables != null ? new LinkedHashMap<>(variables) : new LinkedHashMap<>();
+            result.put(SLOW_LISTENERS, String.join(", ", slowListeners));
+            slowListeners.clear();
+            return result;
+        }
+    }
+
+    /**
+     * count calls in a row exceeding the listener budget, demote or detach the
+     * listener if there are too many
+     */
+    private void checkBudget(Registered registered, long elapsedNanos) {
+        long budgetNanos = listenerBudgetNanos;
+        if (budgetNanos <= 0 || registered.listener instanceof DemotedTestRunListener) {
+            return;
+        }
+        if (elapsedNanos <= budgetNanos) {
+            registered.strikes = 0;
+        } else if (++registered.strikes == LISTENER_BUDGET_STRIKES) {
+            demoteOrDetach(registered, slowListenerPolicy);
+        }
+    }
+
+    private void demoteOrDetach(Registered slow, SlowListenerPolicy policy) {
+        String name = slow.listener.getClass().getName();
+        synchronized (registryLock) {
+            Registry current = registry;
+            int index = Arrays.asList(current.listeners).indexOf(slow);
+            if (index < 0) {
+                return; // removed in the meantime
+            }
+            Registered[] listeners;
+            if (policy == SlowListenerPolicy.DETACH) {
+                listeners = without(current.listeners, index);
+                slowListeners.add(name + " detached");
+            } else {
+                listeners = current.listeners.clone();
+                listeners[index] = new Registered(new DemotedTestRunListener(slow.listener, this::detachDemoted),
+                        slow.subscription, slow.latency, slow.since);
+                slowListeners.add(name + " demoted");
+            }
+            registry = new Registry(listeners, current.batching, current.fanOut);
+        }
+        logger.warn("Listener " + name + " took longer than " + TimeUnit.NANOSECONDS.toMillis(listenerBudgetNanos)
+                + " ms " + LISTENER_BUDGET_STRIKES + " times in a row and is "
+                + (policy == SlowListenerPolicy.DETACH ? "detached." : "demoted to asynchronous delivery."));
+    }
+
+    /**
+     * detach a demoted listener that cannot be informed any more, called by
+     * the demoted listener
+     */
+    private void detachDemoted(DemotedTestRunListener demoted, String reason) {
+        String name = demoted.getListener().getClass().getName();
+        synchronized (registryLock) {
+            Registry current = registry;
+            for (int i = 0; i < current.listeners.length; i++) {
+                if (current.listeners[i].listener == demoted) {
+                    registry = new Registry(without(current.listeners, i), current.batching, current.fanOut);
+                    slowListeners.add(name + " detached");
+                    break;
+                }
+            }
+        }
+        logger.warn("Demoted listener " + name + " " + reason + " and is detached.");
+    }
+
+    /**
+     * log the time spent in the listeners during the test and add it to the
+     * jvm wide statistics
+     */
+    private void reportLatencies() {
+        String summary = latencies.summary();
+        if (!summary.isEmpty()) {
+            logger.info("Time spent in test run listeners: " + summary);
+        }
+        latencies.addToGlobal();
+    }
+
+    private void awaitDispatched() {
+        if (eventRing != null) {
+            eventRing.awaitDispatched();
         }
     }
 
     /**
      * make sure that all registered listeners are informed, order is not guaranteed
      */
-    private void informAllListeners(SemanticUnit unit, Action action, String msg, String id, Status status,
-            Map<String, String> variables) {
+    private void informAllListeners(long sequence, String branch, SemanticUnit unit, Action action, String msg,
+            String id, Status status, Map<String, String> variables, long nanoTime) {
         if (action == Action.ENTER) {
-            informLogListener(unit, action, msg, id, status, variables);
-            informRegisteredListeners(unit, action, msg, id, status, variables);
+            informLogListener(branch, unit, action, msg, id, status, variables, nanoTime);
+            informRegisteredListeners(sequence, branch, unit, action, msg, id, status, variables, nanoTime);
         } else {
-            informRegisteredListeners(unit, action, msg, id, status, variables);
-            informLogListener(unit, action, msg, id, status, variables);
+            informRegisteredListeners(sequence, branch, unit, action, msg, id, status, variables, nanoTime);
+            informLogListener(branch, unit, action, msg, id, status, variables, nanoTime);
         }
     }
     
-    private void informLogListener(SemanticUnit unit, Action action, String msg, String id, Status status,
-            Map<String, String> variables) {
+    private void informLogListener(String branch, SemanticUnit unit, Action action, String msg, String id,
+            Status status, Map<String, String> variables, long nanoTime) {
+        if (!logListenerSubscribed[eventIndex(unit, action)]) {
+            return;
+        }
+        long started = System.nanoTime();
         try {
-            logListener.reported(unit, action, msg, id, status, variables);
+            inform(logListener, branch, unit, action, msg, id, status, variables, nanoTime);
         } catch (Exception e) {
             logger.warn(REPORTING_PROBLEM + CONTACT_ADMIN);
             logger.debug("Log Listener " + logListener.getClass().getName() + " threw an exception processing unit='"
                     + unit + "', action='" + action + "', msg='" + msg + "'.", e);
         }
+        logListenerLatency.record(System.nanoTime() - started);
     }
     
-    private void informRegisteredListeners(SemanticUnit unit, Action action, String msg, String id, Status status,
-            Map<String, String> variables) {
-        for (TestRunListener listener : listeners) {
-            try {
-                // make sure that an exception is handled gracefully, so that
-                // other listeners are informed, too
+    private void informRegisteredListeners(long sequence, String branch, SemanticUnit unit, Action action,
+            String msg, String id, Status status, Map<String, String> variables, long nanoTime) {
+        Registry current = registry;
+        Registered[] independentSubscribers = current.independentSubscribers[eventIndex(unit, action)];
+        if (independentSubscribers.length == 0) {
+            for (Registered subscriber : current.subscribers[eventIndex(unit, action)]) {
+                informRegisteredListener(subscriber, sequence, branch, unit, action, msg, id, status, variables,
+                        nanoTime);
+            }
+            return;
+        }
+        // all but the first independent listener on the pool, the others on this thread
+        Map<String, String> context = MDC.getCopyOfContextMap();
+        Future<?>[] informed = new Future<?>[independentSubscribers.length - 1];
+        for (int i = 1; i < independentSubscribers.length; i++) {
+            Registered subscriber = independentSubscribers[i];
+            informed[i - 1] = fanOutPool.submit(() -> {
+                if (context != null) {
+                    MDC.setContextMap(context);
+                }
+                try {
+                    informRegisteredListener(subscriber, sequence, branch, unit, action, msg, id, status, variables,
+                            nanoTime);
+                } finally {
+                    MDC.clear();
+                }
+            });
+        }
+        informRegisteredListener(independentSubscribers[0], sequence, branch, unit, action, msg, id, status,
+                variables, nanoTime);
+        for (Registered subscriber : current.subscribers[eventIndex(unit, action)]) {
+            informRegisteredListener(subscriber, sequence, branch, unit, action, msg, id, status, variables,
+                    nanoTime);
+        }
+        awaitInformed(informed);
+    }
+
+    private void informRegisteredListener(Registered subscriber, long sequence, String branch, SemanticUnit unit,
+            Action action, String msg, String id, Status status, Map<String, String> variables, long nanoTime) {
+        if (!subscriber.isInformedOf(sequence)) {
+            return; // published before the listener was added
+        }
+        TestRunListener listener = subscriber.listener;
+        long started = System.nanoTime();
+        try {
+            // make sure that an exception is handled gracefully, so that
+            // other listeners are informed, too
+            inform(listener, branch, unit, action, msg, id, status, variables, nanoTime);
+        } catch (Exception e) {
+            logger.warn(REPORTING_PROBLEM + CONTACT_ADMIN);
+            logger.debug("Listener " + listener.getClass().getName()
+                         + " threw an exception processing unit='" + unit
+                         + "', action='" + action + "', msg='" + msg + "'.", e);
+        }
+        long elapsed = System.nanoTime() - started;
+        subscriber.latency.record(elapsed);
+        checkBudget(subscriber, elapsed);
+    }
+
+    /**
+     * pass an event to the listener, along with the time it was reported at
+     * if the listener is informed after the fact
+     */
+    private static void inform(TestRunListener listener, String branch, SemanticUnit unit, Action action,
+            String msg, String id, Status status, Map<String, String> variables, long nanoTime) {
+        if (nanoTime == REPORTED_NOW) {
+            if (branch != null) {
+                listener.reportedInBranch(branch, unit, action, msg, id, status, variables);
+            } else {
                 listener.reported(unit, action, msg, id, status, variables);
-            } catch (Exception e) {
-                logger.warn(REPORTING_PROBLEM + CONTACT_ADMIN);
-                logger.debug("Listener " + listener.getClass().getName()
-                             + " threw an exception processing unit='" + unit
-                             + "', action='" + action + "', msg='" + msg + "'.", e);
+            }
+        } else if (branch != null) {
+            listener.reportedInBranch(branch, unit, action, msg, id, status, variables, nanoTime);
+        } else {
+            listener.reported(unit, action, msg, id, status, variables, nanoTime);
+        }
+    }
+
+    /**
+     * wait for the listeners informed on the pool, such that each listener is
+     * passed the next event only after the current one
+     */
+    private void awaitInformed(Future<?>[] informed) {
+        boolean interrupted = false;
+        for (Future<?> future : informed) {
+            while (true) {
+                try {
+                    future.get();
+                    break;
+                } catch (InterruptedException e) {
+                    interrupted = true; // the listener must be done before the next event
+                } catch (ExecutionException e) {
+                    logger.warn(REPORTING_PROBLEM + CONTACT_ADMIN);
+                    logger.debug("Informing a listener failed.", e.getCause());
+                    break;
+                }
             }
         }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
     }
 
     @Override
     public void addListener(TestRunListener listener) {
         if (listener != null) {
-            listeners.add(listener);
+            long since = eventRing != null ? eventRing.published() : 0;
+            synchronized (registryLock) {
+                Registry current = registry;
+                int count = current.listeners.length;
+                Registered[] added = Arrays.copyOf(current.listeners, count + 1);
+                added[count] = new Registered(listener, subscription(listener), latencies.histogram(listener),
+                        since);
+                registry = new Registry(added, current.batching, current.fanOut);
+            }
         } else {
             logger.warn("Test could not setup reporting correctly." + CONTACT_ADMIN);
             logger.debug("Cannot add listener that is NULL!");
@@ -125,11 +864,40 @@ public class DefaultTestRunReporter implements TestRunReporter {
 
     @Override
     public void removeListener(TestRunListener listener) {
-        listeners.remove(listener);
+        TestRunListener removed = null;
+        synchronized (registryLock) {
+            Registry current = registry;
+            for (int i = 0; i < current.listeners.length; i++) {
+                if (current.listeners[i].isRegistrationOf(listener)) {
+                    registry = new Registry(without(current.listeners, i), current.batching, current.fanOut);
+                    removed = current.listeners[i].listener;
+                    break;
+                }
+            }
+        }
+        if (removed instanceof DemotedTestRunListener) {
+            ((DemotedTestRunListener) removed).close(); // not holding the lock while the listener catches up
+        }
+    }
+
+    private static <T> T[] without(T[] array, int index) {
+        T[] result = Arrays.copyOf(array, array.length - 1);
+        System.arraycopy(array, index + 1, result, index, array.length - index - 1);
+        return result;
     }
 
     @Override
     public void fixtureExit(FixtureException fixtureException) {
+        awaitDispatched();
+        synchronized (branchLock) { // branch threads inform the same listeners
+            informOfFixtureExit(fixtureException);
+            joinOpenBranches();
+        }
+        latencies.addToGlobal();
+    }
+
+    private void informOfFixtureExit(FixtureException fixtureException) {
+        long logStarted = System.nanoTime();
         try {
             logListener.reportFixtureExit(fixtureException); // logListener is always reported to first!
         } catch (Exception e) {
@@ -138,7 +906,10 @@ public class DefaultTestRunReporter implements TestRunReporter {
                     "Log listener '" + logListener.getClass().getName() + "' threw an exception reporting fixture exit",
                     e);
         }
-        for (TestRunListener listener : listeners) {
+        logListenerLatency.record(System.nanoTime() - logStarted);
+        for (Registered registered : registry.listeners) {
+            TestRunListener listener = registered.listener;
+            long started = System.nanoTime();
             try {
                 // make sure that an exception is handled gracefully, so that
                 // other listeners are informed, too
@@ -149,18 +920,34 @@ public class DefaultTestRunReporter implements TestRunReporter {
                         "Listener '" + listener.getClass().getName() + "' threw an exception reporting fixture exit",
                         e);
             }
+            long elapsed = System.nanoTime() - started;
+            registered.latency.record(elapsed);
+            checkBudget(registered, elapsed);
         }
     }
 
     @Override
     public void exceptionExit(Exception exception) {
+        awaitDispatched();
+        synchronized (branchLock) { // branch threads inform the same listeners
+            informOfExceptionExit(exception);
+            joinOpenBranches();
+        }
+        latencies.addToGlobal();
+    }
+
+    private void informOfExceptionExit(Exception exception) {
+        long logStarted = System.nanoTime();
         try {
             logListener.reportExceptionExit(exception); // logListener is always reported to first!
         } catch (Exception e) {
             logger.warn("Log listener '" + logListener.getClass().getName()
                     + "' threw an exception reporting exception exit", e);
         }
-        for (TestRunListener listener : listeners) {
+        logListenerLatency.record(System.nanoTime() - logStarted);
+        for (Registered registered : registry.listeners) {
+            TestRunListener listener = registered.listener;
+            long started = System.nanoTime();
             try {
                 // make sure that an exception is handled gracefully, so that
                 // other listeners are informed, too
@@ -171,18 +958,34 @@ public class DefaultTestRunReporter implements TestRunReporter {
                         "Listener '" + listener.getClass().getName() + "' threw an exception reporting exception exit",
                         e);
             }
+            long elapsed = System.nanoTime() - started;
+            registered.latency.record(elapsed);
+            checkBudget(registered, elapsed);
         }
     }
 
     @Override
     public void assertionExit(AssertionError assertionError) {
+        awaitDispatched();
+        synchronized (branchLock) { // branch threads inform the same listeners
+            informOfAssertionExit(assertionError);
+            joinOpenBranches();
+        }
+        latencies.addToGlobal();
+    }
+
+    private void informOfAssertionExit(AssertionError assertionError) {
+        long logStarted = System.nanoTime();
         try {
             logListener.reportAssertionExit(assertionError); // logListener is always reported to first!
         } catch (Exception e) {
             logger.warn("Log listener '" + logListener.getClass().getName()
                     + "' threw an exception reporting assertion exit", e);
         }
-        for (TestRunListener listener : listeners) {
+        logListenerLatency.record(System.nanoTime() - logStarted);
+        for (Registered registered : registry.listeners) {
+            TestRunListener listener = registered.listener;
+            long started = System.nanoTime();
             try {
                 // make sure that an exception is handled gracefully, so that
                 // other listeners are informed, too
@@ -192,6 +995,9 @@ public class DefaultTestRunReporter implements TestRunReporter {
                         "Listener '" + listener.getClass().getName() + "' threw an exception reporting assertion exit",
                         e);
             }
+            long elapsed = System.nanoTime() - started;
+            registered.latency.record(elapsed);
+            checkBudget(registered, elapsed);
         }
     }
 
@@ -15,24 +15,42 @@ package org.testeditor.fixture.core;
 
 import java.io.IOException;
 import java.io.OutputStream;
-import java.io.OutputStreamWriter;
-import java.nio.charset.StandardCharsets;
 import java.time.Instant;
 import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Deque;
+import java.util.EnumMap;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.PriorityQueue;
 
-import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.text.StringEscapeUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.testeditor.fixture.core.TestRunReporter.Action;
 import org.testeditor.fixture.core.TestRunReporter.SemanticUnit;
 import org.testeditor.fixture.core.TestRunReporter.Status;
-
-public class DefaultYamlCallTreeListener implements TestRunListener {
+import org.testeditor.fixture.core.calltree.CallTreeBuffer;
+import org.testeditor.fixture.core.calltree.CallTreeSerializer;
+import org.testeditor.fixture.core.calltree.VariablesEncoder;
+import org.testeditor.fixture.core.calltree.YamlCallTreeSerializer;
+
+/**
+ * Listener writing the call tree of the test run. The tree is written as yaml
+ * by default, other formats can be plugged in by passing a
+ * {@link CallTreeSerializer}.
+ *
+ * The subtree of a branch running concurrently to the rest of the test (see
+ * {@link org.testeditor.fixture.core.TestRunReporter#fork}) is kept in memory
+ * until the branch is joined, and then written as a whole as children of the
+ * node the branch was forked off, its top nodes having the attribute "branch".
+ * Branches are expected to be joined while the node they were forked off is
+ * the innermost node entered.
+ */
+public class DefaultYamlCallTreeListener implements IndependentTestRunListener {
 
     protected static final Logger logger = LoggerFactory.getLogger(DefaultYamlCallTreeListener.class);
 
@@ -45,17 +63,41 @@ public class DefaultYamlCallTreeListener implements TestRunListener {
      *     and is no longer associated with a fixed indentation level
      */
     // @formatter:on
-    public static final int YAML_INDENTATION = 2;
+    public static final int YAML_INDENTATION = YamlCallTreeSerializer.YAML_INDENTATION;
 
+    // all nodes ever entered, unless in streaming mode
     protected Map<String, Node> callTreeNodeMap = new HashMap<>();
     protected String testCaseSource;
     protected String testRunId;
     protected String commitId;
-    protected OutputStreamWriter outputStreamWriter;
+    protected CallTreeSerializer serializer;
     private int currentIndentation = 0;
+
+    // flush after each node, the asynchronous writer (see AsyncYamlCallTreeListener) flushes batches instead
+    boolean autoFlush = true;
     
     private Deque<Node> enteredNodes = new ArrayDeque<>();
 
+    // branches forked and not joined yet, by name
+    private final Map<String, Branch> branches = new LinkedHashMap<>();
+    // branch whose events are processed, null for the main line of the test
+    private String currentBranch = null;
+
+    // streaming mode: nodes are retired when left, only entered nodes (and the test node) are retained
+    private final boolean streaming;
+    private Node testNode;
+
+    public static final int DEFAULT_SLOWEST_NODES = 10;
+    private static final SemanticUnit[] SLOWEST_UNITS = { SemanticUnit.STEP, SemanticUnit.COMPONENT,
+        SemanticUnit.MACRO };
+
+    // durations are written if enabled, slowest nodes are listed per unit when the test is left
+    private boolean timings = false;
+    private Map<SemanticUnit, SlowestNodes> slowestNodes = new EnumMap<>(SemanticUnit.class);
+
+    // variables are written as references and deltas if enabled
+    private VariablesEncoder variablesEncoder = null;
+
     protected static class Node {
         public SemanticUnit unit;
         public String message;
@@ -64,6 +106,14 @@ public class DefaultYamlCallTreeListener implements TestRunListener {
         public long nanoTimeLeft;
         public Status status;
         public int parentIndentation;
+        // entered node this node is a child of (until left), null for the test
+        public Node parent;
+        // sum of the durations of the children left so far
+        public long childrenDuration;
+        // pre variables (until left), if post variables are written as delta
+        public Map<String, String> preVariables;
+        // branch this node is a top node of, null if none
+        public String branch;
 
         public Node(SemanticUnit unit, String message, String id) {
             this.unit = unit;
@@ -72,18 +122,110 @@ public class DefaultYamlCallTreeListener implements TestRunListener {
         }
 
         public void enterNode(int parentIndentation, Status status) {
+            enterNode(parentIndentation, status, System.nanoTime());
+        }
+
+        public void enterNode(int parentIndentation, Status status, long nanoTime) {
             this.parentIndentation = parentIndentation;
-            this.nanoTimeEntered = System.nanoTime();
+            this.nanoTimeEntered = nanoTime;
             this.status = status;
         }
 
         public void leaveNode(Status status) {
-            this.nanoTimeLeft = System.nanoTime();
+            leaveNode(status, System.nanoTime());
+        }
+
+        public void leaveNode(Status status, long nanoTime) {
+            this.nanoTimeLeft = nanoTime;
             this.status = status;
         }
 
     }
 
+    /**
+     * state of a branch while events of other branches (or the main line) are
+     * processed: its subtree is buffered until the branch is joined
+     */
+    private static class Branch {
+        private final String parentBranch;
+        private final CallTreeBuffer buffer = new CallTreeBuffer();
+        private Deque<Node> enteredNodes = new ArrayDeque<>();
+        private int currentIndentation;
+
+        Branch(String parentBranch, int currentIndentation) {
+            this.parentBranch = parentBranch;
+            this.currentIndentation = currentIndentation;
+        }
+    }
+
+    /**
+     * duration of a node (in nanoseconds), ordered by total duration
+     */
+    private static class NodeDuration implements Comparable<NodeDuration> {
+        private final String id;
+        private final String message;
+        private final long duration;
+        private final long selfDuration;
+
+        NodeDuration(Node node, long duration, long selfDuration) {
+            this.id = node.id;
+            this.message = node.message;
+            this.duration = duration;
+            this.selfDuration = selfDuration;
+        }
+
+        @Override
+        public int compareTo(NodeDuration other) {
+            return Long.compare(duration, other.duration);
+        }
+    }
+
+    /**
+     * keeps the slowest nodes seen in a heap of bounded size, the fastest of
+     * them on top
+     */
+    private static class SlowestNodes {
+        private final int size;
+        private final PriorityQueue<NodeDuration> heap;
+
+        SlowestNodes(int size) {
+            this.size = size;
+            this.heap = new PriorityQueue<>(size);
+        }
+
+        void add(Node node, long duration, long selfDuration) {
+            if (heap.size() < size) {
+                heap.add(new NodeDuration(node, duration, selfDuration));
+            } else if (duration > heap.peek().duration) {
+                heap.poll();
+                heap.add(new NodeDuration(node, duration, selfDuration));
+            }
+        }
+
+        void clear() {
+            heap.clear();
+        }
+
+        /**
+         * @return slowest nodes, slowest first, each as map of id, message,
+         *         duration and selfDuration
+         */
+        ArrayList<Object> toList() {
+            List<NodeDuration> sorted = new ArrayList<>(heap);
+            sorted.sort(Collections.reverseOrder());
+            ArrayList<Object> result = new ArrayList<>(sorted.size());
+            for (NodeDuration nodeDuration : sorted) {
+                Map<String, Object> entry = new LinkedHashMap<>();
+                entry.put("id", nodeDuration.id);
+                entry.put("message", nodeDuration.message);
+                entry.put("duration", nodeDuration.duration);
+                entry.put("selfDuration", nodeDuration.selfDuration);
+                result.add(entry);
+            }
+            return result;
+        }
+    }
+
     /**
      * Ctor
      *
@@ -94,10 +236,77 @@ public class DefaultYamlCallTreeListener implements TestRunListener {
      */
     public DefaultYamlCallTreeListener(OutputStream outputStream, String testCaseSource, String testRunId,
             String commitId) {
-        this.outputStreamWriter = new OutputStreamWriter(outputStream, StandardCharsets.UTF_8);
+        this(outputStream, testCaseSource, testRunId, commitId, false);
+    }
+
+    /**
+     * Ctor
+     *
+     * @param outputStream   where yaml is written to
+     * @param testCaseSource file/resource path identifying this test within the
+     *                       repo
+     * @param commitId       repo commit id identifying this test version
+     * @param streaming      if true, node state is retired as soon as the node is
+     *                       left and {@link #callTreeNodeMap} stays empty. The
+     *                       memory retained is then bounded by the depth of the
+     *                       call tree (one node per currently entered level),
+     *                       independent of the number of nodes written, which
+     *                       keeps long running (e.g. soak) tests from growing the
+     *                       heap. Leaving a node that is no longer entered is
+     *                       reported as leaving an unknown node.
+     */
+    public DefaultYamlCallTreeListener(OutputStream outputStream, String testCaseSource, String testRunId,
+            String commitId, boolean streaming) {
+        this(new YamlCallTreeSerializer(outputStream), testCaseSource, testRunId, commitId, streaming);
+    }
+
+    /**
+     * Ctor
+     *
+     * @param serializer     writing the call tree in the desired format
+     * @param testCaseSource file/resource path identifying this test within the
+     *                       repo
+     * @param commitId       repo commit id identifying this test version
+     * @param streaming      retire node state as soon as the node is left (see
+     *                       above)
+     */
+    public DefaultYamlCallTreeListener(CallTreeSerializer serializer, String testCaseSource, String testRunId,
+            String commitId, boolean streaming) {
+        this.serializer = serializer;
         this.testCaseSource = testCaseSource;
         this.testRunId = testRunId;
         this.commitId = commitId;
+        this.streaming = streaming;
+    }
+
+    /**
+     * write variables compactly: variables written before in the same test run
+     * are written as reference, post variables as delta to the pre variables
+     * (see {@link VariablesEncoder}). Variables passed are expected not to
+     * change after being reported.
+     */
+    public void enableVariableDeltas() {
+        variablesEncoder = new VariablesEncoder();
+    }
+
+    /**
+     * write the duration and self duration (duration minus the duration of the
+     * children) in nanoseconds as attributes of each node left, and list the
+     * slowest steps, components and macros as attribute 'slowest' of the test,
+     * when it is left. Both are computed as the nodes are left, without
+     * retaining them.
+     *
+     * @param slowestNodesListed number of slowest nodes listed per unit, 0 for
+     *                           none
+     */
+    public void enableTimings(int slowestNodesListed) {
+        timings = true;
+        slowestNodes.clear();
+        if (slowestNodesListed > 0) {
+            for (SemanticUnit unit : SLOWEST_UNITS) {
+                slowestNodes.put(unit, new SlowestNodes(slowestNodesListed));
+            }
+        }
     }
 
     // @formatter:off
@@ -134,50 +343,163 @@ public class DefaultYamlCallTreeListener implements TestRunListener {
     @Override
     public void reported(SemanticUnit unit, Action action, String message, String id, Status status,
             Map<String, String> variables) {
+        reported(unit, action, message, id, status, variables, System.nanoTime());
+    }
+
+    /**
+     * report an action that took place at the given time (as taken from {@link System#nanoTime()}), which
+     * allows writing the call tree after the fact (e.g. on a background thread).
+     */
+    @Override
+    public void reported(SemanticUnit unit, Action action, String message, String id, Status status,
+            Map<String, String> variables, long nanoTime) {
         switch (unit) {
             case TEST:
-                writeTestNode(action, message, id, status, variables);
+                writeTestNode(action, message, id, status, variables, nanoTime);
                 break;
             default:
-                writeNode(unit, action, message, id, status, variables);
+                writeNode(unit, action, message, id, status, variables, nanoTime);
                 break;
         }
     }
 
+    @Override
+    public void reportedFork(String branch, String parentBranch, String parentId) {
+        Branch parent = parentBranch != null ? branches.get(parentBranch) : null;
+        inBranch(parentBranch, parent, () -> {
+            Node parentNode = enteredNode(parentId);
+            int indentation = parentNode != null ? parentNode.parentIndentation + YAML_INDENTATION : currentIndentation;
+            branches.put(branch, new Branch(parent != null ? parentBranch : null, indentation));
+        });
+    }
+
+    @Override
+    public void reportedInBranch(String branch, SemanticUnit unit, Action action, String message, String id,
+            Status status, Map<String, String> variables) {
+        reportedInBranch(branch, unit, action, message, id, status, variables, System.nanoTime());
+    }
+
+    @Override
+    public void reportedInBranch(String branch, SemanticUnit unit, Action action, String message, String id,
+            Status status, Map<String, String> variables, long nanoTime) {
+        Branch state = branches.get(branch);
+        inBranch(state != null ? branch : null, state,
+                () -> reported(unit, action, message, id, status, variables, nanoTime));
+    }
+
+    @Override
+    public void reportedJoin(String branch) {
+        reportedJoin(branch, System.nanoTime());
+    }
+
+    void reportedJoin(String branch, long nanoTime) {
+        Branch state = branches.remove(branch);
+        if (state == null) {
+            return;
+        }
+        inBranch(branch, state, () -> writeOpenNodeLeaves(Status.UNKNOWN, nanoTime));
+        Branch parent = state.parentBranch != null ? branches.get(state.parentBranch) : null;
+        try {
+            state.buffer.replay(parent != null ? parent.buffer : serializer);
+        } catch (IOException e) {
+            logger.error("writing call tree branch failed", e);
+        }
+        autoFlush();
+    }
+
+    /**
+     * process events of the given branch: nodes are entered on its stack and
+     * written to its buffer
+     */
+    private void inBranch(String branch, Branch state, Runnable processing) {
+        if (state == null) {
+            processing.run();
+            return;
+        }
+        CallTreeSerializer mainSerializer = serializer;
+        Deque<Node> mainEnteredNodes = enteredNodes;
+        int mainIndentation = currentIndentation;
+        String mainBranch = currentBranch;
+        VariablesEncoder mainVariablesEncoder = variablesEncoder;
+        serializer = state.buffer;
+        // variables of branches are written in full, references might precede their definition otherwise
+        variablesEncoder = null;
+        enteredNodes = state.enteredNodes;
+        currentIndentation = state.currentIndentation;
+        currentBranch = branch;
+        try {
+            processing.run();
+        } finally {
+            state.currentIndentation = currentIndentation;
+            serializer = mainSerializer;
+            enteredNodes = mainEnteredNodes;
+            currentIndentation = mainIndentation;
+            currentBranch = mainBranch;
+            variablesEncoder = mainVariablesEncoder;
+        }
+    }
+
+    /**
+     * write the branches not joined yet, e.g. when the test ends by an
+     * exception, the branches forked last first
+     */
+    private void joinOpenBranches(long nanoTime) {
+        List<String> open = new ArrayList<>(branches.keySet());
+        Collections.reverse(open);
+        for (String branch : open) {
+            reportedJoin(branch, nanoTime);
+        }
+    }
+
     @Override
     public void reportFixtureExit(FixtureException fixtureException) {
+        reportFixtureExit(fixtureException, System.nanoTime());
+    }
+
+    void reportFixtureExit(FixtureException fixtureException, long nanoTime) {
+        joinOpenBranches(nanoTime);
         Map<String, Object> keyValueStore = new HashMap<>(fixtureException.getKeyValueStore());
         keyValueStore.put("fixtureExceptionMessage", fixtureException.getLocalizedMessage());
-        dispatchingWrite("fixtureException", keyValueStore);
-        writeOpenNodeLeaves(Status.ERROR);
+        writeAttribute("fixtureException", keyValueStore);
+        writeOpenNodeLeaves(Status.ERROR, nanoTime);
         currentIndentation = 2 * YAML_INDENTATION; // subsequent logging is done at test-run level
         flush();
     }
 
     @Override
     public void reportExceptionExit(Exception exception) {
-        dispatchingWrite("exception", exception.getLocalizedMessage());
-        writeOpenNodeLeaves(Status.ERROR);
+        reportExceptionExit(exception, System.nanoTime());
+    }
+
+    void reportExceptionExit(Exception exception, long nanoTime) {
+        joinOpenBranches(nanoTime);
+        writeAttribute("exception", exception.getLocalizedMessage());
+        writeOpenNodeLeaves(Status.ERROR, nanoTime);
         currentIndentation = 2 * YAML_INDENTATION;
         flush();
     }
 
     @Override
     public void reportAssertionExit(AssertionError assertionError) {
-        dispatchingWrite("assertionError", assertionError.getLocalizedMessage());
-        writeOpenNodeLeaves(Status.ERROR);
+        reportAssertionExit(assertionError, System.nanoTime());
+    }
+
+    void reportAssertionExit(AssertionError assertionError, long nanoTime) {
+        joinOpenBranches(nanoTime);
+        writeAttribute("assertionError", assertionError.getLocalizedMessage());
+        writeOpenNodeLeaves(Status.ERROR, nanoTime);
         currentIndentation = 2 * YAML_INDENTATION;
         flush();
     }
 
     private void writeNode(SemanticUnit unit, Action action, String message, String id, Status status,
-            Map<String, String> variables) {
+            Map<String, String> variables, long nanoTime) {
         switch (action) {
             case ENTER:
-                enterNode(unit, message, id, status, variables);
+                enterNode(unit, message, id, status, variables, nanoTime);
                 break;
             case LEAVE:
-                leaveNode(id, status, variables);
+                leaveNode(id, status, variables, nanoTime);
                 break;
             default:
                 // do nothing
@@ -185,18 +507,32 @@ public class DefaultYamlCallTreeListener implements TestRunListener {
         }
     }
 
-    private void enterNode(SemanticUnit unit, String message, String id, Status status, Map<String, String> variables) {
+    private void enterNode(SemanticUnit unit, String message, String id, Status status, Map<String, String> variables,
+            long nanoTime) {
         Node node = new Node(unit, message, id);
-        node.enterNode(currentIndentation, status);
-        callTreeNodeMap.put(id, node);
-        writePrefixedString("-", "node", unit.toString());
+        node.enterNode(currentIndentation, status, nanoTime);
+        if (variablesEncoder != null) {
+            variables = variablesEncoder.encode(variables);
+            node.preVariables = variablesEncoder.lastEncoded();
+        }
+        if (!streaming) {
+            callTreeNodeMap.put(id, node);
+        }
+        if (nodeKeptOnStack(node) && enteredNodes.isEmpty() && currentBranch != null) {
+            node.branch = currentBranch; // runs concurrently to its parent, not counted as its child duration
+        } else if (nodeKeptOnStack(node)) {
+            node.parent = enteredNodes.isEmpty() ? testNode : enteredNodes.peek();
+        } else {
+            testNode = node;
+            startSlowestNodes();
+        }
+        try {
+            serializer.writeEnter(currentIndentation, unit, message, id, nanoTime, variables);
+        } catch (IOException e) {
+            logger.error("writing call tree node failed", e);
+        }
         increaseIndentation();
-        writeString("message", node.message);
-        writeString("id", node.id);
-        writeString("enter", Long.toString(node.nanoTimeEntered));
-        writeVariables("pre", variables);
-        writeString("children");
-        flush();
+        autoFlush();
         if (nodeKeptOnStack(node)) {
             enteredNodes.push(node);
         }
@@ -210,14 +546,10 @@ public class DefaultYamlCallTreeListener implements TestRunListener {
         currentIndentation -= YAML_INDENTATION;
     }
 
-    private void writeVariables(String prefix, Map<String, String> variables) {
-        dispatchingWrite(prefix + "Variables", variables);
-    }
-    
-    private void leaveNodePredatingThisFromStack(String id) {
+    private void leaveNodePredatingThisFromStack(String id, long nanoTime) {
         while (!enteredNodes.isEmpty() && !id.equals(enteredNodes.peek().id)) {
             Node intermediateLeave = enteredNodes.peek();
-            writeLeavingNode(intermediateLeave, Status.UNKNOWN, null);
+            writeLeavingNode(intermediateLeave, Status.UNKNOWN, null, nanoTime);
             enteredNodes.pop();
         }
     }
@@ -228,13 +560,33 @@ public class DefaultYamlCallTreeListener implements TestRunListener {
         return !SemanticUnit.TEST.equals(node.unit);
     }
     
-    private void leaveNode(String id, Status status, Map<String, String> variables) {
-        Node node = callTreeNodeMap.get(id);
+    private Node enteredNode(String id) {
+        if (!streaming) {
+            return callTreeNodeMap.get(id);
+        }
+        for (Node node : enteredNodes) {
+            if (id.equals(node.id)) {
+                return node;
+            }
+        }
+        if (testNode != null && id.equals(testNode.id)) {
+            return testNode;
+        }
+        return null;
+    }
+
+    private void leaveNode(String id, Status status, Map<String, String> variables, long nanoTime) {
+        Node node = enteredNode(id);
         if (node != null) {
-            leaveNodePredatingThisFromStack(id);
-            writeLeavingNode(node, status, variables);
+            leaveNodePredatingThisFromStack(id, nanoTime);
+            writeLeavingNode(node, status, variables, nanoTime);
             if (nodeKeptOnStack(node)) {
                 enteredNodes.pop();
+            } else {
+                if (node == testNode) {
+                    testNode = null;
+                }
+                endTestRun();
             }
         } else {
             logger.error("Left unknown node with ID '" + StringEscapeUtils.escapeJava(id) + "'");
@@ -242,161 +594,127 @@ public class DefaultYamlCallTreeListener implements TestRunListener {
         decreaseIndentation();
     }
     
-    private void writeLeavingNode(Node node, Status status, Map<String, String> variables) {
-        node.leaveNode(status);
+    private void writeLeavingNode(Node node, Status status, Map<String, String> variables, long nanoTime) {
+        node.leaveNode(status, nanoTime);
         currentIndentation = node.parentIndentation;
         increaseIndentation();
-        writeString("leave", Long.toString(node.nanoTimeLeft));
-        writeString("status", status.toString());
-        writeVariables("post", variables);
-        flush();
+        if (variablesEncoder != null) {
+            variables = variablesEncoder.encodeDelta(node.preVariables, variables);
+            node.preVariables = null;
+        }
+        try {
+            serializer.writeLeave(currentIndentation, nanoTime, status, variables);
+        } catch (IOException e) {
+            logger.error("writing call tree node leave failed", e);
+        }
+        if (node.branch != null) {
+            writeAttribute("branch", node.branch);
+        }
+        long duration = nanoTime - node.nanoTimeEntered;
+        long selfDuration = duration - node.childrenDuration;
+        if (node.parent != null) {
+            node.parent.childrenDuration += duration;
+            node.parent = null;
+        }
+        if (timings) {
+            writeAttribute("duration", duration);
+            writeAttribute("selfDuration", selfDuration);
+            SlowestNodes slowestOfUnit = slowestNodes.get(node.unit);
+            if (slowestOfUnit != null) {
+                slowestOfUnit.add(node, duration, selfDuration);
+            }
+            if (!nodeKeptOnStack(node)) {
+                writeSlowestNodes();
+            }
+        }
+        autoFlush();
+    }
+
+    private void startSlowestNodes() {
+        slowestNodes.values().forEach(SlowestNodes::clear);
+    }
+
+    private void writeSlowestNodes() {
+        if (slowestNodes.isEmpty()) {
+            return;
+        }
+        Map<String, Object> slowest = new LinkedHashMap<>();
+        slowestNodes.forEach((unit, slowestOfUnit) -> slowest.put(unit.name(), slowestOfUnit.toList()));
+        writeAttribute("slowest", slowest);
     }
 
-    private void writeTestNode(Action action, String message, String id, Status status, Map<String, String> variables) {
+    private void writeTestNode(Action action, String message, String id, Status status, Map<String, String> variables,
+            long nanoTime) {
         try {
             switch (action) {
                 case ENTER:
-                    writePrefixedString("-", "source", testCaseSource);
+                    branches.clear();
+                    serializer.writeTestRun(currentIndentation, testCaseSource, testRunId, commitId,
+                            Instant.now().minusNanos(System.nanoTime() - nanoTime).toString());
                     increaseIndentation();
-                    writeString("testRunId", testRunId);
-                    writeString("commitId", commitId);
-                    writeString("started", Instant.now().toString());
-                    writeString("children");
-                    enterNode(SemanticUnit.TEST, message, id, status, variables);
+                    if (variablesEncoder != null) {
+                        variablesEncoder.startTestRun();
+                    }
+                    enterNode(SemanticUnit.TEST, message, id, status, variables, nanoTime);
                     break;
                 case LEAVE:
-                    leaveNode(id, status, variables);
+                    leaveNode(id, status, variables, nanoTime);
                     break;
                 default:
                     // do nothing
                     break;
             }
         } catch (Exception e) {
-            logger.error("writing yaml call tree entry failed", e);
+            logger.error("writing call tree entry failed", e);
         }
     }
 
-    private void writeMap(Map<String, Object> keyValue) {
-        keyValue.keySet().stream().forEach(key -> {
-            dispatchingWrite(key, keyValue.get(key));
-        });
-    }
-
-    private void writeArray(ArrayList<Object> array) {
-        array.stream().forEach(value -> {
-            dispatchingWrite("-", value);
-        });
-    }
-
-    private void writeNumber(Number number) {
+    private void writeAttribute(String key, Object value) {
         try {
-            outputStreamWriter.write(number.toString());
-        } catch (Exception e) {
-            logger.error("writing yaml number failed", e);
-        }
-    }
-
-    private void writeAttributePrefixed(String prefix, String attribute) {
-        try {
-            outputStreamWriter.write(StringUtils.repeat(' ', currentIndentation));
-            if ((prefix != null) && (!prefix.isEmpty())) {
-                outputStreamWriter.write(prefix + " ");
-            }
-            if (!attribute.equals("-")) {
-                String escapedAttribute = StringEscapeUtils.escapeJava(attribute);
-                outputStreamWriter.write("\"" + escapedAttribute + "\":");
-            } else {
-                outputStreamWriter.write(attribute);
-            }
+            serializer.writeAttribute(currentIndentation, key, value);
         } catch (IOException e) {
-            logger.error("writing prefixed attribute", e);
-        }
-    }
-
-    @SuppressWarnings("unchecked")
-    private void dispatchingWritePrefixed(String prefix, String attribute, Object object) {
-        writeAttributePrefixed(prefix, attribute);
-        if (object instanceof ArrayList) {
-            writeNewLine();
-            increaseIndentation();
-            writeArray((ArrayList<Object>) object);
-            decreaseIndentation();
-        } else if (object instanceof Map) {
-            writeNewLine();
-            increaseIndentation();
-            writeMap((Map<String, Object>) object);
-            decreaseIndentation();
-        } else if (object instanceof String) {
-            writeSpace();
-            writeStringObject((String) object);
-            writeNewLine();
-        } else if (object instanceof Number) {
-            writeSpace();
-            writeNumber((Number) object);
-            writeNewLine();
-        } else if (object != null) {
-            writeSpace();
-            writeStringObject(object.toString());
-            writeNewLine();
-        } else {
-            writeNewLine();
+            logger.error("writing call tree attribute failed", e);
         }
     }
 
-    private void dispatchingWrite(String attribute, Object object) {
-        dispatchingWritePrefixed("", attribute, object);
-    }
-
-    private void writeStringObject(String string) {
+    private void endTestRun() {
         try {
-            if (string != null) {
-                String escapedValue = StringEscapeUtils.escapeJava(string);
-                outputStreamWriter.write("\"" + escapedValue + "\"");
-            }
+            serializer.endTestRun();
         } catch (IOException e) {
-            logger.error("writing string object failed", e);
+            logger.error("ending call tree test run failed", e);
         }
+        close();
     }
 
-    private void writePrefixedString(String prefix, String attribute, String value) {
-        dispatchingWritePrefixed(prefix, attribute, value);
-    }
-
-    private void writeString(String attribute) {
-        writeString(attribute, null);
-    }
-
-    private void writeString(String attribute, String value) {
-        dispatchingWrite(attribute, value);
-    }
-
-    private void writeNewLine() {
+    /**
+     * release the resources of the serializer (see
+     * {@link CallTreeSerializer#close()}), done when the test is left
+     */
+    public void close() {
         try {
-            outputStreamWriter.write("\n");
+            serializer.close();
         } catch (IOException e) {
-            logger.error("writing new line failed", e);
+            logger.error("closing call tree serializer failed", e);
         }
     }
 
-    private void writeSpace() {
+    void flush() {
         try {
-            outputStreamWriter.write(" ");
+            serializer.flush();
         } catch (IOException e) {
-            logger.error("writing space failed", e);
+            logger.error("flushing call tree entry failed", e);
         }
     }
 
-    private void flush() {
-        try {
-            outputStreamWriter.flush();
-        } catch (IOException e) {
-            logger.error("flushing yaml call tree entry failed", e);
+    private void autoFlush() {
+        if (autoFlush) {
+            flush();
         }
     }
 
-    private void writeOpenNodeLeaves(Status status) {
+    private void writeOpenNodeLeaves(Status status, long nanoTime) {
         enteredNodes.forEach((node) -> {
-            writeLeavingNode(node, status, null);
+            writeLeavingNode(node, status, null, nanoTime);
         });
         enteredNodes.clear();
     }
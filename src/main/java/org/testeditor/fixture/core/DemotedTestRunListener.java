@@ -0,0 +1,275 @@
+/*******************************************************************************
+ * Copyright (c) 2012 - 2018 Signal Iduna Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ * Signal Iduna Corporation - initial API and implementation
+ * akquinet AG
+ * itemis AG
+ *******************************************************************************/
+
+package org.testeditor.fixture.core;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.testeditor.fixture.core.TestRunReporter.Action;
+import org.testeditor.fixture.core.TestRunReporter.SemanticUnit;
+import org.testeditor.fixture.core.TestRunReporter.Status;
+
+/**
+ * Informs a listener on a thread of its own, such that the test does not wait
+ * for it while running. The events queued are passed on before the test is
+ * left, before any of the exit methods returns and on JVM shutdown; the thread
+ * terminates then. If the listener does not keep up and its queue is full, it
+ * is detached as a whole rather than passed an incomplete call tree. Used by
+ * {@link DefaultTestRunReporter} for listeners that exceeded their time
+ * budget.
+ *
+ * Variable maps passed are read later on and must not be modified by the
+ * caller afterwards.
+ */
+final class DemotedTestRunListener implements TestRunListener {
+
+    public static final int QUEUE_CAPACITY = 1024;
+
+    // maximum time waited for the listener to catch up
+    private static final long DRAIN_TIMEOUT_SECONDS = 30;
+
+    protected static final Logger logger = LoggerFactory.getLogger(DemotedTestRunListener.class);
+
+    // listeners with a running thread, drained on jvm shutdown
+    private static final Set<DemotedTestRunListener> activeListeners = ConcurrentHashMap.newKeySet();
+
+    static {
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            activeListeners.forEach(DemotedTestRunListener::drain);
+        }, "demoted-listener-shutdown"));
+    }
+
+    /**
+     * marks the events queued before as passed on
+     */
+    private static final class Drain implements Runnable {
+        private final CountDownLatch drained = new CountDownLatch(1);
+
+        @Override
+        public void run() {
+            drained.countDown();
+        }
+    }
+
+    private final TestRunListener listener;
+    private final BiConsumer<DemotedTestRunListener, String> detach;
+    private final BlockingQueue<Runnable> queue;
+
+    // guarded by this, detached is read by the thread without locking
+    private Thread thread;
+    private volatile boolean detached;
+
+    DemotedTestRunListener(TestRunListener listener, BiConsumer<DemotedTestRunListener, String> detach) {
+        this(listener, detach, QUEUE_CAPACITY);
+    }
+
+    /**
+     * @param detach called with this and the reason if the listener has to be
+     *            detached, at most once
+     */
+    DemotedTestRunListener(TestRunListener listener, BiConsumer<DemotedTestRunListener, String> detach,
+            int queueCapacity) {
+        this.listener = listener;
+        this.detach = detach;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+    }
+
+    /**
+     * @return the listener informed
+     */
+    TestRunListener getListener() {
+        return listener;
+    }
+
+    @Override
+    public void reported(SemanticUnit unit, Action action, String message, String id, Status status,
+            Map<String, String> variables) {
+        reported(unit, action, message, id, status, variables, System.nanoTime());
+    }
+
+    @Override
+    public void reported(SemanticUnit unit, Action action, String message, String id, Status status,
+            Map<String, String> variables, long nanoTime) {
+        enqueue(() -> listener.reported(unit, action, message, id, status, variables, nanoTime));
+        if (unit == SemanticUnit.TEST && action == Action.LEAVE) {
+            drain();
+        }
+    }
+
+    @Override
+    public void reportedInBranch(String branch, SemanticUnit unit, Action action, String message, String id,
+            Status status, Map<String, String> variables) {
+        reportedInBranch(branch, unit, action, message, id, status, variables, System.nanoTime());
+    }
+
+    @Override
+    public void reportedInBranch(String branch, SemanticUnit unit, Action action, String message, String id,
+            Status status, Map<String, String> variables, long nanoTime) {
+        enqueue(() -> listener.reportedInBranch(branch, unit, action, message, id, status, variables, nanoTime));
+    }
+
+    @Override
+    public void reportedFork(String branch, String parentBranch, String parentId) {
+        enqueue(() -> listener.reportedFork(branch, parentBranch, parentId));
+    }
+
+    @Override
+    public void reportedJoin(String branch) {
+        enqueue(() -> listener.reportedJoin(branch));
+    }
+
+    @Override
+    public void reportFixtureExit(FixtureException fixtureException) {
+        enqueue(() -> listener.reportFixtureExit(fixtureException));
+        drain();
+    }
+
+    @Override
+    public void reportExceptionExit(Exception exception) {
+        enqueue(() -> listener.reportExceptionExit(exception));
+        drain();
+    }
+
+    @Override
+    public void reportAssertionExit(AssertionError assertionError) {
+        enqueue(() -> listener.reportAssertionExit(assertionError));
+        drain();
+    }
+
+    @Override
+    public Subscription subscription() {
+        return listener.subscription();
+    }
+
+    /**
+     * pass the events queued to the listener and stop informing it
+     */
+    void close() {
+        drain();
+        detached = true;
+    }
+
+    /**
+     * pass all events queued so far to the listener and let the thread
+     * terminate, blocking until done
+     */
+    void drain() {
+        synchronized (this) {
+            if (thread == null) {
+                return; // nothing queued
+            }
+        }
+        Drain drain = new Drain();
+        if (!enqueue(drain)) {
+            return;
+        }
+        try {
+            if (!drain.drained.await(DRAIN_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                detach("did not catch up within " + DRAIN_TIMEOUT_SECONDS + " seconds");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            logger.warn("interrupted while waiting for demoted listener " + listener.getClass().getName()
+                    + " to catch up");
+        }
+    }
+
+    /**
+     * @return false if the listener is detached (now or before)
+     */
+    private boolean enqueue(Runnable event) {
+        synchronized (this) {
+            if (detached) {
+                return false;
+            }
+            if (queue.offer(event)) {
+                startIfNecessary();
+                return true;
+            }
+        }
+        detach("does not keep up with the test (" + queue.size() + " events queued)");
+        return false;
+    }
+
+    private void detach(String reason) {
+        synchronized (this) {
+            if (detached) {
+                return;
+            }
+            detached = true; // the thread skips the events still queued
+        }
+        detach.accept(this, reason);
+    }
+
+    private void startIfNecessary() {
+        if (thread == null) {
+            thread = new Thread(this::informLoop, "demoted-listener-" + listener.getClass().getSimpleName());
+            thread.setDaemon(true);
+            activeListeners.add(this);
+            thread.start();
+        }
+    }
+
+    /**
+     * thread terminates once it passed on a drain and nothing is queued after
+     * it, or once it skipped all events queued after detaching
+     */
+    private synchronized boolean stopIfDone(boolean drained) {
+        if (queue.isEmpty() && (drained || detached)) {
+            thread = null;
+            activeListeners.remove(this);
+            return true;
+        }
+        return false;
+    }
+
+    private void informLoop() {
+        try {
+            while (true) {
+                Runnable event = queue.take();
+                boolean drained = event instanceof Drain;
+                if (drained || !detached) {
+                    inform(event);
+                }
+                if (stopIfDone(drained)) {
+                    return;
+                }
+            }
+        } catch (InterruptedException e) {
+            logger.warn("demoted listener " + listener.getClass().getName() + " interrupted, events are lost");
+            synchronized (this) {
+                thread = null;
+                activeListeners.remove(this);
+            }
+        }
+    }
+
+    private void inform(Runnable event) {
+        try {
+            event.run();
+        } catch (Exception e) {
+            logger.warn("Test could not report correctly.");
+            logger.debug("Demoted listener " + listener.getClass().getName() + " threw an exception.", e);
+        }
+    }
+
+}
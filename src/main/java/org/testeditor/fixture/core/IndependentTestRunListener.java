@@ -0,0 +1,26 @@
+/*******************************************************************************
+ * Copyright (c) 2012 - 2018 Signal Iduna Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ * Signal Iduna Corporation - initial API and implementation
+ * akquinet AG
+ * itemis AG
+ *******************************************************************************/
+
+package org.testeditor.fixture.core;
+
+/**
+ * Listener that does not depend on other listeners being informed before or
+ * after it. A reporter with fan-out enabled (see
+ * {@link DefaultTestRunReporter#enableFanOut(int)}) informs independent
+ * listeners of an event concurrently to each other, possibly on different
+ * threads for different events; each listener is passed the events one after
+ * another in the order reported.
+ */
+public interface IndependentTestRunListener extends TestRunListener {
+
+}
@@ -0,0 +1,99 @@
+/*******************************************************************************
+ * Copyright (c) 2012 - 2018 Signal Iduna Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ * Signal Iduna Corporation - initial API and implementation
+ * akquinet AG
+ * itemis AG
+ *******************************************************************************/
+
+package org.testeditor.fixture.core;
+
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.stream.Collectors;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Time spent in listeners per listener class. Each
+ * {@link DefaultTestRunReporter} records into its own instance, which is
+ * added to the jvm wide instance (registered as platform MBean) at the end of
+ * each test.
+ */
+public class ListenerLatencies implements ListenerLatencyMXBean {
+
+    public static final String OBJECT_NAME = "org.testeditor.fixture.core:type=ListenerLatencies";
+
+    protected static final Logger logger = LoggerFactory.getLogger(ListenerLatencies.class);
+
+    private static final ListenerLatencies global = new ListenerLatencies();
+
+    static {
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(global, new ObjectName(OBJECT_NAME));
+        } catch (JMException | RuntimeException e) {
+            logger.warn("registering listener latency MBean failed", e);
+        }
+    }
+
+    // sorted by class name for a stable summary
+    private final Map<String, LatencyHistogram> histograms = new ConcurrentSkipListMap<>();
+
+    /**
+     * @return instance accumulating the latencies of all tests completed
+     */
+    public static ListenerLatencies global() {
+        return global;
+    }
+
+    /**
+     * @return histogram for listeners of the class of the given one
+     */
+    LatencyHistogram histogram(TestRunListener listener) {
+        return histograms.computeIfAbsent(listener.getClass().getName(), key -> new LatencyHistogram());
+    }
+
+    /**
+     * @return summary line of the listeners called at least once
+     */
+    String summary() {
+        return histograms.entrySet().stream().filter(entry -> entry.getValue().getCount() > 0)
+                .map(entry -> new ListenerLatency(entry.getKey(), entry.getValue()).toString())
+                .collect(Collectors.joining("; "));
+    }
+
+    /**
+     * add the latencies to the jvm wide instance and start over
+     */
+    void addToGlobal() {
+        for (Map.Entry<String, LatencyHistogram> entry : histograms.entrySet()) {
+            if (entry.getValue().getCount() > 0) {
+                global.histograms.computeIfAbsent(entry.getKey(), key -> new LatencyHistogram())
+                        .add(entry.getValue());
+                entry.getValue().reset();
+            }
+        }
+    }
+
+    @Override
+    public ListenerLatency[] getListenerLatencies() {
+        return histograms.entrySet().stream().map(entry -> new ListenerLatency(entry.getKey(), entry.getValue()))
+                .toArray(ListenerLatency[]::new);
+    }
+
+    @Override
+    public void reset() {
+        histograms.values().forEach(LatencyHistogram::reset);
+    }
+
+}
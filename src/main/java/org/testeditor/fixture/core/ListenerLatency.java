@@ -0,0 +1,83 @@
+/*******************************************************************************
+ * Copyright (c) 2012 - 2018 Signal Iduna Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ * Signal Iduna Corporation - initial API and implementation
+ * akquinet AG
+ * itemis AG
+ *******************************************************************************/
+
+package org.testeditor.fixture.core;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time spent in the listeners of a class, as exposed by
+ * {@link ListenerLatencyMXBean}.
+ */
+public class ListenerLatency {
+
+    private final String listener;
+    private final long count;
+    private final long totalNanos;
+    private final long maxNanos;
+    private final long p50Nanos;
+    private final long p90Nanos;
+    private final long p99Nanos;
+
+    ListenerLatency(String listener, LatencyHistogram histogram) {
+        this.listener = listener;
+        this.count = histogram.getCount();
+        this.totalNanos = histogram.getTotalNanos();
+        this.maxNanos = histogram.getMaxNanos();
+        this.p50Nanos = histogram.getPercentileNanos(50);
+        this.p90Nanos = histogram.getPercentileNanos(90);
+        this.p99Nanos = histogram.getPercentileNanos(99);
+    }
+
+    /**
+     * @return class name of the listeners
+     */
+    public String getListener() {
+        return listener;
+    }
+
+    /**
+     * @return number of calls
+     */
+    public long getCount() {
+        return count;
+    }
+
+    public long getTotalNanos() {
+        return totalNanos;
+    }
+
+    public long getMaxNanos() {
+        return maxNanos;
+    }
+
+    public long getP50Nanos() {
+        return p50Nanos;
+    }
+
+    public long getP90Nanos() {
+        return p90Nanos;
+    }
+
+    public long getP99Nanos() {
+        return p99Nanos;
+    }
+
+    @Override
+    public String toString() {
+        return listener + " calls=" + count + " total=" + TimeUnit.NANOSECONDS.toMillis(totalNanos) + "ms p50="
+                + TimeUnit.NANOSECONDS.toMicros(p50Nanos) + "us p99=" + TimeUnit.NANOSECONDS.toMicros(p99Nanos)
+                + "us max=" + TimeUnit.NANOSECONDS.toMicros(maxNanos) + "us";
+    }
+
+}
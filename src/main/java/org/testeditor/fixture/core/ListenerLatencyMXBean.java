@@ -0,0 +1,27 @@
+/*******************************************************************************
+ * Copyright (c) 2012 - 2018 Signal Iduna Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ * Signal Iduna Corporation - initial API and implementation
+ * akquinet AG
+ * itemis AG
+ *******************************************************************************/
+
+package org.testeditor.fixture.core;
+
+/**
+ * Time spent in test run listeners per listener class, accumulated over all
+ * tests completed in this jvm (see {@link ListenerLatencies}). Registered as
+ * platform MBean {@value ListenerLatencies#OBJECT_NAME}.
+ */
+public interface ListenerLatencyMXBean {
+
+    ListenerLatency[] getListenerLatencies();
+
+    void reset();
+
+}
@@ -0,0 +1,65 @@
+/*******************************************************************************
+ * Copyright (c) 2012 - 2018 Signal Iduna Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ * Signal Iduna Corporation - initial API and implementation
+ * akquinet AG
+ * itemis AG
+ *******************************************************************************/
+
+package org.testeditor.fixture.core;
+
+import java.util.Map;
+
+import org.testeditor.fixture.core.TestRunReporter.SemanticUnit;
+import org.testeditor.fixture.core.TestRunReporter.Status;
+
+/**
+ * Span of a call tree node, from its enter to its leave, as handed from the
+ * {@link OtlpSpanListener} to the {@link OtlpSpanExporter}. Encoding is left
+ * to the exporter thread, variables are kept by reference (they are not
+ * modified once reported).
+ */
+final class OtlpSpan {
+
+    final String traceId;
+    final long spanId;
+    // 0 for the root span
+    final long parentSpanId;
+    final String name;
+    final SemanticUnit unit;
+    final String id;
+    final String branch;
+    final long startEpochNanos;
+    final Map<String, String> preVariables;
+
+    long endEpochNanos;
+    Status status;
+    String statusMessage;
+    Map<String, String> postVariables;
+
+    OtlpSpan(String traceId, long spanId, long parentSpanId, String name, SemanticUnit unit, String id,
+            String branch, long startEpochNanos, Map<String, String> preVariables) {
+        this.traceId = traceId;
+        this.spanId = spanId;
+        this.parentSpanId = parentSpanId;
+        this.name = name;
+        this.unit = unit;
+        this.id = id;
+        this.branch = branch;
+        this.startEpochNanos = startEpochNanos;
+        this.preVariables = preVariables;
+    }
+
+    void end(long endEpochNanos, Status status, String statusMessage, Map<String, String> postVariables) {
+        this.endEpochNanos = endEpochNanos;
+        this.status = status;
+        this.statusMessage = statusMessage;
+        this.postVariables = postVariables;
+    }
+
+}
@@ -0,0 +1,422 @@
+/*******************************************************************************
+ * Copyright (c) 2012 - 2018 Signal Iduna Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ * Signal Iduna Corporation - initial API and implementation
+ * akquinet AG
+ * itemis AG
+ *******************************************************************************/
+
+package org.testeditor.fixture.core;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.testeditor.fixture.core.TestRunReporter.Status;
+import org.testeditor.fixture.core.calltree.YamlEmitter;
+
+// @formatter:off
+/**
+ * Exports the spans of {@link OtlpSpanListener}s as OTLP/JSON trace export
+ * requests:
+ *
+ * <pre>
+ * {"resourceSpans":[{"resource":{"attributes":[{"key":"service.name","value":{"stringValue":"..."}}]},
+ *  "scopeSpans":[{"scope":{"name":"org.testeditor.fixture.core"},"spans":[
+ *   {"traceId":"...","spanId":"...","parentSpanId":"...","name":"...","kind":1,
+ *    "startTimeUnixNano":"...","endTimeUnixNano":"...","attributes":[...],"status":{"code":1}},
+ *   ...]}]}]}
+ * </pre>
+ *
+ * Spans are queued in a bounded queue and exported in batches by a daemon
+ * thread, once a batch is full, the export interval elapsed since its first
+ * span or a test ended. Queuing never blocks: spans not fitting into the queue
+ * are dropped (and counted, see {@link #getDroppedSpans()}). The target is a
+ * file (one request per line, as read by the otlpjsonfile receiver of the
+ * OpenTelemetry collector) or an OTLP/HTTP endpoint, e.g.
+ * http://localhost:4318/v1/traces.
+ *
+ * Several listeners (e.g. one per test) may share one exporter (see
+ * {@link #forFile(File)} and {@link #forEndpoint(URL)}).
+ */
+// @formatter:on
+public class OtlpSpanExporter implements AutoCloseable {
+
+    public static final int DEFAULT_QUEUE_CAPACITY = 2048;
+    public static final int DEFAULT_BATCH_SIZE = 512;
+    public static final long DEFAULT_EXPORT_INTERVAL_MILLIS = 1000;
+    public static final int ENDPOINT_TIMEOUT_MILLIS = 5000;
+
+    public static final int SPAN_KIND_INTERNAL = 1;
+    public static final int STATUS_CODE_UNSET = 0;
+    public static final int STATUS_CODE_OK = 1;
+    public static final int STATUS_CODE_ERROR = 2;
+
+    public static final String SERVICE_NAME = "testeditor";
+
+    protected static final Logger logger = LoggerFactory.getLogger(OtlpSpanExporter.class);
+
+    // exporters shared by all tests of the jvm, per target
+    private static final Map<String, OtlpSpanExporter> shared = new ConcurrentHashMap<>();
+
+    static {
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            for (OtlpSpanExporter exporter : shared.values()) {
+                exporter.close();
+            }
+        }, "otlp-span-exporter-shutdown"));
+    }
+
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    /**
+     * receiver of the encoded export requests, called by the exporter thread
+     * only
+     */
+    public interface Target {
+        void export(byte[] request, int length) throws IOException;
+    }
+
+    private final Target target;
+    private final String serviceName;
+    private final int batchSize;
+    private final long exportIntervalNanos;
+    // spans and export requests
+    private final BlockingQueue<Object> queue;
+    private final Thread thread;
+    private volatile boolean closed = false;
+
+    private final AtomicLong droppedSpans = new AtomicLong();
+    private final AtomicLong exportedSpans = new AtomicLong();
+    private final AtomicLong failedSpans = new AtomicLong();
+
+    // used by the exporter thread only
+    private final ByteArrayOutputStream request = new ByteArrayOutputStream(64 * 1024);
+    private final YamlEmitter emitter = new YamlEmitter(request);
+
+    public OtlpSpanExporter(Target target, String serviceName) {
+        this(target, serviceName, DEFAULT_QUEUE_CAPACITY, DEFAULT_BATCH_SIZE, DEFAULT_EXPORT_INTERVAL_MILLIS);
+    }
+
+    public OtlpSpanExporter(Target target, String serviceName, int queueCapacity, int batchSize,
+            long exportIntervalMillis) {
+        this.target = target;
+        this.serviceName = serviceName;
+        this.batchSize = batchSize;
+        this.exportIntervalNanos = TimeUnit.MILLISECONDS.toNanos(exportIntervalMillis);
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.thread = new Thread(this::exportLoop, "otlp-span-exporter");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * @return exporter to the given file, shared within the jvm and closed on
+     *         its shutdown
+     */
+    public static OtlpSpanExporter forFile(File file) {
+        return shared.computeIfAbsent("file:" + file.getAbsolutePath(),
+                key -> new OtlpSpanExporter(file(file), SERVICE_NAME));
+    }
+
+    /**
+     * @return exporter to the given OTLP/HTTP endpoint, shared within the jvm
+     *         and closed on its shutdown
+     */
+    public static OtlpSpanExporter forEndpoint(URL url) {
+        return shared.computeIfAbsent("url:" + url, key -> new OtlpSpanExporter(endpoint(url), SERVICE_NAME));
+    }
+
+    /**
+     * @return target appending each request as a line to the given file
+     */
+    public static Target file(File file) {
+        return (request, length) -> {
+            try (OutputStream outputStream = new FileOutputStream(file, true)) {
+                outputStream.write(request, 0, length);
+                outputStream.write('\n');
+            }
+        };
+    }
+
+    /**
+     * @return target posting each request to the given OTLP/HTTP endpoint
+     */
+    public static Target endpoint(URL url) {
+        return (request, length) -> {
+            HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+            connection.setConnectTimeout(ENDPOINT_TIMEOUT_MILLIS);
+            connection.setReadTimeout(ENDPOINT_TIMEOUT_MILLIS);
+            connection.setRequestMethod("POST");
+            connection.setRequestProperty("Content-Type", "application/json");
+            connection.setDoOutput(true);
+            connection.setFixedLengthStreamingMode(length);
+            try (OutputStream outputStream = connection.getOutputStream()) {
+                outputStream.write(request, 0, length);
+            }
+            int responseCode = connection.getResponseCode();
+            InputStream response = responseCode < 300 ? connection.getInputStream() : connection.getErrorStream();
+            if (response != null) {
+                try (InputStream inputStream = response) {
+                    inputStream.readAllBytes(); // allows the connection to be reused
+                }
+            }
+            if (responseCode < 200 || responseCode >= 300) {
+                throw new IOException("OTLP endpoint " + url + " responded with " + responseCode);
+            }
+        };
+    }
+
+    /**
+     * queue a span to be exported, without blocking
+     *
+     * @return false if the span was dropped
+     */
+    boolean offer(OtlpSpan span) {
+        if (closed || !queue.offer(span)) {
+            if (droppedSpans.getAndIncrement() == 0) {
+                logger.warn("OTLP span export does not keep up, dropping spans.");
+            }
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * export the spans queued so far without waiting for the batch to fill up
+     * (without blocking)
+     */
+    public void exportSoon() {
+        queue.offer(new ExportRequest());
+    }
+
+    /**
+     * export the spans queued so far and wait until they are exported
+     *
+     * @return false if the timeout elapsed before
+     */
+    public boolean flush(long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        ExportRequest exportRequest = new ExportRequest();
+        if (!queue.offer(exportRequest, timeout, unit)) {
+            return false;
+        }
+        return exportRequest.exported.await(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+    }
+
+    public long getDroppedSpans() {
+        return droppedSpans.get();
+    }
+
+    public long getExportedSpans() {
+        return exportedSpans.get();
+    }
+
+    /**
+     * @return number of spans whose export failed
+     */
+    public long getFailedSpans() {
+        return failedSpans.get();
+    }
+
+    /**
+     * export the spans queued (waiting for at most the endpoint timeout) and
+     * stop the exporter thread
+     */
+    @Override
+    public void close() {
+        try {
+            if (!flush(ENDPOINT_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)) {
+                logger.warn("OTLP span export did not complete in time, spans queued are lost.");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        closed = true;
+        thread.interrupt();
+    }
+
+    private void exportLoop() {
+        List<OtlpSpan> batch = new ArrayList<>(batchSize);
+        List<ExportRequest> exportRequests = new ArrayList<>();
+        try {
+            while (!closed) {
+                Object next = queue.take();
+                long deadline = System.nanoTime() + exportIntervalNanos;
+                while (next != null) {
+                    if (next instanceof ExportRequest) {
+                        exportRequests.add((ExportRequest) next);
+                        break;
+                    }
+                    batch.add((OtlpSpan) next);
+                    if (batch.size() >= batchSize) {
+                        break;
+                    }
+                    next = queue.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+                }
+                export(batch);
+                batch.clear();
+                for (ExportRequest exportRequest : exportRequests) {
+                    exportRequest.exported.countDown();
+                }
+                exportRequests.clear();
+            }
+        } catch (InterruptedException e) {
+            // closed
+        }
+    }
+
+    private void export(List<OtlpSpan> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        try {
+            request.reset();
+            writeRequest(batch);
+            emitter.flush();
+            target.export(request.toByteArray(), request.size());
+            exportedSpans.addAndGet(batch.size());
+        } catch (IOException | RuntimeException e) {
+            failedSpans.addAndGet(batch.size());
+            logger.warn("Exporting " + batch.size() + " OTLP spans failed.", e);
+        }
+    }
+
+    private void writeRequest(List<OtlpSpan> batch) throws IOException {
+        emitter.raw("{\"resourceSpans\":[{\"resource\":{\"attributes\":[");
+        writeAttribute("service.name", serviceName, true);
+        emitter.raw("]},\"scopeSpans\":[{\"scope\":{\"name\":\"org.testeditor.fixture.core\"},\"spans\":[");
+        for (int i = 0; i < batch.size(); i++) {
+            if (i > 0) {
+                emitter.ascii(',');
+            }
+            writeSpan(batch.get(i));
+        }
+        emitter.raw("]}]}]}");
+    }
+
+    private void writeSpan(OtlpSpan span) throws IOException {
+        emitter.raw("{\"traceId\":");
+        emitter.quoted(span.traceId);
+        emitter.raw(",\"spanId\":");
+        writeHex(span.spanId);
+        if (span.parentSpanId != 0) {
+            emitter.raw(",\"parentSpanId\":");
+            writeHex(span.parentSpanId);
+        }
+        emitter.raw(",\"name\":");
+        emitter.quoted(span.name != null ? span.name : "");
+        emitter.raw(",\"kind\":");
+        emitter.number(SPAN_KIND_INTERNAL);
+        emitter.raw(",\"startTimeUnixNano\":");
+        emitter.quoted(span.startEpochNanos);
+        emitter.raw(",\"endTimeUnixNano\":");
+        emitter.quoted(span.endEpochNanos);
+        emitter.raw(",\"attributes\":[");
+        writeAttribute("testeditor.unit", span.unit.name(), true);
+        writeAttribute("testeditor.id", span.id, false);
+        writeAttribute("testeditor.branch", span.branch, false);
+        writeAttribute("testeditor.status", span.status != null ? span.status.name() : null, false);
+        writeVariables("testeditor.pre.", span.preVariables);
+        writeVariables("testeditor.post.", span.postVariables);
+        emitter.raw("],\"status\":{\"code\":");
+        emitter.number(statusCode(span.status));
+        if (span.statusMessage != null) {
+            emitter.raw(",\"message\":");
+            emitter.quoted(span.statusMessage);
+        }
+        emitter.raw("}}");
+    }
+
+    private static int statusCode(Status status) {
+        if (status == Status.OK) {
+            return STATUS_CODE_OK;
+        } else if (status == Status.ERROR || status == Status.ABORTED) {
+            return STATUS_CODE_ERROR;
+        }
+        return STATUS_CODE_UNSET;
+    }
+
+    private void writeVariables(String prefix, Map<String, String> variables) throws IOException {
+        if (variables == null) {
+            return;
+        }
+        if (variables instanceof Variables) {
+            Variables indexed = (Variables) variables;
+            for (int i = 0; i < indexed.size(); i++) {
+                writeVariable(prefix, indexed.key(i), indexed.value(i));
+            }
+        } else {
+            for (Map.Entry<String, String> variable : variables.entrySet()) {
+                writeVariable(prefix, variable.getKey(), variable.getValue());
+            }
+        }
+    }
+
+    private void writeVariable(String prefix, String key, String value) throws IOException {
+        emitter.raw(",{\"key\":\"");
+        emitter.escaped(prefix);
+        emitter.escaped(key);
+        emitter.raw("\",\"value\":{\"stringValue\":");
+        emitter.quoted(value != null ? value : "");
+        emitter.raw("}}");
+    }
+
+    /**
+     * write a single attribute (the first one without leading comma), nothing
+     * if the value is null
+     */
+    private void writeAttribute(String key, String value, boolean first) throws IOException {
+        if (value == null) {
+            return;
+        }
+        if (!first) {
+            emitter.ascii(',');
+        }
+        emitter.raw("{\"key\":");
+        emitter.quoted(key);
+        emitter.raw(",\"value\":{\"stringValue\":");
+        emitter.quoted(value);
+        emitter.raw("}}");
+    }
+
+    /**
+     * write id as quoted 16 digit lowercase hex string
+     */
+    private void writeHex(long value) throws IOException {
+        emitter.ascii('"');
+        for (int shift = 60; shift >= 0; shift -= 4) {
+            emitter.ascii(HEX_DIGITS[(int) ((value >>> shift) & 0xF)]);
+        }
+        emitter.ascii('"');
+    }
+
+    /**
+     * request to export the spans queued before
+     */
+    private static final class ExportRequest {
+        private final CountDownLatch exported = new CountDownLatch(1);
+    }
+
+}
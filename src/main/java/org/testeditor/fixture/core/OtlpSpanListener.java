@@ -0,0 +1,264 @@
+/*******************************************************************************
+ * Copyright (c) 2012 - 2018 Signal Iduna Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ * Signal Iduna Corporation - initial API and implementation
+ * akquinet AG
+ * itemis AG
+ *******************************************************************************/
+
+package org.testeditor.fixture.core;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+
+import org.testeditor.fixture.core.TestRunReporter.Action;
+import org.testeditor.fixture.core.TestRunReporter.SemanticUnit;
+import org.testeditor.fixture.core.TestRunReporter.Status;
+
+/**
+ * Maps the call tree to OpenTelemetry spans, exported by an
+ * {@link OtlpSpanExporter}: each node is a span from its enter to its leave,
+ * child of the span of its parent node (nodes of a branch are children of the
+ * node the branch was forked off).
+ *
+ * The trace id is derived from the test run id (first 16 bytes of its SHA-256
+ * hash), the span id from the call tree id (64 bit FNV-1a hash), such that
+ * both can be computed from the call tree, e.g. to correlate a test step with
+ * the backend traces it caused. Unit, id, branch and status of the node are
+ * attributes of the span, as well as its pre and post variables (prefixed with
+ * "testeditor.pre." and "testeditor.post.").
+ *
+ * Reporting only queues the spans left with the exporter, the test thread is
+ * never blocked by the export.
+ */
+public class OtlpSpanListener implements BatchTestRunListener, IndependentTestRunListener {
+
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    private final OtlpSpanExporter exporter;
+    private final String traceId;
+    // origin to convert nano time to nanoseconds since the epoch
+    private final long originNanos = System.nanoTime();
+    private final long originEpochNanos = System.currentTimeMillis() * 1_000_000L;
+
+    // spans entered and not left per branch (key null for the nodes not reported on a branch)
+    private final Map<String, Deque<OtlpSpan>> openSpans = new HashMap<>();
+    // span id of the node each branch was forked off
+    private final Map<String, Long> branchParents = new HashMap<>();
+
+    /**
+     * @param testRunId the trace id is derived from (a random trace id is
+     *            used if null)
+     */
+    public OtlpSpanListener(OtlpSpanExporter exporter, String testRunId) {
+        this.exporter = exporter;
+        this.traceId = traceId(testRunId);
+    }
+
+    public String getTraceId() {
+        return traceId;
+    }
+
+    /**
+     * @return trace id (32 lowercase hex digits) of the test run
+     */
+    public static String traceId(String testRunId) {
+        if (testRunId == null) {
+            UUID random = UUID.randomUUID();
+            return hex(random.getMostSignificantBits()) + hex(random.getLeastSignificantBits());
+        }
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(testRunId.getBytes(UTF_8));
+            StringBuilder result = new StringBuilder(32);
+            for (int i = 0; i < 16; i++) {
+                result.append(HEX_DIGITS[(hash[i] >> 4) & 0xF]).append(HEX_DIGITS[hash[i] & 0xF]);
+            }
+            return result.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    /**
+     * @return span id of the call tree node with the given id (never 0, which
+     *         is not a valid span id)
+     */
+    public static long spanId(String id) {
+        if (id == null) {
+            return ThreadLocalRandom.current().nextLong() | 1;
+        }
+        long hash = FNV_OFFSET_BASIS;
+        for (int i = 0; i < id.length(); i++) {
+            hash ^= id.charAt(i);
+            hash *= FNV_PRIME;
+        }
+        return hash != 0 ? hash : 1;
+    }
+
+    private static String hex(long value) {
+        char[] digits = new char[16];
+        for (int i = 15; i >= 0; i--) {
+            digits[i] = HEX_DIGITS[(int) (value & 0xF)];
+            value >>>= 4;
+        }
+        return new String(digits);
+    }
+
+    @Override
+    public void reportedBatch(List<ReportEvent> events) {
+        for (ReportEvent event : events) {
+            if (event.getAction() == Action.ENTER) {
+                enter(event);
+            } else {
+                leave(event);
+            }
+        }
+    }
+
+    @Override
+    public void reportedFork(String branch, String parentBranch, String parentId) {
+        Deque<OtlpSpan> parentSpans = openSpans.get(parentBranch);
+        long parentSpanId = parentBranch != null ? branchParents.getOrDefault(parentBranch, 0L) : 0L;
+        if (parentSpans != null && !parentSpans.isEmpty()) {
+            parentSpanId = parentSpans.peek().spanId;
+            for (OtlpSpan span : parentSpans) {
+                if (span.id != null && span.id.equals(parentId)) {
+                    parentSpanId = span.spanId;
+                    break;
+                }
+            }
+        }
+        branchParents.put(branch, parentSpanId);
+    }
+
+    @Override
+    public void reportedJoin(String branch) {
+        Deque<OtlpSpan> spans = openSpans.remove(branch);
+        if (spans != null) {
+            endAll(spans, now(), Status.UNKNOWN, null);
+        }
+        branchParents.remove(branch);
+    }
+
+    @Override
+    public void reportFixtureExit(FixtureException fixtureException) {
+        exit(fixtureException.getLocalizedMessage());
+    }
+
+    @Override
+    public void reportExceptionExit(Exception exception) {
+        exit(exception.getLocalizedMessage());
+    }
+
+    @Override
+    public void reportAssertionExit(AssertionError assertionError) {
+        exit(assertionError.getLocalizedMessage());
+    }
+
+    private void enter(ReportEvent event) {
+        if (event.getUnit() == SemanticUnit.TEST) {
+            openSpans.clear();
+            branchParents.clear();
+        }
+        String branch = event.getBranch();
+        Deque<OtlpSpan> spans = openSpans.computeIfAbsent(branch, key -> new ArrayDeque<>());
+        long parentSpanId;
+        if (!spans.isEmpty()) {
+            parentSpanId = spans.peek().spanId;
+        } else {
+            parentSpanId = branch != null ? branchParents.getOrDefault(branch, 0L) : 0L;
+        }
+        spans.push(new OtlpSpan(traceId, spanId(event.getId()), parentSpanId, event.getMessage(), event.getUnit(),
+                event.getId(), branch, epochNanos(event.getNanoTime()), event.getVariables()));
+    }
+
+    /**
+     * end the span with the id left, ending the spans entered below it and
+     * not left as unknown
+     */
+    private void leave(ReportEvent event) {
+        Deque<OtlpSpan> spans = openSpans.get(event.getBranch());
+        long endEpochNanos = epochNanos(event.getNanoTime());
+        if (spans != null && containsId(spans, event.getId())) {
+            OtlpSpan span = spans.pop();
+            while (!event.getId().equals(span.id)) {
+                end(span, endEpochNanos, Status.UNKNOWN, null, null);
+                span = spans.pop();
+            }
+            end(span, endEpochNanos, event.getStatus(), null, event.getVariables());
+        }
+        if (event.getUnit() == SemanticUnit.TEST && event.getBranch() == null) {
+            endAllOpen(endEpochNanos, Status.UNKNOWN, null);
+            exporter.exportSoon();
+        }
+    }
+
+    private void exit(String message) {
+        endAllOpen(now(), Status.ERROR, message);
+        exporter.exportSoon();
+    }
+
+    private void endAllOpen(long endEpochNanos, Status status, String message) {
+        // branches first, the test is ended last
+        List<String> branches = new ArrayList<>(openSpans.keySet());
+        branches.remove(null);
+        for (String branch : branches) {
+            endAll(openSpans.remove(branch), endEpochNanos, status, message);
+        }
+        Deque<OtlpSpan> spans = openSpans.remove(null);
+        if (spans != null) {
+            endAll(spans, endEpochNanos, status, message);
+        }
+        branchParents.clear();
+    }
+
+    private void endAll(Deque<OtlpSpan> spans, long endEpochNanos, Status status, String message) {
+        while (!spans.isEmpty()) {
+            end(spans.pop(), endEpochNanos, status, message, null);
+        }
+    }
+
+    private void end(OtlpSpan span, long endEpochNanos, Status status, String message,
+            Map<String, String> postVariables) {
+        span.end(endEpochNanos, status, message, postVariables);
+        exporter.offer(span);
+    }
+
+    private static boolean containsId(Deque<OtlpSpan> spans, String id) {
+        if (id == null) {
+            return false;
+        }
+        for (OtlpSpan span : spans) {
+            if (id.equals(span.id)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private long now() {
+        return epochNanos(System.nanoTime());
+    }
+
+    private long epochNanos(long nanoTime) {
+        return originEpochNanos + (nanoTime - originNanos);
+    }
+
+}
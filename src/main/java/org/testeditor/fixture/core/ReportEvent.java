@@ -0,0 +1,121 @@
+/*******************************************************************************
+ * Copyright (c) 2012 - 2018 Signal Iduna Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ * Signal Iduna Corporation - initial API and implementation
+ * akquinet AG
+ * itemis AG
+ *******************************************************************************/
+
+package org.testeditor.fixture.core;
+
+import java.util.Map;
+
+import org.testeditor.fixture.core.TestRunReporter.Action;
+import org.testeditor.fixture.core.TestRunReporter.SemanticUnit;
+import org.testeditor.fixture.core.TestRunReporter.Status;
+
+/**
+ * Immutable event reported by {@link TestRunReporter#enter} or
+ * {@link TestRunReporter#leave}, as passed to a
+ * {@link BatchTestRunListener}. Listeners may keep events, the same instance
+ * is passed to all listeners.
+ */
+public final class ReportEvent {
+
+    private final SemanticUnit unit;
+    private final Action action;
+    private final String message;
+    private final String id;
+    private final Status status;
+    private final Map<String, String> variables;
+    private final long nanoTime;
+    private final String branch;
+
+    /**
+     * @param variables must not be modified afterwards
+     * @param nanoTime {@link System#nanoTime()} when the event was reported
+     */
+    public ReportEvent(SemanticUnit unit, Action action, String message, String id, Status status,
+            Map<String, String> variables, long nanoTime) {
+        this(null, unit, action, message, id, status, variables, nanoTime);
+    }
+
+    /**
+     * @param branch the event belongs to (see
+     *            {@link TestRunListener#reportedFork}), null for the main line
+     *            of the test
+     */
+    public ReportEvent(String branch, SemanticUnit unit, Action action, String message, String id, Status status,
+            Map<String, String> variables, long nanoTime) {
+        this.branch = branch;
+        this.unit = unit;
+        this.action = action;
+        this.message = message;
+        this.id = id;
+        this.status = status;
+        this.variables = variables;
+        this.nanoTime = nanoTime;
+    }
+
+    public SemanticUnit getUnit() {
+        return unit;
+    }
+
+    public Action getAction() {
+        return action;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public Map<String, String> getVariables() {
+        return variables;
+    }
+
+    /**
+     * @return {@link System#nanoTime()} when the event was reported
+     */
+    public long getNanoTime() {
+        return nanoTime;
+    }
+
+    /**
+     * @return branch the event belongs to, null for the main line of the test
+     */
+    public String getBranch() {
+        return branch;
+    }
+
+    /**
+     * pass this event to {@link TestRunListener#reported} (or
+     * {@link TestRunListener#reportedInBranch})
+     */
+    public void reportTo(TestRunListener listener) {
+        if (branch != null) {
+            listener.reportedInBranch(branch, unit, action, message, id, status, variables, nanoTime);
+        } else {
+            listener.reported(unit, action, message, id, status, variables, nanoTime);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return (branch != null ? "[" + branch + "] " : "") + action + " " + unit + " " + id + " (" + status + ") "
+                + message;
+    }
+
+}
@@ -0,0 +1,364 @@
+/*******************************************************************************
+ * Copyright (c) 2012 - 2018 Signal Iduna Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ * Signal Iduna Corporation - initial API and implementation
+ * akquinet AG
+ * itemis AG
+ *******************************************************************************/
+
+package org.testeditor.fixture.core;
+
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.testeditor.fixture.core.TestRunReporter.Action;
+import org.testeditor.fixture.core.TestRunReporter.SemanticUnit;
+import org.testeditor.fixture.core.TestRunReporter.Status;
+
+/**
+ * Ring buffer of preallocated, reusable event slots, published by test threads
+ * and consumed in order by a single dispatcher thread (see
+ * {@link DefaultTestRunReporter}).
+ *
+ * Sequences only grow: an event with sequence s lives in slot s % capacity,
+ * {@code published} is the sequence of the next event to publish and
+ * {@code consumed} that of the next event to dispatch. What happens if the ring
+ * fills up is decided by the {@link BackpressurePolicy}; the number of events
+ * dropped and coalesced during a test are added to the variables of its TEST
+ * leave.
+ *
+ * The dispatcher thread is started on demand and terminates when idle, such
+ * that reporters of finished tests do not keep threads alive. Listeners called
+ * by the dispatcher must not report events themselves.
+ */
+class ReportEventRing {
+
+    protected static final Logger logger = LoggerFactory.getLogger(ReportEventRing.class);
+
+    public static final String DROPPED_EVENTS = "droppedEvents";
+    public static final String COALESCED_EVENTS = "coalescedEvents";
+
+    // time the dispatcher waits for events before terminating
+    private static final long IDLE_NANOS = TimeUnit.SECONDS.toNanos(1);
+    // maximum time a barrier waits for the dispatcher
+    private static final long BARRIER_TIMEOUT_NANOS = TimeUnit.SECONDS.toNanos(30);
+    private static final long PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+
+    private static final int OPEN = 0;
+    private static final int COALESCING = 1;
+    private static final int TAKEN = 2;
+
+    /**
+     * reusable event, its fields are valid between publishing and dispatching
+     */
+    static class Slot {
+        long sequence;
+        SemanticUnit unit;
+        Action action;
+        String message;
+        String id;
+        Status status;
+        Map<String, String> variables;
+        long nanoTime;
+        // leave coalesced into this enter event
+        boolean coalesced;
+        Status leaveStatus;
+        Map<String, String> leaveVariables;
+        long leaveNanoTime;
+
+        // OPEN while the leave of this enter may be coalesced into it, TAKEN once dispatched
+        private final AtomicInteger state = new AtomicInteger(TAKEN);
+
+        private void clear() {
+            message = null;
+            id = null;
+            variables = null;
+            leaveVariables = null;
+        }
+    }
+
+    interface Dispatcher {
+        void dispatch(Slot slot);
+
+        /**
+         * all events available were dispatched, called before a barrier
+         * waiting for them is released
+         */
+        void endOfBatch();
+    }
+
+    private final Slot[] slots;
+    private final int mask;
+    private final Dispatcher dispatcher;
+    private final BackpressurePolicy policy;
+    private final long blockTimeoutNanos;
+
+    private final Object publishLock = new Object();
+    private volatile long published = 0;
+    private volatile long consumed = 0;
+
+    // written under publishLock
+    private volatile Thread dispatcherThread;
+    private volatile boolean dispatcherParked = false;
+
+    // of the current test, guarded by publishLock
+    private final Set<String> droppedEnterIds = new HashSet<>();
+    private long droppedEvents = 0;
+    private long coalescedEvents = 0;
+
+    /**
+     * @param capacity number of slots, rounded up to a power of two
+     * @param blockTimeoutMillis maximum time a test thread waits for a free
+     *            slot, before an enter is dropped (leaves of enters published
+     *            and events of the TEST are never dropped)
+     */
+    ReportEventRing(int capacity, Dispatcher dispatcher, BackpressurePolicy policy, long blockTimeoutMillis) {
+        int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+        this.slots = new Slot[size];
+        for (int i = 0; i < size; i++) {
+            slots[i] = new Slot();
+        }
+        this.mask = size - 1;
+        this.dispatcher = dispatcher;
+        this.policy = policy;
+        this.blockTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(blockTimeoutMillis);
+    }
+
+    int capacity() {
+        return slots.length;
+    }
+
+    void publish(SemanticUnit unit, Action action, String message, String id, Status status,
+            Map<String, String> variables) {
+        Thread toUnpark;
+        synchronized (publishLock) {
+            if (unit == SemanticUnit.TEST && action == Action.ENTER) {
+                droppedEnterIds.clear();
+                droppedEvents = 0;
+                coalescedEvents = 0;
+            }
+            if (action == Action.LEAVE && droppedEnterIds.remove(id)) {
+                droppedEvents++; // its enter was dropped
+                return;
+            }
+            if (policy == BackpressurePolicy.DROP_LOWEST_RANK && action == Action.ENTER
+                    && published - consumed >= dropWatermark(unit)) {
+                drop(action, id);
+                return;
+            }
+            if (policy == BackpressurePolicy.COALESCE && action == Action.LEAVE && isFull()
+                    && coalesce(unit, id, status, variables)) {
+                coalescedEvents++;
+                return;
+            }
+            if (!awaitFreeSlot(unit, action)) {
+                drop(action, id);
+                return;
+            }
+            if (unit == SemanticUnit.TEST && action == Action.LEAVE) {
+                variables = withCounters(variables);
+            }
+            long sequence = published;
+            Slot slot = slots[(int) sequence & mask];
+            slot.sequence = sequence;
+            slot.unit = unit;
+            slot.action = action;
+            slot.message = message;
+            slot.id = id;
+            slot.status = status;
+            slot.variables = variables;
+            slot.nanoTime = System.nanoTime();
+            slot.coalesced = false;
+            slot.state.set(action == Action.ENTER ? OPEN : TAKEN);
+            published = sequence + 1; // makes the slot visible to the dispatcher
+            startDispatcherIfNecessary();
+            toUnpark = dispatcherParked ? dispatcherThread : null;
+        }
+        if (toUnpark != null) {
+            LockSupport.unpark(toUnpark);
+        }
+    }
+
+    /**
+     * @return sequence of the next event to publish
+     */
+    long published() {
+        return published;
+    }
+
+    /**
+     * wait until all events published so far are dispatched
+     *
+     * @return false if the dispatcher did not catch up in time
+     */
+    boolean awaitDispatched() {
+        long target = published;
+        long deadline = System.nanoTime() + BARRIER_TIMEOUT_NANOS;
+        while (consumed < target) {
+            if (Thread.currentThread() == dispatcherThread) {
+                return false; // a listener must not wait for itself
+            }
+            if (System.nanoTime() - deadline > 0) {
+                logger.warn("test run reporter dispatcher did not catch up in time, events may be reported late");
+                return false;
+            }
+            LockSupport.parkNanos(this, PARK_NANOS);
+        }
+        return true;
+    }
+
+    private boolean isFull() {
+        return published - consumed >= slots.length;
+    }
+
+    /**
+     * fill level of the ring from which enters of the unit are dropped: the
+     * lower the rank of the unit, the earlier
+     */
+    private long dropWatermark(SemanticUnit unit) {
+        switch (unit) {
+            case TEST:
+                return Long.MAX_VALUE;
+            case SPECIFICATION_STEP:
+            case SETUP:
+            case CLEANUP:
+                return slots.length;
+            case COMPONENT:
+            case MACRO_LIB:
+                return slots.length - slots.length / 8;
+            default:
+                return slots.length - slots.length / 4;
+        }
+    }
+
+    private void drop(Action action, String id) {
+        if (action == Action.ENTER) {
+            droppedEnterIds.add(id);
+        }
+        droppedEvents++;
+    }
+
+    /**
+     * coalesce a leave into the slot of its enter, if that was published last
+     * and is not dispatched yet
+     */
+    private boolean coalesce(SemanticUnit unit, String id, Status status, Map<String, String> variables) {
+        Slot slot = slots[(int) (published - 1) & mask];
+        if (!slot.state.compareAndSet(OPEN, COALESCING)) {
+            return false;
+        }
+        boolean matches = slot.action == Action.ENTER && slot.unit == unit && slot.id != null && slot.id.equals(id);
+        if (matches) {
+            slot.coalesced = true;
+            slot.leaveStatus = status;
+            slot.leaveNanoTime = System.nanoTime();
+            slot.leaveVariables = unit == SemanticUnit.TEST ? withCounters(variables) : variables;
+        }
+        slot.state.set(matches ? TAKEN : OPEN); // makes the leave visible to the dispatcher
+        return matches;
+    }
+
+    /**
+     * wait for a free slot, leaves (whose enter was published, else they are
+     * dropped before) and events of the test itself wait indefinitely, such
+     * that listeners do not see nodes that are never left
+     *
+     * @return false if no slot became free in time
+     */
+    private boolean awaitFreeSlot(SemanticUnit unit, Action action) {
+        long waitingSince = System.nanoTime();
+        while (isFull()) {
+            startDispatcherIfNecessary();
+            LockSupport.unpark(dispatcherThread);
+            LockSupport.parkNanos(this, PARK_NANOS);
+            if (System.nanoTime() - waitingSince >= blockTimeoutNanos) {
+                if (unit != SemanticUnit.TEST && action == Action.ENTER) {
+                    return false;
+                }
+                logger.warn("test run reporter is waiting for listeners to catch up");
+                waitingSince = System.nanoTime();
+            }
+        }
+        return true;
+    }
+
+    private Map<String, String> withCounters(Map<String, String> variables) {
+        if (droppedEvents > 0) {
+            logger.warn("test run reporter dropped {} events, listeners did not keep up", droppedEvents);
+        }
+        Map<String, String> result = new LinkedHashMap<>();
+        if (variables != null) {
+            result.putAll(variables);
+        }
+        result.put(DROPPED_EVENTS, Long.toString(droppedEvents));
+        result.put(COALESCED_EVENTS, Long.toString(coalescedEvents));
+        return result;
+    }
+
+    private void startDispatcherIfNecessary() {
+        if (dispatcherThread == null) {
+            dispatcherThread = new Thread(this::dispatchLoop, "test-run-reporter-dispatcher");
+            dispatcherThread.setDaemon(true);
+            dispatcherThread.start();
+        }
+    }
+
+    private void dispatchLoop() {
+        long idleSince = System.nanoTime();
+        while (true) {
+            long available = published;
+            long sequence = consumed;
+            if (sequence < available) {
+                for (; sequence < available; sequence++) {
+                    Slot slot = slots[(int) sequence & mask];
+                    while (slot.state.get() == COALESCING || (slot.state.get() == OPEN
+                            && !slot.state.compareAndSet(OPEN, TAKEN))) {
+                        Thread.onSpinWait();
+                    }
+                    try {
+                        dispatcher.dispatch(slot);
+                    } catch (Throwable e) { // the dispatcher must survive, or the test waits for free slots forever
+                        logger.warn("dispatching test run event failed", e);
+                    }
+                    slot.clear();
+                    if (sequence + 1 < available) {
+                        consumed = sequence + 1; // frees the slot
+                    }
+                }
+                try {
+                    dispatcher.endOfBatch();
+                } catch (Throwable e) {
+                    logger.warn("dispatching test run event batch failed", e);
+                }
+                consumed = available;
+                idleSince = System.nanoTime();
+            } else if (System.nanoTime() - idleSince >= IDLE_NANOS) {
+                synchronized (publishLock) {
+                    if (published == consumed) {
+                        dispatcherThread = null;
+                        return;
+                    }
+                }
+            } else {
+                dispatcherParked = true;
+                if (published == consumed) {
+                    LockSupport.parkNanos(this, IDLE_NANOS);
+                }
+                dispatcherParked = false;
+            }
+        }
+    }
+
+}
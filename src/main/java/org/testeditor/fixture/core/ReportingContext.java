@@ -0,0 +1,345 @@
+/*******************************************************************************
+ * Copyright (c) 2012 - 2018 Signal Iduna Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ * Signal Iduna Corporation - initial API and implementation
+ * akquinet AG
+ * itemis AG
+ *******************************************************************************/
+
+package org.testeditor.fixture.core;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.slf4j.MDC;
+
+/**
+ * Immutable context of the reporting thread: name and run id of the test, the
+ * id of the call tree node entered last and the branch reported on (see
+ * {@link TestRunReporter#fork(String)}). The test run reporter keeps it up to
+ * date for the thread reporting, together with the SLF4J {@link MDC} keys
+ * {@link #TEST_NAME}, {@link #TEST_RUN_ID} and {@link #TEST_BRANCH} used to
+ * route log output.
+ *
+ * Both are thread-local and thus lost when a fixture hands work to another
+ * thread. Wrap the tasks (or the executor) to carry the context over:
+ *
+ * <pre>
+ * ExecutorService executor = ReportingContext.propagating(Executors.newFixedThreadPool(4));
+ * CompletableFuture.supplyAsync(() -&gt; ..., executor);
+ * new Thread(ReportingContext.propagate(() -&gt; ...)).start();
+ * </pre>
+ *
+ * Capturing is a single thread-local read, the MDC is only written where it
+ * differs from the context attached.
+ */
+public final class ReportingContext {
+
+    public static final String TEST_NAME = "TestName";
+    public static final String TEST_RUN_ID = "TestRunId";
+    public static final String TEST_BRANCH = "TestBranch";
+
+    private static final ReportingContext EMPTY = new ReportingContext(null, null, null, null, null);
+    private static final ThreadLocal<ReportingContext> CURRENT = new ThreadLocal<>();
+
+    private final String testName;
+    private final String testRunId;
+    private final String branch;
+    private final String nodeId;
+    // context before the node was entered
+    private final ReportingContext parent;
+
+    private ReportingContext(String testName, String testRunId, String branch, String nodeId,
+            ReportingContext parent) {
+        this.testName = testName;
+        this.testRunId = testRunId;
+        this.branch = branch;
+        this.nodeId = nodeId;
+        this.parent = parent;
+    }
+
+    /**
+     * @return context of the current thread (empty, if nothing is reported on
+     *         this thread and no context was attached)
+     */
+    public static ReportingContext current() {
+        ReportingContext current = CURRENT.get();
+        return current != null ? current : EMPTY;
+    }
+
+    public String getTestName() {
+        return testName;
+    }
+
+    public String getTestRunId() {
+        return testRunId;
+    }
+
+    /**
+     * @return name of the branch reported on, null outside of branches
+     */
+    public String getBranch() {
+        return branch;
+    }
+
+    /**
+     * @return id of the call tree node entered last (and not left yet)
+     */
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    /**
+     * make this the context of the current thread until the returned scope is
+     * closed (restoring the context before)
+     */
+    public Scope attach() {
+        ReportingContext previous = CURRENT.get();
+        switchTo(this);
+        return new Scope(previous);
+    }
+
+    /**
+     * @return task running with this context
+     */
+    public Runnable wrap(Runnable task) {
+        return () -> {
+            Scope scope = attach();
+            try {
+                task.run();
+            } finally {
+                scope.close();
+            }
+        };
+    }
+
+    /**
+     * @return task running with this context
+     */
+    public <T> Callable<T> wrap(Callable<T> task) {
+        return () -> {
+            Scope scope = attach();
+            try {
+                return task.call();
+            } finally {
+                scope.close();
+            }
+        };
+    }
+
+    /**
+     * @return task running with the context of the current thread
+     */
+    public static Runnable propagate(Runnable task) {
+        return current().wrap(task);
+    }
+
+    /**
+     * @return task running with the context of the current thread
+     */
+    public static <T> Callable<T> propagate(Callable<T> task) {
+        return current().wrap(task);
+    }
+
+    /**
+     * @return executor running each task with the context of the thread
+     *         submitting it
+     */
+    public static Executor propagating(Executor executor) {
+        return task -> executor.execute(propagate(task));
+    }
+
+    /**
+     * @return executor service running each task with the context of the
+     *         thread submitting it
+     */
+    public static ExecutorService propagating(ExecutorService executorService) {
+        return new PropagatingExecutorService(executorService);
+    }
+
+    /**
+     * start the context of a test (discarding what is left of a test not left)
+     */
+    static void enterTest(String testName, String testRunId, String nodeId) {
+        switchTo(new ReportingContext(testName, testRunId, null, nodeId, EMPTY));
+    }
+
+    static void enterNode(String branch, String nodeId) {
+        ReportingContext current = current();
+        switchTo(new ReportingContext(current.testName, current.testRunId, branch, nodeId, current));
+    }
+
+    /**
+     * end the context of a test (whatever was entered and not left)
+     */
+    static void leaveTest() {
+        switchTo(EMPTY);
+    }
+
+    /**
+     * restore the context before the node with the given id was entered (thus
+     * leaving all nodes entered below it, too), without id the node entered
+     * last is left
+     */
+    static void leaveNode(String nodeId) {
+        ReportingContext current = current();
+        if (nodeId == null) {
+            if (current != EMPTY) {
+                switchTo(current.parent);
+            }
+            return;
+        }
+        for (ReportingContext context = current; context != EMPTY; context = context.parent) {
+            if (nodeId.equals(context.nodeId)) {
+                switchTo(context.parent);
+                return;
+            }
+        }
+    }
+
+    private static void switchTo(ReportingContext next) {
+        if (next == EMPTY) {
+            CURRENT.remove();
+        } else {
+            CURRENT.set(next);
+        }
+        updateMdc(TEST_NAME, next.testName);
+        updateMdc(TEST_RUN_ID, next.testRunId);
+        updateMdc(TEST_BRANCH, next.branch);
+    }
+
+    private static void updateMdc(String key, String value) {
+        String current = MDC.get(key);
+        if (value == null) {
+            if (current != null) {
+                MDC.remove(key);
+            }
+        } else if (!value.equals(current)) {
+            MDC.put(key, value);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "ReportingContext [testName=" + testName + ", testRunId=" + testRunId + ", branch=" + branch
+                + ", nodeId=" + nodeId + "]";
+    }
+
+    /**
+     * restores the context that was current before {@link #attach()}
+     */
+    public static final class Scope implements AutoCloseable {
+        private final ReportingContext previous;
+
+        private Scope(ReportingContext previous) {
+            this.previous = previous;
+        }
+
+        @Override
+        public void close() {
+            switchTo(previous != null ? previous : EMPTY);
+        }
+    }
+
+    /**
+     * wraps every task submitted with the context of the submitting thread
+     */
+    private static final class PropagatingExecutorService implements ExecutorService {
+        private final ExecutorService delegate;
+
+        PropagatingExecutorService(ExecutorService delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public void execute(Runnable command) {
+            delegate.execute(propagate(command));
+        }
+
+        @Override
+        public Future<?> submit(Runnable task) {
+            return delegate.submit(propagate(task));
+        }
+
+        @Override
+        public <T> Future<T> submit(Runnable task, T result) {
+            return delegate.submit(propagate(task), result);
+        }
+
+        @Override
+        public <T> Future<T> submit(Callable<T> task) {
+            return delegate.submit(propagate(task));
+        }
+
+        @Override
+        public <T> List<Future<T>> invokeAll(Collection<? extends Callable<T>> tasks) throws InterruptedException {
+            return delegate.invokeAll(propagateAll(tasks));
+        }
+
+        @Override
+        public <T> List<Future<T>> invokeAll(Collection<? extends Callable<T>> tasks, long timeout, TimeUnit unit)
+                throws InterruptedException {
+            return delegate.invokeAll(propagateAll(tasks), timeout, unit);
+        }
+
+        @Override
+        public <T> T invokeAny(Collection<? extends Callable<T>> tasks)
+                throws InterruptedException, ExecutionException {
+            return delegate.invokeAny(propagateAll(tasks));
+        }
+
+        @Override
+        public <T> T invokeAny(Collection<? extends Callable<T>> tasks, long timeout, TimeUnit unit)
+                throws InterruptedException, ExecutionException, TimeoutException {
+            return delegate.invokeAny(propagateAll(tasks), timeout, unit);
+        }
+
+        @Override
+        public void shutdown() {
+            delegate.shutdown();
+        }
+
+        @Override
+        public List<Runnable> shutdownNow() {
+            return delegate.shutdownNow();
+        }
+
+        @Override
+        public boolean isShutdown() {
+            return delegate.isShutdown();
+        }
+
+        @Override
+        public boolean isTerminated() {
+            return delegate.isTerminated();
+        }
+
+        @Override
+        public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+            return delegate.awaitTermination(timeout, unit);
+        }
+
+        private static <T> List<Callable<T>> propagateAll(Collection<? extends Callable<T>> tasks) {
+            ReportingContext context = current();
+            List<Callable<T>> propagating = new ArrayList<>(tasks.size());
+            for (Callable<T> task : tasks) {
+                propagating.add(context.wrap(task));
+            }
+            return propagating;
+        }
+    }
+
+}
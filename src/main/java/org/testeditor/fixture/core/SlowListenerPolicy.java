@@ -0,0 +1,47 @@
+/*******************************************************************************
+ * Copyright (c) 2012 - 2018 Signal Iduna Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ * Signal Iduna Corporation - initial API and implementation
+ * akquinet AG
+ * itemis AG
+ *******************************************************************************/
+
+package org.testeditor.fixture.core;
+
+import java.util.Locale;
+
+/**
+ * What {@link DefaultTestRunReporter} does with a listener that exceeds its
+ * time budget repeatedly (see
+ * {@link DefaultTestRunReporter#enableListenerBudget(long, SlowListenerPolicy)}).
+ */
+public enum SlowListenerPolicy {
+
+    /**
+     * keep informing the listener, but on a thread of its own (see
+     * {@link DemotedTestRunListener}), such that it does not delay the test
+     * nor other listeners
+     */
+    DEMOTE,
+
+    /** do not inform the listener any more */
+    DETACH;
+
+    /**
+     * @return policy of the given name ("demote", "detach"), DEMOTE if null or
+     *         empty
+     * @throws IllegalArgumentException if the name is unknown
+     */
+    public static SlowListenerPolicy parse(String name) {
+        if (name == null || name.trim().isEmpty()) {
+            return DEMOTE;
+        }
+        return valueOf(name.trim().toUpperCase(Locale.ENGLISH));
+    }
+
+}
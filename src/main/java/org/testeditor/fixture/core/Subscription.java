@@ -0,0 +1,63 @@
+/*******************************************************************************
+ * Copyright (c) 2012 - 2018 Signal Iduna Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ * Signal Iduna Corporation - initial API and implementation
+ * akquinet AG
+ * itemis AG
+ *******************************************************************************/
+
+package org.testeditor.fixture.core;
+
+import java.util.EnumSet;
+import java.util.Set;
+
+import org.testeditor.fixture.core.TestRunReporter.Action;
+import org.testeditor.fixture.core.TestRunReporter.SemanticUnit;
+
+/**
+ * Events a {@link TestRunListener} is interested in (see
+ * {@link TestRunListener#subscription()}), listeners are not called for other
+ * events at all.
+ */
+public final class Subscription {
+
+    /** all units, enter and leave */
+    public static final Subscription ALL = new Subscription(EnumSet.allOf(SemanticUnit.class),
+            EnumSet.allOf(Action.class));
+
+    private final Set<SemanticUnit> units;
+    private final Set<Action> actions;
+
+    private Subscription(Set<SemanticUnit> units, Set<Action> actions) {
+        this.units = units;
+        this.actions = actions;
+    }
+
+    /**
+     * enter and leave of the given units
+     */
+    public static Subscription of(Set<SemanticUnit> units) {
+        return of(units, EnumSet.allOf(Action.class));
+    }
+
+    /**
+     * the given actions of the given units
+     */
+    public static Subscription of(Set<SemanticUnit> units, Set<Action> actions) {
+        return new Subscription(copy(units, SemanticUnit.class), copy(actions, Action.class));
+    }
+
+    private static <E extends Enum<E>> Set<E> copy(Set<E> set, Class<E> type) {
+        return set.isEmpty() ? EnumSet.noneOf(type) : EnumSet.copyOf(set);
+    }
+
+    public boolean includes(SemanticUnit unit, Action action) {
+        return units.contains(unit) && actions.contains(action);
+    }
+
+}
@@ -24,10 +24,68 @@ public interface TestRunListener {
     void reported(TestRunReporter.SemanticUnit unit, TestRunReporter.Action action, String message, String id,
             Status status, Map<String, String> variables);
 
+    /**
+     * event that took place at the given time (as taken from
+     * {@link System#nanoTime()}), passed by reporters informing listeners
+     * after the fact (e.g. on a dispatcher thread); the time is ignored by
+     * default
+     */
+    default void reported(TestRunReporter.SemanticUnit unit, TestRunReporter.Action action, String message,
+            String id, Status status, Map<String, String> variables, long nanoTime) {
+        reported(unit, action, message, id, status, variables);
+    }
+
     void reportFixtureExit(FixtureException fixtureException);
 
     void reportExceptionExit(Exception exception);
 
     void reportAssertionExit(AssertionError assertionError);
 
+    /**
+     * events this listener is called for by {@link TestRunReporter#enter} and
+     * {@link TestRunReporter#leave}, evaluated once when the listener is
+     * added; the exits are always reported
+     */
+    default Subscription subscription() {
+        return Subscription.ALL;
+    }
+
+    /**
+     * a branch of the test running concurrently to the rest of it was forked
+     * off the node with the given id (see {@link TestRunReporter#fork}); its
+     * events are passed to {@link #reportedInBranch} until it is joined
+     *
+     * @param parentBranch branch the parent node belongs to, null for the main
+     *            line of the test
+     */
+    default void reportedFork(String branch, String parentBranch, String parentId) {
+    }
+
+    /**
+     * event of a branch (see {@link #reportedFork}), each branch having a
+     * stack of entered units of its own; passed on as event of the test by
+     * default
+     */
+    default void reportedInBranch(String branch, TestRunReporter.SemanticUnit unit, TestRunReporter.Action action,
+            String message, String id, Status status, Map<String, String> variables) {
+        reported(unit, action, message, id, status, variables);
+    }
+
+    /**
+     * event of a branch that took place at the given time (see
+     * {@link #reported(TestRunReporter.SemanticUnit, TestRunReporter.Action, String, String, Status, Map, long)}),
+     * the time is ignored by default
+     */
+    default void reportedInBranch(String branch, TestRunReporter.SemanticUnit unit, TestRunReporter.Action action,
+            String message, String id, Status status, Map<String, String> variables, long nanoTime) {
+        reportedInBranch(branch, unit, action, message, id, status, variables);
+    }
+
+    /**
+     * the branch was joined, no more events of it follow (units still entered
+     * in it are left implicitly)
+     */
+    default void reportedJoin(String branch) {
+    }
+
 }
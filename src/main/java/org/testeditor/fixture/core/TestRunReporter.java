@@ -57,6 +57,26 @@ public interface TestRunReporter {
 
     void assertionExit(AssertionError assertionError);
 
+    /**
+     * fork a branch of the test running concurrently to the calling thread
+     * (e.g. sub steps run in parallel), as child of the entered node with the
+     * given id. Units entered and left through the returned reporter form the
+     * subtree of the branch, with a stack of entered units of its own; it is
+     * to be used by one thread at a time.
+     *
+     * @return reporter of the branch, this reporter if branches are not
+     *         supported
+     */
+    default TestRunReporter fork(String parentId) {
+        return this;
+    }
+
+    /**
+     * the branch is complete, to be called once the thread running it is done
+     */
+    default void join(TestRunReporter branch) {
+    }
+
     /** listen to any action */
     void addListener(TestRunListener listener);
 
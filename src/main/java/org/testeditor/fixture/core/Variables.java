@@ -0,0 +1,188 @@
+/*******************************************************************************
+ * Copyright (c) 2012 - 2018 Signal Iduna Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ * Signal Iduna Corporation - initial API and implementation
+ * akquinet AG
+ * itemis AG
+ *******************************************************************************/
+
+package org.testeditor.fixture.core;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.function.BiConsumer;
+
+/**
+ * Immutable variables passed to {@link TestRunReporter#enter} and
+ * {@link TestRunReporter#leave}, backed by the flat array of alternating keys
+ * and values as generated. Building them does not hash, and listeners not
+ * interested in variables do not pay for a hash map. Listeners iterating them
+ * should use {@link #forEach(BiConsumer)} or {@link #key(int)} and
+ * {@link #value(int)}, which read the array directly.
+ *
+ * Lookup by key is a linear search, which is fine for the few variables a
+ * step passes.
+ */
+public final class Variables extends AbstractMap<String, String> {
+
+    private static final Variables EMPTY = new Variables(new String[0], 0);
+
+    private final String[] keysAndValues;
+    private final int size;
+    private Set<Map.Entry<String, String>> entrySet;
+
+    private Variables(String[] keysAndValues, int size) {
+        this.keysAndValues = keysAndValues;
+        this.size = size;
+    }
+
+    /**
+     * @param keysAndValues alternating keys and values (not copied, so the
+     *            array must not be modified afterwards), a trailing key
+     *            without value is ignored, of duplicate keys the last value
+     *            wins
+     */
+    public static Variables of(String... keysAndValues) {
+        int size = keysAndValues.length / 2;
+        if (size == 0) {
+            return EMPTY;
+        }
+        for (int i = 1; i < size; i++) {
+            for (int j = 0; j < i; j++) {
+                if (equalKeys(keysAndValues[2 * i], keysAndValues[2 * j])) {
+                    return withoutDuplicates(keysAndValues, size);
+                }
+            }
+        }
+        return new Variables(keysAndValues, size);
+    }
+
+    private static Variables withoutDuplicates(String[] keysAndValues, int size) {
+        String[] result = new String[2 * size];
+        int resultSize = 0;
+        for (int i = 0; i < size; i++) {
+            String key = keysAndValues[2 * i];
+            int index = 0;
+            while (index < resultSize && !equalKeys(key, result[2 * index])) {
+                index++;
+            }
+            result[2 * index] = key;
+            result[2 * index + 1] = keysAndValues[2 * i + 1];
+            if (index == resultSize) {
+                resultSize++;
+            }
+        }
+        return new Variables(Arrays.copyOf(result, 2 * resultSize), resultSize);
+    }
+
+    private static boolean equalKeys(String key, String other) {
+        return key == null ? other == null : key.equals(other);
+    }
+
+    /**
+     * @return key of the variable at the given index (in the order passed)
+     */
+    public String key(int index) {
+        checkIndex(index);
+        return keysAndValues[2 * index];
+    }
+
+    /**
+     * @return value of the variable at the given index (in the order passed)
+     */
+    public String value(int index) {
+        checkIndex(index);
+        return keysAndValues[2 * index + 1];
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("variable index " + index + ", size " + size);
+        }
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return indexOf(key) >= 0;
+    }
+
+    @Override
+    public String get(Object key) {
+        int index = indexOf(key);
+        return index < 0 ? null : keysAndValues[2 * index + 1];
+    }
+
+    private int indexOf(Object key) {
+        for (int i = 0; i < size; i++) {
+            String candidate = keysAndValues[2 * i];
+            if (key == null ? candidate == null : key.equals(candidate)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public void forEach(BiConsumer<? super String, ? super String> action) {
+        for (int i = 0; i < size; i++) {
+            action.accept(keysAndValues[2 * i], keysAndValues[2 * i + 1]);
+        }
+    }
+
+    @Override
+    public Set<Map.Entry<String, String>> entrySet() {
+        if (entrySet == null) {
+            entrySet = new AbstractSet<Map.Entry<String, String>>() {
+
+                @Override
+                public Iterator<Map.Entry<String, String>> iterator() {
+                    return new Iterator<Map.Entry<String, String>>() {
+                        private int index = 0;
+
+                        @Override
+                        public boolean hasNext() {
+                            return index < size;
+                        }
+
+                        @Override
+                        public Map.Entry<String, String> next() {
+                            if (index >= size) {
+                                throw new NoSuchElementException();
+                            }
+                            index++;
+                            return new SimpleImmutableEntry<>(keysAndValues[2 * index - 2],
+                                    keysAndValues[2 * index - 1]);
+                        }
+                    };
+                }
+
+                @Override
+                public int size() {
+                    return size;
+                }
+            };
+        }
+        return entrySet;
+    }
+
+}
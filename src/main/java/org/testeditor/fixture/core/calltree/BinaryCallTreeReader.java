@@ -0,0 +1,314 @@
+/*******************************************************************************
+ * Copyright (c) 2012 - 2018 Signal Iduna Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ * Signal Iduna Corporation - initial API and implementation
+ * akquinet AG
+ * itemis AG
+ *******************************************************************************/
+
+package org.testeditor.fixture.core.calltree;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.BufferedInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.testeditor.fixture.core.TestRunReporter.SemanticUnit;
+import org.testeditor.fixture.core.TestRunReporter.Status;
+
+/**
+ * Reads a call tree written by {@link BinaryCallTreeSerializer} and replays it
+ * record by record to another serializer (e.g. {@link YamlCallTreeSerializer}
+ * to render the yaml that would have been written).
+ */
+public class BinaryCallTreeReader {
+
+    private static final SemanticUnit[] UNITS = SemanticUnit.values();
+    private static final Status[] STATUSES = Status.values();
+
+    private final InputStream inputStream;
+    private final List<String> dictionary = new ArrayList<>();
+    private long lastNanoTime = 0;
+
+    // current record
+    private byte[] record = new byte[256];
+    private int recordLength = 0;
+    private int position = 0;
+
+    public BinaryCallTreeReader(InputStream inputStream) {
+        this.inputStream = new BufferedInputStream(inputStream);
+    }
+
+    /**
+     * reader of records that are framed by other means (see
+     * {@link #replayRecord(byte[], int, CallTreeSerializer)})
+     */
+    public BinaryCallTreeReader() {
+        this.inputStream = null;
+    }
+
+    /**
+     * replay all remaining records
+     *
+     * @return number of records replayed
+     */
+    public long replay(CallTreeSerializer target) throws IOException {
+        long records = 0;
+        while (next(target)) {
+            records++;
+        }
+        return records;
+    }
+
+    /**
+     * replay the next record
+     *
+     * @return false if there are no more records
+     * @throws EOFException if the last record is truncated
+     */
+    public boolean next(CallTreeSerializer target) throws IOException {
+        if (!readRecord()) {
+            return false;
+        }
+        replayCurrentRecord(target);
+        return true;
+    }
+
+    /**
+     * replay a single record (without length prefix), records must be passed
+     * in the order written
+     */
+    public void replayRecord(byte[] data, int length, CallTreeSerializer target) throws IOException {
+        byte[] ownBuffer = record;
+        record = data;
+        recordLength = length;
+        position = 0;
+        try {
+            replayCurrentRecord(target);
+        } finally {
+            record = ownBuffer;
+        }
+    }
+
+    private void replayCurrentRecord(CallTreeSerializer target) throws IOException {
+        int type = readByte();
+        switch (type) {
+            case BinaryCallTreeSerializer.SEGMENT:
+                readSegment();
+                break;
+            case BinaryCallTreeSerializer.TEST_RUN:
+                target.writeTestRun((int) readVarint(), readString(), readString(), readString(), readString());
+                break;
+            case BinaryCallTreeSerializer.ENTER:
+                target.writeEnter((int) readVarint(), UNITS[(int) readVarint()], readString(), readString(),
+                        readTime(), readVariables());
+                break;
+            case BinaryCallTreeSerializer.LEAVE:
+                target.writeLeave((int) readVarint(), readTime(), STATUSES[(int) readVarint()], readVariables());
+                break;
+            case BinaryCallTreeSerializer.ATTRIBUTE:
+                target.writeAttribute((int) readVarint(), readString(), readValue());
+                break;
+            default:
+                throw new IOException("corrupt call tree, unknown record type " + type);
+        }
+    }
+
+    private void readSegment() throws IOException {
+        for (byte magicByte : BinaryCallTreeSerializer.MAGIC) {
+            if (readByte() != magicByte) {
+                throw new IOException("corrupt call tree, segment does not start with magic bytes");
+            }
+        }
+        long version = readVarint();
+        if (version != BinaryCallTreeSerializer.VERSION) {
+            throw new IOException("unsupported call tree version " + version);
+        }
+        dictionary.clear();
+        lastNanoTime = 0;
+    }
+
+    /**
+     * @return false on a clean end of stream
+     */
+    private boolean readRecord() throws IOException {
+        int length = 0;
+        int shift = 0;
+        int read;
+        do {
+            read = inputStream.read();
+            if (read < 0) {
+                if (shift == 0) {
+                    return false;
+                }
+                throw new EOFException("call tree truncated within record length");
+            }
+            if (shift > 28) {
+                throw new IOException("corrupt call tree, record length too long");
+            }
+            length |= (read & 0x7F) << shift;
+            shift += 7;
+        } while ((read & 0x80) != 0);
+        if (length > record.length) {
+            record = Arrays.copyOf(record, Math.max(length, record.length * 2));
+        }
+        int offset = 0;
+        while (offset < length) {
+            int count = inputStream.read(record, offset, length - offset);
+            if (count < 0) {
+                throw new EOFException("call tree truncated within record");
+            }
+            offset += count;
+        }
+        recordLength = length;
+        position = 0;
+        return true;
+    }
+
+    private long readTime() throws IOException {
+        lastNanoTime += readZigzag();
+        return lastNanoTime;
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<String, String> readVariables() throws IOException {
+        return (Map<String, String>) readValue();
+    }
+
+    private Object readValue() throws IOException {
+        int type = readByte();
+        switch (type) {
+            case BinaryCallTreeSerializer.VALUE_NULL:
+                return null;
+            case BinaryCallTreeSerializer.VALUE_STRING:
+                return readString();
+            case BinaryCallTreeSerializer.VALUE_INTEGRAL:
+                return Long.valueOf(readZigzag());
+            case BinaryCallTreeSerializer.VALUE_NUMBER:
+                return new TextualNumber(readString());
+            case BinaryCallTreeSerializer.VALUE_MAP:
+                int mapSize = (int) readVarint();
+                Map<String, Object> map = new LinkedHashMap<>();
+                for (int i = 0; i < mapSize; i++) {
+                    map.put(readString(), readValue());
+                }
+                return map;
+            case BinaryCallTreeSerializer.VALUE_LIST:
+                int listSize = (int) readVarint();
+                ArrayList<Object> list = new ArrayList<>(listSize);
+                for (int i = 0; i < listSize; i++) {
+                    list.add(readValue());
+                }
+                return list;
+            default:
+                throw new IOException("corrupt call tree, unknown value type " + type);
+        }
+    }
+
+    private String readString() throws IOException {
+        int tag = (int) readVarint();
+        switch (tag) {
+            case BinaryCallTreeSerializer.STRING_NULL:
+                return null;
+            case BinaryCallTreeSerializer.STRING_LITERAL:
+                return readUtf8();
+            case BinaryCallTreeSerializer.STRING_DEFINITION:
+                String definition = readUtf8();
+                dictionary.add(definition);
+                return definition;
+            default:
+                int index = tag - BinaryCallTreeSerializer.STRING_REFERENCE;
+                if (index >= dictionary.size()) {
+                    throw new IOException("corrupt call tree, undefined string reference " + index);
+                }
+                return dictionary.get(index);
+        }
+    }
+
+    private String readUtf8() throws IOException {
+        int length = (int) readVarint();
+        checkAvailable(length);
+        String result = new String(record, position, length, UTF_8);
+        position += length;
+        return result;
+    }
+
+    private long readZigzag() throws IOException {
+        long value = readVarint();
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private long readVarint() throws IOException {
+        long result = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int value = readByte();
+            result |= (long) (value & 0x7F) << shift;
+            if ((value & 0x80) == 0) {
+                return result;
+            }
+        }
+        throw new IOException("corrupt call tree, varint too long");
+    }
+
+    private int readByte() throws IOException {
+        checkAvailable(1);
+        return record[position++] & 0xFF;
+    }
+
+    private void checkAvailable(int count) throws IOException {
+        if (count < 0 || position + count > recordLength) {
+            throw new IOException("corrupt call tree, record too short");
+        }
+    }
+
+    /**
+     * number that is rendered exactly as it was written (e.g. a double or big
+     * decimal)
+     */
+    private static class TextualNumber extends Number {
+        private static final long serialVersionUID = 1L;
+        private final String text;
+
+        TextualNumber(String text) {
+            this.text = text;
+        }
+
+        @Override
+        public int intValue() {
+            return (int) doubleValue();
+        }
+
+        @Override
+        public long longValue() {
+            return (long) doubleValue();
+        }
+
+        @Override
+        public float floatValue() {
+            return (float) doubleValue();
+        }
+
+        @Override
+        public double doubleValue() {
+            return Double.parseDouble(text);
+        }
+
+        @Override
+        public String toString() {
+            return text;
+        }
+    }
+
+}
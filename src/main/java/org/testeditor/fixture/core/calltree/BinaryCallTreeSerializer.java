@@ -0,0 +1,318 @@
+/*******************************************************************************
+ * Copyright (c) 2012 - 2018 Signal Iduna Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ * Signal Iduna Corporation - initial API and implementation
+ * akquinet AG
+ * itemis AG
+ *******************************************************************************/
+
+package org.testeditor.fixture.core.calltree;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.testeditor.fixture.core.TestRunReporter.SemanticUnit;
+import org.testeditor.fixture.core.TestRunReporter.Status;
+import org.testeditor.fixture.core.Variables;
+
+// @formatter:off
+/**
+ * Compact binary serialization of the call tree.
+ *
+ * The output is a sequence of length-prefixed records (varint length followed
+ * by the record, whose first byte is its type). Each serializer starts a new
+ * segment (record type SEGMENT carrying magic and version), since several test
+ * runs may append to the same file. Within a segment
+ * <ul>
+ * <li>timestamps are written as zigzag varint delta to the previous timestamp,</li>
+ * <li>strings are collected in a dictionary: the first occurrence is written
+ *     literally (and defines the next dictionary index), repetitions refer to
+ *     the dictionary index,</li>
+ * <li>indentation, enums and counts are written as varints.</li>
+ * </ul>
+ *
+ * <pre>
+ * string  := 0 (null) | 1 length utf8 (literal) | 2 length utf8 (literal, defines next index) | 3 + index
+ * value   := 0 (null) | 1 string | 2 zigzag (integral number) | 3 string (other number)
+ *          | 4 count (string value)* (map) | 5 count value* (list)
+ * SEGMENT   := 1 'T' 'E' 'C' 'T' version
+ * TEST_RUN  := 2 indentation string(source) string(testRunId) string(commitId) string(started)
+ * ENTER     := 3 indentation unit string(message) string(id) zigzag(time delta) value(preVariables)
+ * LEAVE     := 4 indentation zigzag(time delta) status value(postVariables)
+ * ATTRIBUTE := 5 indentation string(key) value
+ * </pre>
+ *
+ * Use {@link BinaryCallTreeReader} or {@link CallTreeConverter} to read it.
+ */
+// @formatter:on
+public class BinaryCallTreeSerializer implements CallTreeSerializer {
+
+    public static final byte[] MAGIC = { 'T', 'E', 'C', 'T' };
+    public static final int VERSION = 1;
+
+    static final int SEGMENT = 1;
+    static final int TEST_RUN = 2;
+    static final int ENTER = 3;
+    static final int LEAVE = 4;
+    static final int ATTRIBUTE = 5;
+
+    static final int STRING_NULL = 0;
+    static final int STRING_LITERAL = 1;
+    static final int STRING_DEFINITION = 2;
+    static final int STRING_REFERENCE = 3;
+
+    static final int VALUE_NULL = 0;
+    static final int VALUE_STRING = 1;
+    static final int VALUE_INTEGRAL = 2;
+    static final int VALUE_NUMBER = 3;
+    static final int VALUE_MAP = 4;
+    static final int VALUE_LIST = 5;
+
+    // limits the memory used for the dictionary, further strings are written literally
+    public static final int MAX_DICTIONARY_SIZE = 65536;
+
+    private final OutputStream outputStream;
+    private final Map<String, Integer> dictionary = new HashMap<>();
+    private long lastNanoTime = 0;
+    private boolean segmentStarted = false;
+
+    // reused for every record
+    protected byte[] record = new byte[256];
+    protected int recordLength = 0;
+    private final byte[] lengthPrefix = new byte[5];
+
+    public BinaryCallTreeSerializer(OutputStream outputStream) {
+        this.outputStream = new BufferedOutputStream(outputStream);
+    }
+
+    /**
+     * for subclasses that frame records themselves (overriding
+     * {@link #endRecord()} and {@link #flush()})
+     */
+    protected BinaryCallTreeSerializer() {
+        this.outputStream = null;
+    }
+
+    @Override
+    public void writeTestRun(int indentation, String source, String testRunId, String commitId, String started)
+            throws IOException {
+        startRecord(TEST_RUN);
+        writeVarint(indentation);
+        writeString(source);
+        writeString(testRunId);
+        writeString(commitId);
+        writeString(started);
+        endRecord();
+    }
+
+    @Override
+    public void writeEnter(int indentation, SemanticUnit unit, String message, String id, long nanoTimeEntered,
+            Map<String, String> preVariables) throws IOException {
+        startRecord(ENTER);
+        writeVarint(indentation);
+        writeVarint(unit.ordinal());
+        writeString(message);
+        writeString(id);
+        writeTime(nanoTimeEntered);
+        writeValue(preVariables);
+        endRecord();
+    }
+
+    @Override
+    public void writeLeave(int indentation, long nanoTimeLeft, Status status, Map<String, String> postVariables)
+            throws IOException {
+        startRecord(LEAVE);
+        writeVarint(indentation);
+        writeTime(nanoTimeLeft);
+        writeVarint(status.ordinal());
+        writeValue(postVariables);
+        endRecord();
+    }
+
+    @Override
+    public void writeAttribute(int indentation, String key, Object value) throws IOException {
+        startRecord(ATTRIBUTE);
+        writeVarint(indentation);
+        writeString(key);
+        writeValue(value);
+        endRecord();
+    }
+
+    @Override
+    public void flush() throws IOException {
+        outputStream.flush();
+    }
+
+    protected void startRecord(int type) throws IOException {
+        if (!segmentStarted) {
+            segmentStarted = true;
+            recordLength = 0;
+            writeByte(SEGMENT);
+            for (byte magicByte : MAGIC) {
+                writeByte(magicByte);
+            }
+            writeVarint(VERSION);
+            endRecord();
+        }
+        recordLength = 0;
+        writeByte(type);
+    }
+
+    /**
+     * hand the completed record (in {@link #record} up to
+     * {@link #recordLength}) to the output
+     */
+    protected void endRecord() throws IOException {
+        int value = recordLength;
+        int prefixLength = 0;
+        while ((value & ~0x7F) != 0) {
+            lengthPrefix[prefixLength++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        lengthPrefix[prefixLength++] = (byte) value;
+        outputStream.write(lengthPrefix, 0, prefixLength);
+        outputStream.write(record, 0, recordLength);
+    }
+
+    private void writeTime(long nanoTime) {
+        writeZigzag(nanoTime - lastNanoTime);
+        lastNanoTime = nanoTime;
+    }
+
+    @SuppressWarnings("unchecked")
+    private void writeValue(Object value) {
+        if (value == null) {
+            writeByte(VALUE_NULL);
+        } else if (value instanceof ArrayList) {
+            ArrayList<Object> list = (ArrayList<Object>) value;
+            writeByte(VALUE_LIST);
+            writeVarint(list.size());
+            for (Object element : list) {
+                writeValue(element);
+            }
+        } else if (value instanceof Variables) {
+            Variables variables = (Variables) value;
+            writeByte(VALUE_MAP);
+            writeVarint(variables.size());
+            for (int i = 0; i < variables.size(); i++) {
+                writeString(variables.key(i));
+                writeValue(variables.value(i));
+            }
+        } else if (value instanceof Map) {
+            Map<String, Object> map = (Map<String, Object>) value;
+            writeByte(VALUE_MAP);
+            writeVarint(map.size());
+            for (Map.Entry<String, Object> entry : map.entrySet()) {
+                writeString(entry.getKey());
+                writeValue(entry.getValue());
+            }
+        } else if (value instanceof Long || value instanceof Integer || value instanceof Short
+                || value instanceof Byte) {
+            writeByte(VALUE_INTEGRAL);
+            writeZigzag(((Number) value).longValue());
+        } else if (value instanceof Number) {
+            writeByte(VALUE_NUMBER);
+            writeString(value.toString());
+        } else {
+            writeByte(VALUE_STRING);
+            writeString(value.toString());
+        }
+    }
+
+    private void writeString(String string) {
+        if (string == null) {
+            writeVarint(STRING_NULL);
+            return;
+        }
+        Integer index = dictionary.get(string);
+        if (index != null) {
+            writeVarint(STRING_REFERENCE + index);
+        } else if (dictionary.size() < MAX_DICTIONARY_SIZE) {
+            dictionary.put(string, dictionary.size());
+            writeVarint(STRING_DEFINITION);
+            writeUtf8(string);
+        } else {
+            writeVarint(STRING_LITERAL);
+            writeUtf8(string);
+        }
+    }
+
+    private void writeUtf8(String string) {
+        int length = string.length();
+        int utf8Length = 0;
+        for (int i = 0; i < length; i++) {
+            char character = string.charAt(i);
+            if (character < 0x80) {
+                utf8Length++;
+            } else if (character < 0x800) {
+                utf8Length += 2;
+            } else if (Character.isHighSurrogate(character) && i + 1 < length
+                    && Character.isLowSurrogate(string.charAt(i + 1))) {
+                utf8Length += 4;
+                i++;
+            } else {
+                utf8Length += Character.isSurrogate(character) ? 1 : 3;
+            }
+        }
+        writeVarint(utf8Length);
+        ensureCapacity(utf8Length);
+        for (int i = 0; i < length; i++) {
+            char character = string.charAt(i);
+            if (character < 0x80) {
+                record[recordLength++] = (byte) character;
+            } else if (character < 0x800) {
+                record[recordLength++] = (byte) (0xC0 | (character >> 6));
+                record[recordLength++] = (byte) (0x80 | (character & 0x3F));
+            } else if (Character.isHighSurrogate(character) && i + 1 < length
+                    && Character.isLowSurrogate(string.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(character, string.charAt(++i));
+                record[recordLength++] = (byte) (0xF0 | (codePoint >> 18));
+                record[recordLength++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+                record[recordLength++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+                record[recordLength++] = (byte) (0x80 | (codePoint & 0x3F));
+            } else if (Character.isSurrogate(character)) {
+                record[recordLength++] = '?';
+            } else {
+                record[recordLength++] = (byte) (0xE0 | (character >> 12));
+                record[recordLength++] = (byte) (0x80 | ((character >> 6) & 0x3F));
+                record[recordLength++] = (byte) (0x80 | (character & 0x3F));
+            }
+        }
+    }
+
+    private void writeZigzag(long value) {
+        writeVarint((value << 1) ^ (value >> 63));
+    }
+
+    private void writeVarint(long value) {
+        ensureCapacity(10);
+        long remaining = value;
+        while ((remaining & ~0x7FL) != 0) {
+            record[recordLength++] = (byte) ((remaining & 0x7F) | 0x80);
+            remaining >>>= 7;
+        }
+        record[recordLength++] = (byte) remaining;
+    }
+
+    private void writeByte(int value) {
+        ensureCapacity(1);
+        record[recordLength++] = (byte) value;
+    }
+
+    private void ensureCapacity(int required) {
+        if (recordLength + required > record.length) {
+            record = Arrays.copyOf(record, Math.max(record.length * 2, recordLength + required));
+        }
+    }
+
+}
@@ -0,0 +1,84 @@
+/*******************************************************************************
+ * Copyright (c) 2012 - 2018 Signal Iduna Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ * Signal Iduna Corporation - initial API and implementation
+ * akquinet AG
+ * itemis AG
+ *******************************************************************************/
+
+package org.testeditor.fixture.core.calltree;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.testeditor.fixture.core.TestRunReporter.SemanticUnit;
+import org.testeditor.fixture.core.TestRunReporter.Status;
+
+/**
+ * Keeps the records written in memory until they are replayed to another
+ * serializer, e.g. the subtree of a branch running concurrently to the rest of
+ * the test, which is written as a whole once the branch is joined.
+ */
+public class CallTreeBuffer implements CallTreeSerializer {
+
+    /** buffered call to the serializer */
+    private interface Call {
+        void writeTo(CallTreeSerializer serializer) throws IOException;
+    }
+
+    private final List<Call> calls = new ArrayList<>();
+
+    @Override
+    public void writeTestRun(int indentation, String source, String testRunId, String commitId, String started) {
+        calls.add(serializer -> serializer.writeTestRun(indentation, source, testRunId, commitId, started));
+    }
+
+    @Override
+    public void writeEnter(int indentation, SemanticUnit unit, String message, String id, long nanoTimeEntered,
+            Map<String, String> preVariables) {
+        calls.add(serializer -> serializer.writeEnter(indentation, unit, message, id, nanoTimeEntered, preVariables));
+    }
+
+    @Override
+    public void writeLeave(int indentation, long nanoTimeLeft, Status status, Map<String, String> postVariables) {
+        calls.add(serializer -> serializer.writeLeave(indentation, nanoTimeLeft, status, postVariables));
+    }
+
+    @Override
+    public void writeAttribute(int indentation, String key, Object value) {
+        calls.add(serializer -> serializer.writeAttribute(indentation, key, value));
+    }
+
+    /**
+     * nothing to hand on, records are kept until replayed
+     */
+    @Override
+    public void flush() {
+    }
+
+    /**
+     * @return true if nothing was written since the last replay
+     */
+    public boolean isEmpty() {
+        return calls.isEmpty();
+    }
+
+    /**
+     * write the records buffered to the given serializer, in the order
+     * written, and forget them
+     */
+    public void replay(CallTreeSerializer serializer) throws IOException {
+        for (Call call : calls) {
+            call.writeTo(serializer);
+        }
+        calls.clear();
+    }
+
+}
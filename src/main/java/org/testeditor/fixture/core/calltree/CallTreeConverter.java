@@ -0,0 +1,55 @@
+/*******************************************************************************
+ * Copyright (c) 2012 - 2018 Signal Iduna Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ * Signal Iduna Corporation - initial API and implementation
+ * akquinet AG
+ * itemis AG
+ *******************************************************************************/
+
+package org.testeditor.fixture.core.calltree;
+
+import java.io.BufferedInputStream;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Offline conversion of a binary call tree (see
+ * {@link BinaryCallTreeSerializer}) into the yaml layout written by default.
+ *
+ * Usage: {@code CallTreeConverter <binary call tree file> [<yaml file>]},
+ * writing to standard out if no yaml file is given.
+ */
+public class CallTreeConverter {
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1 || args.length > 2) {
+            System.err.println("usage: CallTreeConverter <binary call tree file> [<yaml file>]");
+            System.exit(1);
+        }
+        try (InputStream inputStream = new BufferedInputStream(new FileInputStream(args[0]));
+                OutputStream outputStream = args.length > 1 ? new FileOutputStream(args[1]) : System.out) {
+            convert(inputStream, outputStream);
+        }
+    }
+
+    /**
+     * render binary call tree as yaml
+     *
+     * @return number of records converted
+     */
+    public static long convert(InputStream binaryCallTree, OutputStream yamlCallTree) throws IOException {
+        YamlCallTreeSerializer yamlSerializer = new YamlCallTreeSerializer(yamlCallTree);
+        long records = new BinaryCallTreeReader(binaryCallTree).replay(yamlSerializer);
+        yamlSerializer.flush();
+        return records;
+    }
+
+}
@@ -0,0 +1,200 @@
+/*******************************************************************************
+ * Copyright (c) 2012 - 2018 Signal Iduna Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ * Signal Iduna Corporation - initial API and implementation
+ * akquinet AG
+ * itemis AG
+ *******************************************************************************/
+
+package org.testeditor.fixture.core.calltree;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.channels.Channels;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// @formatter:off
+/**
+ * Index of a yaml call tree file, written alongside by
+ * {@link IndexingCallTreeSerializer} (file name of the yaml file with suffix
+ * '.idx'). It maps each node id to the byte range of the node's subtree, such
+ * that a node can be read without parsing the yaml in front of it:
+ *
+ * <pre>
+ * CallTreeIndex index = CallTreeIndex.read(CallTreeIndex.indexFile(yamlFile));
+ * for (CallTreeIndex.Entry entry : index.find("IDROOT-3-17-2")) {
+ *     try (InputStream subtree = CallTreeIndex.openSubtree(yamlFile, entry)) {
+ *         ...
+ *     }
+ * }
+ * </pre>
+ *
+ * The index file is a sequence of entries, in the order the nodes were left:
+ *
+ * <pre>
+ * entry := utf(testRunId) utf(id) long(offset) long(length)   (as written by DataOutputStream)
+ * </pre>
+ */
+// @formatter:on
+public class CallTreeIndex {
+
+    public static final String INDEX_SUFFIX = ".idx";
+
+    /**
+     * byte range of the subtree of a node within the yaml file
+     */
+    public static class Entry {
+        private final String testRunId;
+        private final String id;
+        private final long offset;
+        private final long length;
+
+        public Entry(String testRunId, String id, long offset, long length) {
+            this.testRunId = testRunId;
+            this.id = id;
+            this.offset = offset;
+            this.length = length;
+        }
+
+        public String getTestRunId() {
+            return testRunId;
+        }
+
+        public String getId() {
+            return id;
+        }
+
+        public long getOffset() {
+            return offset;
+        }
+
+        public long getLength() {
+            return length;
+        }
+    }
+
+    private final Map<String, List<Entry>> entriesById = new HashMap<>();
+
+    private CallTreeIndex() {
+    }
+
+    public static File indexFile(File yamlFile) {
+        return new File(yamlFile.getPath() + INDEX_SUFFIX);
+    }
+
+    /**
+     * read index, ignoring an incomplete last entry (e.g. of a test jvm that
+     * was killed)
+     */
+    public static CallTreeIndex read(File indexFile) throws IOException {
+        CallTreeIndex index = new CallTreeIndex();
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(indexFile)))) {
+            while (true) {
+                Entry entry;
+                try {
+                    entry = new Entry(input.readUTF(), input.readUTF(), input.readLong(), input.readLong());
+                } catch (EOFException e) {
+                    break;
+                }
+                index.entriesById.computeIfAbsent(entry.getId(), id -> new ArrayList<>(1)).add(entry);
+            }
+        }
+        return index;
+    }
+
+    /**
+     * @return entries of all nodes with the given id (one per test run) in the
+     *         order written, empty if there is none
+     */
+    public List<Entry> find(String id) {
+        return Collections.unmodifiableList(entriesById.getOrDefault(id, Collections.emptyList()));
+    }
+
+    /**
+     * @return entry of the node with the given id within the given test run,
+     *         null if there is none
+     */
+    public Entry find(String testRunId, String id) {
+        for (Entry entry : find(id)) {
+            if (entry.getTestRunId().equals(testRunId)) {
+                return entry;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return stream of the yaml of the subtree only, starting at the line of
+     *         the node (with its original indentation)
+     */
+    public static InputStream openSubtree(File yamlFile, Entry entry) throws IOException {
+        RandomAccessFile file = new RandomAccessFile(yamlFile, "r");
+        try {
+            file.seek(entry.getOffset());
+            return new BoundedInputStream(Channels.newInputStream(file.getChannel()), entry.getLength(), file);
+        } catch (IOException e) {
+            file.close();
+            throw e;
+        }
+    }
+
+    /**
+     * reads up to a limit, closing the file when closed
+     */
+    private static class BoundedInputStream extends InputStream {
+        private final InputStream inputStream;
+        private final RandomAccessFile file;
+        private long remaining;
+
+        BoundedInputStream(InputStream inputStream, long limit, RandomAccessFile file) {
+            this.inputStream = inputStream;
+            this.remaining = limit;
+            this.file = file;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (remaining <= 0) {
+                return -1;
+            }
+            int read = inputStream.read();
+            if (read >= 0) {
+                remaining--;
+            }
+            return read;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            if (remaining <= 0) {
+                return -1;
+            }
+            int count = inputStream.read(buffer, offset, (int) Math.min(length, remaining));
+            if (count > 0) {
+                remaining -= count;
+            }
+            return count;
+        }
+
+        @Override
+        public void close() throws IOException {
+            file.close();
+        }
+    }
+
+}
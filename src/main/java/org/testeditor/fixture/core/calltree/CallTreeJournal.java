@@ -0,0 +1,218 @@
+/*******************************************************************************
+ * Copyright (c) 2012 - 2018 Signal Iduna Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ * Signal Iduna Corporation - initial API and implementation
+ * akquinet AG
+ * itemis AG
+ *******************************************************************************/
+
+package org.testeditor.fixture.core.calltree;
+
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+
+// @formatter:off
+/**
+ * Append-only journal of checksummed frames, written to a memory mapped
+ * segment of the file. Appending a frame is a plain memory store, the
+ * operating system persists the mapped pages even if the jvm is killed right
+ * after. When a frame does not fit into the current segment, the next segment
+ * is mapped at the end of the last frame (growing the file).
+ *
+ * <pre>
+ * journal := 'T' 'E' 'C' 'J' version(int) frame*
+ * frame   := length(int) crc32(int) payload
+ * </pre>
+ *
+ * The length of a frame is stored last, a frame torn by a crash thus reads as
+ * length 0 (the file grows zero filled), which ends the journal. The file is
+ * usually longer than the last frame, its unused tail is zero filled. Reading
+ * (see {@link #scan(Path, FrameVisitor)}) stops at the first frame that is
+ * incomplete or does not match its checksum, opening an existing journal
+ * appends right after its last valid frame.
+ */
+// @formatter:on
+public class CallTreeJournal implements Closeable {
+
+    public static final byte[] MAGIC = { 'T', 'E', 'C', 'J' };
+    public static final int VERSION = 1;
+    public static final int DEFAULT_SEGMENT_SIZE = 1 << 20;
+
+    static final int HEADER_SIZE = MAGIC.length + Integer.BYTES;
+    static final int FRAME_HEADER_SIZE = 2 * Integer.BYTES;
+
+    /**
+     * receives the payload of each valid frame, the data array is reused for
+     * subsequent frames
+     */
+    @FunctionalInterface
+    public interface FrameVisitor {
+        void frame(byte[] data, int length) throws IOException;
+    }
+
+    private final FileChannel channel;
+    private final int segmentSize;
+    private final CRC32 checksum = new CRC32();
+    private MappedByteBuffer segment;
+    private long segmentStart;
+    private long position;
+
+    public CallTreeJournal(Path file) throws IOException {
+        this(file, DEFAULT_SEGMENT_SIZE);
+    }
+
+    public CallTreeJournal(Path file, int segmentSize) throws IOException {
+        this.segmentSize = segmentSize;
+        this.channel = FileChannel.open(file, READ, WRITE, CREATE);
+        try {
+            if (channel.size() == 0) {
+                map(0, HEADER_SIZE);
+                segment.put(MAGIC);
+                segment.putInt(VERSION);
+                position = HEADER_SIZE;
+            } else {
+                position = scan(channel, null);
+            }
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * append a frame with the given payload
+     */
+    public void append(byte[] data, int offset, int length) throws IOException {
+        int frameSize = FRAME_HEADER_SIZE + length;
+        if (segment == null || position + frameSize > segmentStart + segment.capacity()) {
+            map(position, frameSize);
+        }
+        int index = (int) (position - segmentStart);
+        checksum.reset();
+        checksum.update(data, offset, length);
+        segment.putInt(index + Integer.BYTES, (int) checksum.getValue());
+        segment.position(index + FRAME_HEADER_SIZE);
+        segment.put(data, offset, length);
+        // the length commits the frame
+        segment.putInt(index, length);
+        position += frameSize;
+    }
+
+    /**
+     * @return file position right after the last frame
+     */
+    public long position() {
+        return position;
+    }
+
+    /**
+     * write the mapped segment to the storage device, not needed to survive a
+     * crash of the jvm, but one of the operating system
+     */
+    public void force() {
+        if (segment != null) {
+            segment.force();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        segment = null; // unmapped once collected
+        channel.close();
+    }
+
+    private void map(long start, int minimumSize) throws IOException {
+        segmentStart = start;
+        segment = channel.map(MapMode.READ_WRITE, start, Math.max(segmentSize, minimumSize));
+    }
+
+    /**
+     * read all valid frames of a journal
+     *
+     * @param visitor receives the frames, may be null
+     * @return file position right after the last valid frame
+     * @throws IOException if the file is no call tree journal
+     */
+    public static long scan(Path file, FrameVisitor visitor) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, READ)) {
+            return scan(channel, visitor);
+        }
+    }
+
+    private static long scan(FileChannel channel, FrameVisitor visitor) throws IOException {
+        long size = channel.size();
+        ByteBuffer header = ByteBuffer.allocate(Math.max(HEADER_SIZE, FRAME_HEADER_SIZE));
+        header.limit(HEADER_SIZE);
+        if (!readFully(channel, header, 0)) {
+            throw new IOException("no call tree journal, file too short");
+        }
+        header.flip();
+        for (byte magicByte : MAGIC) {
+            if (header.get() != magicByte) {
+                throw new IOException("no call tree journal, file does not start with magic bytes");
+            }
+        }
+        int version = header.getInt();
+        if (version != VERSION) {
+            throw new IOException("unsupported call tree journal version " + version);
+        }
+        CRC32 frameChecksum = new CRC32();
+        byte[] data = new byte[256];
+        long position = HEADER_SIZE;
+        while (true) {
+            header.clear().limit(FRAME_HEADER_SIZE);
+            if (!readFully(channel, header, position)) {
+                return position;
+            }
+            int length = header.getInt(0);
+            int expectedChecksum = header.getInt(Integer.BYTES);
+            if (length <= 0 || length > size - position - FRAME_HEADER_SIZE) {
+                return position;
+            }
+            if (length > data.length) {
+                data = Arrays.copyOf(data, Math.max(length, data.length * 2));
+            }
+            if (!readFully(channel, ByteBuffer.wrap(data, 0, length), position + FRAME_HEADER_SIZE)) {
+                return position;
+            }
+            frameChecksum.reset();
+            frameChecksum.update(data, 0, length);
+            if ((int) frameChecksum.getValue() != expectedChecksum) {
+                return position;
+            }
+            if (visitor != null) {
+                visitor.frame(data, length);
+            }
+            position += FRAME_HEADER_SIZE + length;
+        }
+    }
+
+    private static boolean readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        long readPosition = position;
+        while (buffer.hasRemaining()) {
+            int count = channel.read(buffer, readPosition);
+            if (count < 0) {
+                return false;
+            }
+            readPosition += count;
+        }
+        return true;
+    }
+
+}
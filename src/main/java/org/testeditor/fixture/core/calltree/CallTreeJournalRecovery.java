@@ -0,0 +1,129 @@
+/*******************************************************************************
+ * Copyright (c) 2012 - 2018 Signal Iduna Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ * Signal Iduna Corporation - initial API and implementation
+ * akquinet AG
+ * itemis AG
+ *******************************************************************************/
+
+package org.testeditor.fixture.core.calltree;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Map;
+
+import org.testeditor.fixture.core.TestRunReporter.SemanticUnit;
+import org.testeditor.fixture.core.TestRunReporter.Status;
+
+/**
+ * Renders a call tree journal (see {@link JournalCallTreeSerializer}) as yaml,
+ * reading up to the last valid frame. Nodes left open, because the test jvm
+ * was killed, are closed with status UNKNOWN at the time of the last record
+ * of their test run.
+ *
+ * Usage: {@code CallTreeJournalRecovery <journal file> [<yaml file>]}, writing
+ * to standard out if no yaml file is given.
+ */
+public class CallTreeJournalRecovery {
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1 || args.length > 2) {
+            System.err.println("usage: CallTreeJournalRecovery <journal file> [<yaml file>]");
+            System.exit(1);
+        }
+        try (OutputStream outputStream = args.length > 1 ? new FileOutputStream(args[1]) : System.out) {
+            int closedNodes = recover(Paths.get(args[0]), outputStream);
+            System.err.println("recovered call tree, closed " + closedNodes + " open node(s) with status "
+                    + Status.UNKNOWN);
+        }
+    }
+
+    /**
+     * render journal as yaml, closing open nodes
+     *
+     * @return number of nodes closed with status UNKNOWN
+     */
+    public static int recover(Path journal, OutputStream yamlCallTree) throws IOException {
+        YamlCallTreeSerializer yamlSerializer = new YamlCallTreeSerializer(yamlCallTree);
+        OpenNodeCloser closer = new OpenNodeCloser(yamlSerializer);
+        BinaryCallTreeReader reader = new BinaryCallTreeReader();
+        CallTreeJournal.scan(journal, (data, length) -> reader.replayRecord(data, length, closer));
+        closer.closeOpenNodes();
+        yamlSerializer.flush();
+        return closer.closedNodes;
+    }
+
+    /**
+     * passes all records on, keeping track of the nodes not left yet
+     */
+    private static class OpenNodeCloser implements CallTreeSerializer {
+
+        private final CallTreeSerializer target;
+        // indentation of the leave record for each open node, innermost last
+        private int[] openNodes = new int[16];
+        private int openNodeCount = 0;
+        private long lastNanoTime = 0;
+        private int closedNodes = 0;
+
+        OpenNodeCloser(CallTreeSerializer target) {
+            this.target = target;
+        }
+
+        @Override
+        public void writeTestRun(int indentation, String source, String testRunId, String commitId,
+                String started) throws IOException {
+            // a new test run starts, the previous one did not end
+            closeOpenNodes();
+            target.writeTestRun(indentation, source, testRunId, commitId, started);
+        }
+
+        @Override
+        public void writeEnter(int indentation, SemanticUnit unit, String message, String id, long nanoTimeEntered,
+                Map<String, String> preVariables) throws IOException {
+            if (openNodeCount == openNodes.length) {
+                openNodes = Arrays.copyOf(openNodes, openNodeCount * 2);
+            }
+            openNodes[openNodeCount++] = indentation + YamlCallTreeSerializer.YAML_INDENTATION;
+            lastNanoTime = nanoTimeEntered;
+            target.writeEnter(indentation, unit, message, id, nanoTimeEntered, preVariables);
+        }
+
+        @Override
+        public void writeLeave(int indentation, long nanoTimeLeft, Status status, Map<String, String> postVariables)
+                throws IOException {
+            if (openNodeCount > 0) {
+                openNodeCount--;
+            }
+            lastNanoTime = nanoTimeLeft;
+            target.writeLeave(indentation, nanoTimeLeft, status, postVariables);
+        }
+
+        @Override
+        public void writeAttribute(int indentation, String key, Object value) throws IOException {
+            target.writeAttribute(indentation, key, value);
+        }
+
+        @Override
+        public void flush() throws IOException {
+            target.flush();
+        }
+
+        void closeOpenNodes() throws IOException {
+            while (openNodeCount > 0) {
+                target.writeLeave(openNodes[--openNodeCount], lastNanoTime, Status.UNKNOWN, null);
+                closedNodes++;
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,83 @@
+/*******************************************************************************
+ * Copyright (c) 2012 - 2018 Signal Iduna Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ * Signal Iduna Corporation - initial API and implementation
+ * akquinet AG
+ * itemis AG
+ *******************************************************************************/
+
+package org.testeditor.fixture.core.calltree;
+
+import java.io.IOException;
+import java.util.Map;
+
+import org.testeditor.fixture.core.TestRunReporter.SemanticUnit;
+import org.testeditor.fixture.core.TestRunReporter.Status;
+
+/**
+ * Serialization of the call tree written by the call tree listener. The
+ * listener keeps track of the tree structure, a serializer just writes its
+ * records in the order given.
+ *
+ * The indentation passed is the indentation of the corresponding lines in the
+ * yaml layout; formats that do not need it should still keep it, such that
+ * they can be rendered back to yaml (see {@link BinaryCallTreeReader}).
+ *
+ * Values of attributes are restricted to what a
+ * {@link org.testeditor.fixture.core.FixtureException} key value store may
+ * hold: String, Number, Map, ArrayList (any other object is written by its
+ * string representation).
+ */
+public interface CallTreeSerializer {
+
+    /**
+     * header of a test run, written right before the test node is entered
+     */
+    void writeTestRun(int indentation, String source, String testRunId, String commitId, String started)
+            throws IOException;
+
+    /**
+     * enter a node, its children follow until it is left
+     */
+    void writeEnter(int indentation, SemanticUnit unit, String message, String id, long nanoTimeEntered,
+            Map<String, String> preVariables) throws IOException;
+
+    /**
+     * leave the node entered last (and not left yet)
+     */
+    void writeLeave(int indentation, long nanoTimeLeft, Status status, Map<String, String> postVariables)
+            throws IOException;
+
+    /**
+     * additional attribute of the node entered last, e.g. the exception that
+     * ended the test
+     */
+    void writeAttribute(int indentation, String key, Object value) throws IOException;
+
+    /**
+     * hand everything written so far to the underlying output
+     */
+    void flush() throws IOException;
+
+    /**
+     * the test run is complete (its test node was left), nothing more is
+     * written for it
+     */
+    default void endTestRun() throws IOException {
+        flush();
+    }
+
+    /**
+     * release the resources held by the serializer (e.g. files it opened),
+     * nothing is written afterwards; streams passed to a serializer are not
+     * closed by default
+     */
+    default void close() throws IOException {
+    }
+
+}
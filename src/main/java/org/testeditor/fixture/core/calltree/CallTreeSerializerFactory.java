@@ -0,0 +1,107 @@
+/*******************************************************************************
+ * Copyright (c) 2012 - 2018 Signal Iduna Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ * Signal Iduna Corporation - initial API and implementation
+ * akquinet AG
+ * itemis AG
+ *******************************************************************************/
+
+package org.testeditor.fixture.core.calltree;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Locale;
+import java.util.ServiceLoader;
+
+/**
+ * Service provider interface for call tree formats. Besides the built in
+ * formats 'yaml' (default), 'binary' and 'journal', formats are looked up via
+ * {@link ServiceLoader} (META-INF/services/
+ * org.testeditor.fixture.core.calltree.CallTreeSerializerFactory).
+ *
+ * The format used by generated tests is configured by the environment
+ * variable TE_CALL_TREE_FORMAT.
+ */
+public interface CallTreeSerializerFactory {
+
+    String YAML = "yaml";
+    String BINARY = "binary";
+    String JOURNAL = "journal";
+
+    /**
+     * @return name of the format, as used for configuration
+     */
+    String getFormat();
+
+    CallTreeSerializer createSerializer(OutputStream outputStream);
+
+    /**
+     * create a serializer appending to the given file, formats that need more
+     * than an output stream override this
+     */
+    default CallTreeSerializer createSerializer(File file) throws IOException {
+        return createSerializer(new FileOutputStream(file, true));
+    }
+
+    /**
+     * create a serializer of the given format
+     *
+     * @param format name of the format, yaml if null or empty
+     * @throws IllegalArgumentException if the format is unknown or cannot be
+     *             written to a stream
+     */
+    static CallTreeSerializer createSerializer(String format, OutputStream outputStream) {
+        String name = formatName(format);
+        switch (name) {
+            case YAML:
+                return new YamlCallTreeSerializer(outputStream);
+            case BINARY:
+                return new BinaryCallTreeSerializer(outputStream);
+            case JOURNAL:
+                throw new IllegalArgumentException("call tree format '" + format + "' must be written to a file");
+            default:
+                for (CallTreeSerializerFactory factory : ServiceLoader.load(CallTreeSerializerFactory.class)) {
+                    if (name.equalsIgnoreCase(factory.getFormat())) {
+                        return factory.createSerializer(outputStream);
+                    }
+                }
+                throw new IllegalArgumentException("unknown call tree format '" + format + "'");
+        }
+    }
+
+    /**
+     * create a serializer of the given format appending to the given file
+     *
+     * @param format name of the format, yaml if null or empty
+     * @throws IllegalArgumentException if the format is unknown
+     */
+    static CallTreeSerializer createSerializer(String format, File file) throws IOException {
+        String name = formatName(format);
+        switch (name) {
+            case YAML:
+            case BINARY:
+                return createSerializer(name, new FileOutputStream(file, true));
+            case JOURNAL:
+                return new JournalCallTreeSerializer(new CallTreeJournal(file.toPath()));
+            default:
+                for (CallTreeSerializerFactory factory : ServiceLoader.load(CallTreeSerializerFactory.class)) {
+                    if (name.equalsIgnoreCase(factory.getFormat())) {
+                        return factory.createSerializer(file);
+                    }
+                }
+                throw new IllegalArgumentException("unknown call tree format '" + format + "'");
+        }
+    }
+
+    private static String formatName(String format) {
+        return format == null || format.trim().isEmpty() ? YAML : format.trim().toLowerCase(Locale.ENGLISH);
+    }
+
+}
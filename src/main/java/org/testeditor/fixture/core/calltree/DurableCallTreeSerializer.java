@@ -0,0 +1,129 @@
+/*******************************************************************************
+ * Copyright (c) 2012 - 2018 Signal Iduna Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ * Signal Iduna Corporation - initial API and implementation
+ * akquinet AG
+ * itemis AG
+ *******************************************************************************/
+
+package org.testeditor.fixture.core.calltree;
+
+import java.io.IOException;
+import java.util.Locale;
+import java.util.Map;
+
+import org.testeditor.fixture.core.TestRunReporter.SemanticUnit;
+import org.testeditor.fixture.core.TestRunReporter.Status;
+
+/**
+ * Writes the call tree with the configured {@link Durability}.
+ */
+public class DurableCallTreeSerializer implements CallTreeSerializer {
+
+    public enum Durability {
+        /** hand the call tree to the operating system when buffers are full and at the end of each test run only */
+        NONE,
+        /** hand each flushed event to the operating system (page cache) */
+        FLUSH,
+        /** like FLUSH, forcing the file to the storage device by group commit (see {@link GroupCommit}) */
+        FSYNC;
+
+        /**
+         * @return durability of the given name, FLUSH if null or empty
+         * @throws IllegalArgumentException if the name is unknown
+         */
+        public static Durability parse(String name) {
+            if (name == null || name.trim().isEmpty()) {
+                return FLUSH;
+            }
+            return valueOf(name.trim().toUpperCase(Locale.ENGLISH));
+        }
+    }
+
+    private final CallTreeSerializer serializer;
+    private final Durability durability;
+    private final GroupCommit groupCommit;
+    private long unflushedEvents = 0;
+
+    /**
+     * @param groupCommit committing the file written to, required for FSYNC
+     *            only
+     */
+    public DurableCallTreeSerializer(CallTreeSerializer serializer, Durability durability, GroupCommit groupCommit) {
+        if (durability == Durability.FSYNC && groupCommit == null) {
+            throw new IllegalArgumentException("durability FSYNC requires a group commit");
+        }
+        this.serializer = serializer;
+        this.durability = durability;
+        this.groupCommit = groupCommit;
+    }
+
+    @Override
+    public void writeTestRun(int indentation, String source, String testRunId, String commitId, String started)
+            throws IOException {
+        serializer.writeTestRun(indentation, source, testRunId, commitId, started);
+        unflushedEvents++;
+    }
+
+    @Override
+    public void writeEnter(int indentation, SemanticUnit unit, String message, String id, long nanoTimeEntered,
+            Map<String, String> preVariables) throws IOException {
+        serializer.writeEnter(indentation, unit, message, id, nanoTimeEntered, preVariables);
+        unflushedEvents++;
+    }
+
+    @Override
+    public void writeLeave(int indentation, long nanoTimeLeft, Status status, Map<String, String> postVariables)
+            throws IOException {
+        serializer.writeLeave(indentation, nanoTimeLeft, status, postVariables);
+        unflushedEvents++;
+    }
+
+    @Override
+    public void writeAttribute(int indentation, String key, Object value) throws IOException {
+        serializer.writeAttribute(indentation, key, value);
+        unflushedEvents++;
+    }
+
+    /**
+     * no-op for durability NONE
+     */
+    @Override
+    public void flush() throws IOException {
+        if (durability != Durability.NONE) {
+            serializer.flush();
+            written();
+        }
+    }
+
+    /**
+     * commits right away for durability FSYNC, such that each completed test
+     * run is durable
+     */
+    @Override
+    public void endTestRun() throws IOException {
+        serializer.endTestRun();
+        written();
+        if (groupCommit != null && durability == Durability.FSYNC) {
+            groupCommit.commit();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        serializer.close();
+    }
+
+    private void written() {
+        if (groupCommit != null) {
+            groupCommit.written(unflushedEvents);
+        }
+        unflushedEvents = 0;
+    }
+
+}
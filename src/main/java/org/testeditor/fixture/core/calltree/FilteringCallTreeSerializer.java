@@ -0,0 +1,293 @@
+/*******************************************************************************
+ * Copyright (c) 2012 - 2018 Signal Iduna Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ * Signal Iduna Corporation - initial API and implementation
+ * akquinet AG
+ * itemis AG
+ *******************************************************************************/
+
+package org.testeditor.fixture.core.calltree;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.EnumMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.testeditor.fixture.core.TestRunReporter.SemanticUnit;
+import org.testeditor.fixture.core.TestRunReporter.Status;
+
+/**
+ * Records nodes according to a {@link RecordingPolicy} per semantic unit
+ * (units without policy are always recorded). Nodes of a filtering policy are
+ * buffered, including their subtree, until they are left and the policy
+ * decides. Nodes nested in a buffered node stay buffered until the outermost
+ * buffered node is decided, such that a failing ancestor is recorded with its
+ * subtree in full. Attributes written after the leave of a node (e.g. its
+ * duration) are decided along with that node.
+ *
+ * Nodes failing (status ERROR or ABORTED) or having attributes (e.g. the
+ * exception that ended the test) are always recorded including their subtree
+ * and their parents, so no diagnostics are lost. The same holds for parents
+ * of nodes recorded for being slow.
+ */
+public class FilteringCallTreeSerializer implements CallTreeSerializer {
+
+    private enum CallType {
+        ENTER, LEAVE, ATTRIBUTE
+    }
+
+    /** buffered call to the serializer */
+    private static class Call {
+        private final CallType type;
+        private final int indentation;
+        private final SemanticUnit unit;
+        private final String message;
+        private final String id;
+        private final long nanoTime;
+        private final Status status;
+        private final Map<String, String> variables;
+        private final String key;
+        private final Object value;
+
+        Call(CallType type, int indentation, SemanticUnit unit, String message, String id, long nanoTime,
+                Status status, Map<String, String> variables, String key, Object value) {
+            this.type = type;
+            this.indentation = indentation;
+            this.unit = unit;
+            this.message = message;
+            this.id = id;
+            this.nanoTime = nanoTime;
+            this.status = status;
+            this.variables = variables;
+            this.key = key;
+            this.value = value;
+        }
+    }
+
+    /** node entered and not left yet */
+    private static class OpenNode {
+        // null if not filtered itself
+        private final RecordingPolicy policy;
+        // index of its enter in the buffer, -1 if written already
+        private int mark;
+        private final long nanoTimeEntered;
+        // a node of the subtree requires recording
+        private boolean recordingRequired = false;
+        // buffer ranges (start inclusive, end exclusive) of nodes in the subtree decided not to be recorded, in
+        // ascending order; they are dropped once the outermost buffered node is decided, unless it fails
+        private final List<int[]> droppedRanges = new ArrayList<>();
+
+        OpenNode(RecordingPolicy policy, int mark, long nanoTimeEntered) {
+            this.policy = policy;
+            this.mark = mark;
+            this.nanoTimeEntered = nanoTimeEntered;
+        }
+    }
+
+    /** node left last, receiving the attributes written after its leave (at the indentation of its leave) */
+    private static class LeftNode {
+        private final int indentation;
+        // null if written already (attributes are written through), otherwise the buffer range of the node
+        private final int[] range;
+        // attributes are discarded (the node is dropped and not buffered any more)
+        private final boolean discarded;
+
+        LeftNode(int indentation, int[] range, boolean discarded) {
+            this.indentation = indentation;
+            this.range = range;
+            this.discarded = discarded;
+        }
+    }
+
+    private final CallTreeSerializer serializer;
+    private final Map<SemanticUnit, RecordingPolicy> policies;
+    private final Random random;
+    private final List<Call> buffer = new ArrayList<>();
+    private final Deque<OpenNode> openNodes = new ArrayDeque<>();
+    private LeftNode lastLeft;
+
+    public FilteringCallTreeSerializer(CallTreeSerializer serializer, Map<SemanticUnit, RecordingPolicy> policies) {
+        this(serializer, policies, new Random());
+    }
+
+    /**
+     * @param random used for sampling
+     */
+    public FilteringCallTreeSerializer(CallTreeSerializer serializer, Map<SemanticUnit, RecordingPolicy> policies,
+            Random random) {
+        this.serializer = serializer;
+        this.policies = policies.isEmpty() ? new EnumMap<>(SemanticUnit.class) : new EnumMap<>(policies);
+        this.policies.remove(SemanticUnit.TEST);
+        this.random = random;
+    }
+
+    @Override
+    public void writeTestRun(int indentation, String source, String testRunId, String commitId, String started)
+            throws IOException {
+        writeBuffer(openDroppedRanges());
+        openNodes.clear();
+        lastLeft = null;
+        serializer.writeTestRun(indentation, source, testRunId, commitId, started);
+    }
+
+    @Override
+    public void writeEnter(int indentation, SemanticUnit unit, String message, String id, long nanoTimeEntered,
+            Map<String, String> preVariables) throws IOException {
+        lastLeft = null;
+        RecordingPolicy policy = policies.get(unit);
+        if (policy != null && !policy.isFiltering()) {
+            policy = null;
+        }
+        if (buffer.isEmpty() && policy == null) {
+            openNodes.push(new OpenNode(null, -1, nanoTimeEntered));
+            serializer.writeEnter(indentation, unit, message, id, nanoTimeEntered, preVariables);
+        } else {
+            openNodes.push(new OpenNode(policy, buffer.size(), nanoTimeEntered));
+            buffer.add(new Call(CallType.ENTER, indentation, unit, message, id, nanoTimeEntered, null, preVariables,
+                    null, null));
+        }
+    }
+
+    @Override
+    public void writeLeave(int indentation, long nanoTimeLeft, Status status, Map<String, String> postVariables)
+            throws IOException {
+        OpenNode node = openNodes.poll();
+        if (node == null || node.mark < 0) {
+            lastLeft = new LeftNode(indentation, null, false);
+            serializer.writeLeave(indentation, nanoTimeLeft, status, postVariables);
+            return;
+        }
+        buffer.add(new Call(CallType.LEAVE, indentation, null, null, null, nanoTimeLeft, status, postVariables, null,
+                null));
+        boolean failing = status == Status.ERROR || status == Status.ABORTED;
+        boolean recordingRequired = node.recordingRequired || failing;
+        boolean recorded = recordingRequired;
+        if (node.policy == null) {
+            recorded = true;
+        } else if (node.policy.isRecorded(nanoTimeLeft - node.nanoTimeEntered, random)) {
+            recorded = true;
+            recordingRequired |= node.policy.isRecordingParents();
+        }
+        if (failing) {
+            node.droppedRanges.clear(); // failing subtrees are kept in full
+        }
+        int[] range = { node.mark, buffer.size() };
+        OpenNode parent = openNodes.peek();
+        if (parent != null && recordingRequired) {
+            parent.recordingRequired = true;
+        }
+        if (parent == null || parent.mark < 0) {
+            // outermost buffered node, decided now
+            if (recorded) {
+                writeBuffer(node.droppedRanges);
+                lastLeft = new LeftNode(indentation, null, false);
+            } else {
+                buffer.clear();
+                lastLeft = new LeftNode(indentation, null, true);
+            }
+        } else if (recorded) {
+            parent.droppedRanges.addAll(node.droppedRanges);
+            lastLeft = new LeftNode(indentation, range, false);
+        } else {
+            parent.droppedRanges.add(range);
+            lastLeft = new LeftNode(indentation, range, false);
+        }
+    }
+
+    @Override
+    public void writeAttribute(int indentation, String key, Object value) throws IOException {
+        if (lastLeft != null && lastLeft.indentation == indentation) {
+            // attribute of the node left last, decided along with it
+            if (lastLeft.discarded) {
+                return;
+            } else if (lastLeft.range == null) {
+                serializer.writeAttribute(indentation, key, value);
+            } else {
+                buffer.add(new Call(CallType.ATTRIBUTE, indentation, null, null, null, 0, null, null, key, value));
+                lastLeft.range[1] = buffer.size();
+            }
+        } else if (buffer.isEmpty()) {
+            serializer.writeAttribute(indentation, key, value);
+        } else {
+            buffer.add(new Call(CallType.ATTRIBUTE, indentation, null, null, null, 0, null, null, key, value));
+            openNodes.peek().recordingRequired = true;
+        }
+    }
+
+    /**
+     * hands everything decided to the output, nodes not decided yet stay
+     * buffered
+     */
+    @Override
+    public void flush() throws IOException {
+        serializer.flush();
+    }
+
+    /**
+     * records nodes not decided yet (not left)
+     */
+    @Override
+    public void endTestRun() throws IOException {
+        writeBuffer(openDroppedRanges());
+        lastLeft = null;
+        serializer.endTestRun();
+    }
+
+    @Override
+    public void close() throws IOException {
+        serializer.close();
+    }
+
+    /**
+     * @return ranges dropped below the nodes not left, in ascending order
+     */
+    private List<int[]> openDroppedRanges() {
+        List<int[]> droppedRanges = new ArrayList<>();
+        for (Iterator<OpenNode> outermostFirst = openNodes.descendingIterator(); outermostFirst.hasNext();) {
+            droppedRanges.addAll(outermostFirst.next().droppedRanges);
+        }
+        return droppedRanges;
+    }
+
+    /**
+     * write the buffer except for the ranges given
+     */
+    private void writeBuffer(List<int[]> droppedRanges) throws IOException {
+        int nextDropped = 0;
+        for (int index = 0; index < buffer.size(); index++) {
+            if (nextDropped < droppedRanges.size() && index == droppedRanges.get(nextDropped)[0]) {
+                index = droppedRanges.get(nextDropped++)[1] - 1;
+                continue;
+            }
+            Call call = buffer.get(index);
+            switch (call.type) {
+                case ENTER:
+                    serializer.writeEnter(call.indentation, call.unit, call.message, call.id, call.nanoTime,
+                            call.variables);
+                    break;
+                case LEAVE:
+                    serializer.writeLeave(call.indentation, call.nanoTime, call.status, call.variables);
+                    break;
+                default:
+                    serializer.writeAttribute(call.indentation, call.key, call.value);
+                    break;
+            }
+        }
+        buffer.clear();
+        for (OpenNode node : openNodes) {
+            node.mark = -1;
+            node.droppedRanges.clear();
+        }
+    }
+
+}
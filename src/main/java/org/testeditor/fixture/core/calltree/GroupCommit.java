@@ -0,0 +1,199 @@
+/*******************************************************************************
+ * Copyright (c) 2012 - 2018 Signal Iduna Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ * Signal Iduna Corporation - initial API and implementation
+ * akquinet AG
+ * itemis AG
+ *******************************************************************************/
+
+package org.testeditor.fixture.core.calltree;
+
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Makes a call tree file durable by group commit: instead of an fsync per
+ * event, a background timer forces the file to the storage device
+ * ({@link FileChannel#force(boolean)}) at a fixed interval, covering all
+ * events handed to the operating system since the last commit. There is one
+ * instance per file (shared by all tests of the jvm), committing a last time on
+ * jvm shutdown.
+ *
+ * Each commit reports how many events and bytes it covered (see
+ * {@link #getLastCommit()}). Events handed over while a commit is running may
+ * be made durable by it but are accounted to the next commit.
+ */
+public class GroupCommit {
+
+    private static final Logger logger = LoggerFactory.getLogger(GroupCommit.class);
+
+    public static final long DEFAULT_INTERVAL_MILLIS = 100;
+
+    private static final Map<Path, GroupCommit> files = new ConcurrentHashMap<>();
+    private static final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "call-tree-group-commit");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    static {
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            for (GroupCommit groupCommit : files.values()) {
+                groupCommit.commit();
+            }
+        }, "call-tree-group-commit-shutdown"));
+    }
+
+    /**
+     * events and bytes made durable by a single commit
+     */
+    public static class Commit {
+        private final long events;
+        private final long bytes;
+        private final long durationNanos;
+
+        Commit(long events, long bytes, long durationNanos) {
+            this.events = events;
+            this.bytes = bytes;
+            this.durationNanos = durationNanos;
+        }
+
+        public long getEvents() {
+            return events;
+        }
+
+        public long getBytes() {
+            return bytes;
+        }
+
+        /**
+         * @return time taken to force the file to the storage device
+         */
+        public long getDurationNanos() {
+            return durationNanos;
+        }
+
+        @Override
+        public String toString() {
+            return "commit of " + events + " events, " + bytes + " bytes, took " + durationNanos + "ns";
+        }
+    }
+
+    private final Path path;
+    private final FileChannel channel;
+    private final AtomicLong pendingEvents = new AtomicLong();
+    private long committedSize;
+
+    // statistics, guarded by this
+    private long commits = 0;
+    private long committedEvents = 0;
+    private long committedBytes = 0;
+    private Commit lastCommit = null;
+
+    private GroupCommit(Path path, long intervalMillis) throws IOException {
+        this.path = path;
+        this.channel = FileChannel.open(path, CREATE, WRITE);
+        this.committedSize = channel.size();
+        timer.scheduleWithFixedDelay(this::commit, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * @return the instance committing the given file, the interval is that of
+     *         the first call for the file
+     */
+    public static GroupCommit forFile(File file, long intervalMillis) throws IOException {
+        if (intervalMillis <= 0) {
+            throw new IllegalArgumentException("commit interval must be positive, but is " + intervalMillis + "ms");
+        }
+        Path path = file.getAbsoluteFile().toPath().normalize();
+        try {
+            return files.computeIfAbsent(path, key -> {
+                try {
+                    return new GroupCommit(key, intervalMillis);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * the given number of events was handed to the operating system (e.g. by
+     * flushing), to be covered by the next commit
+     */
+    public void written(long events) {
+        pendingEvents.addAndGet(events);
+    }
+
+    /**
+     * force everything written so far to the storage device (done by the timer
+     * as well)
+     *
+     * @return the commit, null if there was nothing to commit
+     */
+    public synchronized Commit commit() {
+        long events = pendingEvents.getAndSet(0);
+        try {
+            long size = channel.size();
+            if (events == 0 && size == committedSize) {
+                return null;
+            }
+            long start = System.nanoTime();
+            channel.force(false);
+            Commit commit = new Commit(events, size - committedSize, System.nanoTime() - start);
+            committedSize = size;
+            commits++;
+            committedEvents += commit.getEvents();
+            committedBytes += commit.getBytes();
+            lastCommit = commit;
+            logger.debug("call tree {}: {}", path, commit);
+            return commit;
+        } catch (IOException e) {
+            pendingEvents.addAndGet(events);
+            logger.error("committing call tree " + path + " failed", e);
+            return null;
+        }
+    }
+
+    public synchronized long getCommits() {
+        return commits;
+    }
+
+    public synchronized long getCommittedEvents() {
+        return committedEvents;
+    }
+
+    public synchronized long getCommittedBytes() {
+        return committedBytes;
+    }
+
+    /**
+     * @return the latest commit, null if there was none yet
+     */
+    public synchronized Commit getLastCommit() {
+        return lastCommit;
+    }
+
+}
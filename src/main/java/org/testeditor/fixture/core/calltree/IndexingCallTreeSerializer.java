@@ -0,0 +1,158 @@
+/*******************************************************************************
+ * Copyright (c) 2012 - 2018 Signal Iduna Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ * Signal Iduna Corporation - initial API and implementation
+ * akquinet AG
+ * itemis AG
+ *******************************************************************************/
+
+package org.testeditor.fixture.core.calltree;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.Map;
+
+import org.testeditor.fixture.core.TestRunReporter.SemanticUnit;
+import org.testeditor.fixture.core.TestRunReporter.Status;
+
+/**
+ * Writes the yaml call tree and a sidecar index (see {@link CallTreeIndex})
+ * holding byte offset and length of each node's subtree. A subtree ends with
+ * the attributes written after its leave (e.g. durations), so its entry is
+ * written once the next node is entered or left (or the test run ends). Entries
+ * are handed to the index file on each flush, after the yaml itself, such that
+ * the index never refers to yaml not yet written.
+ */
+public class IndexingCallTreeSerializer implements CallTreeSerializer {
+
+    private final YamlCallTreeSerializer yamlSerializer;
+    private final long baseOffset;
+    private final DataOutputStream index;
+    private String testRunId = "";
+
+    // nodes entered and not left yet, innermost last
+    private String[] openIds = new String[16];
+    private long[] openOffsets = new long[16];
+    private int openCount = 0;
+
+    // node left last, its subtree extends over the attributes following at the indentation of the leave
+    private String leftId = null;
+    private long leftOffset;
+    private int leftIndentation;
+
+    /**
+     * @param baseOffset position in the yaml file at which the serializer
+     *            starts writing (e.g. the length of the file appended to)
+     */
+    public IndexingCallTreeSerializer(YamlCallTreeSerializer yamlSerializer, long baseOffset,
+            OutputStream indexOutput) {
+        this.yamlSerializer = yamlSerializer;
+        this.baseOffset = baseOffset;
+        this.index = new DataOutputStream(new BufferedOutputStream(indexOutput));
+    }
+
+    /**
+     * index the given serializer, which appends to the yaml file and has not
+     * written anything yet, appending to the index file of the yaml file
+     */
+    public static IndexingCallTreeSerializer appendingTo(YamlCallTreeSerializer yamlSerializer, File yamlFile)
+            throws IOException {
+        return new IndexingCallTreeSerializer(yamlSerializer, yamlFile.length(),
+                new FileOutputStream(CallTreeIndex.indexFile(yamlFile), true));
+    }
+
+    @Override
+    public void writeTestRun(int indentation, String source, String testRunId, String commitId, String started)
+            throws IOException {
+        writeLeftNode();
+        this.testRunId = testRunId == null ? "" : testRunId;
+        yamlSerializer.writeTestRun(indentation, source, testRunId, commitId, started);
+    }
+
+    @Override
+    public void writeEnter(int indentation, SemanticUnit unit, String message, String id, long nanoTimeEntered,
+            Map<String, String> preVariables) throws IOException {
+        writeLeftNode();
+        if (openCount == openIds.length) {
+            openIds = Arrays.copyOf(openIds, openCount * 2);
+            openOffsets = Arrays.copyOf(openOffsets, openCount * 2);
+        }
+        openIds[openCount] = id == null ? "" : id;
+        openOffsets[openCount] = offset();
+        openCount++;
+        yamlSerializer.writeEnter(indentation, unit, message, id, nanoTimeEntered, preVariables);
+    }
+
+    @Override
+    public void writeLeave(int indentation, long nanoTimeLeft, Status status, Map<String, String> postVariables)
+            throws IOException {
+        writeLeftNode();
+        yamlSerializer.writeLeave(indentation, nanoTimeLeft, status, postVariables);
+        if (openCount > 0) {
+            openCount--;
+            leftId = openIds[openCount];
+            leftOffset = openOffsets[openCount];
+            leftIndentation = indentation;
+            openIds[openCount] = null;
+        }
+    }
+
+    @Override
+    public void writeAttribute(int indentation, String key, Object value) throws IOException {
+        if (indentation != leftIndentation) {
+            writeLeftNode(); // attribute of a node still open
+        }
+        yamlSerializer.writeAttribute(indentation, key, value);
+    }
+
+    @Override
+    public void flush() throws IOException {
+        yamlSerializer.flush();
+        index.flush();
+    }
+
+    @Override
+    public void endTestRun() throws IOException {
+        writeLeftNode();
+        yamlSerializer.endTestRun();
+        index.flush();
+    }
+
+    /**
+     * closes the index output
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            yamlSerializer.close();
+        } finally {
+            index.close();
+        }
+    }
+
+    private void writeLeftNode() throws IOException {
+        if (leftId == null) {
+            return;
+        }
+        index.writeUTF(testRunId);
+        index.writeUTF(leftId);
+        index.writeLong(leftOffset);
+        index.writeLong(offset() - leftOffset);
+        leftId = null;
+    }
+
+    private long offset() {
+        return baseOffset + yamlSerializer.position();
+    }
+
+}
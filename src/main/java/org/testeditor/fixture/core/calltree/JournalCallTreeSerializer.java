@@ -0,0 +1,55 @@
+/*******************************************************************************
+ * Copyright (c) 2012 - 2018 Signal Iduna Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ * Signal Iduna Corporation - initial API and implementation
+ * akquinet AG
+ * itemis AG
+ *******************************************************************************/
+
+package org.testeditor.fixture.core.calltree;
+
+import java.io.IOException;
+
+/**
+ * Writes the records of the binary format (see
+ * {@link BinaryCallTreeSerializer}) as frames of a {@link CallTreeJournal},
+ * one frame per record. Nothing is buffered on the java heap, so the call tree
+ * survives the jvm being killed up to the last record written. Use
+ * {@link CallTreeJournalRecovery} to render the journal as yaml.
+ */
+public class JournalCallTreeSerializer extends BinaryCallTreeSerializer {
+
+    private final CallTreeJournal journal;
+
+    public JournalCallTreeSerializer(CallTreeJournal journal) {
+        this.journal = journal;
+    }
+
+    @Override
+    protected void endRecord() throws IOException {
+        journal.append(record, 0, recordLength);
+    }
+
+    /**
+     * nothing to do, records are handed to the operating system as soon as they
+     * are written
+     */
+    @Override
+    public void flush() throws IOException {
+        // records are in the mapped segment already
+    }
+
+    /**
+     * closes the journal
+     */
+    @Override
+    public void close() throws IOException {
+        journal.close();
+    }
+
+}
@@ -0,0 +1,137 @@
+/*******************************************************************************
+ * Copyright (c) 2012 - 2018 Signal Iduna Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ * Signal Iduna Corporation - initial API and implementation
+ * akquinet AG
+ * itemis AG
+ *******************************************************************************/
+
+package org.testeditor.fixture.core.calltree;
+
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.testeditor.fixture.core.TestRunReporter.SemanticUnit;
+
+/**
+ * Decides whether the nodes of a semantic unit are recorded in the call tree
+ * (see {@link FilteringCallTreeSerializer}).
+ */
+public final class RecordingPolicy {
+
+    private enum Kind {
+        ALWAYS, SLOWER_THAN, SAMPLED
+    }
+
+    private static final RecordingPolicy ALWAYS = new RecordingPolicy(Kind.ALWAYS, 0, 1);
+
+    private final Kind kind;
+    private final long thresholdNanos;
+    private final double probability;
+
+    private RecordingPolicy(Kind kind, long thresholdNanos, double probability) {
+        this.kind = kind;
+        this.thresholdNanos = thresholdNanos;
+        this.probability = probability;
+    }
+
+    /**
+     * record every node
+     */
+    public static RecordingPolicy always() {
+        return ALWAYS;
+    }
+
+    /**
+     * record nodes taking longer than the given duration only, their parents
+     * are then recorded, too
+     */
+    public static RecordingPolicy slowerThan(long duration, TimeUnit unit) {
+        return new RecordingPolicy(Kind.SLOWER_THAN, unit.toNanos(duration), 1);
+    }
+
+    /**
+     * record nodes with the given probability
+     */
+    public static RecordingPolicy sampled(double probability) {
+        if (probability < 0 || probability > 1) {
+            throw new IllegalArgumentException("sampling probability " + probability + " is not within [0, 1]");
+        }
+        return new RecordingPolicy(Kind.SAMPLED, 0, probability);
+    }
+
+    /**
+     * @return whether nodes are to be buffered until they are left, to decide
+     */
+    boolean isFiltering() {
+        return kind != Kind.ALWAYS;
+    }
+
+    /**
+     * @return whether a node left after the given duration is recorded
+     */
+    boolean isRecorded(long durationNanos, Random random) {
+        switch (kind) {
+            case SLOWER_THAN:
+                return durationNanos > thresholdNanos;
+            case SAMPLED:
+                return random.nextDouble() < probability;
+            default:
+                return true;
+        }
+    }
+
+    /**
+     * @return whether parents of a recorded node must be recorded as well
+     */
+    boolean isRecordingParents() {
+        return kind == Kind.SLOWER_THAN;
+    }
+
+    /**
+     * parse policies of the form
+     * {@code <unit>=always|slower:<milliseconds>|sampled:<probability>},
+     * separated by comma, e.g. {@code STEP=slower:50,COMPONENT=sampled:0.1}
+     *
+     * @throws IllegalArgumentException if the policies cannot be parsed
+     */
+    public static Map<SemanticUnit, RecordingPolicy> parse(String policies) {
+        Map<SemanticUnit, RecordingPolicy> result = new EnumMap<>(SemanticUnit.class);
+        for (String policy : policies.split(",")) {
+            if (policy.trim().isEmpty()) {
+                continue;
+            }
+            String[] unitAndPolicy = policy.split("=", 2);
+            String[] kindAndParameter = unitAndPolicy.length < 2 ? new String[0]
+                    : unitAndPolicy[1].trim().split(":", 2);
+            try {
+                SemanticUnit unit = SemanticUnit.valueOf(unitAndPolicy[0].trim().toUpperCase(Locale.ENGLISH));
+                switch (kindAndParameter.length == 0 ? "" : kindAndParameter[0].trim().toLowerCase(Locale.ENGLISH)) {
+                    case "always":
+                        result.put(unit, always());
+                        break;
+                    case "slower":
+                        result.put(unit, slowerThan(Long.parseLong(kindAndParameter[1].trim()), TimeUnit.MILLISECONDS));
+                        break;
+                    case "sampled":
+                        result.put(unit, sampled(Double.parseDouble(kindAndParameter[1].trim())));
+                        break;
+                    default:
+                        throw new IllegalArgumentException("unknown recording policy");
+                }
+            } catch (IllegalArgumentException | ArrayIndexOutOfBoundsException e) {
+                throw new IllegalArgumentException("invalid recording policy '" + policy.trim() + "'", e);
+            }
+        }
+        return result;
+    }
+
+}
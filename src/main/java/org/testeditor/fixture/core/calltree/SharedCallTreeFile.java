@@ -0,0 +1,240 @@
+/*******************************************************************************
+ * Copyright (c) 2012 - 2018 Signal Iduna Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ * Signal Iduna Corporation - initial API and implementation
+ * akquinet AG
+ * itemis AG
+ *******************************************************************************/
+
+package org.testeditor.fixture.core.calltree;
+
+import static java.nio.file.StandardOpenOption.APPEND;
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.testeditor.fixture.core.TestRunReporter.SemanticUnit;
+import org.testeditor.fixture.core.TestRunReporter.Status;
+
+/**
+ * Call tree file shared by all tests of the jvm (one instance per path), for
+ * tests running in parallel. Each test writes its call tree into a segment of
+ * its own, which is appended to the file as a whole when the test run ends
+ * (see {@link CallTreeSerializer#endTestRun()}), such that the call trees of
+ * concurrent tests do not interleave. Appending holds an exclusive lock on
+ * the file, to coordinate with other jvms appending to the same file.
+ *
+ * Segments of tests not ended yet are appended on jvm shutdown, after the
+ * tasks registered by {@link #drainOnShutdown(Runnable)}. The journal format
+ * is written in place and cannot be shared.
+ */
+public class SharedCallTreeFile {
+
+    private static final Logger logger = LoggerFactory.getLogger(SharedCallTreeFile.class);
+
+    private static final Map<Path, SharedCallTreeFile> files = new ConcurrentHashMap<>();
+    private static final Set<Segment> openSegments = ConcurrentHashMap.newKeySet();
+    private static final List<Runnable> shutdownDrains = new CopyOnWriteArrayList<>();
+
+    // a single hook, since the jvm runs hooks in no particular order
+    static {
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            for (Runnable drain : shutdownDrains) {
+                try {
+                    drain.run();
+                } catch (RuntimeException e) {
+                    logger.error("draining call tree writer on shutdown failed", e);
+                }
+            }
+            for (Segment segment : openSegments) {
+                segment.commit();
+            }
+        }, "call-tree-segment-shutdown"));
+    }
+
+    private final FileChannel channel;
+
+    private SharedCallTreeFile(Path path) throws IOException {
+        this.channel = FileChannel.open(path, CREATE, WRITE, APPEND);
+    }
+
+    /**
+     * @return the instance writing to the given file
+     */
+    public static SharedCallTreeFile forFile(File file) throws IOException {
+        Path path = file.getAbsoluteFile().toPath().normalize();
+        try {
+            return files.computeIfAbsent(path, key -> {
+                try {
+                    return new SharedCallTreeFile(key);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * run the given task on jvm shutdown before the segments of tests not ended
+     * yet are appended, e.g. to hand call trees written asynchronously to their
+     * segments
+     */
+    public static void drainOnShutdown(Runnable drain) {
+        shutdownDrains.add(drain);
+    }
+
+    /**
+     * @param format name of the format (see {@link CallTreeSerializerFactory})
+     * @throws IllegalArgumentException if the format cannot be written to a
+     *             shared file
+     */
+    public static void checkFormat(String format) {
+        if (format != null && CallTreeSerializerFactory.JOURNAL.equalsIgnoreCase(format.trim())) {
+            throw new IllegalArgumentException("call tree format '" + format
+                    + "' is written in place and cannot be written to a shared call tree file");
+        }
+    }
+
+    /**
+     * create a serializer writing one test after the other into segments of
+     * this file
+     *
+     * @param format name of the format (see {@link CallTreeSerializerFactory})
+     * @throws IllegalArgumentException if the format is unknown or cannot be
+     *             written to a shared file
+     */
+    public CallTreeSerializer createSerializer(String format) {
+        checkFormat(format);
+        Segment segment = new Segment();
+        return new SegmentedSerializer(CallTreeSerializerFactory.createSerializer(format, segment), segment);
+    }
+
+    private void append(ByteBuffer bytes) throws IOException {
+        synchronized (this) {
+            FileLock lock = channel.lock();
+            try {
+                while (bytes.hasRemaining()) {
+                    channel.write(bytes);
+                }
+            } finally {
+                lock.release();
+            }
+        }
+    }
+
+    /**
+     * call tree of a test written so far, not yet appended to the file
+     */
+    private class Segment extends ByteArrayOutputStream {
+
+        Segment() {
+            super(8192);
+        }
+
+        synchronized void commit() {
+            if (count == 0) {
+                return;
+            }
+            try {
+                append(ByteBuffer.wrap(buf, 0, count));
+            } catch (IOException e) {
+                logger.error("appending call tree segment failed", e);
+            }
+            reset();
+            openSegments.remove(this);
+        }
+
+        @Override
+        public synchronized void write(int value) {
+            registerOpen();
+            super.write(value);
+        }
+
+        @Override
+        public synchronized void write(byte[] bytes, int offset, int length) {
+            registerOpen();
+            super.write(bytes, offset, length);
+        }
+
+        private void registerOpen() {
+            if (count == 0) {
+                openSegments.add(this);
+            }
+        }
+
+    }
+
+    /**
+     * writes to the segment, which is committed at the end of each test run
+     */
+    private static class SegmentedSerializer implements CallTreeSerializer {
+        private final CallTreeSerializer serializer;
+        private final Segment segment;
+
+        SegmentedSerializer(CallTreeSerializer serializer, Segment segment) {
+            this.serializer = serializer;
+            this.segment = segment;
+        }
+
+        @Override
+        public void writeTestRun(int indentation, String source, String testRunId, String commitId, String started)
+                throws IOException {
+            serializer.writeTestRun(indentation, source, testRunId, commitId, started);
+        }
+
+        @Override
+        public void writeEnter(int indentation, SemanticUnit unit, String message, String id, long nanoTimeEntered,
+                Map<String, String> preVariables) throws IOException {
+            serializer.writeEnter(indentation, unit, message, id, nanoTimeEntered, preVariables);
+        }
+
+        @Override
+        public void writeLeave(int indentation, long nanoTimeLeft, Status status, Map<String, String> postVariables)
+                throws IOException {
+            serializer.writeLeave(indentation, nanoTimeLeft, status, postVariables);
+        }
+
+        @Override
+        public void writeAttribute(int indentation, String key, Object value) throws IOException {
+            serializer.writeAttribute(indentation, key, value);
+        }
+
+        /**
+         * hands everything to the segment only, which is appended to the file
+         * at the end of the test run
+         */
+        @Override
+        public void flush() throws IOException {
+            serializer.flush();
+        }
+
+        @Override
+        public void endTestRun() throws IOException {
+            serializer.flush();
+            segment.commit();
+        }
+    }
+
+}
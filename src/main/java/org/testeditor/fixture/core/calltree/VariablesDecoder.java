@@ -0,0 +1,86 @@
+/*******************************************************************************
+ * Copyright (c) 2012 - 2018 Signal Iduna Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ * Signal Iduna Corporation - initial API and implementation
+ * akquinet AG
+ * itemis AG
+ *******************************************************************************/
+
+package org.testeditor.fixture.core.calltree;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Restores variables encoded by {@link VariablesEncoder}, to be called in the
+ * order the variables appear in the call tree.
+ */
+public class VariablesDecoder {
+
+    private final Map<String, Map<String, String>> definitions = new HashMap<>();
+
+    /**
+     * references are resolved within a test run only
+     */
+    public void startTestRun() {
+        definitions.clear();
+    }
+
+    /**
+     * @return variables (e.g. pre variables), variables not encoded are
+     *         returned as they are
+     * @throws IllegalArgumentException if they refer to variables unknown
+     */
+    public Map<String, String> decode(Map<String, String> variables) {
+        if (variables == null) {
+            return null;
+        }
+        String reference = variables.get(VariablesEncoder.REFERENCE);
+        if (reference != null) {
+            Map<String, String> definition = definitions.get(reference);
+            if (definition == null) {
+                throw new IllegalArgumentException("reference to unknown variables '" + reference + "'");
+            }
+            return definition;
+        }
+        String hash = variables.get(VariablesEncoder.HASH);
+        if (hash == null) {
+            return variables;
+        }
+        Map<String, String> definition = new LinkedHashMap<>(variables);
+        definition.remove(VariablesEncoder.HASH);
+        definition = Collections.unmodifiableMap(definition);
+        definitions.put(hash, definition);
+        return definition;
+    }
+
+    /**
+     * @param preVariables the decoded pre variables of the node
+     * @return post variables of the node
+     */
+    public Map<String, String> decodeDelta(Map<String, String> preVariables, Map<String, String> postVariables) {
+        if (postVariables == null || !postVariables.containsKey(VariablesEncoder.DELTA)) {
+            return decode(postVariables);
+        }
+        Map<String, String> result = preVariables == null ? new LinkedHashMap<>() : new LinkedHashMap<>(preVariables);
+        for (Map.Entry<String, String> entry : postVariables.entrySet()) {
+            if (entry.getKey().equals(VariablesEncoder.DELTA)) {
+                continue;
+            }
+            if (entry.getValue() == null) {
+                result.remove(entry.getKey());
+            } else {
+                result.put(entry.getKey(), entry.getValue());
+            }
+        }
+        return result;
+    }
+
+}
@@ -0,0 +1,157 @@
+/*******************************************************************************
+ * Copyright (c) 2012 - 2018 Signal Iduna Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ * Signal Iduna Corporation - initial API and implementation
+ * akquinet AG
+ * itemis AG
+ *******************************************************************************/
+
+package org.testeditor.fixture.core.calltree;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// @formatter:off
+/**
+ * Compact encoding of the variables written with the nodes of the call tree,
+ * for steps carrying large variable maps:
+ * <ul>
+ * <li>variables already written in the same test run (same content) are
+ *     written as reference to the hash of their content
+ *     ({@code "#ref": "<hash>"}), the first occurrence is written completely
+ *     with an additional entry {@code "#hash": "<hash>"},</li>
+ * <li>post variables are written as delta to the pre variables of the node
+ *     ({@code "#delta": "preVariables"}), holding only the keys added or
+ *     changed, and the keys removed with value null (unless that is larger than
+ *     the post variables themselves).</li>
+ * </ul>
+ * Keys starting with '#' are reserved by this encoding. Use
+ * {@link VariablesDecoder} to restore the variables.
+ */
+// @formatter:on
+public class VariablesEncoder {
+
+    public static final String HASH = "#hash";
+    public static final String REFERENCE = "#ref";
+    public static final String DELTA = "#delta";
+    public static final String DELTA_TO_PRE_VARIABLES = "preVariables";
+
+    // number of distinct variable maps referable, least recently used are dropped
+    static final int CACHE_SIZE = 256;
+
+    private final Map<String, Map<String, String>> written = new LinkedHashMap<String, Map<String, String>>(16,
+            0.75f, true) {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Map<String, String>> eldest) {
+            return size() > CACHE_SIZE;
+        }
+    };
+    private Map<String, String> lastEncoded;
+
+    /**
+     * references are resolved within a test run only
+     */
+    public void startTestRun() {
+        written.clear();
+    }
+
+    /**
+     * encode variables (e.g. pre variables), as reference if written before
+     */
+    public Map<String, String> encode(Map<String, String> variables) {
+        if (variables == null || variables.isEmpty()) {
+            lastEncoded = null;
+            return variables;
+        }
+        String hash = hash(variables);
+        Map<String, String> writtenVariables = written.get(hash);
+        if (writtenVariables != null && writtenVariables.equals(variables)) {
+            lastEncoded = writtenVariables;
+            return Collections.singletonMap(REFERENCE, hash);
+        }
+        lastEncoded = Collections.unmodifiableMap(new HashMap<>(variables));
+        written.put(hash, lastEncoded);
+        Map<String, String> result = new LinkedHashMap<>();
+        result.put(HASH, hash);
+        result.putAll(variables);
+        return result;
+    }
+
+    /**
+     * @return copy of the variables passed to {@link #encode(Map)} last, null
+     *         if they were empty, to be passed to
+     *         {@link #encodeDelta(Map, Map)} (unaffected by later modification
+     *         of the map encoded)
+     */
+    public Map<String, String> lastEncoded() {
+        return lastEncoded;
+    }
+
+    /**
+     * encode post variables as delta to the pre variables of the node
+     */
+    public Map<String, String> encodeDelta(Map<String, String> preVariables, Map<String, String> postVariables) {
+        if (postVariables == null || preVariables == null) {
+            return encode(postVariables);
+        }
+        Map<String, String> delta = new LinkedHashMap<>();
+        delta.put(DELTA, DELTA_TO_PRE_VARIABLES);
+        for (Map.Entry<String, String> entry : postVariables.entrySet()) {
+            if (entry.getValue() == null) {
+                // would be taken as removed
+                return encode(postVariables);
+            }
+            if (!entry.getValue().equals(preVariables.get(entry.getKey()))) {
+                delta.put(entry.getKey(), entry.getValue());
+            }
+        }
+        for (String key : preVariables.keySet()) {
+            if (!postVariables.containsKey(key)) {
+                delta.put(key, null);
+            }
+        }
+        if (delta.size() > postVariables.size()) {
+            return encode(postVariables);
+        }
+        return delta;
+    }
+
+    /**
+     * @return hash of the content of the variables, independent of their order
+     */
+    static String hash(Map<String, String> variables) {
+        long hash = 0;
+        for (Map.Entry<String, String> entry : variables.entrySet()) {
+            hash += mix(fnv(entry.getKey()) * 31 + fnv(entry.getValue()));
+        }
+        return Long.toHexString(hash);
+    }
+
+    private static long fnv(String string) {
+        if (string == null) {
+            return 0;
+        }
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < string.length(); i++) {
+            hash ^= string.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    private static long mix(long value) {
+        long result = (value ^ (value >>> 33)) * 0xff51afd7ed558ccdL;
+        result = (result ^ (result >>> 33)) * 0xc4ceb9fe1a85ec53L;
+        return result ^ (result >>> 33);
+    }
+
+}
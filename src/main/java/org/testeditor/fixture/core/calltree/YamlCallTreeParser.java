@@ -0,0 +1,606 @@
+/*******************************************************************************
+ * Copyright (c) 2012 - 2018 Signal Iduna Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ * Signal Iduna Corporation - initial API and implementation
+ * akquinet AG
+ * itemis AG
+ *******************************************************************************/
+
+package org.testeditor.fixture.core.calltree;
+
+import static java.nio.charset.StandardCharsets.US_ASCII;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+import org.testeditor.fixture.core.TestRunReporter.SemanticUnit;
+import org.testeditor.fixture.core.TestRunReporter.Status;
+
+// @formatter:off
+/**
+ * Pull parser for the yaml call tree (see {@link YamlCallTreeSerializer}),
+ * reading it in a single pass with memory bounded by the longest line. It
+ * does not parse yaml in general, but the subset written for call trees.
+ *
+ * <pre>
+ * try (YamlCallTreeParser parser = new YamlCallTreeParser(inputStream)) {
+ *     for (Event event = parser.next(); event != null; event = parser.next()) {
+ *         switch (event) {
+ *             case ENTER:
+ *                 ... parser.getUnit(), parser.getId(), parser.getNanoTime() ...
+ *         }
+ *     }
+ * }
+ * </pre>
+ *
+ * The data of an event (see getters) is valid until {@link #next()} is called
+ * again. Known keys, numbers and enum values are parsed without allocation,
+ * only strings handed out are. An incomplete last line (e.g. of a test jvm
+ * that was killed) is ignored.
+ */
+// @formatter:on
+public class YamlCallTreeParser implements Closeable {
+
+    public enum Event {
+        /** start of a test run: source, test run id, commit id and started */
+        TEST_RUN,
+        /** node entered: unit, message, id and nano time */
+        ENTER,
+        /** variable of the node entered last: key and value */
+        PRE_VARIABLE,
+        /** node left: nano time and status */
+        LEAVE,
+        /** variable of the node left last: key and value */
+        POST_VARIABLE,
+        /** additional attribute of a node (e.g. fixtureException): key and value (null if nested) */
+        ATTRIBUTE,
+        /**
+         * entry of a nested attribute value at depth 1.., key (null for list
+         * elements) and value (null if nested further)
+         */
+        ATTRIBUTE_ENTRY
+    }
+
+    private static final byte[] SOURCE = ascii("source");
+    private static final byte[] TEST_RUN_ID = ascii("testRunId");
+    private static final byte[] COMMIT_ID = ascii("commitId");
+    private static final byte[] STARTED = ascii("started");
+    private static final byte[] CHILDREN = ascii("children");
+    private static final byte[] NODE = ascii("node");
+    private static final byte[] MESSAGE = ascii("message");
+    private static final byte[] ID = ascii("id");
+    private static final byte[] ENTER = ascii("enter");
+    private static final byte[] PRE_VARIABLES = ascii("preVariables");
+    private static final byte[] LEAVE = ascii("leave");
+    private static final byte[] STATUS = ascii("status");
+    private static final byte[] POST_VARIABLES = ascii("postVariables");
+
+    private static final SemanticUnit[] UNITS = SemanticUnit.values();
+    private static final byte[][] UNIT_NAMES = new byte[UNITS.length][];
+    private static final Status[] STATUSES = Status.values();
+    private static final byte[][] STATUS_NAMES = new byte[STATUSES.length][];
+
+    static {
+        for (int i = 0; i < UNITS.length; i++) {
+            UNIT_NAMES[i] = ascii(UNITS[i].name());
+        }
+        for (int i = 0; i < STATUSES.length; i++) {
+            STATUS_NAMES[i] = ascii(STATUSES[i].name());
+        }
+    }
+
+    private final InputStream inputStream;
+    private byte[] buffer;
+    private int bufferEnd = 0;
+    private int nextLineStart = 0;
+    private boolean endOfInput = false;
+    private long lineNumber = 0;
+
+    // current line
+    private int lineStart;
+    private int lineEnd;
+    private int lineIndentation;
+    private boolean listItem;
+    private int keyStart;
+    private int keyEnd;
+    private int valueStart;
+    private int valueEnd;
+    private boolean valueQuoted;
+    private boolean linePending = false;
+
+    // event of which the header lines are read, lines of a variables or attribute section
+    private Event pending = null;
+    private Event section = null;
+    private int sectionIndentation;
+
+    // data of the current event
+    private int indentation;
+    private int depth;
+    private String source;
+    private String testRunId;
+    private String commitId;
+    private String started;
+    private SemanticUnit unit;
+    private String message;
+    private String id;
+    private long nanoTime;
+    private Status status;
+    private String key;
+    private String value;
+    private boolean quoted;
+
+    private final StringBuilder text = new StringBuilder();
+
+    public YamlCallTreeParser(InputStream inputStream) {
+        this(inputStream, 8192);
+    }
+
+    public YamlCallTreeParser(InputStream inputStream, int bufferSize) {
+        this.inputStream = inputStream;
+        this.buffer = new byte[bufferSize];
+    }
+
+    /**
+     * @return next event, null at the end of the call tree
+     * @throws IOException if the call tree cannot be read or is malformed
+     */
+    public Event next() throws IOException {
+        while (true) {
+            if (!linePending) {
+                if (!readLine()) {
+                    return emitPending();
+                }
+                parseLine();
+                linePending = true;
+            }
+            if (section != null) {
+                if (lineIndentation > sectionIndentation) {
+                    linePending = false;
+                    return sectionEntry();
+                }
+                section = null;
+            }
+            if (pending != null && !isHeaderOfPending()) {
+                return emitPending();
+            }
+            linePending = false;
+            Event event = processLine();
+            if (event != null) {
+                return event;
+            }
+        }
+    }
+
+    /**
+     * @return indentation of the line the event starts with (as passed to
+     *         the {@link CallTreeSerializer})
+     */
+    public int getIndentation() {
+        return indentation;
+    }
+
+    /**
+     * @return depth of an attribute entry within its attribute, starting at 1
+     */
+    public int getDepth() {
+        return depth;
+    }
+
+    /**
+     * @return number of the line read last
+     */
+    public long getLineNumber() {
+        return lineNumber;
+    }
+
+    public String getSource() {
+        return source;
+    }
+
+    public String getTestRunId() {
+        return testRunId;
+    }
+
+    public String getCommitId() {
+        return commitId;
+    }
+
+    public String getStarted() {
+        return started;
+    }
+
+    public SemanticUnit getUnit() {
+        return unit;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    /**
+     * @return nano time of enter or leave
+     */
+    public long getNanoTime() {
+        return nanoTime;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    /**
+     * @return key of variable or attribute
+     */
+    public String getKey() {
+        return key;
+    }
+
+    /**
+     * @return value of variable or attribute, null if nested or absent
+     */
+    public String getValue() {
+        return value;
+    }
+
+    /**
+     * @return whether the value was quoted, i.e. a string and not a number
+     */
+    public boolean isQuoted() {
+        return quoted;
+    }
+
+    @Override
+    public void close() throws IOException {
+        inputStream.close();
+    }
+
+    private Event emitPending() {
+        Event event = pending;
+        pending = null;
+        return event;
+    }
+
+    private boolean isHeaderOfPending() {
+        if (listItem || keyStart < 0) {
+            return false;
+        }
+        switch (pending) {
+            case TEST_RUN:
+                return lineIndentation == indentation + YamlCallTreeSerializer.YAML_INDENTATION
+                        && (keyIs(TEST_RUN_ID) || keyIs(COMMIT_ID) || keyIs(STARTED));
+            case ENTER:
+                return lineIndentation == indentation + YamlCallTreeSerializer.YAML_INDENTATION
+                        && (keyIs(MESSAGE) || keyIs(ID) || keyIs(ENTER));
+            case LEAVE:
+                return lineIndentation == indentation && keyIs(STATUS);
+            default:
+                return false;
+        }
+    }
+
+    private Event processLine() throws IOException {
+        if (keyStart < 0) {
+            throw malformed("key expected");
+        }
+        if (listItem) {
+            if (keyIs(SOURCE)) {
+                pending = Event.TEST_RUN;
+                indentation = lineIndentation;
+                source = valueString();
+                testRunId = null;
+                commitId = null;
+                started = null;
+                return null;
+            }
+            if (keyIs(NODE)) {
+                pending = Event.ENTER;
+                indentation = lineIndentation;
+                unit = UNITS[valueEnum(UNIT_NAMES)];
+                message = null;
+                id = null;
+                nanoTime = 0;
+                return null;
+            }
+            throw malformed("node or test run expected");
+        }
+        if (pending == Event.TEST_RUN) {
+            if (keyIs(TEST_RUN_ID)) {
+                testRunId = valueString();
+            } else if (keyIs(COMMIT_ID)) {
+                commitId = valueString();
+            } else {
+                started = valueString();
+            }
+            return null;
+        }
+        if (pending == Event.ENTER) {
+            if (keyIs(MESSAGE)) {
+                message = valueString();
+            } else if (keyIs(ID)) {
+                id = valueString();
+            } else {
+                nanoTime = valueLong();
+            }
+            return null;
+        }
+        if (pending == Event.LEAVE) {
+            status = STATUSES[valueEnum(STATUS_NAMES)];
+            return null;
+        }
+        if (keyIs(LEAVE)) {
+            pending = Event.LEAVE;
+            indentation = lineIndentation;
+            nanoTime = valueLong();
+            status = null;
+            return null;
+        }
+        if (keyIs(CHILDREN)) {
+            return null;
+        }
+        if (keyIs(PRE_VARIABLES) || keyIs(POST_VARIABLES)) {
+            section = keyIs(PRE_VARIABLES) ? Event.PRE_VARIABLE : Event.POST_VARIABLE;
+            sectionIndentation = lineIndentation;
+            return null;
+        }
+        indentation = lineIndentation;
+        key = string(keyStart, keyEnd, true);
+        value = valueString();
+        quoted = valueQuoted;
+        if (value == null) {
+            section = Event.ATTRIBUTE_ENTRY;
+            sectionIndentation = lineIndentation;
+        }
+        return Event.ATTRIBUTE;
+    }
+
+    private Event sectionEntry() throws IOException {
+        indentation = lineIndentation;
+        if (section == Event.ATTRIBUTE_ENTRY) {
+            depth = (lineIndentation - sectionIndentation) / YamlCallTreeSerializer.YAML_INDENTATION;
+            if (keyStart < 0 && !listItem) {
+                throw malformed("key or list element expected");
+            }
+        } else if (keyStart < 0) {
+            throw malformed("variable expected");
+        }
+        key = keyStart < 0 ? null : string(keyStart, keyEnd, true);
+        value = valueString();
+        quoted = valueQuoted;
+        return section;
+    }
+
+    /**
+     * read next complete line into the buffer
+     *
+     * @return false if there is none
+     */
+    private boolean readLine() throws IOException {
+        int scanPosition = nextLineStart;
+        while (true) {
+            for (int i = scanPosition; i < bufferEnd; i++) {
+                if (buffer[i] == '\n') {
+                    lineStart = nextLineStart;
+                    lineEnd = i > lineStart && buffer[i - 1] == '\r' ? i - 1 : i;
+                    nextLineStart = i + 1;
+                    lineNumber++;
+                    return true;
+                }
+            }
+            scanPosition = bufferEnd;
+            if (endOfInput) {
+                return false;
+            }
+            if (nextLineStart > 0) {
+                System.arraycopy(buffer, nextLineStart, buffer, 0, bufferEnd - nextLineStart);
+                bufferEnd -= nextLineStart;
+                scanPosition -= nextLineStart;
+                nextLineStart = 0;
+            }
+            if (bufferEnd == buffer.length) {
+                buffer = Arrays.copyOf(buffer, buffer.length * 2);
+            }
+            int count = inputStream.read(buffer, bufferEnd, buffer.length - bufferEnd);
+            if (count < 0) {
+                endOfInput = true;
+            } else {
+                bufferEnd += count;
+            }
+        }
+    }
+
+    /**
+     * split line into indentation, list item marker, quoted key and value
+     */
+    private void parseLine() throws IOException {
+        int position = lineStart;
+        while (position < lineEnd && buffer[position] == ' ') {
+            position++;
+        }
+        lineIndentation = position - lineStart;
+        listItem = false;
+        keyStart = -1;
+        valueStart = -1;
+        valueQuoted = false;
+        if (position < lineEnd && buffer[position] == '-' && (position + 1 == lineEnd || buffer[position + 1] == ' ')) {
+            listItem = true;
+            position += 2;
+        }
+        if (position < lineEnd && buffer[position] == '"') {
+            int closingQuote = closingQuote(position);
+            if (closingQuote + 1 < lineEnd && buffer[closingQuote + 1] == ':') {
+                keyStart = position + 1;
+                keyEnd = closingQuote;
+                position = closingQuote + 3;
+            }
+        }
+        if (position < lineEnd) {
+            if (buffer[position] == '"') {
+                valueStart = position + 1;
+                valueEnd = closingQuote(position);
+                valueQuoted = true;
+            } else {
+                valueStart = position;
+                valueEnd = lineEnd;
+            }
+        }
+    }
+
+    private int closingQuote(int openingQuote) throws IOException {
+        int position = openingQuote + 1;
+        while (position < lineEnd) {
+            if (buffer[position] == '\\') {
+                position += 2;
+            } else if (buffer[position] == '"') {
+                return position;
+            } else {
+                position++;
+            }
+        }
+        throw malformed("unterminated string");
+    }
+
+    private boolean keyIs(byte[] expected) {
+        return equalBytes(keyStart, keyEnd, expected);
+    }
+
+    private boolean equalBytes(int start, int end, byte[] expected) {
+        if (start < 0 || end - start != expected.length) {
+            return false;
+        }
+        for (int i = 0; i < expected.length; i++) {
+            if (buffer[start + i] != expected[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private String valueString() {
+        return valueStart < 0 ? null : string(valueStart, valueEnd, valueQuoted);
+    }
+
+    private int valueEnum(byte[][] names) throws IOException {
+        for (int i = 0; i < names.length; i++) {
+            if (equalBytes(valueStart, valueEnd, names[i])) {
+                return i;
+            }
+        }
+        throw malformed("unknown value");
+    }
+
+    private long valueLong() throws IOException {
+        if (valueStart < 0 || valueStart == valueEnd) {
+            throw malformed("number expected");
+        }
+        boolean negative = buffer[valueStart] == '-';
+        int position = negative ? valueStart + 1 : valueStart;
+        long result = 0;
+        for (; position < valueEnd; position++) {
+            int digit = buffer[position] - '0';
+            if (digit < 0 || digit > 9) {
+                throw malformed("number expected");
+            }
+            // accumulate negative, such that Long.MIN_VALUE can be parsed
+            result = result * 10 - digit;
+        }
+        return negative ? result : -result;
+    }
+
+    /**
+     * decode string, unescaping what {@link YamlEmitter#escaped(CharSequence)}
+     * escaped if quoted
+     */
+    private String string(int start, int end, boolean unescape) {
+        int backslash = -1;
+        if (unescape) {
+            for (int i = start; i < end; i++) {
+                if (buffer[i] == '\\') {
+                    backslash = i;
+                    break;
+                }
+            }
+        }
+        if (backslash < 0) {
+            return new String(buffer, start, end - start, UTF_8);
+        }
+        text.setLength(0);
+        text.append(new String(buffer, start, backslash - start, UTF_8));
+        int position = backslash;
+        while (position < end) {
+            byte character = buffer[position];
+            if (character != '\\' || position + 1 >= end) {
+                if (character >= 0) {
+                    text.append((char) character);
+                    position++;
+                } else {
+                    int runEnd = position;
+                    while (runEnd < end && buffer[runEnd] < 0) {
+                        runEnd++;
+                    }
+                    text.append(new String(buffer, position, runEnd - position, UTF_8));
+                    position = runEnd;
+                }
+                continue;
+            }
+            byte escaped = buffer[position + 1];
+            position += 2;
+            switch (escaped) {
+                case 'b':
+                    text.append('\b');
+                    break;
+                case 'n':
+                    text.append('\n');
+                    break;
+                case 't':
+                    text.append('\t');
+                    break;
+                case 'f':
+                    text.append('\f');
+                    break;
+                case 'r':
+                    text.append('\r');
+                    break;
+                case 'u':
+                    if (position + 4 <= end) {
+                        text.append((char) hex(position));
+                        position += 4;
+                    } else {
+                        text.append('u');
+                    }
+                    break;
+                default:
+                    text.append((char) escaped);
+            }
+        }
+        return text.toString();
+    }
+
+    private int hex(int start) {
+        int result = 0;
+        for (int i = start; i < start + 4; i++) {
+            result = (result << 4) | Character.digit(buffer[i], 16);
+        }
+        return result;
+    }
+
+    private IOException malformed(String problem) {
+        return new IOException("malformed call tree at line " + lineNumber + ": " + problem);
+    }
+
+    private static byte[] ascii(String string) {
+        return string.getBytes(US_ASCII);
+    }
+
+}
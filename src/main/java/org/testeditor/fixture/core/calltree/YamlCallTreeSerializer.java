@@ -0,0 +1,194 @@
+/*******************************************************************************
+ * Copyright (c) 2012 - 2018 Signal Iduna Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ * Signal Iduna Corporation - initial API and implementation
+ * akquinet AG
+ * itemis AG
+ *******************************************************************************/
+
+package org.testeditor.fixture.core.calltree;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Map;
+
+import org.testeditor.fixture.core.TestRunReporter.SemanticUnit;
+import org.testeditor.fixture.core.TestRunReporter.Status;
+import org.testeditor.fixture.core.Variables;
+
+// @formatter:off
+/**
+ * Writes the call tree as yaml:
+ *
+ * <pre>
+ * - "source": "test case source"
+ *   "testRunId": "..."
+ *   "commitId": "..."
+ *   "started": "instant"
+ *   "children":
+ *   - "node": "TEST"
+ *     "message": "message"
+ *     "id": "id"
+ *     "enter": "nano time of enter"
+ *     "preVariables":
+ *       "key": "value"
+ *     "children":
+ *     - "node": "SPECIFICATION_STEP"
+ *       ...
+ *     "leave": "nano time of leave"
+ *     "status": "OK|UNKNOWN|ERROR|..."
+ *     "postVariables":
+ * </pre>
+ */
+// @formatter:on
+public class YamlCallTreeSerializer implements CallTreeSerializer {
+
+    public static final int YAML_INDENTATION = 2;
+
+    protected final YamlEmitter emitter;
+    private int currentIndentation;
+
+    public YamlCallTreeSerializer(OutputStream outputStream) {
+        this(new YamlEmitter(outputStream));
+    }
+
+    public YamlCallTreeSerializer(YamlEmitter emitter) {
+        this.emitter = emitter;
+    }
+
+    @Override
+    public void writeTestRun(int indentation, String source, String testRunId, String commitId, String started)
+            throws IOException {
+        currentIndentation = indentation;
+        writePrefixed("-", "source", source);
+        currentIndentation += YAML_INDENTATION;
+        write("testRunId", testRunId);
+        write("commitId", commitId);
+        write("started", started);
+        write("children", null);
+    }
+
+    @Override
+    public void writeEnter(int indentation, SemanticUnit unit, String message, String id, long nanoTimeEntered,
+            Map<String, String> preVariables) throws IOException {
+        currentIndentation = indentation;
+        writePrefixed("-", "node", unit.toString());
+        currentIndentation += YAML_INDENTATION;
+        write("message", message);
+        write("id", id);
+        writeLong("enter", nanoTimeEntered);
+        write("preVariables", preVariables);
+        write("children", null);
+    }
+
+    @Override
+    public void writeLeave(int indentation, long nanoTimeLeft, Status status, Map<String, String> postVariables)
+            throws IOException {
+        currentIndentation = indentation;
+        writeLong("leave", nanoTimeLeft);
+        write("status", status.toString());
+        write("postVariables", postVariables);
+    }
+
+    @Override
+    public void writeAttribute(int indentation, String key, Object value) throws IOException {
+        currentIndentation = indentation;
+        write(key, value);
+    }
+
+    @Override
+    public void flush() throws IOException {
+        emitter.flush();
+    }
+
+    /**
+     * @return number of bytes written so far
+     */
+    public long position() {
+        return emitter.position();
+    }
+
+    private void writeAttributePrefixed(String prefix, String attribute) throws IOException {
+        emitter.indentation(currentIndentation);
+        if ((prefix != null) && (!prefix.isEmpty())) {
+            emitter.raw(prefix);
+            emitter.space();
+        }
+        if (!attribute.equals("-")) {
+            emitter.quoted(attribute);
+            emitter.ascii(':');
+        } else {
+            emitter.raw(attribute);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void writePrefixed(String prefix, String attribute, Object object) throws IOException {
+        writeAttributePrefixed(prefix, attribute);
+        if (object instanceof ArrayList) {
+            emitter.newLine();
+            currentIndentation += YAML_INDENTATION;
+            for (Object value : (ArrayList<Object>) object) {
+                write("-", value);
+            }
+            currentIndentation -= YAML_INDENTATION;
+        } else if (object instanceof Variables) {
+            Variables variables = (Variables) object;
+            emitter.newLine();
+            currentIndentation += YAML_INDENTATION;
+            for (int i = 0; i < variables.size(); i++) {
+                write(variables.key(i), variables.value(i));
+            }
+            currentIndentation -= YAML_INDENTATION;
+        } else if (object instanceof Map) {
+            emitter.newLine();
+            currentIndentation += YAML_INDENTATION;
+            for (Map.Entry<String, Object> entry : ((Map<String, Object>) object).entrySet()) {
+                write(entry.getKey(), entry.getValue());
+            }
+            currentIndentation -= YAML_INDENTATION;
+        } else if (object instanceof String) {
+            emitter.space();
+            emitter.quoted((String) object);
+            emitter.newLine();
+        } else if (object instanceof Number) {
+            emitter.space();
+            writeNumber((Number) object);
+            emitter.newLine();
+        } else if (object != null) {
+            emitter.space();
+            emitter.quoted(object.toString());
+            emitter.newLine();
+        } else {
+            emitter.newLine();
+        }
+    }
+
+    private void write(String attribute, Object object) throws IOException {
+        writePrefixed("", attribute, object);
+    }
+
+    /** write long value as (quoted) string attribute */
+    private void writeLong(String attribute, long value) throws IOException {
+        writeAttributePrefixed("", attribute);
+        emitter.space();
+        emitter.quoted(value);
+        emitter.newLine();
+    }
+
+    private void writeNumber(Number number) throws IOException {
+        if (number instanceof Long || number instanceof Integer || number instanceof Short
+                || number instanceof Byte) {
+            emitter.number(number.longValue());
+        } else {
+            emitter.raw(number.toString());
+        }
+    }
+
+}
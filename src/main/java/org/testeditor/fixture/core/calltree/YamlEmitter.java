@@ -0,0 +1,249 @@
+/*******************************************************************************
+ * Copyright (c) 2012 - 2018 Signal Iduna Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ * Signal Iduna Corporation - initial API and implementation
+ * akquinet AG
+ * itemis AG
+ *******************************************************************************/
+
+package org.testeditor.fixture.core.calltree;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Low level writer of the call tree yaml, encoding UTF-8 directly into a
+ * reusable {@link ByteBuffer} that is handed to the output stream when full or
+ * flushed.
+ *
+ * Apart from the buffer allocated once, writing does not allocate: indentation
+ * is copied from a precomputed table, strings are escaped character by
+ * character into the buffer and longs are formatted digit by digit. Escaping
+ * is identical to {@code StringEscapeUtils.escapeJava} (commons-text), all
+ * characters outside of printable ascii are written as unicode escapes.
+ */
+public class YamlEmitter {
+
+    public static final int DEFAULT_BUFFER_SIZE = 8192;
+
+    private static final int INDENTATION_TABLE_SIZE = 256;
+    private static final byte[] SPACES = new byte[INDENTATION_TABLE_SIZE];
+    private static final byte[] HEX_DIGITS = { '0', '1', '2', '3', '4', '5', '6', '7', '8', '9', 'A', 'B', 'C',
+        'D', 'E', 'F' };
+    // longest representation of a long: sign and 19 digits
+    private static final int MAX_LONG_LENGTH = 20;
+    // longest representation of a single escaped char: backslash, u and four hex digits
+    private static final int MAX_ESCAPED_CHAR_LENGTH = 6;
+
+    static {
+        Arrays.fill(SPACES, (byte) ' ');
+    }
+
+    private final OutputStream outputStream;
+    private final ByteBuffer buffer;
+    private final byte[] bytes;
+    private long flushedBytes = 0;
+
+    public YamlEmitter(OutputStream outputStream) {
+        this(outputStream, DEFAULT_BUFFER_SIZE);
+    }
+
+    public YamlEmitter(OutputStream outputStream, int bufferSize) {
+        this.outputStream = outputStream;
+        this.buffer = ByteBuffer.allocate(Math.max(bufferSize, MAX_LONG_LENGTH + 2));
+        this.bytes = buffer.array();
+    }
+
+    /**
+     * @return number of bytes emitted so far (including those still buffered)
+     */
+    public long position() {
+        return flushedBytes + buffer.position();
+    }
+
+    public void indentation(int count) throws IOException {
+        int remaining = count;
+        while (remaining > 0) {
+            int chunk = Math.min(Math.min(remaining, INDENTATION_TABLE_SIZE), buffer.capacity());
+            ensureCapacity(chunk);
+            buffer.put(SPACES, 0, chunk);
+            remaining -= chunk;
+        }
+    }
+
+    public void newLine() throws IOException {
+        ascii('\n');
+    }
+
+    public void space() throws IOException {
+        ascii(' ');
+    }
+
+    /**
+     * write a character known to be ascii (no encoding necessary)
+     */
+    public void ascii(char character) throws IOException {
+        ensureCapacity(1);
+        buffer.put((byte) character);
+    }
+
+    /**
+     * write string as is (UTF-8 encoded, unpaired surrogates are replaced by
+     * '?' as done by the standard charset encoder)
+     */
+    public void raw(CharSequence string) throws IOException {
+        int length = string.length();
+        for (int i = 0; i < length; i++) {
+            char character = string.charAt(i);
+            if (character < 0x80) {
+                ascii(character);
+            } else if (Character.isHighSurrogate(character) && i + 1 < length
+                    && Character.isLowSurrogate(string.charAt(i + 1))) {
+                codePoint(Character.toCodePoint(character, string.charAt(++i)));
+            } else if (Character.isSurrogate(character)) {
+                ascii('?');
+            } else {
+                codePoint(character);
+            }
+        }
+    }
+
+    /**
+     * write string escaped like java string literals enclosed in double quotes
+     */
+    public void quoted(CharSequence string) throws IOException {
+        ascii('"');
+        escaped(string);
+        ascii('"');
+    }
+
+    /**
+     * write string escaped like java string literals
+     */
+    public void escaped(CharSequence string) throws IOException {
+        int length = string.length();
+        for (int i = 0; i < length; i++) {
+            ensureCapacity(MAX_ESCAPED_CHAR_LENGTH);
+            char character = string.charAt(i);
+            switch (character) {
+                case '"':
+                    escape('"');
+                    break;
+                case '\\':
+                    escape('\\');
+                    break;
+                case '\b':
+                    escape('b');
+                    break;
+                case '\n':
+                    escape('n');
+                    break;
+                case '\t':
+                    escape('t');
+                    break;
+                case '\f':
+                    escape('f');
+                    break;
+                case '\r':
+                    escape('r');
+                    break;
+                default:
+                    if (character < 32 || character > 0x7f) {
+                        buffer.put((byte) '\\').put((byte) 'u') //
+                                .put(HEX_DIGITS[(character >> 12) & 0xF]) //
+                                .put(HEX_DIGITS[(character >> 8) & 0xF]) //
+                                .put(HEX_DIGITS[(character >> 4) & 0xF]) //
+                                .put(HEX_DIGITS[character & 0xF]);
+                    } else {
+                        buffer.put((byte) character);
+                    }
+                    break;
+            }
+        }
+    }
+
+    /**
+     * write long value enclosed in double quotes
+     */
+    public void quoted(long value) throws IOException {
+        ensureCapacity(MAX_LONG_LENGTH + 2);
+        buffer.put((byte) '"');
+        number(value);
+        buffer.put((byte) '"');
+    }
+
+    /**
+     * write decimal representation of the long value (as Long.toString does)
+     */
+    public void number(long value) throws IOException {
+        ensureCapacity(MAX_LONG_LENGTH);
+        if (value == Long.MIN_VALUE) {
+            raw("-9223372036854775808");
+            return;
+        }
+        long remaining = value;
+        if (remaining < 0) {
+            buffer.put((byte) '-');
+            remaining = -remaining;
+        }
+        int digits = 1;
+        for (long bound = 10; digits < 19 && remaining >= bound; bound *= 10) {
+            digits++;
+        }
+        int end = buffer.position() + digits;
+        for (int index = end - 1; index >= buffer.position(); index--) {
+            bytes[index] = (byte) ('0' + (remaining % 10));
+            remaining /= 10;
+        }
+        buffer.position(end);
+    }
+
+    /**
+     * write buffered bytes to the output stream and flush it
+     */
+    public void flush() throws IOException {
+        drain();
+        outputStream.flush();
+    }
+
+    private void escape(char character) {
+        buffer.put((byte) '\\').put((byte) character);
+    }
+
+    private void codePoint(int codePoint) throws IOException {
+        ensureCapacity(4);
+        if (codePoint < 0x800) {
+            buffer.put((byte) (0xC0 | (codePoint >> 6)));
+        } else if (codePoint < 0x10000) {
+            buffer.put((byte) (0xE0 | (codePoint >> 12)));
+            buffer.put((byte) (0x80 | ((codePoint >> 6) & 0x3F)));
+        } else {
+            buffer.put((byte) (0xF0 | (codePoint >> 18)));
+            buffer.put((byte) (0x80 | ((codePoint >> 12) & 0x3F)));
+            buffer.put((byte) (0x80 | ((codePoint >> 6) & 0x3F)));
+        }
+        buffer.put((byte) (0x80 | (codePoint & 0x3F)));
+    }
+
+    private void ensureCapacity(int required) throws IOException {
+        if (buffer.remaining() < required) {
+            drain();
+        }
+    }
+
+    private void drain() throws IOException {
+        if (buffer.position() > 0) {
+            outputStream.write(bytes, 0, buffer.position());
+            flushedBytes += buffer.position();
+            buffer.clear();
+        }
+    }
+
+}
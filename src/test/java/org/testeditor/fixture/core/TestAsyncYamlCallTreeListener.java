@@ -0,0 +1,139 @@
+/*******************************************************************************
+ * Copyright (c) 2012 - 2018 Signal Iduna Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ * Signal Iduna Corporation - initial API and implementation
+ * akquinet AG
+ * itemis AG
+ *******************************************************************************/
+
+package org.testeditor.fixture.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.junit.Test;
+import org.testeditor.fixture.core.TestRunReporter.Action;
+import org.testeditor.fixture.core.TestRunReporter.SemanticUnit;
+import org.testeditor.fixture.core.TestRunReporter.Status;
+
+public class TestAsyncYamlCallTreeListener {
+
+    @Test
+    public void testAsyncOutputEqualsSynchronousOutput() {
+        // given
+        ByteArrayOutputStream syncOutput = new ByteArrayOutputStream();
+        ByteArrayOutputStream asyncOutput = new ByteArrayOutputStream();
+        TestRunListener syncListener = new DefaultYamlCallTreeListener(syncOutput, "testcase", "1", "decaf");
+        TestRunListener asyncListener = new AsyncYamlCallTreeListener(
+                new DefaultYamlCallTreeListener(asyncOutput, "testcase", "1", "decaf"), 8, 3, 10);
+
+        // when
+        reportSomeSteps(syncListener);
+        reportSomeSteps(asyncListener);
+
+        // then (leaving the test drains the queue)
+        assertEquals(withoutNanos(syncOutput), withoutNanos(asyncOutput));
+    }
+
+    @Test
+    public void testExitDrainsQueueBeforeReturning() {
+        // given
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        TestRunListener asyncListener = new AsyncYamlCallTreeListener(
+                new DefaultYamlCallTreeListener(output, "testcase", "1", "decaf"), 8, 1000, 60000);
+        asyncListener.reported(SemanticUnit.TEST, Action.ENTER, "test", "4711", Status.STARTED, null);
+        asyncListener.reported(SemanticUnit.SPECIFICATION_STEP, Action.ENTER, "spec step", "4712", Status.STARTED,
+                null);
+
+        // when
+        asyncListener.reportAssertionExit(new AssertionError("failed"));
+
+        // then
+        String written = new String(output.toByteArray(), StandardCharsets.UTF_8);
+        assertTrue(written.endsWith("      \"assertionError\": \"failed\"\n" + //
+                "      \"leave\": \"" + lastLeaveNanos(written) + "\"\n" + //
+                "      \"status\": \"ERROR\"\n" + //
+                "      \"postVariables\":\n"));
+    }
+
+    @Test
+    public void testTimestampsAreTakenWhenReported() throws InterruptedException {
+        // given
+        SlowOutputStream output = new SlowOutputStream();
+        TestRunListener asyncListener = new AsyncYamlCallTreeListener(
+                new DefaultYamlCallTreeListener(output, "testcase", "1", "decaf"), 8, 1, 10);
+
+        // when
+        long before = System.nanoTime();
+        asyncListener.reported(SemanticUnit.TEST, Action.ENTER, "test", "4711", Status.STARTED, null);
+        long after = System.nanoTime();
+        asyncListener.reported(SemanticUnit.TEST, Action.LEAVE, "test", "4711", Status.OK, null);
+
+        // then
+        Matcher enter = Pattern.compile("\"enter\": \"(-?[0-9]+)\"").matcher(output.toString());
+        assertTrue(enter.find());
+        long entered = Long.parseLong(enter.group(1));
+        assertTrue(before <= entered && entered <= after);
+    }
+
+    private void reportSomeSteps(TestRunListener listener) {
+        listener.reported(SemanticUnit.TEST, Action.ENTER, "test", "4711", Status.STARTED, null);
+        listener.reported(SemanticUnit.SPECIFICATION_STEP, Action.ENTER, "spec", "4712", Status.STARTED, null);
+        for (int i = 0; i < 20; i++) {
+            listener.reported(SemanticUnit.STEP, Action.ENTER, "step " + i, "4713-" + i, Status.STARTED,
+                    AbstractTestCase.variables("i", Integer.toString(i)));
+            listener.reported(SemanticUnit.STEP, Action.LEAVE, "step " + i, "4713-" + i, Status.OK, null);
+        }
+        listener.reported(SemanticUnit.SPECIFICATION_STEP, Action.LEAVE, "spec", "4712", Status.OK, null);
+        listener.reported(SemanticUnit.TEST, Action.LEAVE, "test", "4711", Status.OK, null);
+    }
+
+    private String withoutNanos(ByteArrayOutputStream output) {
+        return new String(output.toByteArray(), StandardCharsets.UTF_8)
+                .replaceAll(" *\"(enter|leave|started)\": \"[0-9-.ZT:]*\" *\n", "");
+    }
+
+    private String lastLeaveNanos(String written) {
+        Matcher leave = Pattern.compile("\"leave\": \"(-?[0-9]+)\"").matcher(written);
+        String result = null;
+        while (leave.find()) {
+            result = leave.group(1);
+        }
+        return result;
+    }
+
+    private static class SlowOutputStream extends OutputStream {
+        private final StringBuffer written = new StringBuffer();
+
+        @Override
+        public void write(int b) {
+            written.append((char) b);
+        }
+
+        @Override
+        public void flush() {
+            try {
+                Thread.sleep(5);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        @Override
+        public String toString() {
+            return written.toString();
+        }
+    }
+
+}
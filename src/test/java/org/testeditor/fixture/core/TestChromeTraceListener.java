@@ -0,0 +1,186 @@
+/*******************************************************************************
+ * Copyright (c) 2012 - 2018 Signal Iduna Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ * Signal Iduna Corporation - initial API and implementation
+ * akquinet AG
+ * itemis AG
+ *******************************************************************************/
+
+package org.testeditor.fixture.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CyclicBarrier;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.testeditor.fixture.core.TestRunReporter.Action;
+import org.testeditor.fixture.core.TestRunReporter.SemanticUnit;
+import org.testeditor.fixture.core.TestRunReporter.Status;
+
+public class TestChromeTraceListener {
+
+    private static final Pattern TRACK = Pattern.compile("\"tid\":([0-9]+)");
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testStepsAndBranchesAreWrittenAsSpansOnTracks() {
+        // given
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        ChromeTraceListener listener = new ChromeTraceListener(output);
+
+        // when
+        listener.reported(SemanticUnit.TEST, Action.ENTER, "org.example.SomeTest", "IDROOT", Status.STARTED, null);
+        listener.reported(SemanticUnit.STEP, Action.ENTER, "click \"ok\"", "ID1", Status.STARTED, null);
+        listener.reportedFork("ID1/1", null, "ID1");
+        listener.reportedInBranch("ID1/1", SemanticUnit.STEP, Action.ENTER, "wait", "ID2", Status.STARTED, null);
+        listener.reportedInBranch("ID1/1", SemanticUnit.STEP, Action.LEAVE, "wait", "ID2", Status.OK, null);
+        listener.reportedJoin("ID1/1");
+        listener.reported(SemanticUnit.STEP, Action.LEAVE, "click \"ok\"", "ID1", Status.ERROR, null);
+        listener.reported(SemanticUnit.TEST, Action.LEAVE, "org.example.SomeTest", "IDROOT", Status.OK, null);
+
+        // then (flushed when the test is left)
+        assertEquals("[\n" //
+                + "{\"name\":\"thread_name\",\"ph\":\"M\",\"pid\":0,\"tid\":1,"
+                + "\"args\":{\"name\":\"org.example.SomeTest\"}},\n" //
+                + "{\"ph\":\"B\",\"name\":\"org.example.SomeTest\",\"cat\":\"TEST\",\"ts\":0,\"pid\":0,\"tid\":1,"
+                + "\"args\":{\"id\":\"IDROOT\"}},\n" //
+                + "{\"ph\":\"B\",\"name\":\"click \\\"ok\\\"\",\"cat\":\"STEP\",\"ts\":0,\"pid\":0,\"tid\":1,"
+                + "\"args\":{\"id\":\"ID1\"}},\n" //
+                + "{\"name\":\"thread_name\",\"ph\":\"M\",\"pid\":0,\"tid\":2,\"args\":{\"name\":\"ID1/1\"}},\n" //
+                + "{\"ph\":\"B\",\"name\":\"wait\",\"cat\":\"STEP\",\"ts\":0,\"pid\":0,\"tid\":2,"
+                + "\"args\":{\"id\":\"ID2\"}},\n" //
+                + "{\"ph\":\"E\",\"name\":\"wait\",\"cat\":\"STEP\",\"ts\":0,\"pid\":0,\"tid\":2,"
+                + "\"args\":{\"status\":\"OK\"}},\n" //
+                + "{\"ph\":\"E\",\"name\":\"click \\\"ok\\\"\",\"cat\":\"STEP\",\"ts\":0,\"pid\":0,\"tid\":1,"
+                + "\"args\":{\"status\":\"ERROR\"}},\n" //
+                + "{\"ph\":\"E\",\"name\":\"org.example.SomeTest\",\"cat\":\"TEST\",\"ts\":0,\"pid\":0,\"tid\":1,"
+                + "\"args\":{\"status\":\"OK\"}}", normalized(output.toString(StandardCharsets.UTF_8)));
+    }
+
+    @Test
+    public void testExitEndsOpenSpans() {
+        // given
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        ChromeTraceListener listener = new ChromeTraceListener(output);
+        listener.reported(SemanticUnit.TEST, Action.ENTER, "test", "IDROOT", Status.STARTED, null);
+        listener.reported(SemanticUnit.STEP, Action.ENTER, "step", "ID1", Status.STARTED, null);
+
+        // when
+        listener.reportAssertionExit(new AssertionError("failed"));
+
+        // then
+        String trace = normalized(output.toString(StandardCharsets.UTF_8));
+        assertTrue(trace, trace.endsWith("{\"ph\":\"i\",\"name\":\"assertionError\",\"cat\":\"EXIT\",\"ts\":0,"
+                + "\"pid\":0,\"tid\":1,\"s\":\"t\",\"args\":{\"message\":\"failed\"}},\n" //
+                + "{\"ph\":\"E\",\"ts\":0,\"pid\":0,\"tid\":1,\"args\":{\"status\":\"ERROR\"}},\n" //
+                + "{\"ph\":\"E\",\"ts\":0,\"pid\":0,\"tid\":1,\"args\":{\"status\":\"ERROR\"}}"));
+    }
+
+    @Test
+    public void testTracesOfSeveralTestsAreAppendedToOneArray() throws IOException {
+        // given
+        File traceFile = folder.newFile("trace.json");
+
+        // when
+        for (int i = 0; i < 2; i++) {
+            ChromeTraceListener listener = new ChromeTraceListener(traceFile);
+            listener.reported(SemanticUnit.TEST, Action.ENTER, "test", "IDROOT", Status.STARTED, null);
+            listener.reported(SemanticUnit.TEST, Action.LEAVE, "test", "IDROOT", Status.OK, null);
+        }
+
+        // then
+        String trace = new String(Files.readAllBytes(traceFile.toPath()), StandardCharsets.UTF_8);
+        assertEquals("[\n" //
+                + "{\"name\":\"thread_name\",\"ph\":\"M\",\"pid\":0,\"tid\":1,\"args\":{\"name\":\"test\"}},\n" //
+                + "{\"ph\":\"B\",\"name\":\"test\",\"cat\":\"TEST\",\"ts\":0,\"pid\":0,\"tid\":1,"
+                + "\"args\":{\"id\":\"IDROOT\"}},\n" //
+                + "{\"ph\":\"E\",\"name\":\"test\",\"cat\":\"TEST\",\"ts\":0,\"pid\":0,\"tid\":1,"
+                + "\"args\":{\"status\":\"OK\"}},\n" //
+                + "{\"name\":\"thread_name\",\"ph\":\"M\",\"pid\":0,\"tid\":2,\"args\":{\"name\":\"test\"}},\n" //
+                + "{\"ph\":\"B\",\"name\":\"test\",\"cat\":\"TEST\",\"ts\":0,\"pid\":0,\"tid\":2,"
+                + "\"args\":{\"id\":\"IDROOT\"}},\n" //
+                + "{\"ph\":\"E\",\"name\":\"test\",\"cat\":\"TEST\",\"ts\":0,\"pid\":0,\"tid\":2,"
+                + "\"args\":{\"status\":\"OK\"}}", normalized(trace));
+    }
+
+    @Test
+    public void testTestsRunningInParallelShareTheFile() throws Exception {
+        // given
+        File traceFile = folder.newFile("trace.json");
+        int threadCount = 4;
+        int steps = 20;
+        CyclicBarrier barrier = new CyclicBarrier(threadCount);
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < threadCount; t++) {
+            ChromeTraceListener listener = new ChromeTraceListener(traceFile);
+            threads.add(new Thread(() -> {
+                try {
+                    barrier.await();
+                } catch (Exception e) {
+                    throw new IllegalStateException(e);
+                }
+                listener.reported(SemanticUnit.TEST, Action.ENTER, "test", "IDROOT", Status.STARTED, null);
+                for (int i = 0; i < steps; i++) {
+                    listener.reported(SemanticUnit.STEP, Action.ENTER, "step", "ID" + i, Status.STARTED, null);
+                    listener.reported(SemanticUnit.STEP, Action.LEAVE, "step", "ID" + i, Status.OK, null);
+                }
+                listener.reported(SemanticUnit.TEST, Action.LEAVE, "test", "IDROOT", Status.OK, null);
+            }));
+        }
+
+        // when
+        threads.forEach(Thread::start);
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        // then (one event per line)
+        String[] lines = new String(Files.readAllBytes(traceFile.toPath()), StandardCharsets.UTF_8).split("\n");
+        assertEquals("[", lines[0]);
+        assertEquals(1 + threadCount * (1 + 2 * (steps + 1)), lines.length);
+        String event = "\\{\"(name|ph)\":[^{}]*\\{[^{}]*\\}\\}";
+        for (int i = 1; i < lines.length; i++) {
+            assertTrue(lines[i], lines[i].matches(i < lines.length - 1 ? event + "," : event));
+        }
+    }
+
+    /**
+     * trace with timestamps and process id replaced by 0, track ids numbered
+     * in the order of appearance
+     */
+    private String normalized(String trace) {
+        String withoutTimes = trace.replaceAll("\"ts\":[0-9]+\\.[0-9]{3}", "\"ts\":0")
+                .replaceAll("\"pid\":[0-9]+", "\"pid\":0");
+        Map<String, String> tracks = new LinkedHashMap<>();
+        Matcher matcher = TRACK.matcher(withoutTimes);
+        StringBuffer result = new StringBuffer();
+        while (matcher.find()) {
+            String track = tracks.computeIfAbsent(matcher.group(1), id -> Integer.toString(tracks.size() + 1));
+            matcher.appendReplacement(result, "\"tid\":" + track);
+        }
+        matcher.appendTail(result);
+        return result.toString();
+    }
+
+}
@@ -13,9 +13,16 @@
 
 package org.testeditor.fixture.core;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertTrue;
 import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoMoreInteractions;
@@ -26,6 +33,27 @@ import static org.testeditor.fixture.core.TestRunReporter.SemanticUnit.SPECIFICA
 import static org.testeditor.fixture.core.TestRunReporter.SemanticUnit.STEP;
 import static org.testeditor.fixture.core.TestRunReporter.SemanticUnit.TEST;
 
+import java.io.ByteArrayOutputStream;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import javax.management.ObjectName;
+import javax.management.openmbean.CompositeData;
+
 import org.junit.Before;
 import org.junit.Test;
 import org.mockito.InOrder;
@@ -68,6 +96,7 @@ public class TestDefaultTestRunReporter {
         classUnderTest.enter(TEST, "Test", "ID", Status.OK, null);
 
         // then
+        verify(listener).subscription();
         verify(listener).reported(TEST, ENTER, "Test", "ID", Status.OK, null);
         verifyNoMoreInteractions(listener);
     }
@@ -82,6 +111,7 @@ public class TestDefaultTestRunReporter {
         classUnderTest.enter(TEST, "Test", "ID", Status.OK, null);
 
         // then
+        verify(listener).subscription();
         verify(listener, never()).reported(TEST, ENTER, "Test", "ID", Status.OK, null);
         verifyNoMoreInteractions(listener);
     }
@@ -154,6 +184,9 @@ public class TestDefaultTestRunReporter {
         verify(brokenListener1).reported(TEST, ENTER, "Test", "ID", Status.STARTED, null);
         verify(brokenListener2).reported(TEST, ENTER, "Test", "ID", Status.STARTED, null);
         verify(listener).reported(TEST, ENTER, "Test", "ID", Status.STARTED, null);
+        verify(brokenListener1).subscription();
+        verify(brokenListener2).subscription();
+        verify(listener).subscription();
         verifyNoMoreInteractions(listener, brokenListener1, brokenListener2);
     }
     
@@ -189,4 +222,769 @@ public class TestDefaultTestRunReporter {
         listenerOrder.verify(logListener).reported(TEST, LEAVE, "Test", "ID1", Status.STARTED, null);
     }
 
+    @Test
+    public void testListenersAreInformedOfSubscribedEventsOnly() {
+        // given
+        RecordingListener subscribedListener = new RecordingListener(new CountDownLatch(0)) {
+            @Override
+            public Subscription subscription() {
+                return Subscription.of(EnumSet.of(TEST, SPECIFICATION_STEP), EnumSet.of(ENTER));
+            }
+        };
+        classUnderTest.addListener(subscribedListener);
+        classUnderTest.addListener(listener);
+
+        // when
+        classUnderTest.enter(TEST, "Test", "ID1", Status.STARTED, null);
+        classUnderTest.enter(SPECIFICATION_STEP, "Specification", "ID2", Status.STARTED, null);
+        classUnderTest.enter(STEP, "Step", "ID3", Status.STARTED, null);
+        classUnderTest.leave(STEP, "Step", "ID3", Status.OK, null);
+        classUnderTest.leave(SPECIFICATION_STEP, "Specification", "ID2", Status.OK, null);
+        classUnderTest.leave(TEST, "Test", "ID1", Status.OK, null);
+
+        // then
+        assertEquals(Arrays.asList("ENTER TEST ID1", "ENTER SPECIFICATION_STEP ID2"), subscribedListener.events);
+        verify(listener).reported(STEP, LEAVE, "Step", "ID3", Status.OK, null);
+    }
+
+    @Test
+    public void testAsyncDispatchKeepsOrderAndWaitsOnExit() {
+        // given
+        doThrow(new RuntimeException("exception")).when(brokenListener1).reported(any(SemanticUnit.class),
+                any(Action.class), any(String.class), any(String.class), any(Status.class), any(), anyLong());
+        TestRunReporter asyncReporter = new DefaultTestRunReporter(logListener, 4);
+        asyncReporter.addListener(brokenListener1);
+        asyncReporter.addListener(listener);
+        RuntimeException exception = new RuntimeException("exit");
+
+        // when
+        asyncReporter.enter(TEST, "Test", "ID1", Status.STARTED, null);
+        for (int i = 0; i < 20; i++) {
+            asyncReporter.enter(STEP, "Step" + i, "ID" + i, Status.STARTED, null);
+            asyncReporter.leave(STEP, "Step" + i, "ID" + i, Status.OK, null);
+        }
+        asyncReporter.exceptionExit(exception);
+
+        // then
+        InOrder listenerOrder = inOrder(logListener, brokenListener1, listener);
+        verifyReportedAt(listenerOrder, logListener, TEST, ENTER, "Test", "ID1", Status.STARTED);
+        verifyReportedAt(listenerOrder, listener, TEST, ENTER, "Test", "ID1", Status.STARTED);
+        for (int i = 0; i < 20; i++) {
+            verifyReportedAt(listenerOrder, listener, STEP, ENTER, "Step" + i, "ID" + i, Status.STARTED);
+            verifyReportedAt(listenerOrder, brokenListener1, STEP, LEAVE, "Step" + i, "ID" + i, Status.OK);
+            verifyReportedAt(listenerOrder, listener, STEP, LEAVE, "Step" + i, "ID" + i, Status.OK);
+            verifyReportedAt(listenerOrder, logListener, STEP, LEAVE, "Step" + i, "ID" + i, Status.OK);
+        }
+        listenerOrder.verify(logListener).reportExceptionExit(exception);
+        listenerOrder.verify(listener).reportExceptionExit(exception);
+    }
+
+    @Test
+    public void testAsyncDispatchIsDoneOnDispatcherThread() {
+        // given
+        List<Thread> reportingThreads = new ArrayList<>();
+        TestRunListener recordingListener = mock(TestRunListener.class);
+        doAnswer(invocation -> reportingThreads.add(Thread.currentThread())).when(recordingListener)
+                .reported(any(SemanticUnit.class), any(Action.class), any(String.class), any(String.class),
+                        any(Status.class), any(), anyLong());
+        TestRunReporter asyncReporter = new DefaultTestRunReporter(logListener, 16);
+        asyncReporter.addListener(recordingListener);
+
+        // when
+        asyncReporter.enter(TEST, "Test", "ID1", Status.STARTED, null);
+        asyncReporter.leave(TEST, "Test", "ID1", Status.OK, null);
+
+        // then
+        assertEquals(2, reportingThreads.size());
+        assertNotSame(Thread.currentThread(), reportingThreads.get(0));
+    }
+
+    @Test(timeout = 10000)
+    public void testAsyncDispatchSurvivesErrorsOfListeners() {
+        // given
+        TestRunListener failingListener = mock(TestRunListener.class);
+        doThrow(new StackOverflowError()).when(failingListener).reported(any(SemanticUnit.class), any(Action.class),
+                any(String.class), any(String.class), any(Status.class), any(), anyLong());
+        RecordingListener recordingListener = new RecordingListener(new CountDownLatch(0));
+        TestRunReporter asyncReporter = new DefaultTestRunReporter(logListener, 4);
+        asyncReporter.addListener(recordingListener);
+        asyncReporter.addListener(failingListener);
+
+        // when
+        reportTestWithSteps(asyncReporter, 8);
+
+        // then
+        assertEquals(18, recordingListener.events.size());
+        assertEquals("LEAVE TEST ID1", recordingListener.events.get(17));
+    }
+
+    @Test
+    public void testAsyncDispatchPassesTimeOfReportToListenersBehindSlowOnes() throws Exception {
+        // given
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        DefaultYamlCallTreeListener callTreeListener = new DefaultYamlCallTreeListener(outputStream, "testcase", "1",
+                "decaf");
+        callTreeListener.enableTimings(0);
+        TestRunReporter asyncReporter = new DefaultTestRunReporter(logListener, 16);
+        asyncReporter.addListener(new SlowListener());
+        asyncReporter.addListener(callTreeListener);
+
+        // when
+        long started = System.nanoTime();
+        reportTestWithSteps(asyncReporter, 3);
+        long reported = System.nanoTime() - started;
+
+        // then
+        Matcher durations = Pattern.compile("\"duration\": ([0-9]+)").matcher(outputStream.toString("UTF-8"));
+        List<Long> stepDurations = new ArrayList<>();
+        while (durations.find()) {
+            stepDurations.add(Long.valueOf(durations.group(1)));
+        }
+        assertEquals(4, stepDurations.size()); // the steps, then the test
+        for (long stepDuration : stepDurations.subList(0, 3)) {
+            assertTrue("step took " + stepDuration + " ns, reporting all of it " + reported + " ns",
+                    stepDuration < TimeUnit.MILLISECONDS.toNanos(20));
+        }
+    }
+
+
+    @Test
+    public void testCoalescingAndDroppingAreCountedInTestLeave() throws InterruptedException {
+        // given
+        CountDownLatch stalled = new CountDownLatch(1);
+        RecordingListener recordingListener = new RecordingListener(stalled);
+        TestRunReporter asyncReporter = new DefaultTestRunReporter(logListener, 4, BackpressurePolicy.COALESCE, 10);
+        asyncReporter.addListener(recordingListener);
+
+        // when
+        asyncReporter.enter(TEST, "Test", "ID", Status.STARTED, null);
+        for (int i = 0; i < 3; i++) {
+            asyncReporter.enter(STEP, "Step", "ID" + i, Status.STARTED, null);
+            asyncReporter.leave(STEP, "Step", "ID" + i, Status.OK, null);
+        }
+        stalled.countDown();
+        asyncReporter.leave(TEST, "Test", "ID", Status.OK, null);
+
+        // then
+        assertEquals(Arrays.asList("ENTER TEST ID", "ENTER STEP ID0", "LEAVE STEP ID0", "ENTER STEP ID1",
+                "LEAVE STEP ID1", "LEAVE TEST ID"), recordingListener.events);
+        assertEquals("2", recordingListener.testLeaveVariables.get("droppedEvents"));
+        assertEquals("1", recordingListener.testLeaveVariables.get("coalescedEvents"));
+    }
+
+    @Test(timeout = 10000)
+    public void testLeavesAreNotDroppedWhileBufferStaysFull() throws InterruptedException {
+        // given
+        CountDownLatch stalled = new CountDownLatch(1);
+        RecordingListener recordingListener = new RecordingListener(stalled);
+        TestRunReporter asyncReporter = new DefaultTestRunReporter(logListener, 4, BackpressurePolicy.BLOCK, 10);
+        asyncReporter.addListener(recordingListener);
+        asyncReporter.enter(TEST, "Test", "ID", Status.STARTED, null);
+        for (int i = 0; i < 4; i++) {
+            asyncReporter.enter(STEP, "Step", "ID" + i, Status.STARTED, null);
+        }
+        Thread releasing = new Thread(() -> {
+            try {
+                Thread.sleep(200);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            stalled.countDown();
+        });
+        releasing.start();
+
+        // when (the buffer stays full for longer than the block timeout)
+        for (int i = 3; i >= 0; i--) {
+            asyncReporter.leave(STEP, "Step", "ID" + i, Status.OK, null);
+        }
+        asyncReporter.leave(TEST, "Test", "ID", Status.OK, null);
+        releasing.join();
+
+        // then
+        assertEquals(Arrays.asList("ENTER TEST ID", "ENTER STEP ID0", "ENTER STEP ID1", "ENTER STEP ID2",
+                "LEAVE STEP ID2", "LEAVE STEP ID1", "LEAVE STEP ID0", "LEAVE TEST ID"), recordingListener.events);
+        assertEquals("2", recordingListener.testLeaveVariables.get("droppedEvents"));
+    }
+
+    @Test
+    public void testLowestRankIsDroppedFirst() throws InterruptedException {
+        // given
+        CountDownLatch stalled = new CountDownLatch(1);
+        RecordingListener recordingListener = new RecordingListener(stalled);
+        TestRunReporter asyncReporter = new DefaultTestRunReporter(logListener, 8,
+                BackpressurePolicy.DROP_LOWEST_RANK, 10000);
+        asyncReporter.addListener(recordingListener);
+
+        // when
+        asyncReporter.enter(TEST, "Test", "ID", Status.STARTED, null);
+        asyncReporter.enter(SPECIFICATION_STEP, "Spec", "S", Status.STARTED, null);
+        for (int i = 0; i < 3; i++) {
+            asyncReporter.enter(COMPONENT, "Component", "C" + i, Status.STARTED, null);
+            asyncReporter.enter(STEP, "Step", "ID" + i, Status.STARTED, null);
+            asyncReporter.leave(STEP, "Step", "ID" + i, Status.OK, null);
+            asyncReporter.leave(COMPONENT, "Component", "C" + i, Status.OK, null);
+        }
+        stalled.countDown();
+        asyncReporter.leave(SPECIFICATION_STEP, "Spec", "S", Status.OK, null);
+        asyncReporter.leave(TEST, "Test", "ID", Status.OK, null);
+
+        // then
+        assertEquals(Arrays.asList("ENTER TEST ID", "ENTER SPECIFICATION_STEP S", "ENTER COMPONENT C0",
+                "ENTER STEP ID0", "LEAVE STEP ID0", "LEAVE COMPONENT C0", "ENTER COMPONENT C1", "LEAVE COMPONENT C1",
+                "LEAVE SPECIFICATION_STEP S", "LEAVE TEST ID"), recordingListener.events);
+        assertEquals("6", recordingListener.testLeaveVariables.get("droppedEvents"));
+    }
+
+    @Test
+    public void testListenersAddedAndRemovedConcurrentlyToReporting() throws Exception {
+        for (TestRunReporter reporter : Arrays.asList(new DefaultTestRunReporter(logListener),
+                new DefaultTestRunReporter(logListener, 64))) {
+            // given
+            AtomicInteger reported = new AtomicInteger();
+            reporter.addListener(new RecordingListener(new CountDownLatch(0)) {
+                @Override
+                public void reported(SemanticUnit unit, Action action, String message, String id, Status status,
+                        Map<String, String> variables) {
+                    reported.incrementAndGet();
+                }
+            });
+            AtomicBoolean reporting = new AtomicBoolean(true);
+            List<Throwable> failures = new CopyOnWriteArrayList<>();
+            List<Thread> registeringThreads = new ArrayList<>();
+            for (int i = 0; i < 4; i++) {
+                registeringThreads.add(new Thread(() -> {
+                    try {
+                        while (reporting.get()) {
+                            TestRunListener helperListener = new RecordingListener(new CountDownLatch(0));
+                            reporter.addListener(helperListener);
+                            reporter.removeListener(helperListener);
+                        }
+                    } catch (Throwable t) {
+                        failures.add(t);
+                    }
+                }));
+            }
+            registeringThreads.forEach(Thread::start);
+
+            // when
+            reporter.enter(TEST, "Test", "ID", Status.STARTED, null);
+            for (int i = 0; i < 5000; i++) {
+                reporter.enter(STEP, "Step", "ID" + i, Status.STARTED, null);
+                reporter.leave(STEP, "Step", "ID" + i, Status.OK, null);
+            }
+            reporter.leave(TEST, "Test", "ID", Status.OK, null);
+            reporting.set(false);
+            for (Thread thread : registeringThreads) {
+                thread.join();
+            }
+
+            // then
+            assertEquals(Collections.emptyList(), failures);
+            assertEquals(10002, reported.get());
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void testListenersAreAddedAndRemovedWithoutWaitingForDispatcher() {
+        // given
+        CountDownLatch stalled = new CountDownLatch(1);
+        RecordingListener stalledListener = new RecordingListener(stalled);
+        RecordingListener addedListener = new RecordingListener(new CountDownLatch(0));
+        RecordingListener removedListener = new RecordingListener(new CountDownLatch(0));
+        TestRunReporter asyncReporter = new DefaultTestRunReporter(logListener, 16);
+        asyncReporter.addListener(stalledListener);
+        asyncReporter.addListener(removedListener);
+        asyncReporter.enter(TEST, "Test", "ID", Status.STARTED, null);
+        asyncReporter.enter(STEP, "Step", "ID1", Status.STARTED, null);
+
+        // when (the dispatcher is stalled on the test enter)
+        asyncReporter.addListener(addedListener);
+        asyncReporter.removeListener(removedListener);
+        asyncReporter.leave(STEP, "Step", "ID1", Status.OK, null);
+        stalled.countDown();
+        asyncReporter.leave(TEST, "Test", "ID", Status.OK, null);
+
+        // then
+        assertEquals(Arrays.asList("ENTER TEST ID", "ENTER STEP ID1", "LEAVE STEP ID1", "LEAVE TEST ID"),
+                stalledListener.events);
+        assertEquals(Arrays.asList("LEAVE STEP ID1", "LEAVE TEST ID"), addedListener.events);
+        assertTrue("at most informed of the event being dispatched: " + removedListener.events,
+                removedListener.events.isEmpty() || removedListener.events.equals(Arrays.asList("ENTER TEST ID")));
+    }
+
+    @Test
+    public void testBatchListenersArePassedEventsWaitingAsBatch() {
+        // given
+        CountDownLatch stalled = new CountDownLatch(1);
+        List<List<ReportEvent>> batches = new ArrayList<>();
+        TestRunReporter asyncReporter = new DefaultTestRunReporter(logListener, 16);
+        asyncReporter.addListener(new RecordingListener(stalled));
+        asyncReporter.addListener(new BatchTestRunListener() {
+
+            @Override
+            public void reportedBatch(List<ReportEvent> events) {
+                batches.add(new ArrayList<>(events));
+            }
+
+            @Override
+            public void reportFixtureExit(FixtureException fixtureException) {
+            }
+
+            @Override
+            public void reportExceptionExit(Exception exception) {
+            }
+
+            @Override
+            public void reportAssertionExit(AssertionError assertionError) {
+            }
+        });
+
+        // when
+        asyncReporter.enter(TEST, "Test", "ID", Status.STARTED, null);
+        for (int i = 0; i < 3; i++) {
+            asyncReporter.enter(STEP, "Step", "ID" + i, Status.STARTED, null);
+            asyncReporter.leave(STEP, "Step", "ID" + i, Status.OK, null);
+        }
+        stalled.countDown();
+        asyncReporter.leave(TEST, "Test", "ID", Status.OK, null);
+
+        // then
+        List<String> events = new ArrayList<>();
+        batches.forEach(batch -> batch.forEach(event -> events.add(event.getAction() + " " + event.getId())));
+        assertEquals(Arrays.asList("ENTER ID", "ENTER ID0", "LEAVE ID0", "ENTER ID1", "LEAVE ID1", "ENTER ID2",
+                "LEAVE ID2", "LEAVE ID"), events);
+        assertTrue(batches.size() < events.size());
+    }
+
+    @Test
+    public void testAdaptedListenerIsPassedEachEventOfBatch() {
+        // given
+        BatchTestRunListener adaptedListener = BatchTestRunListener.adapt(listener);
+        ReportEvent enter = new ReportEvent(STEP, ENTER, "Step", "ID1", Status.STARTED, null, 1);
+        ReportEvent leave = new ReportEvent(STEP, LEAVE, "Step", "ID1", Status.OK, null, 2);
+
+        // when
+        adaptedListener.reportedBatch(Arrays.asList(enter, leave));
+
+        // then
+        InOrder listenerOrder = inOrder(listener);
+        listenerOrder.verify(listener).reported(STEP, ENTER, "Step", "ID1", Status.STARTED, null, 1);
+        listenerOrder.verify(listener).reported(STEP, LEAVE, "Step", "ID1", Status.OK, null, 2);
+    }
+
+    @Test
+    public void testTimeSpentInListenersIsExposedAsMBean() throws Exception {
+        // given
+        class TimedListener extends RecordingListener {
+            TimedListener() {
+                super(new CountDownLatch(0));
+            }
+        }
+        classUnderTest.addListener(new TimedListener());
+
+        // when
+        classUnderTest.enter(TEST, "test", "ID1", Status.STARTED, Collections.emptyMap());
+        classUnderTest.enter(STEP, "step", "ID2", Status.STARTED, Collections.emptyMap());
+        classUnderTest.leave(STEP, "step", "ID2", Status.OK, Collections.emptyMap());
+        classUnderTest.leave(TEST, "test", "ID1", Status.OK, Collections.emptyMap());
+        classUnderTest.exceptionExit(new RuntimeException("exit"));
+
+        // then
+        CompositeData[] latencies = (CompositeData[]) ManagementFactory.getPlatformMBeanServer()
+                .getAttribute(new ObjectName(ListenerLatencies.OBJECT_NAME), "ListenerLatencies");
+        CompositeData timed = Arrays.stream(latencies)
+                .filter(latency -> latency.get("listener").equals(TimedListener.class.getName())).findFirst().get();
+        assertEquals(5L, timed.get("count"));
+        assertTrue((Long) timed.get("p50Nanos") <= (Long) timed.get("maxNanos"));
+        assertTrue((Long) timed.get("maxNanos") <= (Long) timed.get("totalNanos"));
+    }
+
+    @Test
+    public void testListenerExceedingItsBudgetRepeatedlyIsDetached() {
+        // given
+        DefaultTestRunReporter reporter = new DefaultTestRunReporter(logListener);
+        reporter.enableListenerBudget(2, SlowListenerPolicy.DETACH);
+        SlowListener slowListener = new SlowListener();
+        RecordingListener recordingListener = new RecordingListener(new CountDownLatch(0));
+        reporter.addListener(slowListener);
+        reporter.addListener(recordingListener);
+
+        // when
+        reportTestWithSteps(reporter, 4);
+
+        // then
+        assertEquals(Arrays.asList("ENTER TEST ID1", "ENTER STEP ID2", "LEAVE STEP ID2", "ENTER STEP ID3"),
+                slowListener.events);
+        assertEquals(10, recordingListener.events.size());
+        assertEquals(SlowListener.class.getName() + " detached",
+                recordingListener.testLeaveVariables.get(DefaultTestRunReporter.SLOW_LISTENERS));
+    }
+
+    @Test
+    public void testListenerExceedingItsBudgetRepeatedlyIsDemoted() throws InterruptedException {
+        // given
+        DefaultTestRunReporter reporter = new DefaultTestRunReporter(logListener);
+        reporter.enableListenerBudget(2, SlowListenerPolicy.DEMOTE);
+        SlowListener slowListener = new SlowListener();
+        RecordingListener recordingListener = new RecordingListener(new CountDownLatch(0));
+        reporter.addListener(slowListener);
+        reporter.addListener(recordingListener);
+
+        // when
+        reportTestWithSteps(reporter, 4);
+
+        // then
+        assertTrue(slowListener.testLeft.await(10, TimeUnit.SECONDS));
+        assertEquals(10, slowListener.events.size());
+        assertEquals(Thread.currentThread(), slowListener.threads.get(0));
+        assertNotSame(Thread.currentThread(), slowListener.threads.get(9));
+        assertEquals(SlowListener.class.getName() + " demoted",
+                recordingListener.testLeaveVariables.get(DefaultTestRunReporter.SLOW_LISTENERS));
+
+        // when
+        reporter.removeListener(slowListener);
+        reportTestWithSteps(reporter, 1);
+
+        // then
+        assertEquals(10, slowListener.events.size());
+    }
+
+    @Test
+    public void testDemotedListenerCatchesUpWhenTestIsLeft() {
+        // given
+        SlowListener slowListener = new SlowListener();
+        List<String> detachReasons = new ArrayList<>();
+        DemotedTestRunListener demotedListener = new DemotedTestRunListener(slowListener,
+                (demoted, reason) -> detachReasons.add(reason), 16);
+
+        // when
+        reportTestWithSteps(demotedListener, 4);
+
+        // then
+        assertEquals(10, slowListener.events.size());
+        assertNotSame(Thread.currentThread(), slowListener.threads.get(0));
+        assertEquals(Collections.emptyList(), detachReasons);
+    }
+
+    @Test
+    public void testDemotedListenerNotKeepingUpIsDetached() {
+        // given
+        SlowListener slowListener = new SlowListener();
+        List<String> detachReasons = new ArrayList<>();
+        DemotedTestRunListener demotedListener = new DemotedTestRunListener(slowListener,
+                (demoted, reason) -> detachReasons.add(reason), 2);
+
+        // when
+        reportTestWithSteps(demotedListener, 4);
+        demotedListener.reportExceptionExit(new RuntimeException("exit"));
+
+        // then
+        assertEquals(1, detachReasons.size());
+        assertTrue(detachReasons.get(0), detachReasons.get(0).startsWith("does not keep up with the test"));
+        assertTrue(slowListener.events.size() < 10);
+        assertEquals(1, slowListener.testLeft.getCount()); // not informed of the leave
+    }
+
+    @Test
+    public void testIndependentListenersAreInformedConcurrentlyInOrder() {
+        // given
+        DefaultTestRunReporter reporter = new DefaultTestRunReporter(logListener);
+        reporter.enableFanOut(2);
+        CyclicBarrier allInformed = new CyclicBarrier(3);
+        List<IndependentListener> independentListeners = Arrays.asList(new IndependentListener(allInformed),
+                new IndependentListener(allInformed), new IndependentListener(allInformed));
+        independentListeners.forEach(reporter::addListener);
+        reporter.addListener(listener);
+
+        // when
+        reportTestWithSteps(reporter, 2);
+
+        // then
+        for (IndependentListener independentListener : independentListeners) {
+            assertEquals(Arrays.asList("ENTER TEST ID1", "ENTER STEP ID2", "LEAVE STEP ID2", "ENTER STEP ID3",
+                    "LEAVE STEP ID3", "LEAVE TEST ID1"), ((RecordingListener) independentListener).events);
+        }
+        assertEquals(3, independentListeners.stream().map(independentListener -> independentListener.testEnterThread)
+                .distinct().count());
+        verify(listener).reported(TEST, LEAVE, "test", "ID1", Status.OK, Collections.emptyMap());
+    }
+
+    @Test
+    public void testBranchesReportedFromThreadsKeepTheirOrderPerBranch() throws InterruptedException {
+        // given
+        DefaultTestRunReporter reporter = new DefaultTestRunReporter(logListener);
+        BranchListener branchListener = new BranchListener();
+        reporter.addListener(branchListener);
+        reporter.enter(TEST, "test", "ID1", Status.STARTED, Collections.emptyMap());
+        TestRunReporter first = reporter.fork("ID1");
+        TestRunReporter second = reporter.fork("ID1");
+        TestRunReporter nested = first.fork("ID1");
+
+        // when
+        List<Thread> threads = new ArrayList<>();
+        for (TestRunReporter branch : Arrays.asList(first, second, nested)) {
+            threads.add(new Thread(() -> {
+                for (int i = 0; i < 50; i++) {
+                    branch.enter(STEP, "step", "ID" + i, Status.STARTED, Collections.emptyMap());
+                    branch.leave(STEP, "step", "ID" + i, Status.OK, Collections.emptyMap());
+                }
+            }));
+        }
+        threads.forEach(Thread::start);
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        reporter.join(nested);
+        reporter.join(second);
+        reporter.join(first);
+        nested.enter(STEP, "step", "late", Status.STARTED, Collections.emptyMap());
+        reporter.leave(TEST, "test", "ID1", Status.OK, Collections.emptyMap());
+
+        // then
+        assertEquals(Arrays.asList("FORK ID1/1 null", "FORK ID1/2 null", "FORK ID1/3 ID1/1"),
+                branchListener.forks);
+        assertEquals(Arrays.asList("JOIN ID1/3", "JOIN ID1/2", "JOIN ID1/1"), branchListener.joins);
+        for (String branch : Arrays.asList("ID1/1", "ID1/2", "ID1/3")) {
+            List<String> expected = new ArrayList<>();
+            for (int i = 0; i < 50; i++) {
+                expected.add("ENTER STEP ID" + i);
+                expected.add("LEAVE STEP ID" + i);
+            }
+            assertEquals(expected, branchListener.events.get(branch));
+        }
+        assertEquals(Arrays.asList("ENTER TEST ID1", "LEAVE TEST ID1"), branchListener.events.get(null));
+    }
+
+    @Test
+    public void testExitJoinsBranchesStillReporting() throws InterruptedException {
+        // given
+        DefaultTestRunReporter reporter = new DefaultTestRunReporter(logListener);
+        AtomicInteger informing = new AtomicInteger();
+        AtomicBoolean exited = new AtomicBoolean();
+        List<String> failures = new CopyOnWriteArrayList<>();
+        CountDownLatch branchReporting = new CountDownLatch(1);
+        reporter.addListener(new BranchListener() {
+            @Override
+            public void reportedInBranch(String branch, SemanticUnit unit, Action action, String message, String id,
+                    Status status, Map<String, String> variables) {
+                if (informing.incrementAndGet() > 1) {
+                    failures.add("informed of " + action + " " + id + " during the exit");
+                }
+                if (branch != null && exited.get()) {
+                    failures.add("informed of " + action + " " + id + " after the exit");
+                }
+                informing.decrementAndGet();
+                branchReporting.countDown();
+            }
+
+            @Override
+            public void reportExceptionExit(Exception exception) {
+                informing.incrementAndGet();
+                try {
+                    Thread.sleep(50);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                exited.set(true);
+                informing.decrementAndGet();
+            }
+        });
+        reporter.enter(TEST, "test", "ID1", Status.STARTED, Collections.emptyMap());
+        TestRunReporter branch = reporter.fork("ID1");
+        AtomicBoolean reporting = new AtomicBoolean(true);
+        Thread branchThread = new Thread(() -> {
+            for (int i = 0; reporting.get(); i++) {
+                branch.enter(STEP, "step", "ID" + i, Status.STARTED, Collections.emptyMap());
+                branch.leave(STEP, "step", "ID" + i, Status.OK, Collections.emptyMap());
+            }
+        });
+        branchThread.start();
+        branchReporting.await(10, TimeUnit.SECONDS);
+
+        // when
+        reporter.exceptionExit(new RuntimeException("branch failed"));
+        reporting.set(false);
+        branchThread.join();
+        reporter.join(branch);
+        reporter.leave(TEST, "test", "ID1", Status.ERROR, Collections.emptyMap());
+
+        // then
+        assertEquals(Collections.emptyList(), failures);
+        verify(logListener).reported(TEST, LEAVE, "test", "ID1", Status.ERROR, Collections.emptyMap());
+    }
+
+    private static void verifyReportedAt(InOrder order, TestRunListener listener, SemanticUnit unit, Action action,
+            String message, String id, Status status) {
+        order.verify(listener).reported(eq(unit), eq(action), eq(message), eq(id), eq(status), any(), anyLong());
+    }
+
+    private void reportTestWithSteps(TestRunListener listener, int steps) {
+        listener.reported(TEST, ENTER, "test", "ID1", Status.STARTED, Collections.emptyMap());
+        for (int i = 2; i < steps + 2; i++) {
+            listener.reported(STEP, ENTER, "step", "ID" + i, Status.STARTED, Collections.emptyMap());
+            listener.reported(STEP, LEAVE, "step", "ID" + i, Status.OK, Collections.emptyMap());
+        }
+        listener.reported(TEST, LEAVE, "test", "ID1", Status.OK, Collections.emptyMap());
+    }
+
+    private void reportTestWithSteps(TestRunReporter reporter, int steps) {
+        reporter.enter(TEST, "test", "ID1", Status.STARTED, Collections.emptyMap());
+        for (int i = 2; i < steps + 2; i++) {
+            reporter.enter(STEP, "step", "ID" + i, Status.STARTED, Collections.emptyMap());
+            reporter.leave(STEP, "step", "ID" + i, Status.OK, Collections.emptyMap());
+        }
+        reporter.leave(TEST, "test", "ID1", Status.OK, Collections.emptyMap());
+    }
+
+    /**
+     * records events, waiting on the test enter until all independent
+     * listeners are informed of it
+     */
+    private static class IndependentListener extends RecordingListener implements IndependentTestRunListener {
+        private final CyclicBarrier allInformed;
+        private Thread testEnterThread;
+
+        IndependentListener(CyclicBarrier allInformed) {
+            super(new CountDownLatch(0));
+            this.allInformed = allInformed;
+        }
+
+        @Override
+        public void reported(SemanticUnit unit, Action action, String message, String id, Status status,
+                Map<String, String> variables) {
+            super.reported(unit, action, message, id, status, variables);
+            if (unit == TEST && action == ENTER) {
+                testEnterThread = Thread.currentThread();
+                try {
+                    allInformed.await(10, TimeUnit.SECONDS);
+                } catch (Exception e) {
+                    throw new IllegalStateException("independent listeners are not informed concurrently", e);
+                }
+            }
+        }
+    }
+
+    /**
+     * records forks, joins and the events of each branch (events outside of
+     * any branch are recorded for branch null)
+     */
+    private static class BranchListener implements TestRunListener {
+        private final List<String> forks = new ArrayList<>();
+        private final List<String> joins = new ArrayList<>();
+        private final Map<String, List<String>> events = new HashMap<>();
+
+        @Override
+        public void reported(SemanticUnit unit, Action action, String message, String id, Status status,
+                Map<String, String> variables) {
+            reportedInBranch(null, unit, action, message, id, status, variables);
+        }
+
+        @Override
+        public void reportedInBranch(String branch, SemanticUnit unit, Action action, String message, String id,
+                Status status, Map<String, String> variables) {
+            events.computeIfAbsent(branch, key -> new ArrayList<>()).add(action + " " + unit + " " + id);
+        }
+
+        @Override
+        public void reportedFork(String branch, String parentBranch, String parentId) {
+            forks.add("FORK " + branch + " " + parentBranch);
+        }
+
+        @Override
+        public void reportedJoin(String branch) {
+            joins.add("JOIN " + branch);
+        }
+
+        @Override
+        public void reportFixtureExit(FixtureException fixtureException) {
+        }
+
+        @Override
+        public void reportExceptionExit(Exception exception) {
+        }
+
+        @Override
+        public void reportAssertionExit(AssertionError assertionError) {
+        }
+    }
+
+    /**
+     * records events and the threads informing it, taking 20 ms for each
+     * step
+     */
+    private static class SlowListener implements TestRunListener {
+        private final List<String> events = new CopyOnWriteArrayList<>();
+        private final List<Thread> threads = new CopyOnWriteArrayList<>();
+        private final CountDownLatch testLeft = new CountDownLatch(1);
+
+        @Override
+        public void reported(SemanticUnit unit, Action action, String message, String id, Status status,
+                Map<String, String> variables) {
+            events.add(action + " " + unit + " " + id);
+            threads.add(Thread.currentThread());
+            if (unit == TEST && action == LEAVE) {
+                testLeft.countDown();
+            } else if (unit == STEP) {
+                try {
+                    Thread.sleep(20);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+
+        @Override
+        public void reportFixtureExit(FixtureException fixtureException) {
+        }
+
+        @Override
+        public void reportExceptionExit(Exception exception) {
+        }
+
+        @Override
+        public void reportAssertionExit(AssertionError assertionError) {
+        }
+    }
+
+    /**
+     * records events, stalling the dispatcher on the test enter until
+     * released
+     */
+    private static class RecordingListener implements TestRunListener {
+        private final CountDownLatch stalled;
+        private final List<String> events = new ArrayList<>();
+        private Map<String, String> testLeaveVariables;
+
+        RecordingListener(CountDownLatch stalled) {
+            this.stalled = stalled;
+        }
+
+        @Override
+        public void reported(SemanticUnit unit, Action action, String message, String id, Status status,
+                Map<String, String> variables) {
+            events.add(action + " " + unit + " " + id);
+            if (unit == TEST && action == ENTER) {
+                try {
+                    stalled.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            } else if (unit == TEST) {
+                testLeaveVariables = variables;
+            }
+        }
+
+        @Override
+        public void reportFixtureExit(FixtureException fixtureException) {
+        }
+
+        @Override
+        public void reportExceptionExit(Exception exception) {
+        }
+
+        @Override
+        public void reportAssertionExit(AssertionError assertionError) {
+        }
+    }
+
 }
@@ -61,8 +61,8 @@ public class TestDefaultYamlCallTreeListener {
                         "    \"message\": \"test\"\n" + //
                         "    \"id\": \"4711\"\n" + //
                         "    \"preVariables\":\n" + //
-                        "      \"b\": \"7\"\n" + //
                         "      \"a.\\\"my key\\\"\": \"5'\\\");System.exit(1);\"\n" + //
+                        "      \"b\": \"7\"\n" + //
                         "    \"children\":\n");
         assertOutputContainsRegex("(?s).*\n    \"enter\": \"[0-9]+\"\n.*");
         assertOutputContainsNoRegex("(?s).*\"leave\":.*");
@@ -155,6 +155,69 @@ public class TestDefaultYamlCallTreeListener {
                         "    \"postVariables\":\n");
     }
 
+    @Test
+    public void testYamlWritesInterleavedBranchesAsContiguousSubtrees() {
+        // given
+        yamlCallTreeListenerUnderTest.reported(SemanticUnit.TEST, Action.ENTER, "test", "4711", Status.STARTED, null);
+        yamlCallTreeListenerUnderTest.reported(SemanticUnit.COMPONENT, Action.ENTER, "component", "4712",
+                Status.STARTED, null);
+        yamlCallTreeListenerUnderTest.reportedFork("4712/1", null, "4712");
+        yamlCallTreeListenerUnderTest.reportedFork("4712/2", null, "4712");
+
+        // when
+        yamlCallTreeListenerUnderTest.reportedInBranch("4712/1", SemanticUnit.STEP, Action.ENTER, "first", "4713",
+                Status.STARTED, null);
+        yamlCallTreeListenerUnderTest.reportedInBranch("4712/2", SemanticUnit.STEP, Action.ENTER, "second", "4714",
+                Status.STARTED, null);
+        yamlCallTreeListenerUnderTest.reportedInBranch("4712/1", SemanticUnit.STEP, Action.LEAVE, "first", "4713",
+                Status.OK, null);
+        yamlCallTreeListenerUnderTest.reportedInBranch("4712/2", SemanticUnit.STEP, Action.LEAVE, "second", "4714",
+                Status.ERROR, null);
+        yamlCallTreeListenerUnderTest.reportedJoin("4712/2");
+        yamlCallTreeListenerUnderTest.reportedJoin("4712/1");
+        yamlCallTreeListenerUnderTest.reported(SemanticUnit.COMPONENT, Action.LEAVE, "component", "4712", Status.OK,
+                null);
+        yamlCallTreeListenerUnderTest.reported(SemanticUnit.TEST, Action.LEAVE, "test", "4711", Status.OK, null);
+
+        // then
+        // branches are written in the order joined, each one as a contiguous subtree
+        assertOutputWithoutNanosToEqual(//
+                "- \"source\": \"testcase\"\n" + //
+                        "  \"testRunId\": \"1\"\n" + //
+                        "  \"commitId\": \"decaf\"\n" + //
+                        "  \"children\":\n" + //
+                        "  - \"node\": \"TEST\"\n" + //
+                        "    \"message\": \"test\"\n" + //
+                        "    \"id\": \"4711\"\n" + //
+                        "    \"preVariables\":\n" + //
+                        "    \"children\":\n" + //
+                        "    - \"node\": \"COMPONENT\"\n" + //
+                        "      \"message\": \"component\"\n" + //
+                        "      \"id\": \"4712\"\n" + //
+                        "      \"preVariables\":\n" + //
+                        "      \"children\":\n" + //
+                        "      - \"node\": \"STEP\"\n" + //
+                        "        \"message\": \"second\"\n" + //
+                        "        \"id\": \"4714\"\n" + //
+                        "        \"preVariables\":\n" + //
+                        "        \"children\":\n" + //
+                        "        \"status\": \"ERROR\"\n" + //
+                        "        \"postVariables\":\n" + //
+                        "        \"branch\": \"4712/2\"\n" + //
+                        "      - \"node\": \"STEP\"\n" + //
+                        "        \"message\": \"first\"\n" + //
+                        "        \"id\": \"4713\"\n" + //
+                        "        \"preVariables\":\n" + //
+                        "        \"children\":\n" + //
+                        "        \"status\": \"OK\"\n" + //
+                        "        \"postVariables\":\n" + //
+                        "        \"branch\": \"4712/1\"\n" + //
+                        "      \"status\": \"OK\"\n" + //
+                        "      \"postVariables\":\n" + //
+                        "    \"status\": \"OK\"\n" + //
+                        "    \"postVariables\":\n");
+    }
+
     @Test
     public void testYamlOnAssertionError() {
         // when
@@ -337,6 +400,114 @@ public class TestDefaultYamlCallTreeListener {
 
     }
 
+    @Test
+    public void testStreamingModeWritesSameYamlAndRetiresLeftNodes() throws IOException {
+        // given
+        ByteArrayOutputStream streamingOutputStream = new ByteArrayOutputStream();
+        DefaultYamlCallTreeListener streamingListener = new DefaultYamlCallTreeListener(streamingOutputStream,
+                "testcase", "1", "decaf", true);
+
+        // when
+        for (DefaultYamlCallTreeListener listener : new DefaultYamlCallTreeListener[] {
+                yamlCallTreeListenerUnderTest, streamingListener }) {
+            listener.reported(SemanticUnit.TEST, Action.ENTER, "test", "4711", Status.STARTED, null);
+            listener.reported(SemanticUnit.SPECIFICATION_STEP, Action.ENTER, "spec step", "4712", Status.STARTED,
+                    null);
+            listener.reported(SemanticUnit.COMPONENT, Action.ENTER, "component", "4713", Status.STARTED, null);
+            listener.reported(SemanticUnit.STEP, Action.ENTER, "step", "4714", Status.STARTED, null);
+            listener.reported(SemanticUnit.STEP, Action.LEAVE, "step", "4714", Status.OK, null);
+            listener.reported(SemanticUnit.STEP, Action.ENTER, "step", "4715", Status.STARTED, null);
+            listener.reported(SemanticUnit.SPECIFICATION_STEP, Action.LEAVE, "spec step", "4712", Status.OK, null);
+            listener.reported(SemanticUnit.TEST, Action.LEAVE, "test", "4711", Status.OK, null);
+        }
+
+        // then
+        String expected = outputStream.toString(StandardCharsets.UTF_8.name());
+        String actual = streamingOutputStream.toString(StandardCharsets.UTF_8.name());
+        String nanos = " *\"(enter|leave|started)\": \"[0-9-.ZT:]*\" *\n";
+        assertEquals(expected.replaceAll(nanos, ""), actual.replaceAll(nanos, ""));
+        assertTrue(streamingListener.callTreeNodeMap.isEmpty());
+    }
+
+    @Test
+    public void testTimingsAreWrittenWhenNodesAreLeft() {
+        // given
+        yamlCallTreeListenerUnderTest.enableTimings(1);
+
+        // when
+        yamlCallTreeListenerUnderTest.reported(SemanticUnit.TEST, Action.ENTER, "test", "4711", Status.STARTED, null,
+                1000);
+        yamlCallTreeListenerUnderTest.reported(SemanticUnit.COMPONENT, Action.ENTER, "component", "4712",
+                Status.STARTED, null, 1100);
+        yamlCallTreeListenerUnderTest.reported(SemanticUnit.STEP, Action.ENTER, "fast step", "4713", Status.STARTED,
+                null, 1200);
+        yamlCallTreeListenerUnderTest.reported(SemanticUnit.STEP, Action.LEAVE, "fast step", "4713", Status.OK, null,
+                1230);
+        yamlCallTreeListenerUnderTest.reported(SemanticUnit.STEP, Action.ENTER, "slow step", "4714", Status.STARTED,
+                null, 1300);
+        yamlCallTreeListenerUnderTest.reported(SemanticUnit.COMPONENT, Action.LEAVE, "component", "4712", Status.OK,
+                null, 1500);
+        yamlCallTreeListenerUnderTest.reported(SemanticUnit.TEST, Action.LEAVE, "test", "4711", Status.OK, null,
+                2000);
+
+        // then
+        assertOutputWithoutNanosToEqual(//
+                "- \"source\": \"testcase\"\n" + //
+                        "  \"testRunId\": \"1\"\n" + //
+                        "  \"commitId\": \"decaf\"\n" + //
+                        "  \"children\":\n" + //
+                        "  - \"node\": \"TEST\"\n" + //
+                        "    \"message\": \"test\"\n" + //
+                        "    \"id\": \"4711\"\n" + //
+                        "    \"preVariables\":\n" + //
+                        "    \"children\":\n" + //
+                        "    - \"node\": \"COMPONENT\"\n" + //
+                        "      \"message\": \"component\"\n" + //
+                        "      \"id\": \"4712\"\n" + //
+                        "      \"preVariables\":\n" + //
+                        "      \"children\":\n" + //
+                        "      - \"node\": \"STEP\"\n" + //
+                        "        \"message\": \"fast step\"\n" + //
+                        "        \"id\": \"4713\"\n" + //
+                        "        \"preVariables\":\n" + //
+                        "        \"children\":\n" + //
+                        "        \"status\": \"OK\"\n" + //
+                        "        \"postVariables\":\n" + //
+                        "        \"duration\": 30\n" + //
+                        "        \"selfDuration\": 30\n" + //
+                        "      - \"node\": \"STEP\"\n" + //
+                        "        \"message\": \"slow step\"\n" + //
+                        "        \"id\": \"4714\"\n" + //
+                        "        \"preVariables\":\n" + //
+                        "        \"children\":\n" + //
+                        "        \"status\": \"UNKNOWN\"\n" + //
+                        "        \"postVariables\":\n" + //
+                        "        \"duration\": 200\n" + //
+                        "        \"selfDuration\": 200\n" + //
+                        "      \"status\": \"OK\"\n" + //
+                        "      \"postVariables\":\n" + //
+                        "      \"duration\": 400\n" + //
+                        "      \"selfDuration\": 170\n" + //
+                        "    \"status\": \"OK\"\n" + //
+                        "    \"postVariables\":\n" + //
+                        "    \"duration\": 1000\n" + //
+                        "    \"selfDuration\": 600\n" + //
+                        "    \"slowest\":\n" + //
+                        "      \"COMPONENT\":\n" + //
+                        "        -\n" + //
+                        "          \"id\": \"4712\"\n" + //
+                        "          \"message\": \"component\"\n" + //
+                        "          \"duration\": 400\n" + //
+                        "          \"selfDuration\": 170\n" + //
+                        "      \"STEP\":\n" + //
+                        "        -\n" + //
+                        "          \"id\": \"4714\"\n" + //
+                        "          \"message\": \"slow step\"\n" + //
+                        "          \"duration\": 200\n" + //
+                        "          \"selfDuration\": 200\n" + //
+                        "      \"MACRO\":\n");
+    }
+
     private void assertOutputContainsNoRegex(String expectedRegex) {
         try {
             String output = outputStream.toString(StandardCharsets.UTF_8.name());
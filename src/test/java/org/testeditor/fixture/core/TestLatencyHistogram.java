@@ -0,0 +1,98 @@
+/*******************************************************************************
+ * Copyright (c) 2012 - 2018 Signal Iduna Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ * Signal Iduna Corporation - initial API and implementation
+ * akquinet AG
+ * itemis AG
+ *******************************************************************************/
+
+package org.testeditor.fixture.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class TestLatencyHistogram {
+
+    @Test
+    public void testSmallValuesAreExact() {
+        // given
+        LatencyHistogram histogram = new LatencyHistogram();
+
+        // when
+        for (long value = 1; value <= 10; value++) {
+            histogram.record(value);
+        }
+
+        // then
+        assertEquals(10, histogram.getCount());
+        assertEquals(55, histogram.getTotalNanos());
+        assertEquals(10, histogram.getMaxNanos());
+        assertEquals(5, histogram.getPercentileNanos(50));
+        assertEquals(9, histogram.getPercentileNanos(90));
+        assertEquals(10, histogram.getPercentileNanos(100));
+    }
+
+    @Test
+    public void testPercentilesAreAccurateWithinOneEighth() {
+        // given
+        LatencyHistogram histogram = new LatencyHistogram();
+
+        // when
+        for (long value = 1; value <= 100000; value++) {
+            histogram.record(value * 1000);
+        }
+
+        // then
+        assertWithinOneEighth(50000000, histogram.getPercentileNanos(50));
+        assertWithinOneEighth(90000000, histogram.getPercentileNanos(90));
+        assertWithinOneEighth(99000000, histogram.getPercentileNanos(99));
+        assertEquals(100000000, histogram.getMaxNanos());
+    }
+
+    @Test
+    public void testEveryValueLiesWithinItsBucket() {
+        for (long value : new long[] { 0, 15, 16, 17, 31, 32, 1000, 123456789, Long.MAX_VALUE }) {
+            int bucket = LatencyHistogram.bucket(value);
+            assertTrue(value + " above bucket", value <= LatencyHistogram.upperBound(bucket));
+            assertTrue(value + " below bucket", bucket == 0 || value > LatencyHistogram.upperBound(bucket - 1));
+        }
+    }
+
+    @Test
+    public void testAddAndReset() {
+        // given
+        LatencyHistogram histogram = new LatencyHistogram();
+        LatencyHistogram other = new LatencyHistogram();
+        histogram.record(3);
+        other.record(7);
+        other.record(1000);
+
+        // when
+        histogram.add(other);
+
+        // then
+        assertEquals(3, histogram.getCount());
+        assertEquals(1010, histogram.getTotalNanos());
+        assertEquals(1000, histogram.getMaxNanos());
+        assertEquals(7, histogram.getPercentileNanos(50));
+
+        // when
+        histogram.reset();
+
+        // then
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getPercentileNanos(50));
+    }
+
+    private void assertWithinOneEighth(long expected, long actual) {
+        assertTrue(actual + " not within 1/8 of " + expected, Math.abs(actual - expected) <= expected / 8);
+    }
+
+}
@@ -0,0 +1,172 @@
+/*******************************************************************************
+ * Copyright (c) 2012 - 2018 Signal Iduna Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ * Signal Iduna Corporation - initial API and implementation
+ * akquinet AG
+ * itemis AG
+ *******************************************************************************/
+
+package org.testeditor.fixture.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.testeditor.fixture.core.TestRunReporter.Action;
+import org.testeditor.fixture.core.TestRunReporter.SemanticUnit;
+import org.testeditor.fixture.core.TestRunReporter.Status;
+
+public class TestOtlpSpanListener {
+
+    private static final Pattern SPAN = Pattern.compile(
+            "\\{\"traceId\":\"([0-9a-f]{32})\",\"spanId\":\"([0-9a-f]{16})\""
+                    + "(?:,\"parentSpanId\":\"([0-9a-f]{16})\")?,\"name\":\"([^\"]*)\"");
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testSpansAreExportedToCollectorWithParentsAndAttributes() throws Exception {
+        try (OtlpStubCollector collector = new OtlpStubCollector()) {
+            // given
+            OtlpSpanExporter exporter = new OtlpSpanExporter(OtlpSpanExporter.endpoint(collector.getUrl()), "test");
+            OtlpSpanListener listener = new OtlpSpanListener(exporter, "4711*1");
+
+            // when
+            listener.reported(SemanticUnit.TEST, Action.ENTER, "test", "IDROOT", Status.STARTED, null);
+            listener.reported(SemanticUnit.STEP, Action.ENTER, "step", "ID1", Status.STARTED,
+                    AbstractTestCase.variables("url", "http://localhost"));
+            listener.reportedFork("ID1/1", null, "ID1");
+            listener.reportedInBranch("ID1/1", SemanticUnit.STEP, Action.ENTER, "branch step", "ID2",
+                    Status.STARTED, null);
+            listener.reportedInBranch("ID1/1", SemanticUnit.STEP, Action.LEAVE, "branch step", "ID2", Status.OK,
+                    null);
+            listener.reportedJoin("ID1/1");
+            listener.reported(SemanticUnit.STEP, Action.LEAVE, "step", "ID1", Status.ERROR, null);
+            listener.reported(SemanticUnit.TEST, Action.LEAVE, "test", "IDROOT", Status.OK, null);
+            assertTrue(exporter.flush(10, TimeUnit.SECONDS));
+            exporter.close();
+
+            // then
+            String exported = String.join("\n", collector.getRequests());
+            Map<String, String[]> spans = spansByName(exported);
+            assertEquals(3, spans.size());
+            for (String[] span : spans.values()) {
+                assertEquals(OtlpSpanListener.traceId("4711*1"), span[0]);
+            }
+            assertEquals(hex(OtlpSpanListener.spanId("ID1")), spans.get("step")[1]);
+            assertNull(spans.get("test")[2]);
+            assertEquals(spans.get("test")[1], spans.get("step")[2]);
+            assertEquals(spans.get("step")[1], spans.get("branch step")[2]);
+            assertTrue(exported, exported.contains(
+                    "{\"key\":\"testeditor.pre.url\",\"value\":{\"stringValue\":\"http://localhost\"}}"));
+            assertTrue(exported, exported.contains(
+                    "{\"key\":\"testeditor.branch\",\"value\":{\"stringValue\":\"ID1/1\"}}"));
+            assertEquals(3, exporter.getExportedSpans());
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void testReportingIsNotBlockedByStalledExport() throws Exception {
+        // given
+        CountDownLatch stalled = new CountDownLatch(1);
+        OtlpSpanExporter exporter = new OtlpSpanExporter((request, length) -> {
+            try {
+                stalled.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }, "test", 4, 2, 60000);
+        OtlpSpanListener listener = new OtlpSpanListener(exporter, "4711");
+
+        // when
+        listener.reported(SemanticUnit.TEST, Action.ENTER, "test", "IDROOT", Status.STARTED, null);
+        for (int i = 0; i < 100; i++) {
+            listener.reported(SemanticUnit.STEP, Action.ENTER, "step", "ID" + i, Status.STARTED, null);
+            listener.reported(SemanticUnit.STEP, Action.LEAVE, "step", "ID" + i, Status.OK, null);
+        }
+        listener.reported(SemanticUnit.TEST, Action.LEAVE, "test", "IDROOT", Status.OK, null);
+
+        // then
+        assertTrue(exporter.getDroppedSpans() > 0);
+        stalled.countDown();
+        exporter.close();
+    }
+
+    @Test
+    public void testFileTargetAppendsOneRequestPerLine() throws Exception {
+        // given
+        File file = folder.newFile("spans.json");
+        OtlpSpanExporter exporter = new OtlpSpanExporter(OtlpSpanExporter.file(file), "test");
+
+        // when
+        for (int i = 0; i < 2; i++) {
+            OtlpSpanListener listener = new OtlpSpanListener(exporter, "4711*" + i);
+            listener.reported(SemanticUnit.TEST, Action.ENTER, "test", "IDROOT", Status.STARTED, null);
+            listener.reported(SemanticUnit.TEST, Action.LEAVE, "test", "IDROOT", Status.OK, null);
+            assertTrue(exporter.flush(10, TimeUnit.SECONDS));
+        }
+        exporter.close();
+
+        // then
+        List<String> lines = Files.readAllLines(file.toPath(), StandardCharsets.UTF_8);
+        assertEquals(2, lines.size());
+        for (String line : lines) {
+            assertTrue(line, line.startsWith("{\"resourceSpans\":[{\"resource\":{\"attributes\":"
+                    + "[{\"key\":\"service.name\",\"value\":{\"stringValue\":\"test\"}}]}"));
+            assertTrue(line, line.endsWith("\"status\":{\"code\":1}}]}]}]}"));
+        }
+        assertFalse(lines.get(0).contains(OtlpSpanListener.traceId("4711*1")));
+    }
+
+    @Test
+    public void testTraceAndSpanIdsAreDerivedFromIds() {
+        // when
+        String traceId = OtlpSpanListener.traceId("4711");
+
+        // then
+        assertEquals(32, traceId.length());
+        assertEquals(traceId, OtlpSpanListener.traceId("4711"));
+        assertFalse(traceId.equals(OtlpSpanListener.traceId("4712")));
+        assertEquals(OtlpSpanListener.spanId("ID1-0"), OtlpSpanListener.spanId("ID1-0"));
+        assertFalse(OtlpSpanListener.spanId("ID1-0") == OtlpSpanListener.spanId("ID1-1"));
+    }
+
+    /**
+     * @return trace id, span id and parent span id (null for root spans) by
+     *         span name
+     */
+    private Map<String, String[]> spansByName(String exported) {
+        Map<String, String[]> spans = new HashMap<>();
+        Matcher matcher = SPAN.matcher(exported);
+        while (matcher.find()) {
+            spans.put(matcher.group(4), new String[] { matcher.group(1), matcher.group(2), matcher.group(3) });
+        }
+        return spans;
+    }
+
+    private static String hex(long value) {
+        return String.format("%016x", value);
+    }
+
+}
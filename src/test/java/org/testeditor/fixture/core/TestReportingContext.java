@@ -0,0 +1,143 @@
+/*******************************************************************************
+ * Copyright (c) 2012 - 2018 Signal Iduna Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ * Signal Iduna Corporation - initial API and implementation
+ * akquinet AG
+ * itemis AG
+ *******************************************************************************/
+
+package org.testeditor.fixture.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.mockito.Mockito.mock;
+import static org.testeditor.fixture.core.TestRunReporter.SemanticUnit.STEP;
+import static org.testeditor.fixture.core.TestRunReporter.SemanticUnit.TEST;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.slf4j.MDC;
+import org.testeditor.fixture.core.TestRunReporter.Status;
+
+public class TestReportingContext {
+
+    private DefaultTestRunReporter reporter;
+    private ExecutorService pool;
+
+    @Before
+    public void setup() {
+        reporter = new DefaultTestRunReporter(mock(TestRunListener.class));
+        reporter.setTestRunId("4711");
+        pool = Executors.newSingleThreadExecutor();
+    }
+
+    @After
+    public void tearDown() {
+        pool.shutdownNow();
+    }
+
+    @Test
+    public void testReporterKeepsContextOfReportingThread() {
+        // when
+        reporter.enter(TEST, "org.example.SomeTest", "ID1", Status.STARTED, Collections.emptyMap());
+        reporter.enter(STEP, "step", "ID2", Status.STARTED, Collections.emptyMap());
+        reporter.enter(STEP, "nested step", "ID3", Status.STARTED, Collections.emptyMap());
+        String nestedNodeId = ReportingContext.current().getNodeId();
+        reporter.leave(STEP, "nested step", "ID3", Status.OK, Collections.emptyMap());
+
+        // then
+        assertEquals("ID3", nestedNodeId);
+        assertEquals("ID2", ReportingContext.current().getNodeId());
+        assertEquals("TE-Test: SomeTest", ReportingContext.current().getTestName());
+        assertEquals("TE-Test: SomeTest", MDC.get(ReportingContext.TEST_NAME));
+        assertEquals("4711", MDC.get(ReportingContext.TEST_RUN_ID));
+
+        // when (leaving the test leaves the open step, too)
+        reporter.leave(TEST, "org.example.SomeTest", "ID1", Status.OK, Collections.emptyMap());
+
+        // then
+        assertNull(ReportingContext.current().getNodeId());
+        assertNull(ReportingContext.current().getTestName());
+        assertNull(MDC.get(ReportingContext.TEST_NAME));
+        assertNull(MDC.get(ReportingContext.TEST_RUN_ID));
+    }
+
+    @Test
+    public void testLeavingTestEndsContextWhateverIdsWereReported() {
+        // given
+        reporter.enter(TEST, "SomeTest", "ID1", Status.STARTED, Collections.emptyMap());
+        reporter.enter(STEP, "step", null, Status.STARTED, Collections.emptyMap());
+        reporter.enter(STEP, "step", "ID2", Status.STARTED, Collections.emptyMap());
+        reporter.enter(STEP, "nested step", null, Status.STARTED, Collections.emptyMap());
+
+        // when
+        reporter.leave(STEP, "nested step", null, Status.OK, Collections.emptyMap());
+
+        // then
+        assertEquals("ID2", ReportingContext.current().getNodeId());
+
+        // when
+        reporter.leave(TEST, "SomeTest", "other id", Status.OK, Collections.emptyMap());
+
+        // then
+        assertNull(ReportingContext.current().getTestName());
+        assertNull(MDC.get(ReportingContext.TEST_NAME));
+        assertNull(MDC.get(ReportingContext.TEST_RUN_ID));
+    }
+
+    @Test
+    public void testPropagatingExecutorRunsTasksInContextOfSubmittingThread() throws Exception {
+        // given
+        ExecutorService propagatingPool = ReportingContext.propagating(pool);
+        Callable<List<String>> contextOfTask = () -> Arrays.asList(ReportingContext.current().getNodeId(),
+                MDC.get(ReportingContext.TEST_NAME), MDC.get(ReportingContext.TEST_RUN_ID));
+        reporter.enter(TEST, "SomeTest", "ID1", Status.STARTED, Collections.emptyMap());
+        reporter.enter(STEP, "step", "ID2", Status.STARTED, Collections.emptyMap());
+
+        // when
+        List<String> propagated = propagatingPool.submit(contextOfTask).get(10, TimeUnit.SECONDS);
+        List<String> afterwards = pool.submit(contextOfTask).get(10, TimeUnit.SECONDS);
+        reporter.leave(TEST, "SomeTest", "ID1", Status.OK, Collections.emptyMap());
+
+        // then
+        assertEquals(Arrays.asList("ID2", "TE-Test: SomeTest", "4711"), propagated);
+        assertEquals(Arrays.asList(null, null, null), afterwards);
+    }
+
+    @Test
+    public void testBranchReportingOnOtherThreadExtendsPropagatedContext() throws Exception {
+        // given
+        reporter.enter(TEST, "SomeTest", "ID1", Status.STARTED, Collections.emptyMap());
+        TestRunReporter branch = reporter.fork("ID1");
+
+        // when
+        List<String> context = pool.submit(ReportingContext.propagate(() -> {
+            branch.enter(STEP, "step", "ID2", Status.STARTED, Collections.emptyMap());
+            List<String> result = Arrays.asList(ReportingContext.current().getNodeId(),
+                    ReportingContext.current().getBranch(), MDC.get(ReportingContext.TEST_BRANCH),
+                    MDC.get(ReportingContext.TEST_NAME));
+            branch.leave(STEP, "step", "ID2", Status.OK, Collections.emptyMap());
+            return result;
+        })).get(10, TimeUnit.SECONDS);
+        reporter.join(branch);
+        reporter.leave(TEST, "SomeTest", "ID1", Status.OK, Collections.emptyMap());
+
+        // then
+        assertEquals(Arrays.asList("ID2", "ID1/1", "ID1/1", "TE-Test: SomeTest"), context);
+    }
+
+}
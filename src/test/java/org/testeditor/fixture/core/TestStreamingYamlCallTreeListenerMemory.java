@@ -0,0 +1,71 @@
+/*******************************************************************************
+ * Copyright (c) 2012 - 2018 Signal Iduna Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ * Signal Iduna Corporation - initial API and implementation
+ * akquinet AG
+ * itemis AG
+ *******************************************************************************/
+
+package org.testeditor.fixture.core;
+
+import static org.junit.Assert.assertTrue;
+
+import java.io.OutputStream;
+
+import org.junit.Test;
+import org.testeditor.fixture.core.TestRunReporter.Action;
+import org.testeditor.fixture.core.TestRunReporter.SemanticUnit;
+import org.testeditor.fixture.core.TestRunReporter.Status;
+
+/**
+ * Pushes millions of nodes through a streaming call tree listener. Executed by
+ * the gradle task 'constantMemoryTest' with a heap too small to retain all of
+ * them (see build.gradle).
+ */
+public class TestStreamingYamlCallTreeListenerMemory {
+
+    // each iteration enters and leaves two nodes
+    private static final int ITERATIONS = 1_000_000;
+
+    @Test
+    public void testMillionsOfStepsInConstantMemory() {
+        // given
+        OutputStream discardingOutputStream = new OutputStream() {
+            @Override
+            public void write(int b) {
+                // discard
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) {
+                // discard
+            }
+        };
+        DefaultYamlCallTreeListener listener = new DefaultYamlCallTreeListener(discardingOutputStream, "testcase",
+                "1", "decaf", true);
+        listener.reported(SemanticUnit.TEST, Action.ENTER, "test", "IDROOT", Status.STARTED, null);
+        listener.reported(SemanticUnit.SPECIFICATION_STEP, Action.ENTER, "spec", "IDROOT-0", Status.STARTED, null);
+
+        // when
+        for (int i = 0; i < ITERATIONS; i++) {
+            String componentId = "IDROOT-0-" + i;
+            String stepId = componentId + "-0";
+            listener.reported(SemanticUnit.COMPONENT, Action.ENTER, "component " + i, componentId, Status.STARTED,
+                    null);
+            listener.reported(SemanticUnit.STEP, Action.ENTER, "step " + i, stepId, Status.STARTED, null);
+            listener.reported(SemanticUnit.STEP, Action.LEAVE, "step " + i, stepId, Status.OK, null);
+            listener.reported(SemanticUnit.COMPONENT, Action.LEAVE, "component " + i, componentId, Status.OK, null);
+        }
+        listener.reported(SemanticUnit.SPECIFICATION_STEP, Action.LEAVE, "spec", "IDROOT-0", Status.OK, null);
+        listener.reported(SemanticUnit.TEST, Action.LEAVE, "test", "IDROOT", Status.OK, null);
+
+        // then
+        assertTrue(listener.callTreeNodeMap.isEmpty());
+    }
+
+}
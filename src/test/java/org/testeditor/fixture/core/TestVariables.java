@@ -0,0 +1,82 @@
+/*******************************************************************************
+ * Copyright (c) 2012 - 2018 Signal Iduna Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ * Signal Iduna Corporation - initial API and implementation
+ * akquinet AG
+ * itemis AG
+ *******************************************************************************/
+
+package org.testeditor.fixture.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+public class TestVariables {
+
+    @Test
+    public void testVariablesEqualHashMapOfSamePairs() {
+        // when
+        Variables variables = Variables.of("a", "1", "b", "2", "dangling");
+
+        // then
+        Map<String, String> expected = new HashMap<>();
+        expected.put("a", "1");
+        expected.put("b", "2");
+        assertEquals(expected, variables);
+        assertEquals(expected.hashCode(), variables.hashCode());
+        assertEquals("2", variables.get("b"));
+        assertNull(variables.get("dangling"));
+        assertFalse(variables.containsKey("dangling"));
+    }
+
+    @Test
+    public void testIterationKeepsOrderPassed() {
+        // given
+        Variables variables = Variables.of("z", "1", "a", "2", "m", "3");
+        List<String> iterated = new ArrayList<>();
+
+        // when
+        variables.forEach((key, value) -> iterated.add(key + "=" + value));
+
+        // then
+        assertEquals("[z=1, a=2, m=3]", iterated.toString());
+        assertEquals("{z=1, a=2, m=3}", variables.toString());
+        assertEquals("m", variables.key(2));
+        assertEquals("3", variables.value(2));
+    }
+
+    @Test
+    public void testLastValueOfDuplicateKeyWins() {
+        // when
+        Variables variables = Variables.of("a", "1", "b", "2", "a", "3");
+
+        // then
+        assertEquals(2, variables.size());
+        assertEquals("{a=3, b=2}", variables.toString());
+    }
+
+    @Test
+    public void testNoVariablesShareEmptyInstance() {
+        assertSame(Variables.of(), AbstractTestCase.variables("dangling"));
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testVariablesAreImmutable() {
+        Variables.of("a", "1").put("b", "2");
+    }
+
+}
@@ -0,0 +1,127 @@
+/*******************************************************************************
+ * Copyright (c) 2012 - 2018 Signal Iduna Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ * Signal Iduna Corporation - initial API and implementation
+ * akquinet AG
+ * itemis AG
+ *******************************************************************************/
+
+package org.testeditor.fixture.core.calltree;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Test;
+import org.testeditor.fixture.core.AbstractTestCase;
+import org.testeditor.fixture.core.DefaultYamlCallTreeListener;
+import org.testeditor.fixture.core.FixtureException;
+import org.testeditor.fixture.core.TestRunListener;
+import org.testeditor.fixture.core.TestRunReporter.Action;
+import org.testeditor.fixture.core.TestRunReporter.SemanticUnit;
+import org.testeditor.fixture.core.TestRunReporter.Status;
+
+public class BinaryCallTreeSerializerTest {
+
+    private ByteArrayOutputStream yamlOutput = new ByteArrayOutputStream();
+    private ByteArrayOutputStream binaryOutput = new ByteArrayOutputStream();
+
+    @Test
+    public void testConvertedBinaryEqualsYaml() throws IOException {
+        // given
+        TestRunListener listener = teeListener();
+
+        // when
+        reportTest(listener, 3);
+        Map<String, Object> keyValueStore = new HashMap<>();
+        keyValueStore.put("a double", Double.valueOf(0.5));
+        keyValueStore.put("a long", Long.valueOf(-42));
+        keyValueStore.put("a list", new ArrayList<>(Arrays.asList("one", null, Integer.valueOf(2))));
+        keyValueStore.put("a map", FixtureException.keyValues("key", "välue \"quoted\"", "other", null));
+        listener.reported(SemanticUnit.TEST, Action.ENTER, "test", "IDROOT", Status.STARTED, null);
+        listener.reported(SemanticUnit.STEP, Action.ENTER, "step 😀", "IDROOT-0", Status.STARTED, null);
+        listener.reportFixtureExit(new FixtureException("failed", keyValueStore));
+        listener.reported(SemanticUnit.TEST, Action.LEAVE, "test", "IDROOT", Status.ERROR, null);
+
+        // then
+        assertArrayEquals(yamlOutput.toByteArray(), convertBinary(binaryOutput.toByteArray()));
+    }
+
+    @Test
+    public void testSeveralSegmentsInOneFile() throws IOException {
+        // given (two tests appending to the same file)
+        reportTest(teeListener(), 2);
+        reportTest(teeListener(), 2);
+
+        // when
+        byte[] converted = convertBinary(binaryOutput.toByteArray());
+
+        // then
+        assertArrayEquals(yamlOutput.toByteArray(), converted);
+    }
+
+    @Test
+    public void testBinaryIsMuchSmallerForRepetitiveRuns() throws IOException {
+        // when
+        reportTest(teeListener(), 500);
+
+        // then
+        assertTrue(binaryOutput.size() * 4 < yamlOutput.size());
+    }
+
+    @Test
+    public void testTruncatedRecordIsDetected() throws IOException {
+        // given
+        reportTest(teeListener(), 2);
+        byte[] binary = binaryOutput.toByteArray();
+
+        // when
+        try {
+            convertBinary(Arrays.copyOf(binary, binary.length - 1));
+            fail("expected truncation to be detected");
+        } catch (EOFException e) {
+            // then expected
+        }
+    }
+
+    private TestRunListener teeListener() {
+        CallTreeSerializer yaml = new YamlCallTreeSerializer(yamlOutput);
+        CallTreeSerializer binary = new BinaryCallTreeSerializer(binaryOutput);
+        return new DefaultYamlCallTreeListener(new TeeSerializer(yaml, binary), "testcase", "1", "decaf", true);
+    }
+
+    private void reportTest(TestRunListener listener, int steps) {
+        listener.reported(SemanticUnit.TEST, Action.ENTER, "test", "IDROOT", Status.STARTED, null);
+        listener.reported(SemanticUnit.SPECIFICATION_STEP, Action.ENTER, "spec", "IDROOT-0", Status.STARTED,
+                AbstractTestCase.variables());
+        for (int i = 0; i < steps; i++) {
+            listener.reported(SemanticUnit.STEP, Action.ENTER, "click on button", "IDROOT-0-" + i, Status.STARTED,
+                    AbstractTestCase.variables("button", "ok", "index", Integer.toString(i % 3)));
+            listener.reported(SemanticUnit.STEP, Action.LEAVE, "click on button", "IDROOT-0-" + i, Status.OK,
+                    AbstractTestCase.variables("button", "ok", "index", Integer.toString(i % 3)));
+        }
+        listener.reported(SemanticUnit.SPECIFICATION_STEP, Action.LEAVE, "spec", "IDROOT-0", Status.OK, null);
+        listener.reported(SemanticUnit.TEST, Action.LEAVE, "test", "IDROOT", Status.OK, null);
+    }
+
+    private byte[] convertBinary(byte[] binary) throws IOException {
+        ByteArrayOutputStream converted = new ByteArrayOutputStream();
+        CallTreeConverter.convert(new ByteArrayInputStream(binary), converted);
+        return converted.toByteArray();
+    }
+
+}
@@ -0,0 +1,170 @@
+/*******************************************************************************
+ * Copyright (c) 2012 - 2018 Signal Iduna Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ * Signal Iduna Corporation - initial API and implementation
+ * akquinet AG
+ * itemis AG
+ *******************************************************************************/
+
+package org.testeditor.fixture.core.calltree;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.testeditor.fixture.core.AbstractTestCase;
+import org.testeditor.fixture.core.DefaultYamlCallTreeListener;
+import org.testeditor.fixture.core.TestRunReporter.Action;
+import org.testeditor.fixture.core.TestRunReporter.SemanticUnit;
+import org.testeditor.fixture.core.TestRunReporter.Status;
+
+public class CallTreeIndexTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File yamlFile;
+
+    @Before
+    public void setup() throws IOException {
+        yamlFile = folder.newFile("calltree.yaml");
+    }
+
+    @Test
+    public void testSubtreeOfNodeIsFoundInEachTestRun() throws IOException {
+        // given (two test runs appending to the same file)
+        reportTest("run-1");
+        reportTest("run-2");
+
+        // when
+        CallTreeIndex index = CallTreeIndex.read(CallTreeIndex.indexFile(yamlFile));
+        List<CallTreeIndex.Entry> entries = index.find("IDROOT-0-1");
+
+        // then
+        assertEquals(2, entries.size());
+        assertEquals("run-1", entries.get(0).getTestRunId());
+        assertEquals("run-2", entries.get(1).getTestRunId());
+        for (CallTreeIndex.Entry entry : entries) {
+            String subtree = readSubtree(entry);
+            assertTrue(subtree.startsWith("      - \"node\": \"STEP\"\n        \"message\": \"step 1\"\n"));
+            assertTrue(subtree.endsWith("        \"status\": \"OK\"\n        \"postVariables\":\n"
+                    + "          \"index\": \"1\"\n"));
+            assertEquals(1, subtree.split("\"node\"").length - 1);
+        }
+    }
+
+    @Test
+    public void testSubtreeOfTestCoversTestRun() throws IOException {
+        // given
+        reportTest("run-1");
+        reportTest("run-2");
+        String yaml = new String(Files.readAllBytes(yamlFile.toPath()), StandardCharsets.UTF_8);
+
+        // when
+        CallTreeIndex index = CallTreeIndex.read(CallTreeIndex.indexFile(yamlFile));
+        CallTreeIndex.Entry entry = index.find("run-2", "IDROOT");
+
+        // then
+        String subtree = readSubtree(entry);
+        assertTrue(subtree.startsWith("  - \"node\": \"TEST\"\n"));
+        assertTrue(yaml.endsWith(subtree));
+        assertEquals(4, subtree.split("\"node\"").length - 1);
+        assertNull(index.find("run-3", "IDROOT"));
+        assertTrue(index.find("IDUNKNOWN").isEmpty());
+    }
+
+    @Test
+    public void testSubtreeEndsWithAttributesWrittenAfterLeave() throws IOException {
+        // given
+        reportTest("run-1", true);
+        String yaml = new String(Files.readAllBytes(yamlFile.toPath()), StandardCharsets.UTF_8);
+
+        // when
+        CallTreeIndex index = CallTreeIndex.read(CallTreeIndex.indexFile(yamlFile));
+        String step = readSubtree(index.find("run-1", "IDROOT-0-1"));
+        String spec = readSubtree(index.find("run-1", "IDROOT-0"));
+        String test = readSubtree(index.find("run-1", "IDROOT"));
+
+        // then
+        assertTrue(step, step.matches("(?s).*\n        \"duration\": [0-9]+\n        \"selfDuration\": [0-9]+\n"));
+        assertEquals(1, step.split("\"duration\"").length - 1);
+        assertTrue(spec, spec.matches("(?s).*\n      \"selfDuration\": [0-9]+\n"));
+        assertEquals(3, spec.split("\"duration\"").length - 1);
+        assertTrue(yaml.endsWith(test));
+        assertTrue(test.contains("\"slowest\""));
+    }
+
+    @Test
+    public void testIncompleteLastEntryIsIgnored() throws IOException {
+        // given
+        reportTest("run-1");
+        File indexFile = CallTreeIndex.indexFile(yamlFile);
+        try (RandomAccessFile file = new RandomAccessFile(indexFile, "rw")) {
+            file.setLength(file.length() - 3);
+        }
+
+        // when
+        CallTreeIndex index = CallTreeIndex.read(indexFile);
+
+        // then (the test node is left last)
+        assertEquals(1, index.find("IDROOT-0").size());
+        assertTrue(index.find("IDROOT").isEmpty());
+    }
+
+    private void reportTest(String testRunId) throws IOException {
+        reportTest(testRunId, false);
+    }
+
+    private void reportTest(String testRunId, boolean timings) throws IOException {
+        YamlCallTreeSerializer yaml = new YamlCallTreeSerializer(new FileOutputStream(yamlFile, true));
+        CallTreeSerializer serializer = IndexingCallTreeSerializer.appendingTo(yaml, yamlFile);
+        DefaultYamlCallTreeListener listener = new DefaultYamlCallTreeListener(serializer, "testcase", testRunId,
+                "decaf", true);
+        if (timings) {
+            listener.enableTimings(1);
+        }
+        listener.reported(SemanticUnit.TEST, Action.ENTER, "test", "IDROOT", Status.STARTED, null);
+        listener.reported(SemanticUnit.SPECIFICATION_STEP, Action.ENTER, "spec", "IDROOT-0", Status.STARTED,
+                AbstractTestCase.variables());
+        for (int i = 0; i < 2; i++) {
+            listener.reported(SemanticUnit.STEP, Action.ENTER, "step " + i, "IDROOT-0-" + i, Status.STARTED,
+                    AbstractTestCase.variables("index", Integer.toString(i)));
+            listener.reported(SemanticUnit.STEP, Action.LEAVE, "step " + i, "IDROOT-0-" + i, Status.OK,
+                    AbstractTestCase.variables("index", Integer.toString(i)));
+        }
+        listener.reported(SemanticUnit.SPECIFICATION_STEP, Action.LEAVE, "spec", "IDROOT-0", Status.OK, null);
+        listener.reported(SemanticUnit.TEST, Action.LEAVE, "test", "IDROOT", Status.OK, null);
+    }
+
+    private String readSubtree(CallTreeIndex.Entry entry) throws IOException {
+        ByteArrayOutputStream subtree = new ByteArrayOutputStream();
+        try (InputStream input = CallTreeIndex.openSubtree(yamlFile, entry)) {
+            byte[] buffer = new byte[7];
+            int count;
+            while ((count = input.read(buffer)) >= 0) {
+                subtree.write(buffer, 0, count);
+            }
+        }
+        return new String(subtree.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+}
@@ -0,0 +1,165 @@
+/*******************************************************************************
+ * Copyright (c) 2012 - 2018 Signal Iduna Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ * Signal Iduna Corporation - initial API and implementation
+ * akquinet AG
+ * itemis AG
+ *******************************************************************************/
+
+package org.testeditor.fixture.core.calltree;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.ClosedChannelException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+
+import org.apache.commons.lang3.StringUtils;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.testeditor.fixture.core.AbstractTestCase;
+import org.testeditor.fixture.core.DefaultYamlCallTreeListener;
+import org.testeditor.fixture.core.TestRunListener;
+import org.testeditor.fixture.core.TestRunReporter.Action;
+import org.testeditor.fixture.core.TestRunReporter.SemanticUnit;
+import org.testeditor.fixture.core.TestRunReporter.Status;
+
+public class CallTreeJournalTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Path journalFile;
+    private ByteArrayOutputStream yamlOutput = new ByteArrayOutputStream();
+
+    @Before
+    public void setup() throws IOException {
+        journalFile = folder.getRoot().toPath().resolve("calltree.journal");
+    }
+
+    @Test
+    public void testRecoveredJournalEqualsYaml() throws IOException {
+        // given (small segments, such that the journal is remapped several times)
+        try (CallTreeJournal journal = new CallTreeJournal(journalFile, 128)) {
+            TestRunListener listener = teeListener(journal);
+
+            // when
+            reportSteps(listener, 200);
+            listener.reported(SemanticUnit.SPECIFICATION_STEP, Action.LEAVE, "spec", "IDROOT-0", Status.OK, null);
+            listener.reported(SemanticUnit.TEST, Action.LEAVE, "test", "IDROOT", Status.OK, null);
+        }
+
+        // then
+        ByteArrayOutputStream recovered = new ByteArrayOutputStream();
+        assertEquals(0, CallTreeJournalRecovery.recover(journalFile, recovered));
+        assertEquals(yamlOutput.toString("UTF-8"), recovered.toString("UTF-8"));
+    }
+
+    @Test
+    public void testOpenNodesOfKilledTestAreClosedAsUnknown() throws IOException {
+        // given (test killed within a step, while writing the next frame)
+        CallTreeJournal journal = new CallTreeJournal(journalFile);
+        reportSteps(teeListener(journal), 2);
+        long end = journal.position();
+        tearFrameAt(end);
+
+        // when
+        ByteArrayOutputStream recovered = new ByteArrayOutputStream();
+        int closedNodes = CallTreeJournalRecovery.recover(journalFile, recovered);
+
+        // then
+        assertEquals(3, closedNodes);
+        String yaml = recovered.toString("UTF-8");
+        assertTrue(yaml.startsWith(yamlOutput.toString("UTF-8")));
+        String closingLines = yaml.substring(yamlOutput.size());
+        assertEquals(3, StringUtils.countMatches(closingLines, "\"status\": \"UNKNOWN\""));
+        assertTrue(closingLines.endsWith("    \"status\": \"UNKNOWN\"\n    \"postVariables\":\n"));
+        journal.close();
+    }
+
+    @Test
+    public void testReopenedJournalAppendsAfterLastValidFrame() throws IOException {
+        // given
+        CallTreeJournal killedJournal = new CallTreeJournal(journalFile);
+        reportSteps(teeListener(killedJournal), 1);
+        tearFrameAt(killedJournal.position());
+        int yamlOfKilledTest = yamlOutput.size();
+
+        // when
+        try (CallTreeJournal journal = new CallTreeJournal(journalFile)) {
+            TestRunListener listener = teeListener(journal);
+            reportSteps(listener, 1);
+            listener.reported(SemanticUnit.SPECIFICATION_STEP, Action.LEAVE, "spec", "IDROOT-0", Status.OK, null);
+            listener.reported(SemanticUnit.TEST, Action.LEAVE, "test", "IDROOT", Status.OK, null);
+        }
+
+        // then
+        ByteArrayOutputStream recovered = new ByteArrayOutputStream();
+        assertEquals(3, CallTreeJournalRecovery.recover(journalFile, recovered));
+        String yaml = recovered.toString("UTF-8");
+        String expected = yamlOutput.toString("UTF-8");
+        assertTrue(yaml.startsWith(expected.substring(0, yamlOfKilledTest)));
+        assertTrue(yaml.endsWith(expected.substring(yamlOfKilledTest)));
+        assertEquals(3, StringUtils.countMatches(yaml, "\"status\": \"UNKNOWN\"")
+                - StringUtils.countMatches(expected, "\"status\": \"UNKNOWN\""));
+        killedJournal.close();
+    }
+
+    @Test(expected = ClosedChannelException.class)
+    public void testJournalIsClosedWhenTestIsLeft() throws IOException {
+        // given
+        CallTreeJournal journal = new CallTreeJournal(journalFile);
+        TestRunListener listener = teeListener(journal);
+        reportSteps(listener, 1);
+        listener.reported(SemanticUnit.SPECIFICATION_STEP, Action.LEAVE, "spec", "IDROOT-0", Status.OK, null);
+
+        // when
+        listener.reported(SemanticUnit.TEST, Action.LEAVE, "test", "IDROOT", Status.OK, null);
+
+        // then
+        journal.append(new byte[] { 1 }, 0, 1);
+    }
+
+    private TestRunListener teeListener(CallTreeJournal journal) {
+        CallTreeSerializer yaml = new YamlCallTreeSerializer(yamlOutput);
+        CallTreeSerializer journalSerializer = new JournalCallTreeSerializer(journal);
+        return new DefaultYamlCallTreeListener(new TeeSerializer(yaml, journalSerializer), "testcase", "1", "decaf",
+                true);
+    }
+
+    /** enter test and specification step, ending within the last step */
+    private void reportSteps(TestRunListener listener, int steps) {
+        listener.reported(SemanticUnit.TEST, Action.ENTER, "test", "IDROOT", Status.STARTED, null);
+        listener.reported(SemanticUnit.SPECIFICATION_STEP, Action.ENTER, "spec", "IDROOT-0", Status.STARTED,
+                AbstractTestCase.variables());
+        for (int i = 0; i < steps; i++) {
+            if (i > 0) {
+                listener.reported(SemanticUnit.STEP, Action.LEAVE, "step", "IDROOT-0-" + (i - 1), Status.OK, null);
+            }
+            listener.reported(SemanticUnit.STEP, Action.ENTER, "step", "IDROOT-0-" + i, Status.STARTED,
+                    AbstractTestCase.variables("index", Integer.toString(i)));
+        }
+    }
+
+    /** write frame with a checksum not matching its payload, as if the jvm died while writing it */
+    private void tearFrameAt(long position) throws IOException {
+        try (RandomAccessFile file = new RandomAccessFile(journalFile.toFile(), "rw")) {
+            file.seek(position);
+            file.writeInt(5);
+            file.writeInt(4711);
+            file.write("torn".getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+}
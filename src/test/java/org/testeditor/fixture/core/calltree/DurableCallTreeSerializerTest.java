@@ -0,0 +1,128 @@
+/*******************************************************************************
+ * Copyright (c) 2012 - 2018 Signal Iduna Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ * Signal Iduna Corporation - initial API and implementation
+ * akquinet AG
+ * itemis AG
+ *******************************************************************************/
+
+package org.testeditor.fixture.core.calltree;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.testeditor.fixture.core.TestRunReporter.SemanticUnit;
+import org.testeditor.fixture.core.TestRunReporter.Status;
+import org.testeditor.fixture.core.calltree.DurableCallTreeSerializer.Durability;
+
+public class DurableCallTreeSerializerTest {
+
+    private static final long NO_TIMER_MILLIS = TimeUnit.HOURS.toMillis(1);
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testNoDurabilityWritesAtEndOfTestRun() throws IOException {
+        // given
+        File file = folder.newFile("calltree.yaml");
+        CallTreeSerializer serializerUnderTest = new DurableCallTreeSerializer(
+                new YamlCallTreeSerializer(new FileOutputStream(file, true)), Durability.NONE, null);
+
+        // when
+        serializerUnderTest.writeTestRun(0, "source", "run", "commit", "now");
+        serializerUnderTest.flush();
+
+        // then
+        assertEquals(0, file.length());
+        serializerUnderTest.endTestRun();
+        assertTrue(file.length() > 0);
+    }
+
+    @Test
+    public void testCommitCoversEventsAndBytesFlushedSinceLastCommit() throws IOException {
+        // given
+        File file = folder.newFile("calltree.yaml");
+        GroupCommit groupCommit = GroupCommit.forFile(file, NO_TIMER_MILLIS);
+        CallTreeSerializer serializerUnderTest = new DurableCallTreeSerializer(
+                new YamlCallTreeSerializer(new FileOutputStream(file, true)), Durability.FSYNC, groupCommit);
+
+        // when
+        serializerUnderTest.writeTestRun(0, "source", "run", "commit", "now");
+        serializerUnderTest.writeEnter(2, SemanticUnit.TEST, "test", "run", 1, null);
+        serializerUnderTest.flush();
+        GroupCommit.Commit first = groupCommit.commit();
+        long firstLength = file.length();
+        serializerUnderTest.writeAttribute(4, "key", "value");
+        serializerUnderTest.flush();
+        serializerUnderTest.writeLeave(4, 2, Status.OK, null);
+        serializerUnderTest.flush();
+        GroupCommit.Commit second = groupCommit.commit();
+
+        // then
+        assertEquals(2, first.getEvents());
+        assertEquals(firstLength, first.getBytes());
+        assertEquals(2, second.getEvents());
+        assertEquals(file.length() - firstLength, second.getBytes());
+        assertNull(groupCommit.commit());
+        assertEquals(2, groupCommit.getCommits());
+        assertEquals(4, groupCommit.getCommittedEvents());
+        assertEquals(file.length(), groupCommit.getCommittedBytes());
+    }
+
+    @Test
+    public void testEndOfTestRunIsCommitted() throws IOException {
+        // given
+        File file = folder.newFile("calltree.yaml");
+        GroupCommit groupCommit = GroupCommit.forFile(file, NO_TIMER_MILLIS);
+        CallTreeSerializer serializerUnderTest = new DurableCallTreeSerializer(
+                new YamlCallTreeSerializer(new FileOutputStream(file, true)), Durability.FSYNC, groupCommit);
+
+        // when
+        serializerUnderTest.writeTestRun(0, "source", "run", "commit", "now");
+        serializerUnderTest.writeEnter(2, SemanticUnit.TEST, "test", "run", 1, null);
+        serializerUnderTest.writeLeave(4, 2, Status.OK, null);
+        serializerUnderTest.endTestRun();
+
+        // then
+        assertEquals(1, groupCommit.getCommits());
+        assertEquals(3, groupCommit.getLastCommit().getEvents());
+        assertEquals(file.length(), groupCommit.getLastCommit().getBytes());
+    }
+
+    @Test
+    public void testTimerCommits() throws Exception {
+        // given
+        File file = folder.newFile("calltree.yaml");
+        GroupCommit groupCommit = GroupCommit.forFile(file, 10);
+        CallTreeSerializer serializerUnderTest = new DurableCallTreeSerializer(
+                new YamlCallTreeSerializer(new FileOutputStream(file, true)), Durability.FSYNC, groupCommit);
+
+        // when
+        serializerUnderTest.writeTestRun(0, "source", "run", "commit", "now");
+        serializerUnderTest.flush();
+
+        // then
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (groupCommit.getCommits() == 0 && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals(1, groupCommit.getCommits());
+        assertEquals(1, groupCommit.getCommittedEvents());
+    }
+
+}
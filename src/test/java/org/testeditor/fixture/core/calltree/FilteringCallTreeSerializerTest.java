@@ -0,0 +1,250 @@
+/*******************************************************************************
+ * Copyright (c) 2012 - 2018 Signal Iduna Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ * Signal Iduna Corporation - initial API and implementation
+ * akquinet AG
+ * itemis AG
+ *******************************************************************************/
+
+package org.testeditor.fixture.core.calltree;
+
+import static org.junit.Assert.assertEquals;
+import static org.testeditor.fixture.core.TestRunReporter.Action.ENTER;
+import static org.testeditor.fixture.core.TestRunReporter.Action.LEAVE;
+import static org.testeditor.fixture.core.TestRunReporter.SemanticUnit.COMPONENT;
+import static org.testeditor.fixture.core.TestRunReporter.SemanticUnit.SPECIFICATION_STEP;
+import static org.testeditor.fixture.core.TestRunReporter.SemanticUnit.STEP;
+import static org.testeditor.fixture.core.TestRunReporter.SemanticUnit.TEST;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+import org.testeditor.fixture.core.DefaultYamlCallTreeListener;
+import org.testeditor.fixture.core.TestRunReporter.SemanticUnit;
+import org.testeditor.fixture.core.TestRunReporter.Status;
+
+public class FilteringCallTreeSerializerTest {
+
+    private static final long MILLIS = 1_000_000;
+
+    private final ByteArrayOutputStream filtered = new ByteArrayOutputStream();
+    private final ByteArrayOutputStream expected = new ByteArrayOutputStream();
+    private final YamlCallTreeSerializer expectedSerializer = new YamlCallTreeSerializer(expected);
+
+    @Test
+    public void testStepsFasterThanThresholdAreDropped() throws IOException {
+        // given
+        CallTreeSerializer serializerUnderTest = filtering(STEP, RecordingPolicy.slowerThan(50, TimeUnit.MILLISECONDS));
+
+        // when
+        startTest(serializerUnderTest);
+        serializerUnderTest.writeEnter(4, STEP, "fast", "ID1", 1 * MILLIS, null);
+        serializerUnderTest.writeLeave(6, 11 * MILLIS, Status.OK, null);
+        serializerUnderTest.writeEnter(4, STEP, "slow", "ID2", 20 * MILLIS, null);
+        serializerUnderTest.writeLeave(6, 90 * MILLIS, Status.OK, null);
+        endTest(serializerUnderTest);
+
+        // then
+        startTest(expectedSerializer);
+        expectedSerializer.writeEnter(4, STEP, "slow", "ID2", 20 * MILLIS, null);
+        expectedSerializer.writeLeave(6, 90 * MILLIS, Status.OK, null);
+        endTest(expectedSerializer);
+        assertFilteredAsExpected();
+    }
+
+    @Test
+    public void testFailingSubtreesAreKeptInFullWithTheirParents() throws IOException {
+        // given
+        Map<SemanticUnit, RecordingPolicy> policies = new EnumMap<>(SemanticUnit.class);
+        policies.put(SPECIFICATION_STEP, RecordingPolicy.sampled(0));
+        policies.put(STEP, RecordingPolicy.slowerThan(50, TimeUnit.MILLISECONDS));
+        CallTreeSerializer serializerUnderTest = new FilteringCallTreeSerializer(filteredSerializer(), policies,
+                new Random(42));
+
+        // when
+        startTest(serializerUnderTest);
+        serializerUnderTest.writeEnter(4, SPECIFICATION_STEP, "spec", "ID1", 1, null);
+        serializerUnderTest.writeEnter(6, STEP, "ok", "ID2", 2, null);
+        serializerUnderTest.writeLeave(8, 3, Status.OK, null);
+        serializerUnderTest.writeEnter(6, STEP, "failing", "ID3", 4, null);
+        serializerUnderTest.writeAttribute(8, "exception", "boom");
+        serializerUnderTest.writeLeave(8, 5, Status.ERROR, null);
+        serializerUnderTest.writeLeave(6, 6, Status.ERROR, null);
+        serializerUnderTest.writeEnter(4, SPECIFICATION_STEP, "other spec", "ID4", 7, null);
+        serializerUnderTest.writeLeave(6, 8, Status.OK, null);
+        endTest(serializerUnderTest);
+
+        // then (the ok step is kept, since its spec step fails)
+        startTest(expectedSerializer);
+        expectedSerializer.writeEnter(4, SPECIFICATION_STEP, "spec", "ID1", 1, null);
+        expectedSerializer.writeEnter(6, STEP, "ok", "ID2", 2, null);
+        expectedSerializer.writeLeave(8, 3, Status.OK, null);
+        expectedSerializer.writeEnter(6, STEP, "failing", "ID3", 4, null);
+        expectedSerializer.writeAttribute(8, "exception", "boom");
+        expectedSerializer.writeLeave(8, 5, Status.ERROR, null);
+        expectedSerializer.writeLeave(6, 6, Status.ERROR, null);
+        endTest(expectedSerializer);
+        assertFilteredAsExpected();
+    }
+
+    @Test
+    public void testTimingsOfDroppedNodesAreDroppedWithThem() {
+        // given
+        Map<SemanticUnit, RecordingPolicy> policies = new EnumMap<>(SemanticUnit.class);
+        policies.put(COMPONENT, RecordingPolicy.sampled(0));
+        policies.put(STEP, RecordingPolicy.sampled(0));
+        DefaultYamlCallTreeListener listenerUnderTest = new DefaultYamlCallTreeListener(
+                new FilteringCallTreeSerializer(filteredSerializer(), policies, new Random(42)), "source", "run",
+                "commit", false);
+        DefaultYamlCallTreeListener expectedListener = new DefaultYamlCallTreeListener(expectedSerializer, "source",
+                "run", "commit", false);
+        listenerUnderTest.enableTimings(0);
+        expectedListener.enableTimings(0);
+
+        // when
+        for (DefaultYamlCallTreeListener listener : Arrays.asList(listenerUnderTest, expectedListener)) {
+            listener.reported(TEST, ENTER, "test", "ID0", Status.STARTED, null);
+            if (listener == listenerUnderTest) {
+                listener.reported(COMPONENT, ENTER, "passing", "ID1", Status.STARTED, null);
+                listener.reported(STEP, ENTER, "dropped", "ID2", Status.STARTED, null);
+                listener.reported(STEP, LEAVE, "dropped", "ID2", Status.OK, null);
+                listener.reported(COMPONENT, LEAVE, "passing", "ID1", Status.OK, null);
+            }
+            listener.reported(COMPONENT, ENTER, "failing", "ID3", Status.STARTED, null);
+            listener.reported(STEP, ENTER, "kept", "ID4", Status.STARTED, null);
+            listener.reported(STEP, LEAVE, "kept", "ID4", Status.OK, null);
+            listener.reported(COMPONENT, LEAVE, "failing", "ID3", Status.ERROR, null);
+            listener.reported(TEST, LEAVE, "test", "ID0", Status.ERROR, null);
+        }
+
+        // then (the ok step of the failing component is kept with its timings)
+        assertEquals(withoutTimes(expected), withoutTimes(filtered));
+    }
+
+    @Test
+    public void testSampledOutParentIsKeptForSlowChild() throws IOException {
+        // given
+        Map<SemanticUnit, RecordingPolicy> policies = new EnumMap<>(SemanticUnit.class);
+        policies.put(COMPONENT, RecordingPolicy.sampled(0));
+        policies.put(STEP, RecordingPolicy.slowerThan(50, TimeUnit.MILLISECONDS));
+        CallTreeSerializer serializerUnderTest = new FilteringCallTreeSerializer(filteredSerializer(), policies,
+                new Random(42));
+
+        // when
+        startTest(serializerUnderTest);
+        serializerUnderTest.writeEnter(4, COMPONENT, "component", "ID1", 0, null);
+        serializerUnderTest.writeEnter(6, STEP, "slow", "ID2", 0, null);
+        serializerUnderTest.writeLeave(8, 60 * MILLIS, Status.OK, null);
+        serializerUnderTest.writeLeave(6, 61 * MILLIS, Status.OK, null);
+        endTest(serializerUnderTest);
+
+        // then
+        startTest(expectedSerializer);
+        expectedSerializer.writeEnter(4, COMPONENT, "component", "ID1", 0, null);
+        expectedSerializer.writeEnter(6, STEP, "slow", "ID2", 0, null);
+        expectedSerializer.writeLeave(8, 60 * MILLIS, Status.OK, null);
+        expectedSerializer.writeLeave(6, 61 * MILLIS, Status.OK, null);
+        endTest(expectedSerializer);
+        assertFilteredAsExpected();
+    }
+
+    @Test
+    public void testSamplingAllKeepsEverything() throws IOException {
+        // given
+        CallTreeSerializer serializerUnderTest = filtering(STEP, RecordingPolicy.sampled(1));
+
+        // when
+        startTest(serializerUnderTest);
+        serializerUnderTest.writeEnter(4, STEP, "step", "ID1", 1, null);
+        serializerUnderTest.writeLeave(6, 2, Status.OK, null);
+        endTest(serializerUnderTest);
+
+        // then
+        startTest(expectedSerializer);
+        expectedSerializer.writeEnter(4, STEP, "step", "ID1", 1, null);
+        expectedSerializer.writeLeave(6, 2, Status.OK, null);
+        endTest(expectedSerializer);
+        assertFilteredAsExpected();
+    }
+
+    @Test
+    public void testNodesNotLeftAreWrittenAtEndOfTestRun() throws IOException {
+        // given
+        CallTreeSerializer serializerUnderTest = filtering(STEP, RecordingPolicy.sampled(0));
+
+        // when
+        startTest(serializerUnderTest);
+        serializerUnderTest.writeEnter(4, STEP, "step", "ID1", 1, null);
+        serializerUnderTest.endTestRun();
+
+        // then
+        startTest(expectedSerializer);
+        expectedSerializer.writeEnter(4, STEP, "step", "ID1", 1, null);
+        expectedSerializer.endTestRun();
+        assertFilteredAsExpected();
+    }
+
+    @Test
+    public void testParsePolicies() {
+        // when
+        Map<SemanticUnit, RecordingPolicy> policies = RecordingPolicy
+                .parse("step=slower:50, COMPONENT=sampled:0.25,MACRO=always");
+
+        // then
+        assertEquals(3, policies.size());
+        Random random = new Random(42);
+        assertEquals(false, policies.get(STEP).isRecorded(50 * MILLIS, random));
+        assertEquals(true, policies.get(STEP).isRecorded(50 * MILLIS + 1, random));
+        assertEquals(true, policies.get(STEP).isRecordingParents());
+        assertEquals(false, policies.get(COMPONENT).isRecordingParents());
+        assertEquals(false, policies.get(SemanticUnit.MACRO).isFiltering());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testParseRejectsUnknownPolicy() {
+        RecordingPolicy.parse("STEP=sometimes");
+    }
+
+    private CallTreeSerializer filtering(SemanticUnit unit, RecordingPolicy policy) {
+        Map<SemanticUnit, RecordingPolicy> policies = new EnumMap<>(SemanticUnit.class);
+        policies.put(unit, policy);
+        return new FilteringCallTreeSerializer(filteredSerializer(), policies, new Random(42));
+    }
+
+    private CallTreeSerializer filteredSerializer() {
+        return new YamlCallTreeSerializer(filtered);
+    }
+
+    private void startTest(CallTreeSerializer serializer) throws IOException {
+        serializer.writeTestRun(0, "source", "run", "commit", "now");
+        serializer.writeEnter(2, TEST, "test", "run", 0, null);
+    }
+
+    private void endTest(CallTreeSerializer serializer) throws IOException {
+        serializer.writeLeave(4, 100 * MILLIS, Status.OK, null);
+        serializer.endTestRun();
+    }
+
+    private String withoutTimes(ByteArrayOutputStream output) {
+        return new String(output.toByteArray(), StandardCharsets.UTF_8)
+                .replaceAll("\"(enter|leave|started|duration|selfDuration)\": \"?[0-9-.ZT:]*\"?", "\"$1\": 0");
+    }
+
+    private void assertFilteredAsExpected() {
+        assertEquals(new String(expected.toByteArray(), StandardCharsets.UTF_8),
+                new String(filtered.toByteArray(), StandardCharsets.UTF_8));
+    }
+
+}
@@ -0,0 +1,147 @@
+/*******************************************************************************
+ * Copyright (c) 2012 - 2018 Signal Iduna Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ * Signal Iduna Corporation - initial API and implementation
+ * akquinet AG
+ * itemis AG
+ *******************************************************************************/
+
+package org.testeditor.fixture.core.calltree;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CyclicBarrier;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.testeditor.fixture.core.DefaultYamlCallTreeListener;
+import org.testeditor.fixture.core.TestRunListener;
+import org.testeditor.fixture.core.TestRunReporter.Action;
+import org.testeditor.fixture.core.TestRunReporter.SemanticUnit;
+import org.testeditor.fixture.core.TestRunReporter.Status;
+import org.testeditor.fixture.core.calltree.YamlCallTreeParser.Event;
+
+public class SharedCallTreeFileTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File yamlFile;
+
+    @Before
+    public void setup() throws IOException {
+        yamlFile = new File(folder.getRoot(), "calltree.yaml");
+    }
+
+    @Test
+    public void testSameInstanceForSamePath() throws IOException {
+        // when
+        SharedCallTreeFile sharedFile = SharedCallTreeFile.forFile(yamlFile);
+
+        // then
+        assertSame(sharedFile, SharedCallTreeFile.forFile(new File(folder.getRoot(), "./calltree.yaml")));
+    }
+
+    @Test
+    public void testTestRunIsAppendedWhenLeft() throws IOException {
+        // given
+        TestRunListener listener = listener("1");
+
+        // when
+        listener.reported(SemanticUnit.TEST, Action.ENTER, "test", "IDROOT", Status.STARTED, null);
+        listener.reported(SemanticUnit.STEP, Action.ENTER, "step", "IDROOT-0", Status.STARTED, null);
+        listener.reported(SemanticUnit.STEP, Action.LEAVE, "step", "IDROOT-0", Status.OK, null);
+
+        // then
+        assertEquals(0, yamlFile.length());
+        listener.reported(SemanticUnit.TEST, Action.LEAVE, "test", "IDROOT", Status.OK, null);
+        assertTrue(yamlFile.length() > 0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testJournalIsRejected() throws IOException {
+        // when
+        SharedCallTreeFile.forFile(yamlFile).createSerializer(" Journal");
+    }
+
+    @Test
+    public void testConcurrentTestRunsDoNotInterleave() throws Exception {
+        // given
+        int threadCount = 8;
+        int testsPerThread = 5;
+        CyclicBarrier barrier = new CyclicBarrier(threadCount);
+        List<Thread> threads = new ArrayList<>();
+        List<Throwable> failures = new ArrayList<>();
+        for (int t = 0; t < threadCount; t++) {
+            String thread = Integer.toString(t);
+            threads.add(new Thread(() -> {
+                try {
+                    barrier.await();
+                    for (int test = 0; test < testsPerThread; test++) {
+                        reportTest(thread + "." + test, 50);
+                    }
+                } catch (Exception e) {
+                    synchronized (failures) {
+                        failures.add(e);
+                    }
+                }
+            }));
+        }
+
+        // when
+        threads.forEach(Thread::start);
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        // then
+        assertTrue(failures.isEmpty());
+        Set<String> testRunIds = new HashSet<>();
+        try (YamlCallTreeParser parser = new YamlCallTreeParser(new FileInputStream(yamlFile))) {
+            String testRunId = null;
+            for (Event event = parser.next(); event != null; event = parser.next()) {
+                if (event == Event.TEST_RUN) {
+                    testRunId = parser.getTestRunId();
+                    assertTrue(testRunIds.add(testRunId));
+                } else if (event == Event.ENTER) {
+                    assertTrue(parser.getId().equals(testRunId) || parser.getId().startsWith(testRunId + "-"));
+                }
+            }
+        }
+        assertEquals(threadCount * testsPerThread, testRunIds.size());
+    }
+
+    private TestRunListener listener(String testRunId) throws IOException {
+        return new DefaultYamlCallTreeListener(SharedCallTreeFile.forFile(yamlFile).createSerializer(null),
+                "testcase", testRunId, "decaf", true);
+    }
+
+    private void reportTest(String testRunId, int steps) throws IOException {
+        TestRunListener listener = listener(testRunId);
+        String id = testRunId;
+        listener.reported(SemanticUnit.TEST, Action.ENTER, "test", id, Status.STARTED, null);
+        for (int i = 0; i < steps; i++) {
+            listener.reported(SemanticUnit.STEP, Action.ENTER, "step", id + "-" + i, Status.STARTED, null);
+            Thread.yield();
+            listener.reported(SemanticUnit.STEP, Action.LEAVE, "step", id + "-" + i, Status.OK, null);
+        }
+        listener.reported(SemanticUnit.TEST, Action.LEAVE, "test", id, Status.OK, null);
+    }
+
+}
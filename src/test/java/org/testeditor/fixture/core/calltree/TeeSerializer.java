@@ -0,0 +1,77 @@
+/*******************************************************************************
+ * Copyright (c) 2012 - 2018 Signal Iduna Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ * Signal Iduna Corporation - initial API and implementation
+ * akquinet AG
+ * itemis AG
+ *******************************************************************************/
+
+package org.testeditor.fixture.core.calltree;
+
+import java.io.IOException;
+import java.util.Map;
+
+import org.testeditor.fixture.core.TestRunReporter.SemanticUnit;
+import org.testeditor.fixture.core.TestRunReporter.Status;
+
+/** writes the same call tree to two serializers */
+class TeeSerializer implements CallTreeSerializer {
+    private final CallTreeSerializer first;
+    private final CallTreeSerializer second;
+
+    TeeSerializer(CallTreeSerializer first, CallTreeSerializer second) {
+        this.first = first;
+        this.second = second;
+    }
+
+    @Override
+    public void writeTestRun(int indentation, String source, String testRunId, String commitId, String started)
+            throws IOException {
+        first.writeTestRun(indentation, source, testRunId, commitId, started);
+        second.writeTestRun(indentation, source, testRunId, commitId, started);
+    }
+
+    @Override
+    public void writeEnter(int indentation, SemanticUnit unit, String message, String id, long nanoTimeEntered,
+            Map<String, String> preVariables) throws IOException {
+        first.writeEnter(indentation, unit, message, id, nanoTimeEntered, preVariables);
+        second.writeEnter(indentation, unit, message, id, nanoTimeEntered, preVariables);
+    }
+
+    @Override
+    public void writeLeave(int indentation, long nanoTimeLeft, Status status, Map<String, String> postVariables)
+            throws IOException {
+        first.writeLeave(indentation, nanoTimeLeft, status, postVariables);
+        second.writeLeave(indentation, nanoTimeLeft, status, postVariables);
+    }
+
+    @Override
+    public void writeAttribute(int indentation, String key, Object value) throws IOException {
+        first.writeAttribute(indentation, key, value);
+        second.writeAttribute(indentation, key, value);
+    }
+
+    @Override
+    public void flush() throws IOException {
+        first.flush();
+        second.flush();
+    }
+
+    @Override
+    public void endTestRun() throws IOException {
+        first.endTestRun();
+        second.endTestRun();
+    }
+
+    @Override
+    public void close() throws IOException {
+        first.close();
+        second.close();
+    }
+
+}
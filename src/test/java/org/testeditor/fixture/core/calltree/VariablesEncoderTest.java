@@ -0,0 +1,165 @@
+/*******************************************************************************
+ * Copyright (c) 2012 - 2018 Signal Iduna Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ * Signal Iduna Corporation - initial API and implementation
+ * akquinet AG
+ * itemis AG
+ *******************************************************************************/
+
+package org.testeditor.fixture.core.calltree;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+import org.testeditor.fixture.core.DefaultYamlCallTreeListener;
+import org.testeditor.fixture.core.TestRunReporter.Action;
+import org.testeditor.fixture.core.TestRunReporter.SemanticUnit;
+import org.testeditor.fixture.core.TestRunReporter.Status;
+import org.testeditor.fixture.core.calltree.YamlCallTreeParser.Event;
+
+public class VariablesEncoderTest {
+
+    private List<Map<String, String>> reportedVariables = new ArrayList<>();
+
+    @Test
+    public void testDecodedVariablesEqualReportedVariables() throws IOException {
+        // given
+        ByteArrayOutputStream yaml = new ByteArrayOutputStream();
+        DefaultYamlCallTreeListener listener = new DefaultYamlCallTreeListener(yaml, "testcase", "1", "decaf", true);
+        listener.enableVariableDeltas();
+
+        // when
+        reportLoop(listener, 20, 5);
+        reportLoop(listener, 3, 2);
+
+        // then
+        assertEquals(reportedVariables, decode(yaml.toByteArray()));
+    }
+
+    @Test
+    public void testDeltasAreMuchSmallerForLoops() throws IOException {
+        // given
+        ByteArrayOutputStream plainYaml = new ByteArrayOutputStream();
+        ByteArrayOutputStream compactYaml = new ByteArrayOutputStream();
+        DefaultYamlCallTreeListener compactListener = new DefaultYamlCallTreeListener(compactYaml, "testcase", "1",
+                "decaf", true);
+        compactListener.enableVariableDeltas();
+
+        // when
+        reportLoop(new DefaultYamlCallTreeListener(plainYaml, "testcase", "1", "decaf", true), 100, 50);
+        reportLoop(compactListener, 100, 50);
+
+        // then
+        assertTrue(compactYaml.size() * 5 < plainYaml.size());
+    }
+
+    @Test
+    public void testNullValuesAreNotTakenAsRemoved() {
+        // given
+        VariablesEncoder encoder = new VariablesEncoder();
+        VariablesDecoder decoder = new VariablesDecoder();
+        Map<String, String> pre = variables(3, 0);
+        Map<String, String> post = new HashMap<>(pre);
+        post.put("key0", null);
+
+        // when
+        Map<String, String> encodedPre = encoder.encode(pre);
+        Map<String, String> encodedPost = encoder.encodeDelta(encoder.lastEncoded(), post);
+
+        // then
+        Map<String, String> decodedPre = decoder.decode(encodedPre);
+        assertEquals(pre, decodedPre);
+        assertEquals(post, decoder.decodeDelta(decodedPre, encodedPost));
+    }
+
+    /**
+     * macro looping over steps with the same large variables, each step
+     * changing one of them and removing another
+     */
+    private void reportLoop(DefaultYamlCallTreeListener listener, int iterations, int variableCount) {
+        Map<String, String> macroVariables = variables(variableCount, 0);
+        report(listener, Action.ENTER, SemanticUnit.TEST, "IDROOT", null);
+        report(listener, Action.ENTER, SemanticUnit.MACRO, "IDROOT-0", macroVariables);
+        for (int i = 0; i < iterations; i++) {
+            Map<String, String> preVariables = variables(variableCount, i % 3);
+            Map<String, String> postVariables = new HashMap<>(preVariables);
+            postVariables.put("key" + (i % variableCount), "changed " + i);
+            postVariables.remove("key" + ((i + 1) % variableCount));
+            postVariables.put("added", "value");
+            report(listener, Action.ENTER, SemanticUnit.STEP, "IDROOT-0-" + i, preVariables);
+            report(listener, Action.LEAVE, SemanticUnit.STEP, "IDROOT-0-" + i, postVariables);
+        }
+        report(listener, Action.LEAVE, SemanticUnit.MACRO, "IDROOT-0", macroVariables);
+        report(listener, Action.LEAVE, SemanticUnit.TEST, "IDROOT", null);
+    }
+
+    private void report(DefaultYamlCallTreeListener listener, Action action, SemanticUnit unit, String id,
+            Map<String, String> variables) {
+        listener.reported(unit, action, unit.name(), id, Status.OK, variables);
+        reportedVariables.add(variables);
+    }
+
+    private Map<String, String> variables(int count, int version) {
+        Map<String, String> variables = new LinkedHashMap<>();
+        for (int i = 0; i < count; i++) {
+            variables.put("key" + i, "a rather long value of variable " + i + " in version " + version);
+        }
+        return variables;
+    }
+
+    /**
+     * @return pre and post variables of all nodes in the order written, empty
+     *         maps read as null
+     */
+    private List<Map<String, String>> decode(byte[] yaml) throws IOException {
+        List<Map<String, String>> result = new ArrayList<>();
+        VariablesDecoder decoder = new VariablesDecoder();
+        Deque<Map<String, String>> preVariables = new ArrayDeque<>();
+        try (YamlCallTreeParser parser = new YamlCallTreeParser(new ByteArrayInputStream(yaml))) {
+            Event event = parser.next();
+            while (event != null) {
+                if (event == Event.TEST_RUN) {
+                    decoder.startTestRun();
+                    event = parser.next();
+                } else if (event == Event.ENTER) {
+                    Map<String, String> encoded = new LinkedHashMap<>();
+                    for (event = parser.next(); event == Event.PRE_VARIABLE; event = parser.next()) {
+                        encoded.put(parser.getKey(), parser.getValue());
+                    }
+                    Map<String, String> decoded = decoder.decode(encoded.isEmpty() ? null : encoded);
+                    preVariables.push(decoded == null ? new HashMap<>() : decoded);
+                    result.add(decoded);
+                } else if (event == Event.LEAVE) {
+                    Map<String, String> encoded = new LinkedHashMap<>();
+                    for (event = parser.next(); event == Event.POST_VARIABLE; event = parser.next()) {
+                        encoded.put(parser.getKey(), parser.getValue());
+                    }
+                    Map<String, String> decoded = decoder.decodeDelta(preVariables.pop(),
+                            encoded.isEmpty() ? null : encoded);
+                    result.add(decoded == null || decoded.isEmpty() ? null : decoded);
+                } else {
+                    event = parser.next();
+                }
+            }
+        }
+        return result;
+    }
+
+}
@@ -0,0 +1,251 @@
+/*******************************************************************************
+ * Copyright (c) 2012 - 2018 Signal Iduna Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ * Signal Iduna Corporation - initial API and implementation
+ * akquinet AG
+ * itemis AG
+ *******************************************************************************/
+
+package org.testeditor.fixture.core.calltree;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+import org.testeditor.fixture.core.AbstractTestCase;
+import org.testeditor.fixture.core.DefaultYamlCallTreeListener;
+import org.testeditor.fixture.core.FixtureException;
+import org.testeditor.fixture.core.TestRunListener;
+import org.testeditor.fixture.core.TestRunReporter.Action;
+import org.testeditor.fixture.core.TestRunReporter.SemanticUnit;
+import org.testeditor.fixture.core.TestRunReporter.Status;
+import org.testeditor.fixture.core.calltree.YamlCallTreeParser.Event;
+
+public class YamlCallTreeParserTest {
+
+    private ByteArrayOutputStream yamlOutput = new ByteArrayOutputStream();
+
+    @Test
+    public void testEventsOfTestRun() throws IOException {
+        // given
+        TestRunListener listener = listener();
+        listener.reported(SemanticUnit.TEST, Action.ENTER, "test", "IDROOT", Status.STARTED, null);
+        listener.reported(SemanticUnit.STEP, Action.ENTER, "say \"hello\"", "IDROOT-0", Status.STARTED,
+                AbstractTestCase.variables("greeting", "hällo\n"));
+        listener.reported(SemanticUnit.STEP, Action.LEAVE, "say \"hello\"", "IDROOT-0", Status.OK,
+                AbstractTestCase.variables("greeting", "hällo\n"));
+        listener.reportExceptionExit(new RuntimeException("failed"));
+
+        // when
+        try (YamlCallTreeParser parser = parser(8)) {
+
+            // then
+            assertEquals(Event.TEST_RUN, parser.next());
+            assertEquals("testcase", parser.getSource());
+            assertEquals("1", parser.getTestRunId());
+            assertEquals("decaf", parser.getCommitId());
+            assertEquals(Event.ENTER, parser.next());
+            assertEquals(SemanticUnit.TEST, parser.getUnit());
+            assertEquals("IDROOT", parser.getId());
+            assertEquals(Event.ENTER, parser.next());
+            assertEquals(SemanticUnit.STEP, parser.getUnit());
+            assertEquals("say \"hello\"", parser.getMessage());
+            long entered = parser.getNanoTime();
+            assertEquals(Event.PRE_VARIABLE, parser.next());
+            assertEquals("greeting", parser.getKey());
+            assertEquals("hällo\n", parser.getValue());
+            assertEquals(Event.LEAVE, parser.next());
+            assertEquals(Status.OK, parser.getStatus());
+            assertEquals(6, parser.getIndentation());
+            assertEquals(true, parser.getNanoTime() >= entered);
+            assertEquals(Event.POST_VARIABLE, parser.next());
+            assertEquals(Event.ATTRIBUTE, parser.next());
+            assertEquals("exception", parser.getKey());
+            assertEquals("failed", parser.getValue());
+            assertNull(parser.next());
+        }
+    }
+
+    @Test
+    public void testReplayedEventsRenderIdenticalYaml() throws IOException {
+        // given
+        TestRunListener listener = listener();
+        Map<String, Object> keyValueStore = new LinkedHashMap<>();
+        keyValueStore.put("a double", Double.valueOf(0.5));
+        keyValueStore.put("a long", Long.valueOf(-42));
+        keyValueStore.put("a list", new ArrayList<>(Arrays.asList("one", FixtureException.keyValues("k", "v"),
+                new ArrayList<>(Arrays.asList("nested", "list")), Integer.valueOf(2))));
+        keyValueStore.put("a map", FixtureException.keyValues("key", "välue \"quoted\" \\ \u0001 😀", "other", "x"));
+        listener.reported(SemanticUnit.TEST, Action.ENTER, "test", "IDROOT", Status.STARTED, null);
+        listener.reported(SemanticUnit.SPECIFICATION_STEP, Action.ENTER, "spec", "IDROOT-0", Status.STARTED,
+                AbstractTestCase.variables());
+        listener.reported(SemanticUnit.STEP, Action.ENTER, "step\twith\ttabs", "IDROOT-0-0", Status.STARTED,
+                AbstractTestCase.variables("a", "1", "b", "\"2\""));
+        listener.reported(SemanticUnit.STEP, Action.LEAVE, "step", "IDROOT-0-0", Status.OK, null);
+        listener.reported(SemanticUnit.STEP, Action.ENTER, "failing step", "IDROOT-0-1", Status.STARTED, null);
+        listener.reportFixtureExit(new FixtureException("failed", keyValueStore));
+        listener.reported(SemanticUnit.TEST, Action.LEAVE, "test", "IDROOT", Status.ERROR, null);
+        // a second test run in the same file
+        listener = listener();
+        listener.reported(SemanticUnit.TEST, Action.ENTER, "test", "IDROOT", Status.STARTED, null);
+        listener.reportAssertionExit(new AssertionError("expected"));
+        listener.reported(SemanticUnit.TEST, Action.LEAVE, "test", "IDROOT", Status.ERROR, null);
+
+        // when
+        ByteArrayOutputStream replayed = new ByteArrayOutputStream();
+        try (YamlCallTreeParser parser = parser(16)) {
+            YamlCallTreeSerializer serializer = new YamlCallTreeSerializer(replayed);
+            new Replay(parser, serializer).run();
+            serializer.flush();
+        }
+
+        // then
+        assertEquals(yamlOutput.toString("UTF-8"), replayed.toString("UTF-8"));
+    }
+
+    @Test
+    public void testIncompleteLastLineIsIgnored() throws IOException {
+        // given
+        TestRunListener listener = listener();
+        listener.reported(SemanticUnit.TEST, Action.ENTER, "test", "IDROOT", Status.STARTED, null);
+        listener.reported(SemanticUnit.STEP, Action.ENTER, "step", "IDROOT-0", Status.STARTED, null);
+        byte[] yaml = yamlOutput.toByteArray();
+        yamlOutput.reset();
+        yamlOutput.write(yaml, 0, yaml.length - 3);
+
+        // when
+        try (YamlCallTreeParser parser = parser(8192)) {
+
+            // then
+            assertEquals(Event.TEST_RUN, parser.next());
+            assertEquals(Event.ENTER, parser.next());
+            assertEquals(Event.ENTER, parser.next());
+            assertNull(parser.next());
+        }
+    }
+
+    @Test
+    public void testMalformedLineIsReported() throws IOException {
+        // given
+        yamlOutput.write("- \"source\": \"test\"\n  \"testRunId\": \"1\n".getBytes(StandardCharsets.UTF_8));
+
+        // when
+        try (YamlCallTreeParser parser = parser(8192)) {
+            parser.next();
+            fail("expected malformed line to be reported");
+        } catch (IOException e) {
+            // then
+            assertEquals("malformed call tree at line 2: unterminated string", e.getMessage());
+        }
+    }
+
+    private TestRunListener listener() {
+        return new DefaultYamlCallTreeListener(new YamlCallTreeSerializer(yamlOutput), "testcase", "1", "decaf",
+                true);
+    }
+
+    private YamlCallTreeParser parser(int bufferSize) {
+        return new YamlCallTreeParser(new ByteArrayInputStream(yamlOutput.toByteArray()), bufferSize);
+    }
+
+    /** feeds the events of a parser back to a serializer */
+    private static class Replay {
+        private final YamlCallTreeParser parser;
+        private final CallTreeSerializer serializer;
+        private Event event;
+
+        Replay(YamlCallTreeParser parser, CallTreeSerializer serializer) {
+            this.parser = parser;
+            this.serializer = serializer;
+        }
+
+        void run() throws IOException {
+            event = parser.next();
+            while (event != null) {
+                int indentation = parser.getIndentation();
+                switch (event) {
+                    case TEST_RUN:
+                        serializer.writeTestRun(indentation, parser.getSource(), parser.getTestRunId(),
+                                parser.getCommitId(), parser.getStarted());
+                        event = parser.next();
+                        break;
+                    case ENTER:
+                        SemanticUnit unit = parser.getUnit();
+                        String message = parser.getMessage();
+                        String id = parser.getId();
+                        long entered = parser.getNanoTime();
+                        serializer.writeEnter(indentation, unit, message, id, entered, variables(Event.PRE_VARIABLE));
+                        break;
+                    case LEAVE:
+                        long left = parser.getNanoTime();
+                        Status status = parser.getStatus();
+                        serializer.writeLeave(indentation, left, status, variables(Event.POST_VARIABLE));
+                        break;
+                    case ATTRIBUTE:
+                        String key = parser.getKey();
+                        Object value = leaf();
+                        event = parser.next();
+                        serializer.writeAttribute(indentation, key, value != null ? value : nested(0));
+                        break;
+                    default:
+                        fail("unexpected " + event);
+                }
+            }
+        }
+
+        private Map<String, String> variables(Event type) throws IOException {
+            Map<String, String> variables = new LinkedHashMap<>();
+            for (event = parser.next(); event == type; event = parser.next()) {
+                variables.put(parser.getKey(), parser.getValue());
+            }
+            return variables;
+        }
+
+        @SuppressWarnings("unchecked")
+        private Object nested(int depth) throws IOException {
+            Object container = null;
+            while (event == Event.ATTRIBUTE_ENTRY && parser.getDepth() == depth + 1) {
+                String key = parser.getKey();
+                Object value = leaf();
+                event = parser.next();
+                if (value == null) {
+                    value = nested(depth + 1);
+                }
+                if (container == null) {
+                    container = key == null ? new ArrayList<>() : new LinkedHashMap<>();
+                }
+                if (key == null) {
+                    ((List<Object>) container).add(value);
+                } else {
+                    ((Map<String, Object>) container).put(key, value);
+                }
+            }
+            return container;
+        }
+
+        private Object leaf() {
+            if (parser.getValue() == null) {
+                return null;
+            }
+            return parser.isQuoted() ? parser.getValue() : new BigDecimal(parser.getValue());
+        }
+    }
+
+}
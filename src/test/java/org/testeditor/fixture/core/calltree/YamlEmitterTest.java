@@ -0,0 +1,133 @@
+/*******************************************************************************
+ * Copyright (c) 2012 - 2018 Signal Iduna Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ * Signal Iduna Corporation - initial API and implementation
+ * akquinet AG
+ * itemis AG
+ *******************************************************************************/
+
+package org.testeditor.fixture.core.calltree;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.text.StringEscapeUtils;
+import org.junit.Before;
+import org.junit.Test;
+
+public class YamlEmitterTest {
+
+    private ByteArrayOutputStream outputStream;
+    private YamlEmitter emitterUnderTest;
+
+    @Before
+    public void setup() {
+        outputStream = new ByteArrayOutputStream();
+        // small buffer to exercise spilling to the output stream
+        emitterUnderTest = new YamlEmitter(outputStream, 32);
+    }
+
+    @Test
+    public void testEscapingIsIdenticalToEscapeJava() throws IOException {
+        // given
+        Random random = new Random(4711);
+        StringBuilder expected = new StringBuilder();
+
+        // when
+        for (int i = 0; i < 1000; i++) {
+            String string = randomString(random);
+            emitterUnderTest.quoted(string);
+            expected.append('"').append(StringEscapeUtils.escapeJava(string)).append('"');
+        }
+        emitterUnderTest.flush();
+
+        // then
+        assertArrayEquals(utf8(expected.toString()), outputStream.toByteArray());
+    }
+
+    @Test
+    public void testRawIsIdenticalToStandardEncoding() throws IOException {
+        // given
+        Random random = new Random(815);
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+
+        // when
+        for (int i = 0; i < 1000; i++) {
+            String string = randomString(random);
+            emitterUnderTest.raw(string);
+            expected.write(utf8(string));
+        }
+        emitterUnderTest.flush();
+
+        // then
+        assertArrayEquals(expected.toByteArray(), outputStream.toByteArray());
+    }
+
+    @Test
+    public void testLongsAreFormattedLikeLongToString() throws IOException {
+        // given
+        long[] values = { 0, 1, -1, 9, 10, 99, 100, 123456789, -987654321098765L, 999999999999999999L,
+            1000000000000000000L, Long.MAX_VALUE, Long.MIN_VALUE, Long.MIN_VALUE + 1 };
+        StringBuilder expected = new StringBuilder();
+
+        // when
+        for (long value : values) {
+            emitterUnderTest.number(value);
+            emitterUnderTest.space();
+            emitterUnderTest.quoted(value);
+            emitterUnderTest.newLine();
+            expected.append(value).append(" \"").append(value).append("\"\n");
+        }
+        emitterUnderTest.flush();
+
+        // then
+        assertEquals(expected.toString(), new String(outputStream.toByteArray(), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testIndentationAndPosition() throws IOException {
+        // when
+        emitterUnderTest.indentation(3);
+        emitterUnderTest.ascii('-');
+        emitterUnderTest.indentation(300);
+        emitterUnderTest.ascii('-');
+
+        // then
+        assertEquals(305, emitterUnderTest.position());
+        emitterUnderTest.flush();
+        assertEquals("   -" + StringUtils.repeat(' ', 300) + "-",
+                new String(outputStream.toByteArray(), StandardCharsets.UTF_8));
+        assertEquals(305, emitterUnderTest.position());
+    }
+
+    private String randomString(Random random) {
+        char[] interesting = { '"', '\\', '\b', '\n', '\t', '\f', '\r', '\u0000', '\u001f', ' ', '~', '\u007f',
+            '\u0080', 'ä', 'µ', '€', '\ud83d', '\ude00', '￿', 'a', 'Z', '\'' };
+        int length = random.nextInt(20);
+        StringBuilder result = new StringBuilder();
+        for (int i = 0; i < length; i++) {
+            if (random.nextInt(3) == 0) {
+                result.append((char) random.nextInt(Character.MAX_VALUE + 1));
+            } else {
+                result.append(interesting[random.nextInt(interesting.length)]);
+            }
+        }
+        return result.toString();
+    }
+
+    private byte[] utf8(String string) {
+        return string.getBytes(StandardCharsets.UTF_8);
+    }
+
+}